@@ -184,12 +184,12 @@ public class BackupMessageViewerApplication
          if (asArgs.length == 1)
          {
             if (messageReaderType == IMessageReader.MessageFileType.SKYPE)
-               new LoadMessagesWorker(m_AppFrame, new Pair<String, String>(null, asArgs[0]), messageReaderType).execute();
+               new LoadMessagesWorker(m_AppFrame, new Pair<String, String>(null, asArgs[0]), messageReaderType).start();
             else
-               new LoadMessagesWorker(m_AppFrame, new Pair<String, String>(asArgs[0], null), messageReaderType).execute();
+               new LoadMessagesWorker(m_AppFrame, new Pair<String, String>(asArgs[0], null), messageReaderType).start();
          }
          else if (asArgs.length == 2)
-            new LoadMessagesWorker(m_AppFrame, new Pair<>(asArgs[0], asArgs[1]), messageReaderType).execute();
+            new LoadMessagesWorker(m_AppFrame, new Pair<>(asArgs[0], asArgs[1]), messageReaderType).start();
       }
       else
          JOptionPane.showMessageDialog(m_AppFrame, "Specified file is a unknown backup message file", "Error", JOptionPane.ERROR_MESSAGE);
@@ -24,14 +24,20 @@
 package com.wj.android.messageviewer.gui;
 
 import com.wj.android.messageviewer.gui.actions.AboutAction;
+import com.wj.android.messageviewer.gui.actions.CancelLoadingAction;
 import com.wj.android.messageviewer.gui.actions.ExportAllMessagesAction;
 import com.wj.android.messageviewer.gui.actions.ExportSelectedMessagesAction;
 import com.wj.android.messageviewer.gui.actions.HelpAction;
 import com.wj.android.messageviewer.gui.actions.OpenAction;
+import com.wj.android.messageviewer.gui.actions.OpenManyAction;
 import com.wj.android.messageviewer.gui.actions.OpenRecentFileAction;
 import com.wj.android.messageviewer.gui.actions.QuitAction;
+import com.wj.android.messageviewer.gui.actions.RefreshAction;
 import com.wj.android.messageviewer.util.Pair;
 import com.wj.android.messageviewer.gui.workers.DisplayThreadMessageWorker;
+import com.wj.android.messageviewer.gui.workers.LoadMessagesWorker;
+import com.wj.android.messageviewer.io.Watermarks;
+import com.wj.android.messageviewer.message.ImageCache;
 import com.wj.android.messageviewer.message.MessageThread;
 import com.wj.android.messageviewer.resources.Resources;
 import java.awt.BorderLayout;
@@ -43,18 +49,31 @@ import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import javax.swing.AbstractListModel;
+import javax.swing.Action;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.ListModel;
 import javax.swing.WindowConstants;
 import javax.swing.border.EtchedBorder;
 import javax.swing.event.ListSelectionEvent;
@@ -104,6 +123,13 @@ public final class BackupMessageViewerFrame extends JFrame
    private JMenu m_mnRecentFiles;
    private JList<MessageThread> m_ThreadListBox;
    private MessageViewer m_MessageViewer;
+   private JProgressBar m_LoadProgressBar;
+   private JButton m_CancelLoadButton;
+   private LoadMessagesWorker m_ActiveLoad;
+   private DefaultListModel<MessageThread> m_LoadingModel;
+   private ListModel<MessageThread> m_PreviousModel;
+   private MessageThread m_PreviousSelection;
+   private Watermarks m_Watermarks;
 
    /**
     * Creates new {@code BackupMessageViewerFrame}.
@@ -139,8 +165,9 @@ public final class BackupMessageViewerFrame extends JFrame
     *
     * <p>
     *    Adds the read thread to the thread list box, set the number of SMS
-    *    field, clears the message viewer and add the files from where the
-    *    messages where loaded to the recent file list.
+    *    field, clears the message viewer, disposes the threads loaded before
+    *    and add the files from where the messages where loaded to the recent
+    *    file list.
     * </p>
     *
     * @param threads the thread containing the messages that where read from
@@ -152,26 +179,284 @@ public final class BackupMessageViewerFrame extends JFrame
     */
    public void onMessagesLoaded(final MessageThread[] threads, final int iNoOfMessages, final Pair<String, String> files2load)
    {
+      disposeReplacedThreads(threads);
+      showThreads(threads, iNoOfMessages);
+      m_Watermarks = null;
+
+      setTitle(Resources.getApplicationTitle() + " - " + fileName(files2load));
+      BackupMessageViewerApplication.getInstance().add2RecentFileList(files2load);
+      syncRecentFiles();
+   }
+
+   /**
+    * Called to notify that messages of several backups are successfully
+    * loaded and merged.
+    *
+    * <p>
+    *    Adds the merged threads to the thread list box, set the number of SMS
+    *    field, clears the message viewer and disposes the threads loaded
+    *    before. The files are not added to the recent file list.
+    * </p>
+    *
+    * @param threads the merged threads
+    * @param iNoOfMessages the total number of unique messages merged
+    * @param iNoOfFiles the number of message files merged
+    */
+   public void onMessagesMerged(final MessageThread[] threads, final int iNoOfMessages, final int iNoOfFiles)
+   {
+      disposeReplacedThreads(threads);
+      showThreads(threads, iNoOfMessages);
+      m_Watermarks = null;
+
+      setTitle(Resources.getApplicationTitle() + " - " + iNoOfFiles + " merged backups");
+   }
+
+   /**
+    * Called to notify that the messages of a newer backup, not loaded
+    * before, were loaded.
+    *
+    * <p>
+    *    Appends the new messages to the threads loaded before and adds
+    *    threads of new addresses to the thread list box. The selected thread
+    *    stays selected and is displayed again. The watermarks are kept for
+    *    the next refresh.
+    * </p>
+    *
+    * @param loadedThreads the threads loaded before. Must not be {@code null}.
+    * @param newThreads the threads with new messages.
+    *        Must not be {@code null}.
+    * @param watermarks the watermarks of {@code loadedThreads}.
+    *        Must not be {@code null}.
+    * @param files2load the files (message file and optionally contacts
+    *        database) where messages were loaded from
+    */
+   public void onMessagesRefreshed(final MessageThread[] loadedThreads, final MessageThread[] newThreads, final Watermarks watermarks, final Pair<String, String> files2load)
+   {
+      final List<MessageThread> threads = new ArrayList<>(loadedThreads.length + newThreads.length);
+      for (final MessageThread thread : loadedThreads)
+         threads.add(thread);
+
+      final int iAppended = watermarks.append(threads, newThreads);
+      m_Watermarks = watermarks;
+
+      final MessageThread selection = m_ThreadListBox.getSelectedValue();
       m_MessageViewer.clear();
       m_ThreadListBox.clearSelection();
-      m_ThreadListBox.setListData(threads);
+      m_ThreadListBox.setListData(threads.toArray(new MessageThread[threads.size()]));
+
+      m_LoadingModel = null;
+      endLoading();
       m_ThreadListBox.setEnabled(true);
-      if (0 < m_ThreadListBox.getModel().getSize())
+      if (null != selection)
+         m_ThreadListBox.setSelectedValue(selection, true);
+      if (0 < m_ThreadListBox.getModel().getSize() && m_ThreadListBox.isSelectionEmpty())
          m_ThreadListBox.setSelectedIndex(0);
 
+      int iNoOfMessages = 0;
+      for (final MessageThread thread : threads)
+         iNoOfMessages += thread.getMessageCount();
       m_NumberOfMessagesField.setText(Integer.toString(iNoOfMessages));
 
-      final String strTitle;
+      setTitle(Resources.getApplicationTitle() + " - " + fileName(files2load) + " (+" + iAppended + ")");
+      BackupMessageViewerApplication.getInstance().add2RecentFileList(files2load);
+      syncRecentFiles();
+   }
+
+   /**
+    * Get the threads shown in the thread list box.
+    *
+    * @return the threads loaded. Never {@code null}.
+    */
+   public MessageThread[] getLoadedThreads()
+   {
+      final ListModel<MessageThread> model = m_ThreadListBox.getModel();
+      final MessageThread[] threads;
+
+      if (model instanceof AbstractListModelImpl)
+         threads = new MessageThread[0];
+      else
+      {
+         threads = new MessageThread[model.getSize()];
+         for (int i = 0; i < threads.length; i++)
+            threads[i] = model.getElementAt(i);
+      }
+
+      return(threads);
+   }
+
+   /**
+    * Get the watermarks of the threads loaded, as kept from the last
+    * refresh.
+    *
+    * @return the watermarks or {@code null} if not yet determined.
+    */
+   public Watermarks getWatermarks()
+   {
+      return(m_Watermarks);
+   }
+
+   private static String fileName(final Pair<String, String> files2load)
+   {
+      final String strFileName;
       if (null != files2load.getFirst() && !files2load.getFirst().trim().isEmpty())
-         strTitle = new File(files2load.getFirst()).getName();
+         strFileName = new File(files2load.getFirst()).getName();
       else if (null != files2load.getSecond())
-         strTitle = new File(files2load.getSecond()).getName();
+         strFileName = new File(files2load.getSecond()).getName();
       else
-         strTitle = "";
+         strFileName = "";
 
-      setTitle(Resources.getApplicationTitle() + " - " + strTitle);
-      BackupMessageViewerApplication.getInstance().add2RecentFileList(files2load);
-      syncRecentFiles();
+      return(strFileName);
+   }
+
+   /**
+    * Disposes the threads shown before a load, releasing the database
+    * connections or snapshots held to load their messages lazily, and
+    * clears the images cached of their messages.
+    */
+   private void disposeReplacedThreads(final MessageThread[] threads)
+   {
+      final ListModel<MessageThread> previousModel = null != m_LoadingModel ? m_PreviousModel : m_ThreadListBox.getModel();
+
+      final Set<MessageThread> keptThreads = Collections.newSetFromMap(new IdentityHashMap<MessageThread, Boolean>());
+      keptThreads.addAll(Arrays.asList(threads));
+
+      if (null != previousModel)
+      {
+         for (int i = 0; i < previousModel.getSize(); i++)
+         {
+            final MessageThread thread = previousModel.getElementAt(i);
+            if (!keptThreads.contains(thread))
+               thread.dispose();
+         }
+      }
+
+      ImageCache.getDefault().clear();
+   }
+
+   private void showThreads(final MessageThread[] threads, final int iNoOfMessages)
+   {
+      if (null != m_LoadingModel && m_LoadingModel.getSize() <= threads.length)
+      {
+         // keep the threads already shown while loading and their selection
+         for (int i = m_LoadingModel.getSize(); i < threads.length; i++)
+            m_LoadingModel.addElement(threads[i]);
+      }
+      else
+      {
+         m_MessageViewer.clear();
+         m_ThreadListBox.clearSelection();
+         m_ThreadListBox.setListData(threads);
+      }
+
+      m_LoadingModel = null;
+      endLoading();
+      m_ThreadListBox.setEnabled(true);
+      if (0 < m_ThreadListBox.getModel().getSize() && m_ThreadListBox.isSelectionEmpty())
+         m_ThreadListBox.setSelectedIndex(0);
+
+      m_NumberOfMessagesField.setText(Integer.toString(iNoOfMessages));
+   }
+
+   /**
+    * Called to notify that loading messages started.
+    *
+    * <p>
+    *    Shows the load progress bar and the cancel button.
+    * </p>
+    *
+    * @param worker the worker loading the messages. Must not be {@code null}.
+    */
+   public void onLoadStarted(final LoadMessagesWorker worker)
+   {
+      m_ActiveLoad = worker;
+      m_LoadProgressBar.setValue(0);
+      m_LoadProgressBar.setVisible(true);
+      m_CancelLoadButton.setEnabled(true);
+      m_CancelLoadButton.setVisible(true);
+   }
+
+   /**
+    * Cancels loading messages, if messages are being loaded.
+    */
+   public void cancelLoading()
+   {
+      if (null != m_ActiveLoad)
+      {
+         m_ActiveLoad.cancelLoading();
+         m_CancelLoadButton.setEnabled(false);
+      }
+   }
+
+   /**
+    * Called to notify that threads were read while messages are still being
+    * loaded.
+    *
+    * <p>
+    *    The first call replaces the threads of the thread list box, clears
+    *    the message viewer and selects the first thread. The threads of later
+    *    calls are appended.
+    * </p>
+    *
+    * @param threads the threads read since the last call.
+    *        Must not be {@code null}.
+    */
+   public void onThreadsLoaded(final List<MessageThread> threads)
+   {
+      if (null == m_LoadingModel)
+      {
+         m_PreviousModel = m_ThreadListBox.getModel();
+         m_PreviousSelection = m_ThreadListBox.getSelectedValue();
+         m_MessageViewer.clear();
+         m_ThreadListBox.clearSelection();
+         m_LoadingModel = new DefaultListModel<>();
+         m_ThreadListBox.setModel(m_LoadingModel);
+      }
+
+      for (final MessageThread thread : threads)
+         m_LoadingModel.addElement(thread);
+
+      m_ThreadListBox.setEnabled(true);
+      if (0 < m_LoadingModel.getSize() && m_ThreadListBox.isSelectionEmpty())
+         m_ThreadListBox.setSelectedIndex(0);
+   }
+
+   /**
+    * Called to notify about the progress of loading messages.
+    *
+    * <p>
+    *    Shows the load progress bar until loading is finished.
+    * </p>
+    *
+    * @param iPercent the percentage of the message file read so far.
+    */
+   public void onLoadProgress(final int iPercent)
+   {
+      m_LoadProgressBar.setValue(iPercent);
+      m_LoadProgressBar.setVisible(true);
+   }
+
+   /**
+    * Called to notify that loading messages failed or was cancelled.
+    *
+    * <p>
+    *    Hides the load progress bar. The threads loaded before, and the
+    *    thread selected before, are shown again.
+    * </p>
+    */
+   public void onMessagesNotLoaded()
+   {
+      if (null != m_LoadingModel)
+      {
+         m_MessageViewer.clear();
+         m_ThreadListBox.clearSelection();
+         m_ThreadListBox.setModel(m_PreviousModel);
+         if (null != m_PreviousSelection)
+            m_ThreadListBox.setSelectedValue(m_PreviousSelection, true);
+
+         m_LoadingModel = null;
+      }
+
+      endLoading();
    }
 
    /**
@@ -212,6 +497,7 @@ public final class BackupMessageViewerFrame extends JFrame
       });
 
       configureNumberOfMessages();
+      configureLoadProgressBar();
       configureMessageViewer();
       configureThreadList();
       configureMenus();
@@ -226,6 +512,34 @@ public final class BackupMessageViewerFrame extends JFrame
       m_NumberOfMessagesField.setBorder(BorderFactory.createEmptyBorder());
    }
 
+   private void configureLoadProgressBar()
+   {
+      m_LoadProgressBar = new JProgressBar(0, 100);
+      m_LoadProgressBar.setStringPainted(true);
+      m_LoadProgressBar.setVisible(false);
+
+      final Action cancelAction = new CancelLoadingAction(this);
+      m_CancelLoadButton = new JButton(cancelAction);
+      m_CancelLoadButton.setVisible(false);
+      getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put((KeyStroke)cancelAction.getValue(Action.ACCELERATOR_KEY), "cancelLoading");
+      getRootPane().getActionMap().put("cancelLoading", cancelAction);
+
+      m_ActiveLoad = null;
+      m_LoadingModel = null;
+      m_PreviousModel = null;
+      m_PreviousSelection = null;
+      m_Watermarks = null;
+   }
+
+   private void endLoading()
+   {
+      m_ActiveLoad = null;
+      m_PreviousModel = null;
+      m_PreviousSelection = null;
+      m_LoadProgressBar.setVisible(false);
+      m_CancelLoadButton.setVisible(false);
+   }
+
    private void configureMessageViewer()
    {
       m_MessageViewer = new MessageViewer();
@@ -260,6 +574,8 @@ public final class BackupMessageViewerFrame extends JFrame
       menuBar.add(mnFile);
 
       mnFile.add(new JMenuItem(new OpenAction(this)));
+      mnFile.add(new JMenuItem(new OpenManyAction(this)));
+      mnFile.add(new JMenuItem(new RefreshAction(this)));
 
       createRecentFileMenu(mnFile);
 
@@ -287,6 +603,10 @@ public final class BackupMessageViewerFrame extends JFrame
       h1Box.add(lblNumberOfMessages);
       h1Box.add(Box.createHorizontalStrut(10));
       h1Box.add(m_NumberOfMessagesField);
+      h1Box.add(Box.createHorizontalStrut(10));
+      h1Box.add(m_LoadProgressBar);
+      h1Box.add(Box.createHorizontalStrut(10));
+      h1Box.add(m_CancelLoadButton);
       h1Box.setMaximumSize(h1Box.getPreferredSize());
       h1Box.setAlignmentX(Component.LEFT_ALIGNMENT);
 
@@ -337,4 +657,4 @@ public final class BackupMessageViewerFrame extends JFrame
       if (!evt.getValueIsAdjusting())
          new DisplayThreadMessageWorker(this, m_ThreadListBox.getSelectedValue(), m_MessageViewer).execute();
    }
-}
\ No newline at end of file
+}
\ No newline at end of file
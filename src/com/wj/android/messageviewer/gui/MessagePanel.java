@@ -33,11 +33,8 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Point;
-import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -51,6 +48,8 @@ import javax.swing.JPanel;
 public class MessagePanel extends JPanel
 {
    private static final int VGAP = 20;
+   private static final int MAXIMAGEWIDTH = 300;
+   private static final int MAXIMAGEHEIGHT = 400;
    private static final long serialVersionUID = 5182781147775125388L;
 
    private final IMessage m_Message;
@@ -150,18 +149,6 @@ public class MessagePanel extends JPanel
       return(new Dimension(iWidth, loc.y));
    }
 
-   private static Image resize(final Image image, final int iWdith, final int iHeight)
-   {
-      final BufferedImage bi = new BufferedImage(iWdith, iHeight, BufferedImage.TRANSLUCENT);
-
-      final Graphics2D g2d = bi.createGraphics();
-      g2d.addRenderingHints(new RenderingHints(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY));
-      g2d.drawImage(image, 0, 0, iWdith, iHeight, null);
-      g2d.dispose();
-
-      return(bi);
-   }
-
    /**
     * Initialize all components.
     */
@@ -205,27 +192,11 @@ public class MessagePanel extends JPanel
             else if (part instanceof ImagePart)
             {
                final ImagePart imagePart = (ImagePart)part;
-               final Image image = imagePart.getImage();
+               final Image image = imagePart.getImage(MAXIMAGEWIDTH, MAXIMAGEHEIGHT);
 
                if (null != image)
                {
-                  final ImageIcon icon;
-                  final int iImageWidth = image.getWidth(null);
-                  final int iImageHeight = image.getHeight(null);
-                  if (iImageWidth > 300 || iImageHeight > 400)
-                  {
-                     final float fltMul;
-
-                     if (iImageHeight > 400)
-                        fltMul = 400F / iImageHeight;
-                     else
-                        fltMul =  300F / iImageWidth;
-
-                     icon = new ImageIcon(resize(image, Math.round(iImageWidth * fltMul), Math.round(iImageHeight * fltMul)));
-                  }
-                  else
-                     icon = new ImageIcon(image);
-
+                  final ImageIcon icon = new ImageIcon(image);
                   final JLabel label = new JLabel(icon, JLabel.CENTER);
                   label.setVerticalAlignment(JLabel.TOP);
                   label.setLocation(loc.x, loc.y);
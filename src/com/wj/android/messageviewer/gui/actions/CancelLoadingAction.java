@@ -0,0 +1,68 @@
+/*
+ * $Id$
+ *
+ * File:   CancelLoadingAction.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:26:43 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.gui.actions;
+
+import com.wj.android.messageviewer.gui.BackupMessageViewerFrame;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.KeyStroke;
+
+/**
+ * Cancel loading messages.
+ *
+ * @author Werner Jaeger
+ */
+public class CancelLoadingAction extends AbstractAction
+{
+   private static final long serialVersionUID = 6163920412417357528L;
+
+   private final BackupMessageViewerFrame m_Frame;
+
+   /**
+    * Constructs a new {@code CancelLoadingAction}.
+    *
+    * @param frame application main window
+    */
+   public CancelLoadingAction(final BackupMessageViewerFrame frame)
+   {
+      putValue(Action.NAME, "Cancel");
+      putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0));
+      putValue(Action.SHORT_DESCRIPTION, "Cancel loading messages (Esc)");
+
+      m_Frame = frame;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @param e the generated event
+    */
+   @Override
+   public void actionPerformed(final ActionEvent e)
+   {
+      m_Frame.cancelLoading();
+   }
+}
@@ -105,15 +105,40 @@ public class OpenAction extends AbstractAction
                strContactDatabaseFilePath = null;
 
             if (IMessageReader.MessageFileType.SKYPE == messageReaderType)
-               new LoadMessagesWorker(m_Frame, new Pair<>((String)null, strMessageFilePath), messageReaderType).execute();
+               newWorker(new Pair<>((String)null, strMessageFilePath), messageReaderType).start();
             else
-               new LoadMessagesWorker(m_Frame, new Pair<>(strMessageFilePath, strContactDatabaseFilePath), messageReaderType).execute();
+               newWorker(new Pair<>(strMessageFilePath, strContactDatabaseFilePath), messageReaderType).start();
          }
          else
             JOptionPane.showMessageDialog(m_Frame, "Specified file is a unknown backup message file", "Error", JOptionPane.ERROR_MESSAGE);
       }
    }
 
+   /**
+    * Creates the worker loading the chosen files.
+    *
+    * @param files2Open message and contact database file path.
+    *        Never {@code null}.
+    * @param messageReaderType the type of the message file.
+    *        Never {@code null}.
+    *
+    * @return the worker to start. Never {@code null}.
+    */
+   protected LoadMessagesWorker newWorker(final Pair<String, String> files2Open, final IMessageReader.MessageFileType messageReaderType)
+   {
+      return(new LoadMessagesWorker(m_Frame, files2Open, messageReaderType));
+   }
+
+   /**
+    * Get the application main window frame.
+    *
+    * @return the frame.
+    */
+   protected final BackupMessageViewerFrame getFrame()
+   {
+      return(m_Frame);
+   }
+
    private String chooseMessageFilePath()
    {
       final String strMessageFilePath;
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * File:   OpenManyAction.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:33:36 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.gui.actions;
+
+import com.wj.android.messageviewer.gui.BackupMessageViewerFrame;
+import com.wj.android.messageviewer.gui.workers.LoadMessagesWorker;
+import com.wj.android.messageviewer.io.IMessageReader;
+import com.wj.android.messageviewer.util.Pair;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.AbstractAction;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
+import javax.swing.UIManager;
+
+/**
+ * Triggered by the open many files menu item to load and merge several
+ * message files, e.g. the backups of one device taken over time.
+ *
+ * <p>
+ *    The contacts database is chosen once for all Titanium Backup message
+ *    files. Files of unknown type are skipped.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public class OpenManyAction extends AbstractAction
+{
+   private static final long serialVersionUID = 4630378135129570143L;
+
+   private final transient BackupMessageViewerFrame m_Frame;
+
+   private final JFileChooser m_MessageFileChooser;
+   private final JFileChooser m_ContactsDatabaseChooser;
+
+   /**
+    * Constructs a new {@code OpenManyAction}.
+    *
+    * @param frame application main window frame
+    */
+   public OpenManyAction(final BackupMessageViewerFrame frame)
+   {
+      putValue(NAME, "Open Many ...");
+      putValue(MNEMONIC_KEY, KeyEvent.VK_M);
+      putValue(ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_O, ActionEvent.CTRL_MASK | ActionEvent.SHIFT_MASK));
+
+      m_Frame = frame;
+
+      UIManager.put("FileChooser.readOnly", Boolean.TRUE);
+      m_MessageFileChooser = new JFileChooser();
+      m_MessageFileChooser.setDialogTitle("Open message files to merge");
+      m_MessageFileChooser.setDialogType(JFileChooser.OPEN_DIALOG);
+      m_MessageFileChooser.setMultiSelectionEnabled(true);
+      m_MessageFileChooser.addChoosableFileFilter(new SMSBackupAndResoreMessageFileNameFilter());
+      m_MessageFileChooser.addChoosableFileFilter(new SkypeFileNameFilter());
+      m_MessageFileChooser.setFileFilter(new TitaniumBackupMessageFileNameFilter());
+      m_MessageFileChooser.setApproveButtonToolTipText("You can open several commpressd (.gz) or plain (.xml) message files");
+
+      UIManager.put("FileChooser.readOnly", Boolean.TRUE);
+      m_ContactsDatabaseChooser = new JFileChooser();
+      m_ContactsDatabaseChooser.setDialogTitle("Open contacts database");
+      m_ContactsDatabaseChooser.setDialogType(JFileChooser.OPEN_DIALOG);
+      m_ContactsDatabaseChooser.setFileFilter(new TitaniumBackupContactsFileNameFilter());
+      m_ContactsDatabaseChooser.setApproveButtonToolTipText("You can open the archived (.tar.gz) or the plain (.db) contacts database");
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @param e the generated event
+    */
+   @Override
+   public void actionPerformed(final ActionEvent e)
+   {
+      final File[] aMessageFiles = chooseMessageFiles();
+
+      if (0 < aMessageFiles.length)
+      {
+         final List<Pair<String, String>> files2Merge = new ArrayList<>(aMessageFiles.length);
+         final List<String> unknownFiles = new ArrayList<>();
+         boolean fContactsDBChosen = false;
+         String strContactDatabaseFilePath = null;
+
+         for (final File messageFile : aMessageFiles)
+         {
+            final String strMessageFilePath = messageFile.getAbsolutePath();
+            final IMessageReader.MessageFileType messageReaderType = IMessageReader.MessageFileType.getMessageFileType(strMessageFilePath);
+
+            if (IMessageReader.MessageFileType.TITANIUM == messageReaderType)
+            {
+               if (!fContactsDBChosen)
+               {
+                  strContactDatabaseFilePath = chooseContactsDBFilePath();
+                  fContactsDBChosen = true;
+               }
+               files2Merge.add(new Pair<>(strMessageFilePath, strContactDatabaseFilePath));
+            }
+            else if (IMessageReader.MessageFileType.SKYPE == messageReaderType)
+               files2Merge.add(new Pair<>((String)null, strMessageFilePath));
+            else if (null != messageReaderType)
+               files2Merge.add(new Pair<>(strMessageFilePath, (String)null));
+            else
+               unknownFiles.add(messageFile.getName());
+         }
+
+         if (!unknownFiles.isEmpty())
+            JOptionPane.showMessageDialog(m_Frame, "Skipped unknown backup message files " + unknownFiles, "Error", JOptionPane.ERROR_MESSAGE);
+
+         if (!files2Merge.isEmpty())
+            new LoadMessagesWorker(m_Frame, files2Merge).start();
+      }
+   }
+
+   private File[] chooseMessageFiles()
+   {
+      final File[] aMessageFiles;
+
+      m_MessageFileChooser.setSelectedFiles(new File[0]);
+      final int iRet = m_MessageFileChooser.showOpenDialog(m_Frame);
+
+      if (JFileChooser.APPROVE_OPTION == iRet)
+         aMessageFiles = m_MessageFileChooser.getSelectedFiles();
+      else
+         aMessageFiles = new File[0];
+
+      return(aMessageFiles);
+   }
+
+   private String chooseContactsDBFilePath()
+   {
+      m_ContactsDatabaseChooser.setCurrentDirectory(m_MessageFileChooser.getCurrentDirectory());
+      m_ContactsDatabaseChooser.setSelectedFile(new File(""));
+
+      final int iRet = m_ContactsDatabaseChooser.showOpenDialog(m_Frame);
+
+      final String strContactDatabaseFilePath;
+
+      if (JFileChooser.APPROVE_OPTION == iRet)
+         strContactDatabaseFilePath = m_ContactsDatabaseChooser.getSelectedFile().getAbsolutePath();
+      else
+         strContactDatabaseFilePath = null;
+
+      return(strContactDatabaseFilePath);
+   }
+}
@@ -88,7 +88,7 @@ public class OpenRecentFileAction extends AbstractAction
       else
          strSecondFile = null;
 
-      new LoadMessagesWorker(m_Frame, new Pair<>(strFirstFile, strSecondFile), null).execute();
+      new LoadMessagesWorker(m_Frame, new Pair<>(strFirstFile, strSecondFile), null).start();
    }
 
    private static String makeName(final Pair<String, String> files2Open)
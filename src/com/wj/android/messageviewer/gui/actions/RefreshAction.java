@@ -0,0 +1,74 @@
+/*
+ * $Id$
+ *
+ * File:   RefreshAction.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:37:19 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.gui.actions;
+
+import com.wj.android.messageviewer.gui.BackupMessageViewerFrame;
+import com.wj.android.messageviewer.gui.workers.LoadMessagesWorker;
+import com.wj.android.messageviewer.io.IMessageReader;
+import com.wj.android.messageviewer.util.Pair;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import javax.swing.KeyStroke;
+
+/**
+ * Triggered by the refresh menu item to load only the messages of a newer
+ * backup of the same device which are not loaded yet.
+ *
+ * @author Werner Jaeger
+ */
+public class RefreshAction extends OpenAction
+{
+   private static final long serialVersionUID = 8807237941651268135L;
+
+   /**
+    * Constructs a new {@code RefreshAction}.
+    *
+    * @param frame application main window frame
+    */
+   public RefreshAction(final BackupMessageViewerFrame frame)
+   {
+      super(frame);
+
+      putValue(NAME, "Refresh From Newer Backup ...");
+      putValue(MNEMONIC_KEY, KeyEvent.VK_R);
+      putValue(ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_R, ActionEvent.CTRL_MASK));
+   }
+
+   /**
+    * Creates a worker appending the messages not loaded yet to the threads
+    * shown.
+    *
+    * @param files2Open message and contact database file path.
+    *        Never {@code null}.
+    * @param messageReaderType the type of the message file.
+    *        Never {@code null}.
+    *
+    * @return the worker to start. Never {@code null}.
+    */
+   @Override
+   protected LoadMessagesWorker newWorker(final Pair<String, String> files2Open, final IMessageReader.MessageFileType messageReaderType)
+   {
+      return(new LoadMessagesWorker(getFrame(), files2Open, messageReaderType, getFrame().getLoadedThreads(), getFrame().getWatermarks()));
+   }
+}
@@ -25,6 +25,9 @@ package com.wj.android.messageviewer.gui.workers;
 
 import java.awt.Component;
 import java.awt.Cursor;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JMenuBar;
@@ -38,6 +41,13 @@ import javax.swing.SwingWorker;
  *   that disables/enables all menus and visible components of the frame.
  * </p>
  *
+ * <p>
+ *    Workers may overlap, e.g. a thread is displayed while messages are
+ *    still loading. Menus are enabled again and the cursor is reset only
+ *    when the last worker running on the same frame is done. Workers of
+ *    different frames do not affect each other.
+ * </p>
+ *
  * @param <T> the result type returned by this SwingWorker's doInBackground and
  *            get methods
  * @param <V> the type used for carrying out intermediate results by this
@@ -47,8 +57,11 @@ import javax.swing.SwingWorker;
  */
 abstract class AbstractDisabelingUIWorker<T, V> extends SwingWorker<T, V>
 {
+   private static final Map<JFrame, AtomicInteger> RUNNINGWORKERS = new WeakHashMap<>();
+
    private final JFrame m_Frame;
    private final T m_Result;
+   private volatile boolean m_fRunning;
 
    /**
     * Constructs a new {@code AbstractDisabelingUIWorker}.
@@ -61,6 +74,7 @@ abstract class AbstractDisabelingUIWorker<T, V> extends SwingWorker<T, V>
    {
       m_Frame = frame;
       m_Result = result;
+      m_fRunning = false;
    }
 
    /**
@@ -74,6 +88,8 @@ abstract class AbstractDisabelingUIWorker<T, V> extends SwingWorker<T, V>
    @Override
    protected T doInBackground() throws Exception
    {
+      m_fRunning = true;
+      runningWorkers().incrementAndGet();
       m_Frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
       enableMenu(false);
       enableComponents(false);
@@ -85,16 +101,43 @@ abstract class AbstractDisabelingUIWorker<T, V> extends SwingWorker<T, V>
     * method is finished.
     *
     * <p>
-    *    Sets cursor to default and enables all menus and all visible content
-    *    frame components.
+    *    Enables all visible content frame components. If no other worker is
+    *    running sets cursor to default and enables all menus.
     * </p>
     */
    @Override
    protected void done()
    {
-      enableMenu(true);
       enableComponents(true);
-      m_Frame.setCursor(Cursor.getDefaultCursor());
+
+      if (m_fRunning)
+         runningWorkers().decrementAndGet();
+
+      if (0 == runningWorkers().get())
+      {
+         enableMenu(true);
+         m_Frame.setCursor(Cursor.getDefaultCursor());
+      }
+   }
+
+   /**
+    * Get the counter of workers running on the frame of this worker.
+    */
+   private AtomicInteger runningWorkers()
+   {
+      AtomicInteger runningWorkers;
+
+      synchronized (RUNNINGWORKERS)
+      {
+         runningWorkers = RUNNINGWORKERS.get(m_Frame);
+         if (null == runningWorkers)
+         {
+            runningWorkers = new AtomicInteger();
+            RUNNINGWORKERS.put(m_Frame, runningWorkers);
+         }
+      }
+
+      return(runningWorkers);
    }
 
    private void enableMenu(final boolean fEnable)
@@ -104,7 +147,12 @@ abstract class AbstractDisabelingUIWorker<T, V> extends SwingWorker<T, V>
          mnBar.getMenu(i).setEnabled(fEnable);
    }
 
-   private void enableComponents(final boolean fEnable)
+   /**
+    * Enables or disables all visible content frame components.
+    *
+    * @param fEnable {@code true} to enable the components.
+    */
+   final void enableComponents(final boolean fEnable)
    {
       for (final Component component : m_Frame.getContentPane().getComponents())
          enableComponent(component, fEnable);
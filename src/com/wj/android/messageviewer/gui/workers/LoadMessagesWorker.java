@@ -25,30 +25,103 @@ package com.wj.android.messageviewer.gui.workers;
 
 import com.wj.android.messageviewer.util.Pair;
 import com.wj.android.messageviewer.gui.BackupMessageViewerFrame;
+import com.wj.android.messageviewer.io.AsyncGZIPInputStream;
+import com.wj.android.messageviewer.io.IIncrementalMessageReader;
 import com.wj.android.messageviewer.io.IMessageReader;
+import com.wj.android.messageviewer.io.IThreadListener;
+import com.wj.android.messageviewer.io.LoadCancellation;
+import com.wj.android.messageviewer.io.LoadResult;
+import com.wj.android.messageviewer.io.MessageMerger;
+import com.wj.android.messageviewer.io.SnapshotCache;
+import com.wj.android.messageviewer.io.Watermarks;
+import com.wj.android.messageviewer.message.MessageThread;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 /**
  * Read and Load message files in the background.
  *
+ * <p>
+ *    Threads are published to the frame as soon as the reader completed
+ *    them, so they can be viewed while the rest of the file is still read.
+ *    The progress of this worker is the percentage of the message file
+ *    consumed so far.
+ * </p>
+ *
+ * <p>
+ *    Loading is cancelled with {@link #cancelLoading()}, which interrupts
+ *    the loading thread and cancels the database query it runs, if any.
+ *    The reader stops at its next checkpoint and the frame keeps the
+ *    messages loaded before.
+ * </p>
+ *
+ * <p>
+ *    Every load uses a reader of its own and hands an immutable
+ *    {@link LoadResult} to the frame, so loads of different files may run
+ *    at the same time. Started with {@link #start()} at most
+ *    {@link #MAXCONCURRENTLOADS} loads run at once, further loads wait.
+ * </p>
+ *
+ * <p>
+ *    Several backups of the same device may be merged into one history. The
+ *    files are loaded in parallel, at most {@link #MAXCONCURRENTLOADS} at a
+ *    time, and merged by a {@link MessageMerger} in the order given. The
+ *    progress is then the percentage of files merged.
+ * </p>
+ *
+ * <p>
+ *    A newer backup of the messages loaded may be loaded incrementally.
+ *    Only the messages above the {@link Watermarks} of the threads loaded
+ *    are read, the frame appends them to these threads.
+ * </p>
+ *
  * @author Werner Jaeger
  */
-public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Integer>
+public class LoadMessagesWorker extends AbstractDisabelingUIWorker<LoadResult, MessageThread>
 {
    private static final Logger LOGGER = Logger.getLogger(LoadMessagesWorker.class.getName());
 
-   private IMessageReader m_Reader;
+   /** Maximum number of message files loaded at the same time. */
+   public static final int MAXCONCURRENTLOADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+   private static final ExecutorService LOADEXECUTOR = newLoadExecutor();
+
+   private final IMessageReader.MessageFileType m_MessageReaderType;
    private final BackupMessageViewerFrame m_Frame;
    private final Pair<String, String> m_Files2Open;
+   private final List<Pair<String, String>> m_Files2Merge;
+   private final MessageThread[] m_LoadedThreads;
+   private Watermarks m_Watermarks;
+   private final Object m_CancelLock;
+   private Thread m_LoadingThread;
+   private boolean m_fCancelRequested;
+   private final List<String> m_SkippedFiles;
+   private int m_iFilesMerged;
 
    /**
     * Constructs a new {@code LoadMessagesWorker}.
@@ -60,88 +133,195 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
     */
    public LoadMessagesWorker(final BackupMessageViewerFrame frame, final Pair<String, String> files2Open, final IMessageReader.MessageFileType messageReaderType)
    {
-      super(frame, 0);
+      this(frame, files2Open, messageReaderType, null, null);
+   }
 
-      m_Reader = messageReaderType != null ? messageReaderType.reader() : null;
+   /**
+    * Constructs a new {@code LoadMessagesWorker} loading only the messages
+    * of a newer backup not yet loaded.
+    *
+    * @param frame application main window frame. Must no be {@code null}.
+    * @param files2Open message and contact database file path
+    * @param messageReaderType the type of reader appropriate to read specified
+    *        files, if {@code null} it is determined.
+    * @param loadedThreads the threads loaded so far or {@code null} to load
+    *        all messages.
+    * @param watermarks the watermarks of {@code loadedThreads} or
+    *        {@code null} to determine them.
+    */
+   public LoadMessagesWorker(final BackupMessageViewerFrame frame, final Pair<String, String> files2Open, final IMessageReader.MessageFileType messageReaderType, final MessageThread[] loadedThreads, final Watermarks watermarks)
+   {
+      super(frame, null);
+
+      m_MessageReaderType = messageReaderType;
 
       m_Frame = frame;
       m_Files2Open = files2Open;
+      m_Files2Merge = null;
+      m_LoadedThreads = null == loadedThreads ? null : loadedThreads.clone();
+      m_Watermarks = watermarks;
+      m_CancelLock = new Object();
+      m_LoadingThread = null;
+      m_fCancelRequested = false;
+      m_SkippedFiles = null;
+      m_iFilesMerged = 0;
+
+      addProgressListener();
+   }
+
+   /**
+    * Constructs a new {@code LoadMessagesWorker} merging several message
+    * files.
+    *
+    * @param frame application main window frame. Must no be {@code null}.
+    * @param files2Merge message and contact database file paths of the
+    *        backups to merge, the type of each message file is determined.
+    *        Must not be {@code null}.
+    */
+   public LoadMessagesWorker(final BackupMessageViewerFrame frame, final List<Pair<String, String>> files2Merge)
+   {
+      super(frame, null);
+
+      m_MessageReaderType = null;
+
+      m_Frame = frame;
+      m_Files2Open = null;
+      m_Files2Merge = Collections.unmodifiableList(new ArrayList<>(files2Merge));
+      m_LoadedThreads = null;
+      m_Watermarks = null;
+      m_CancelLock = new Object();
+      m_LoadingThread = null;
+      m_fCancelRequested = false;
+      m_SkippedFiles = new ArrayList<>();
+      m_iFilesMerged = 0;
+
+      addProgressListener();
+   }
+
+   /**
+    * Schedules this worker on the executor shared by all loads.
+    *
+    * <p>
+    *    Use instead of {@code execute()}, which would run loads on the
+    *    executor shared with all other Swing workers.
+    * </p>
+    */
+   public final void start()
+   {
+      LOADEXECUTOR.execute(this);
+   }
+
+   /**
+    * Requests to cancel loading.
+    *
+    * <p>
+    *    May be called from any thread. Has no effect once loading is
+    *    finished.
+    * </p>
+    */
+   public void cancelLoading()
+   {
+      synchronized (m_CancelLock)
+      {
+         m_fCancelRequested = true;
+         if (null != m_LoadingThread)
+            LoadCancellation.cancel(m_LoadingThread);
+      }
    }
 
    /**
     * Reads and loads messages, or throws an exception if unable to do so.
     *
     * <p>
-    *    Set cursor to wait, disables frame and load messages
+    *    Set cursor to wait, disables frame and load messages. A message file
+    *    loaded before is served from its snapshot in the
+    *    {@link SnapshotCache}, otherwise a snapshot is stored in the
+    *    background after loading.
+    * </p>
+    *
+    * <p>
+    *    When merging, files failing to load are skipped. Merging fails only
+    *    if no file could be loaded.
     * </p>
     *
     * <p>
     *    Note: this method is executed in a background thread.
     * </p>
     *
-    * @return the result, 0 = no error, 1, 2, 3 an error occurred.
+    * @return the result, its error code 0 = no error, 1, 2, 3 an error
+    *         occurred, 4 cancelled.
     *
     * @throws Exception never thrown.
     */
    @Override
-   protected Integer doInBackground() throws Exception
+   protected LoadResult doInBackground() throws Exception
    {
-      int iRet = super.doInBackground();
+      super.doInBackground();
 
-      if (0 == iRet)
-      {
-         InputStream is = null;
+      attachLoadingThread();
 
-         try
+      SwingUtilities.invokeLater(new Runnable()
+      {
+         @Override
+         public void run()
          {
-            if (null != m_Files2Open.getFirst() && !m_Files2Open.getFirst().trim().isEmpty())
-            {
-               final File messageFile = new File(m_Files2Open.getFirst());
+            m_Frame.onLoadStarted(LoadMessagesWorker.this);
+         }
+      });
 
-               if (m_Files2Open.getFirst().endsWith(".gz"))
-                  is = new GZIPInputStream(new FileInputStream(messageFile));
-               else
-                  is = new FileInputStream(messageFile);
-            }
+      LoadResult result;
 
-            final File contactsDBFile;
-            final String strContactsDBFileName = m_Files2Open.getSecond();
-            if (null != strContactsDBFileName && !strContactsDBFileName.trim().isEmpty())
-               contactsDBFile = new File(strContactsDBFileName);
-            else
-               contactsDBFile = null;
-
-            if (initReader())
-               iRet = m_Reader.loadMessages(is, contactsDBFile);
-            else
-               iRet = 2;
-         }
-         catch (FileNotFoundException ex)
-         {
-            LOGGER.log(Level.SEVERE, ex.toString(), ex);
-            iRet = -1;
-         }
-         catch (IOException ex)
+      try
+      {
+         if (null != m_Files2Merge)
+            result = merge();
+         else if (null != m_LoadedThreads)
          {
-            iRet = 1;
-            LOGGER.log(Level.SEVERE, ex.toString(), ex);
+            if (null == m_Watermarks)
+               m_Watermarks = Watermarks.of(m_LoadedThreads);
+
+            result = load(m_Files2Open, m_MessageReaderType, null, true, m_Watermarks);
          }
-         finally
+         else
          {
-            try
-            {
-               if (is != null)
-                  is.close();
-            }
-            catch (IOException ex)
+            result = load(m_Files2Open, m_MessageReaderType, new IThreadListener()
             {
-               iRet = -2;
-               LOGGER.log(Level.SEVERE, ex.toString(), ex);
-            }
+               @Override
+               public void threadLoaded(final MessageThread thread)
+               {
+                  publish(thread);
+               }
+            }, true, null);
          }
       }
+      finally
+      {
+         if (detachLoadingThread())
+            result = LoadResult.failed(LoadCancellation.CANCELLED);
+      }
 
-      return(iRet);
+      return(result);
+   }
+
+   /**
+    * Appends threads published while loading to the thread list of the
+    * frame.
+    *
+    * <p>
+    *    Threads published but not yet processed when loading is done are
+    *    ignored, {@code done()} hands all threads to the frame.
+    * </p>
+    *
+    * @param threads the threads completed since the last call.
+    */
+   @Override
+   protected void process(final List<MessageThread> threads)
+   {
+      if (!isDone())
+      {
+         m_Frame.onThreadsLoaded(threads);
+         enableComponents(true);
+      }
    }
 
    /**
@@ -149,8 +329,9 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
     * method is finished.
     *
     * <p>
-    *    Displays an error message in case of an error, sets cursor to default
-    *    and enables all frame menus and visible components.
+    *    Displays an error message in case of an error or a warning listing
+    *    the files skipped by a merge, sets cursor to default and enables all
+    *    frame menus and visible components.
     * </p>
     */
    @Override
@@ -158,18 +339,28 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
    {
       try
       {
-         final int iResult = get();
+         final LoadResult result = get();
+         final int iResult = result.getErrorCode();
 
          String strErrorMessage = "Failed to load messages!\n";
          switch (iResult)
          {
             case 0:
-               m_Frame.onMessagesLoaded(m_Reader.getThreadArray(), m_Reader.getNumberOfMessages(), m_Files2Open);
+               if (null != m_Files2Merge)
+               {
+                  m_Frame.onMessagesMerged(result.getThreadArray(), result.getNumberOfMessages(), m_iFilesMerged);
+                  if (!m_SkippedFiles.isEmpty())
+                     JOptionPane.showMessageDialog(m_Frame, "Skipped backup message files that failed to load " + m_SkippedFiles, "Warning", JOptionPane.WARNING_MESSAGE);
+               }
+               else if (null != m_LoadedThreads)
+                  m_Frame.onMessagesRefreshed(m_LoadedThreads, result.getThreadArray(), m_Watermarks, m_Files2Open);
+               else
+                  m_Frame.onMessagesLoaded(result.getThreadArray(), result.getNumberOfMessages(), m_Files2Open);
                break;
 
             case -1:
                strErrorMessage = strErrorMessage + "Error Code " + iResult + ": Problem message file not found!\n";
-               m_Frame.onMessageFileNotFound(m_Files2Open);
+               onMessageFileNotFound();
                break;
 
             case -2:
@@ -178,7 +369,7 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
 
             case -3:
                strErrorMessage = strErrorMessage + "Error Code " + iResult + ": Problem contact database file file not found!\n";
-               m_Frame.onMessageFileNotFound(m_Files2Open);
+               onMessageFileNotFound();
                break;
 
             case 1:
@@ -186,7 +377,7 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
                break;
 
             case 2:
-               m_Frame.onMessageFileNotFound(m_Files2Open);
+               onMessageFileNotFound();
                strErrorMessage = strErrorMessage + "Error Code " + iResult + ": Invalid Message file!\n";
                break;
 
@@ -194,16 +385,24 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
                strErrorMessage = strErrorMessage + "Error Code " + iResult + ": Problem reading the file!\n";
                break;
 
+            case LoadCancellation.CANCELLED:
+               m_Frame.onMessagesNotLoaded();
+               break;
+
             default:
                strErrorMessage = strErrorMessage + "Error Code " + iResult + ": Unknown error!\n";
                break;
          }
 
-         if (iResult != 0)
+         if (iResult != 0 && iResult != LoadCancellation.CANCELLED)
+         {
+            m_Frame.onMessagesNotLoaded();
             JOptionPane.showMessageDialog(m_Frame, strErrorMessage, "Error", JOptionPane.ERROR_MESSAGE);
+         }
       }
       catch (final ExecutionException ex)
       {
+         m_Frame.onMessagesNotLoaded();
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
       }
       catch (final InterruptedException ex)
@@ -215,16 +414,358 @@ public class LoadMessagesWorker extends AbstractDisabelingUIWorker<Integer, Inte
       super.done();
    }
 
-   private boolean initReader()
+   /**
+    * Loads the messages of one message file.
+    *
+    * @param files2Open message and contact database file path.
+    *        Must not be {@code null}.
+    * @param messageReaderType the type of reader appropriate to read the
+    *        files, if {@code null} it is determined.
+    * @param listener the listener to notify of each completed thread or
+    *        {@code null}.
+    * @param fReportProgress if {@code true} the percentage of the message
+    *        file read is reported as progress of this worker.
+    * @param watermarks the watermarks of the messages loaded before or
+    *        {@code null} to load all messages. Readers not able to load
+    *        incrementally load all messages.
+    *
+    * @return the result. Never {@code null}.
+    */
+   private LoadResult load(final Pair<String, String> files2Open, final IMessageReader.MessageFileType messageReaderType, final IThreadListener listener, final boolean fReportProgress, final Watermarks watermarks)
+   {
+      IMessageReader reader = null;
+      int iRet = 0;
+
+      InputStream is = null;
+
+      try
+      {
+         final File messageFile;
+         if (null != files2Open.getFirst() && !files2Open.getFirst().trim().isEmpty())
+            messageFile = new File(files2Open.getFirst());
+         else
+            messageFile = null;
+
+         final File contactsDBFile;
+         final String strContactsDBFileName = files2Open.getSecond();
+         if (null != strContactsDBFileName && !strContactsDBFileName.trim().isEmpty())
+            contactsDBFile = new File(strContactsDBFileName);
+         else
+            contactsDBFile = null;
+
+         final IMessageReader snapshot = null != messageFile ? SnapshotCache.getDefault().open(messageFile, contactsDBFile) : null;
+         if (null != snapshot)
+         {
+            reader = snapshot;
+            iRet = 0;
+         }
+         else
+         {
+            if (null != messageFile)
+            {
+               is = new FileInputStream(messageFile);
+               if (fReportProgress)
+                  is = new ProgressInputStream(is, messageFile.length());
+               if (files2Open.getFirst().endsWith(".gz"))
+                  is = new AsyncGZIPInputStream(is);
+            }
+
+            reader = newReader(files2Open, messageReaderType);
+            if (null != reader)
+            {
+               if (null != watermarks && reader instanceof IIncrementalMessageReader)
+                  iRet = ((IIncrementalMessageReader)reader).loadNewMessages(is, contactsDBFile, watermarks);
+               else
+                  iRet = reader.loadMessages(is, contactsDBFile, listener);
+
+               // an incremental load holds the new messages only
+               if (0 == iRet && null != messageFile && null == watermarks)
+                  SnapshotCache.getDefault().storeLater(messageFile, contactsDBFile, reader);
+            }
+            else
+               iRet = 2;
+         }
+      }
+      catch (FileNotFoundException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         iRet = -1;
+      }
+      catch (IOException ex)
+      {
+         iRet = 1;
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+      }
+      finally
+      {
+         try
+         {
+            if (is != null)
+               is.close();
+         }
+         catch (IOException ex)
+         {
+            iRet = -2;
+            LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         }
+      }
+
+      return(null != reader ? LoadResult.of(iRet, reader) : LoadResult.failed(iRet));
+   }
+
+   /**
+    * Loads the files to merge in parallel and merges them in the order
+    * given.
+    *
+    * <p>
+    *    At most {@link #MAXCONCURRENTLOADS} files are loaded or waiting to be
+    *    merged at any time, so memory is bounded by the unique messages
+    *    merged so far plus the messages of these files. The files are loaded
+    *    on an executor of their own, the shared load executor may be busy
+    *    with the worker waiting for them. Files failing to load are skipped
+    *    and reported by {@link #done()}.
+    * </p>
+    *
+    * @return the merged result. Never {@code null}.
+    */
+   private LoadResult merge()
+   {
+      final MessageMerger merger = new MessageMerger();
+      final List<Thread> loadingThreads = Collections.synchronizedList(new ArrayList<Thread>(MAXCONCURRENTLOADS));
+      final ExecutorService executor = Executors.newFixedThreadPool(MAXCONCURRENTLOADS, new ThreadFactory()
+      {
+         private final AtomicInteger m_iThreadNumber = new AtomicInteger();
+
+         @Override
+         public Thread newThread(final Runnable runnable)
+         {
+            final Thread thread = new Thread(runnable, "MergeMessagesWorker-" + m_iThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            loadingThreads.add(thread);
+
+            return(thread);
+         }
+      });
+      final Deque<Future<LoadResult>> pending = new ArrayDeque<>(MAXCONCURRENTLOADS);
+
+      int iRet = 0;
+      int iMerged = 0;
+      int iNext = 0;
+
+      try
+      {
+         while (iMerged < m_Files2Merge.size())
+         {
+            while (iNext < m_Files2Merge.size() && pending.size() < MAXCONCURRENTLOADS)
+            {
+               final Pair<String, String> files2Open = m_Files2Merge.get(iNext++);
+               pending.add(executor.submit(new Callable<LoadResult>()
+               {
+                  @Override
+                  public LoadResult call()
+                  {
+                     return(load(files2Open, null, null, false, null));
+                  }
+               }));
+            }
+
+            final LoadResult result = pending.remove().get();
+            if (0 == result.getErrorCode())
+            {
+               merger.merge(result.getThreadArray());
+               m_iFilesMerged++;
+            }
+            else
+            {
+               LOGGER.log(Level.WARNING, "Skipped {0}, error code {1}", new Object[] {m_Files2Merge.get(iMerged).getFirst(), result.getErrorCode()});
+               m_SkippedFiles.add(m_Files2Merge.get(iMerged).getFirst());
+               iRet = result.getErrorCode();
+            }
+
+            iMerged++;
+            setProgress(iMerged * 100 / m_Files2Merge.size());
+         }
+      }
+      catch (final InterruptedException ex)
+      {
+         LOGGER.log(Level.INFO, "Merging cancelled");
+         Thread.currentThread().interrupt();
+         iRet = LoadCancellation.CANCELLED;
+      }
+      catch (final ExecutionException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         iRet = 3;
+      }
+      finally
+      {
+         executor.shutdownNow();
+
+         // also cancels the database queries still running
+         synchronized (loadingThreads)
+         {
+            for (final Thread thread : loadingThreads)
+               LoadCancellation.cancel(thread);
+         }
+      }
+
+      final MessageThread[] aThreads = merger.getThreadArray();
+      final LoadResult merged;
+      if (LoadCancellation.CANCELLED != iRet && (0 == iRet || 0 < aThreads.length))
+      {
+         LOGGER.log(Level.INFO, "Merged {0} messages of {1} files, dropped {2} duplicates", new Object[] {merger.getNumberOfMessages(), m_iFilesMerged, merger.getNumberOfDuplicates()});
+         merged = LoadResult.of(aThreads, merger.getNumberOfMessages());
+      }
+      else
+         merged = LoadResult.failed(iRet);
+
+      return(merged);
+   }
+
+   private void onMessageFileNotFound()
    {
-      if (null == m_Reader)
+      if (null != m_Files2Open)
+         m_Frame.onMessageFileNotFound(m_Files2Open);
+   }
+
+   private void addProgressListener()
+   {
+      addPropertyChangeListener(new PropertyChangeListener()
       {
-         final IMessageReader.MessageFileType messageReaderType = IMessageReader.MessageFileType.getMessageFileType(null == m_Files2Open.getFirst() ? m_Files2Open.getSecond() : m_Files2Open.getFirst());
+         @Override
+         public void propertyChange(final PropertyChangeEvent evt)
+         {
+            if ("progress".equals(evt.getPropertyName()) && !isDone())
+               m_Frame.onLoadProgress((Integer)evt.getNewValue());
+         }
+      });
+   }
 
-         if (null != messageReaderType)
-            m_Reader = messageReaderType.reader();
+   private void attachLoadingThread()
+   {
+      synchronized (m_CancelLock)
+      {
+         m_LoadingThread = Thread.currentThread();
+         if (m_fCancelRequested)
+            m_LoadingThread.interrupt();
       }
+   }
+
+   /**
+    * Detaches the loading thread and clears its interrupt status, so the
+    * pooled thread does not carry it into its next task.
+    *
+    * @return {@code true} if cancelling was requested.
+    */
+   private boolean detachLoadingThread()
+   {
+      final boolean fCancelled;
+
+      synchronized (m_CancelLock)
+      {
+         m_LoadingThread = null;
+         Thread.interrupted();
+         fCancelled = m_fCancelRequested;
+      }
+
+      return(fCancelled);
+   }
+
+   private static IMessageReader newReader(final Pair<String, String> files2Open, final IMessageReader.MessageFileType type)
+   {
+      IMessageReader.MessageFileType messageReaderType = type;
+
+      if (null == messageReaderType)
+         messageReaderType = IMessageReader.MessageFileType.getMessageFileType(null == files2Open.getFirst() ? files2Open.getSecond() : files2Open.getFirst());
+
+      return(null != messageReaderType ? messageReaderType.newReader() : null);
+   }
+
+   private static ExecutorService newLoadExecutor()
+   {
+      final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAXCONCURRENTLOADS, MAXCONCURRENTLOADS, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+      {
+         private final AtomicInteger m_iThreadNumber = new AtomicInteger();
+
+         @Override
+         public Thread newThread(final Runnable runnable)
+         {
+            final Thread thread = new Thread(runnable, "LoadMessagesWorker-" + m_iThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+
+            return(thread);
+         }
+      });
+      executor.allowCoreThreadTimeOut(true);
 
-      return(null != m_Reader);
+      return(executor);
+   }
+
+   /**
+    * Input stream reporting the percentage of bytes read from a file of
+    * known length as progress of this worker.
+    */
+   private final class ProgressInputStream extends FilterInputStream
+   {
+      private final long m_lLength;
+      private long m_lRead;
+      private int m_iPercent;
+
+      private ProgressInputStream(final InputStream in, final long lLength)
+      {
+         super(in);
+
+         m_lLength = lLength;
+         m_lRead = 0;
+         m_iPercent = 0;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         final int iByte = super.read();
+         if (iByte >= 0)
+            consumed(1);
+
+         return(iByte);
+      }
+
+      @Override
+      public int read(final byte[] ab, final int iOffset, final int iLength) throws IOException
+      {
+         final int iRead = super.read(ab, iOffset, iLength);
+         if (iRead > 0)
+            consumed(iRead);
+
+         return(iRead);
+      }
+
+      @Override
+      public long skip(final long lCount) throws IOException
+      {
+         final long lSkipped = super.skip(lCount);
+         if (lSkipped > 0)
+            consumed(lSkipped);
+
+         return(lSkipped);
+      }
+
+      @Override
+      public boolean markSupported()
+      {
+         return(false);
+      }
+
+      private void consumed(final long lCount)
+      {
+         m_lRead += lCount;
+
+         final int iPercent = m_lLength > 0 ? (int)Math.min(100, m_lRead * 100 / m_lLength) : 0;
+         if (iPercent != m_iPercent)
+         {
+            m_iPercent = iPercent;
+            setProgress(iPercent);
+         }
+      }
    }
 }
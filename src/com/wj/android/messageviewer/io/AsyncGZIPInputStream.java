@@ -0,0 +1,397 @@
+/*
+ * $Id$
+ *
+ * File:   AsyncGZIPInputStream.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:01:07 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Input stream decompressing gzip data in a background thread.
+ *
+ * <p>
+ *    A {@link GZIPInputStream} is read by an inflater thread of its own into
+ *    a bounded ring of large buffers, the consumer reads from the other end
+ *    of the ring. Inflating and consuming, typically parsing XML, thus run
+ *    concurrently on different cores. If the consumer is slower than the
+ *    inflater, the inflater waits for a free buffer and vice versa, so the
+ *    memory used is bounded by the number and size of the buffers.
+ * </p>
+ *
+ * <p>
+ *    The gzip header is read and checked when the stream is constructed,
+ *    so input that is not gzip compressed is rejected right away like by
+ *    {@code GZIPInputStream}.
+ * </p>
+ *
+ * <p>
+ *    The numbers of compressed bytes consumed by the inflater and of
+ *    decompressed bytes delivered to the consumer may be queried at any time
+ *    from any thread, e.g. to report progress.
+ * </p>
+ *
+ * <p>
+ *    Instances of this class are not thread safe, they must be read by only
+ *    one thread.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public class AsyncGZIPInputStream extends InputStream
+{
+   private static final Logger LOGGER = Logger.getLogger(AsyncGZIPInputStream.class.getName());
+
+   /** Default size of each buffer of the ring in bytes. */
+   public static final int DEFAULTBUFFERSIZE = 256 * 1024;
+   /** Default number of buffers in the ring. */
+   public static final int DEFAULTBUFFERCOUNT = 4;
+
+   private static final Chunk ENDOFSTREAM = new Chunk(0);
+
+   private final CountingInputStream m_CompressedStream;
+   private final GZIPInputStream m_GZIPStream;
+   private final BlockingQueue<Chunk> m_FreeChunks;
+   private final BlockingQueue<Chunk> m_FilledChunks;
+   private final AtomicLong m_lBytesRead;
+   private final Thread m_InflaterThread;
+
+   private volatile IOException m_InflaterException;
+   private volatile boolean m_fClosed;
+   private Chunk m_CurrentChunk;
+   private int m_iPosition;
+
+   /**
+    * Constructs a new {@code AsyncGZIPInputStream} with
+    * {@link #DEFAULTBUFFERCOUNT} buffers of {@link #DEFAULTBUFFERSIZE} bytes.
+    *
+    * @param is the gzip compressed input stream. Must not be {@code null}.
+    *
+    * @throws IOException if the gzip header is invalid or can not be read.
+    */
+   public AsyncGZIPInputStream(final InputStream is) throws IOException
+   {
+      this(is, DEFAULTBUFFERSIZE, DEFAULTBUFFERCOUNT);
+   }
+
+   /**
+    * Constructs a new {@code AsyncGZIPInputStream}.
+    *
+    * @param is the gzip compressed input stream. Must not be {@code null}.
+    * @param iBufferSize the size of each buffer in bytes. Must be positive.
+    * @param iBufferCount the number of buffers. Must be at least 2.
+    *
+    * @throws IOException if the gzip header is invalid or can not be read.
+    */
+   public AsyncGZIPInputStream(final InputStream is, final int iBufferSize, final int iBufferCount) throws IOException
+   {
+      if (iBufferSize <= 0 || iBufferCount < 2)
+         throw new IllegalArgumentException("Invalid buffer size " + iBufferSize + " or count " + iBufferCount);
+
+      m_CompressedStream = new CountingInputStream(is);
+      m_GZIPStream = new GZIPInputStream(m_CompressedStream, 64 * 1024);
+      m_FreeChunks = new ArrayBlockingQueue<>(iBufferCount);
+      m_FilledChunks = new ArrayBlockingQueue<>(iBufferCount + 1);
+      m_lBytesRead = new AtomicLong();
+      m_InflaterException = null;
+      m_CurrentChunk = null;
+      m_iPosition = 0;
+      m_fClosed = false;
+
+      for (int i = 0; i < iBufferCount; i++)
+         m_FreeChunks.add(new Chunk(iBufferSize));
+
+      m_InflaterThread = new Thread(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            inflate();
+         }
+      }, "GZIP Inflater");
+      m_InflaterThread.setDaemon(true);
+      m_InflaterThread.start();
+   }
+
+   /**
+    * Get the number of decompressed bytes delivered by this stream so far.
+    *
+    * @return the number of decompressed bytes read.
+    */
+   public long getBytesRead()
+   {
+      return(m_lBytesRead.get());
+   }
+
+   /**
+    * Get the number of compressed bytes consumed by the inflater so far.
+    *
+    * <p>
+    *    The inflater runs ahead of the consumer by at most the capacity of
+    *    the buffer ring.
+    * </p>
+    *
+    * @return the number of compressed bytes read from the underlying
+    *         stream.
+    */
+   public long getCompressedBytesRead()
+   {
+      return(m_CompressedStream.count());
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int read() throws IOException
+   {
+      int iRet = -1;
+
+      if (fill())
+      {
+         iRet = m_CurrentChunk.m_abData[m_iPosition++] & 0xff;
+         m_lBytesRead.incrementAndGet();
+      }
+
+      return(iRet);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int read(final byte[] ab, final int iOff, final int iLen) throws IOException
+   {
+      int iRet;
+
+      if (iOff < 0 || iLen < 0 || iLen > ab.length - iOff)
+         throw new IndexOutOfBoundsException();
+
+      if (0 == iLen)
+         iRet = 0;
+      else if (fill())
+      {
+         iRet = Math.min(iLen, m_CurrentChunk.m_iLength - m_iPosition);
+         System.arraycopy(m_CurrentChunk.m_abData, m_iPosition, ab, iOff, iRet);
+         m_iPosition += iRet;
+         m_lBytesRead.addAndGet(iRet);
+      }
+      else
+         iRet = -1;
+
+      return(iRet);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int available() throws IOException
+   {
+      return(null == m_CurrentChunk || ENDOFSTREAM == m_CurrentChunk ? 0 : m_CurrentChunk.m_iLength - m_iPosition);
+   }
+
+   /**
+    * Stops the inflater thread and closes the underlying stream.
+    *
+    * @throws IOException if closing the underlying stream fails.
+    */
+   @Override
+   public void close() throws IOException
+   {
+      if (!m_fClosed)
+      {
+         m_fClosed = true;
+         m_InflaterThread.interrupt();
+
+         try
+         {
+            m_InflaterThread.join();
+         }
+         catch (final InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         finally
+         {
+            m_CompressedStream.close();
+         }
+      }
+   }
+
+   /**
+    * Makes sure the current chunk has unread data.
+    *
+    * @return {@code true} if data is available, {@code false} on end of
+    *         stream.
+    *
+    * @throws IOException if the stream is closed, inflating failed or the
+    *         reading thread got interrupted while waiting for data.
+    */
+   private boolean fill() throws IOException
+   {
+      if (m_fClosed)
+         throw new IOException("Stream closed");
+
+      while (ENDOFSTREAM != m_CurrentChunk && (null == m_CurrentChunk || m_iPosition >= m_CurrentChunk.m_iLength))
+      {
+         if (null != m_CurrentChunk)
+            m_FreeChunks.add(m_CurrentChunk);
+
+         try
+         {
+            m_CurrentChunk = m_FilledChunks.take();
+            m_iPosition = 0;
+         }
+         catch (final InterruptedException ex)
+         {
+            m_CurrentChunk = null;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.toString());
+         }
+      }
+
+      if (ENDOFSTREAM == m_CurrentChunk && null != m_InflaterException)
+         throw new IOException(m_InflaterException.getMessage(), m_InflaterException);
+
+      return(ENDOFSTREAM != m_CurrentChunk);
+   }
+
+   /**
+    * Body of the inflater thread, fills free buffers until end of stream or
+    * an error occurs.
+    */
+   private void inflate()
+   {
+      try (final GZIPInputStream gzipStream = m_GZIPStream)
+      {
+         boolean fEndOfStream = false;
+
+         while (!fEndOfStream)
+         {
+            final Chunk chunk = m_FreeChunks.take();
+
+            chunk.m_iLength = 0;
+            while (chunk.m_iLength < chunk.m_abData.length && !fEndOfStream)
+            {
+               final int iRead = gzipStream.read(chunk.m_abData, chunk.m_iLength, chunk.m_abData.length - chunk.m_iLength);
+               if (iRead < 0)
+                  fEndOfStream = true;
+               else
+                  chunk.m_iLength += iRead;
+            }
+
+            if (chunk.m_iLength > 0)
+               m_FilledChunks.put(chunk);
+         }
+      }
+      catch (final IOException ex)
+      {
+         if (!m_fClosed)
+         {
+            LOGGER.log(Level.SEVERE, ex.toString(), ex);
+            m_InflaterException = ex;
+         }
+      }
+      catch (final InterruptedException ex)
+      {
+         LOGGER.log(Level.FINE, "Inflater stopped");
+         m_InflaterException = new InterruptedIOException(ex.toString());
+      }
+      finally
+      {
+         m_FilledChunks.offer(ENDOFSTREAM);
+      }
+   }
+
+   /**
+    * A buffer of the ring.
+    */
+   private static final class Chunk
+   {
+      private final byte[] m_abData;
+      private int m_iLength;
+
+      private Chunk(final int iSize)
+      {
+         m_abData = new byte[iSize];
+         m_iLength = 0;
+      }
+   }
+
+   /**
+    * Counts the bytes read from the underlying stream.
+    */
+   private static final class CountingInputStream extends FilterInputStream
+   {
+      private final AtomicLong m_lCount;
+
+      private CountingInputStream(final InputStream is)
+      {
+         super(is);
+
+         m_lCount = new AtomicLong();
+      }
+
+      private long count()
+      {
+         return(m_lCount.get());
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         final int iRet = super.read();
+         if (iRet >= 0)
+            m_lCount.incrementAndGet();
+
+         return(iRet);
+      }
+
+      @Override
+      public int read(final byte[] ab, final int iOff, final int iLen) throws IOException
+      {
+         final int iRet = super.read(ab, iOff, iLen);
+         if (iRet > 0)
+            m_lCount.addAndGet(iRet);
+
+         return(iRet);
+      }
+
+      @Override
+      public long skip(final long lCount) throws IOException
+      {
+         final long lSkipped = super.skip(lCount);
+         m_lCount.addAndGet(lSkipped);
+
+         return(lSkipped);
+      }
+
+      @Override
+      public boolean markSupported()
+      {
+         return(false);
+      }
+   }
+}
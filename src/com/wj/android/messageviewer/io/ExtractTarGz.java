@@ -64,10 +64,11 @@ public class ExtractTarGz
    }
 
    /**
-    * Extract the given input tar file to given output directory.
+    * Extract the first file with the given filename from the given input tar
+    * file to given output directory.
     *
     * <p>
-    *    Returns the first file with the given filename found in the output
+    *    Only the first file with the given filename is written to the output
     *    directory. File name comparison is case sensitive.
     * </p>
     *
@@ -91,31 +92,119 @@ public class ExtractTarGz
    {
       File returnFile = null;
 
-      List<File> untaredFiles;
-
       try
       {
-         untaredFiles = extractTarGz(inputFile, outputDir);
+         final ExtractedEntry extracted = extractFirst(inputFile, outputDir, strFileNameToFind);
+         returnFile = extracted.getFile();
+
+         LOGGER.log(Level.INFO, "Extracted {0} from {1}, skipped {2} bytes of other entries", new Object[] {returnFile, inputFile, extracted.getBytesNotWritten()});
       }
       catch (final IOException | ArchiveException ex)
       {
-         untaredFiles = null;
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
       }
 
-      if (null != untaredFiles)
+      return(returnFile);
+   }
+
+   /**
+    * Extract the first file with the given filename from the given input tar
+    * file to given output directory.
+    *
+    * <p>
+    *    The archive is read only up to the end of the first matching entry.
+    *    The content of all entries before it is skipped, without being
+    *    written. For an uncompressed {@code tar} file skipping means seeking,
+    *    a {@code tar.gz} file has to be inflated but the data is discarded.
+    * </p>
+    *
+    * <p>
+    *    The entry is written to its path relative to the output directory.
+    *    Output directory including any necessary but nonexistent parent
+    *    directories are created.
+    * </p>
+    *
+    * @param inputFile the {@code tar} or {@code tar.gz} archive to extract.
+    * @param outputDir the directory to extract the entry to.
+    * @param strFileNameToFind file name (without path) to look for.
+    *
+    * @return the extraction result. Never {@code null}.
+    *
+    * @throws IOException in case of an IO error
+    * @throws ArchiveException in case of an archive error
+    */
+   public static ExtractedEntry extractFirst(final File inputFile, final File outputDir, final String strFileNameToFind) throws IOException, ArchiveException
+   {
+      File extractedFile = null;
+      long lBytesNotWritten = 0;
+
+      if (outputDir.exists() || outputDir.mkdirs())
       {
-         for (File file : untaredFiles)
+         try (TarArchiveInputStream tarInputStream = openTar(inputFile))
          {
-            if (file.isFile() && file.getName().equals(strFileNameToFind))
+            TarArchiveEntry entry;
+            while (null == extractedFile && (entry = (TarArchiveEntry)tarInputStream.getNextEntry()) != null)
             {
-               returnFile = file;
-               break;
+               if (!entry.isDirectory() && new File(entry.getName()).getName().equals(strFileNameToFind))
+               {
+                  final File outputFile = new File(outputDir, entry.getName());
+                  final File parentDir = outputFile.getParentFile();
+                  if (!parentDir.exists() && !parentDir.mkdirs())
+                     throw new IllegalStateException(String.format("Couldn't create directory %s.", parentDir.getAbsolutePath()));
+
+                  try (OutputStream outputFileStream = new FileOutputStream(outputFile))
+                  {
+                     IOUtils.io(tarInputStream, outputFileStream);
+                  }
+                  extractedFile = outputFile;
+               }
+               else if (!entry.isDirectory())
+                  lBytesNotWritten += entry.getSize();
             }
          }
       }
 
-      return(returnFile);
+      return(new ExtractedEntry(extractedFile, lBytesNotWritten));
+   }
+
+   /**
+    * Copy the content of the first file with the given filename in the
+    * given input tar file to an output stream.
+    *
+    * <p>
+    *    Like {@link #extractFirst(File, File, String)} the archive is read
+    *    only up to the end of the first matching entry, but nothing is
+    *    written to disk.
+    * </p>
+    *
+    * @param inputFile the {@code tar} or {@code tar.gz} archive to read.
+    * @param strFileNameToFind file name (without path) to look for.
+    * @param out the stream to copy the entry content to. It is not closed.
+    *
+    * @return {@code true} if a file with the given name was found and
+    *         copied.
+    *
+    * @throws IOException in case of an IO error
+    * @throws ArchiveException in case of an archive error
+    */
+   public static boolean copyFirst(final File inputFile, final String strFileNameToFind, final OutputStream out) throws IOException, ArchiveException
+   {
+      boolean fFound = false;
+
+      try (TarArchiveInputStream tarInputStream = openTar(inputFile))
+      {
+         TarArchiveEntry entry;
+         while (!fFound && (entry = (TarArchiveEntry)tarInputStream.getNextEntry()) != null)
+         {
+            if (!entry.isDirectory() && new File(entry.getName()).getName().equals(strFileNameToFind))
+            {
+               IOUtils.io(tarInputStream, out);
+               fFound = true;
+            }
+         }
+      }
+
+      return(fFound);
    }
 
    /**
@@ -157,6 +246,17 @@ public class ExtractTarGz
       return(untaredFiles);
    }
 
+   private static TarArchiveInputStream openTar(final File inputFile) throws IOException, ArchiveException
+   {
+      final InputStream in;
+      if (inputFile.getName().endsWith(".gz"))
+         in = new GZIPInputStream(new FileInputStream(inputFile));
+      else
+         in = new FileInputStream(inputFile);
+
+      return((TarArchiveInputStream)new ArchiveStreamFactory().createArchiveInputStream("tar", in));
+   }
+
    /**
     * {@code Untar} an input file into an output file.
     *
@@ -199,4 +299,45 @@ public class ExtractTarGz
 
       return(untaredFiles);
    }
+
+   /**
+    * Result of extracting a single entry.
+    */
+   public static final class ExtractedEntry
+   {
+      private final File m_File;
+      private final long m_lBytesNotWritten;
+
+      private ExtractedEntry(final File file, final long lBytesNotWritten)
+      {
+         m_File = file;
+         m_lBytesNotWritten = lBytesNotWritten;
+      }
+
+      /**
+       * Get the extracted file.
+       *
+       * @return the extracted file or {@code null} if no matching entry was
+       *         found.
+       */
+      public File getFile()
+      {
+         return(m_File);
+      }
+
+      /**
+       * Get the size of the file entries skipped before the extracted one.
+       *
+       * <p>
+       *    Entries following the extracted one are not even read, their size
+       *    is not included.
+       * </p>
+       *
+       * @return the number of bytes not written to the output directory.
+       */
+      public long getBytesNotWritten()
+      {
+         return(m_lBytesNotWritten);
+      }
+   }
 }
@@ -0,0 +1,449 @@
+/*
+ * $Id$
+ *
+ * File:   ExtractionCache.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:04:05 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.bind.DatatypeConverter;
+import org.apache.commons.compress.archivers.ArchiveException;
+
+/**
+ * Cache of single entries extracted from {@code tar} and {@code tar.gz}
+ * archives, kept across sessions.
+ *
+ * <p>
+ *    An extracted entry is identified by the archive's size, modification
+ *    time and a content fingerprint, a SHA-1 digest over these values, the
+ *    first and last {@link #FINGERPRINTSAMPLESIZE} bytes of the archive and
+ *    the name of the entry. Each key has a directory of its own below the
+ *    cache directory. Re-opening an archive seen before therefore does not
+ *    decompress anything.
+ * </p>
+ *
+ * <p>
+ *    Entries are extracted into a temporary directory which is then
+ *    atomically renamed to the key directory, so concurrent extractions of
+ *    the same archive never see partially written files. The least recently
+ *    used key directories are deleted as soon as the cache exceeds its disk
+ *    budget. Keys whose extracted file is still in use, i.e. was not yet
+ *    {@link #release(java.io.File) released} by the caller, are never
+ *    evicted.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class ExtractionCache
+{
+   private static final Logger LOGGER = Logger.getLogger(ExtractionCache.class.getName());
+
+   /** Name of the system property defining the disk budget in bytes. */
+   static final String DISKBUDGETPROPERTY = "com.wj.android.messageviewer.extractioncache.budget";
+
+   /** Default disk budget in bytes. */
+   static final long DEFAULTDISKBUDGET = 1024L * 1024L * 1024L;
+
+   /** Number of bytes read from start and end of an archive to fingerprint it. */
+   static final int FINGERPRINTSAMPLESIZE = 64 * 1024;
+
+   private static final String ENTRYFILENAME = "entry";
+   private static final String TEMPDIRPREFIX = "tmp-";
+   private static final long STALETEMPDIRAGE = 24L * 60L * 60L * 1000L;
+
+   private static final ExtractionCache DEFAULTCACHE = new ExtractionCache(new File(System.getProperty("java.io.tmpdir"), "titaniumBackupMessageViewerCache"), Long.getLong(DISKBUDGETPROPERTY, DEFAULTDISKBUDGET));
+
+   private final File m_CacheDir;
+   private final long m_lDiskBudget;
+   private final Map<File, Integer> m_Pins;
+
+   /**
+    * Creates new {@code ExtractionCache}.
+    *
+    * @param cacheDir the directory to keep the extracted entries in.
+    *        Must not be {@code null}.
+    * @param lDiskBudget the maximum number of bytes to keep in the cache.
+    */
+   ExtractionCache(final File cacheDir, final long lDiskBudget)
+   {
+      m_CacheDir = cacheDir;
+      m_lDiskBudget = lDiskBudget;
+      m_Pins = new HashMap<>();
+   }
+
+   /**
+    * Get the application wide cache.
+    *
+    * <p>
+    *    It is located in the {@code java.io.tmpdir} directory, its disk
+    *    budget may be set by system property {@link #DISKBUDGETPROPERTY}.
+    * </p>
+    *
+    * @return the default cache. Never {@code null}.
+    */
+   static ExtractionCache getDefault()
+   {
+      return(DEFAULTCACHE);
+   }
+
+   /**
+    * Determine whether the given file is located within this cache, i.e.
+    * is a private copy which may be modified.
+    *
+    * @param file the file to check. Must not be {@code null}.
+    *
+    * @return {@code true} if {@code file} is located below the cache
+    *         directory.
+    */
+   boolean contains(final File file)
+   {
+      boolean fContains;
+
+      try
+      {
+         fContains = file.getCanonicalPath().startsWith(m_CacheDir.getCanonicalPath() + File.separator);
+      }
+      catch (final IOException ex)
+      {
+         LOGGER.log(Level.WARNING, ex.toString(), ex);
+         fContains = false;
+      }
+
+      return(fContains);
+   }
+
+   /**
+    * Get the first file with the given filename from the given archive,
+    * extracting it only if it is not already cached.
+    *
+    * <p>
+    *    The returned file is pinned, it is not evicted before it is passed
+    *    to {@link #release(java.io.File)}, which the caller must do once it
+    *    no longer uses the file.
+    * </p>
+    *
+    * @param archive the {@code tar} or {@code tar.gz} archive.
+    *        Must not be {@code null}.
+    * @param strFileNameToFind file name (without path) to look for.
+    *        Must not be {@code null}.
+    *
+    * @return the cached file or {@code null} if the archive does not contain
+    *         a file with the given name or an error occurred.
+    */
+   File extractFirst(final File archive, final String strFileNameToFind)
+   {
+      File extractedFile = null;
+      File keyDir = null;
+
+      try
+      {
+         keyDir = new File(m_CacheDir, key(archive, strFileNameToFind)).getAbsoluteFile();
+         pin(keyDir);
+
+         if (!keyDir.isDirectory())
+            publish(archive, strFileNameToFind, keyDir);
+         else
+            LOGGER.log(Level.INFO, "Using cached extraction of {0} from {1}", new Object[] {strFileNameToFind, archive});
+
+         extractedFile = lookup(keyDir);
+         if (!keyDir.setLastModified(System.currentTimeMillis()))
+            LOGGER.log(Level.WARNING, "Failed to touch {0}", keyDir);
+
+         evict(keyDir);
+      }
+      catch (final IOException | ArchiveException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+      }
+      finally
+      {
+         if (null == extractedFile && null != keyDir)
+            unpin(keyDir);
+      }
+
+      return(extractedFile);
+   }
+
+   /**
+    * Releases a file returned by {@link #extractFirst(java.io.File, java.lang.String)},
+    * its key may be evicted again once all users released it.
+    *
+    * @param extractedFile the file no longer used. Must not be {@code null}.
+    */
+   void release(final File extractedFile)
+   {
+      final File cacheDir = m_CacheDir.getAbsoluteFile();
+
+      File keyDir = extractedFile.getAbsoluteFile();
+      while (null != keyDir && !cacheDir.equals(keyDir.getParentFile()))
+         keyDir = keyDir.getParentFile();
+
+      if (null != keyDir)
+         unpin(keyDir);
+      else
+         LOGGER.log(Level.WARNING, "{0} is not located in the extraction cache", extractedFile);
+   }
+
+   private synchronized void pin(final File keyDir)
+   {
+      final Integer iUsers = m_Pins.get(keyDir);
+
+      m_Pins.put(keyDir, null == iUsers ? 1 : iUsers + 1);
+   }
+
+   private synchronized void unpin(final File keyDir)
+   {
+      final Integer iUsers = m_Pins.get(keyDir);
+
+      if (null == iUsers || 1 >= iUsers)
+         m_Pins.remove(keyDir);
+      else
+         m_Pins.put(keyDir, iUsers - 1);
+   }
+
+   private synchronized boolean isPinned(final File keyDir)
+   {
+      return(m_Pins.containsKey(keyDir.getAbsoluteFile()));
+   }
+
+   /**
+    * Extracts the entry to a temporary directory and renames it to the key
+    * directory.
+    */
+   private void publish(final File archive, final String strFileNameToFind, final File keyDir) throws IOException, ArchiveException
+   {
+      if (!m_CacheDir.isDirectory() && !m_CacheDir.mkdirs())
+         throw new IOException("Failed to create cache directory " + m_CacheDir);
+
+      final File tempDir = Files.createTempDirectory(m_CacheDir.toPath(), TEMPDIRPREFIX).toFile();
+      try
+      {
+         final ExtractTarGz.ExtractedEntry extracted = ExtractTarGz.extractFirst(archive, tempDir, strFileNameToFind);
+         LOGGER.log(Level.INFO, "Extracted {0} from {1}, skipped {2} bytes of other entries", new Object[] {extracted.getFile(), archive, extracted.getBytesNotWritten()});
+
+         // relative path of the extracted file, empty if not found
+         final String strRelativePath = null == extracted.getFile() ? "" : tempDir.toPath().relativize(extracted.getFile().toPath()).toString();
+         Files.write(new File(tempDir, ENTRYFILENAME).toPath(), strRelativePath.getBytes(StandardCharsets.UTF_8));
+
+         try
+         {
+            Files.move(tempDir.toPath(), keyDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+         }
+         catch (final FileAlreadyExistsException | AtomicMoveNotSupportedException ex)
+         {
+            // published concurrently
+            LOGGER.log(Level.FINE, ex.toString(), ex);
+            if (!keyDir.isDirectory())
+               throw ex;
+         }
+         catch (final IOException ex)
+         {
+            // a non empty target directory is reported differently by platform
+            if (!keyDir.isDirectory())
+               throw ex;
+         }
+      }
+      finally
+      {
+         if (tempDir.exists())
+            delete(tempDir);
+      }
+   }
+
+   private static File lookup(final File keyDir) throws IOException
+   {
+      final String strRelativePath = new String(Files.readAllBytes(new File(keyDir, ENTRYFILENAME).toPath()), StandardCharsets.UTF_8);
+      final File file = new File(keyDir, strRelativePath);
+
+      return(!strRelativePath.isEmpty() && file.isFile() ? file : null);
+   }
+
+   /**
+    * Deletes least recently used key directories until the cache fits into
+    * its disk budget.
+    *
+    * @param keepDir the directory of the key in use, never deleted.
+    *        Neither are the directories of other pinned keys.
+    */
+   private void evict(final File keepDir)
+   {
+      final File[] aDirs = m_CacheDir.listFiles();
+      if (null != aDirs)
+      {
+         final List<File> keyDirs = new ArrayList<>(aDirs.length);
+         final long lNow = System.currentTimeMillis();
+         long lTotal = 0;
+
+         for (final File dir : aDirs)
+         {
+            if (dir.getName().startsWith(TEMPDIRPREFIX))
+            {
+               // left over by a crashed extraction
+               if (lNow - dir.lastModified() > STALETEMPDIRAGE)
+                  delete(dir);
+            }
+            else if (dir.isDirectory())
+            {
+               keyDirs.add(dir);
+               lTotal += size(dir);
+            }
+         }
+
+         Collections.sort(keyDirs, new Comparator<File>()
+         {
+            @Override
+            public int compare(final File dir1, final File dir2)
+            {
+               return(Long.compare(dir1.lastModified(), dir2.lastModified()));
+            }
+         });
+
+         for (final File dir : keyDirs)
+         {
+            if (lTotal <= m_lDiskBudget)
+               break;
+
+            if (!dir.equals(keepDir) && !isPinned(dir))
+            {
+               final long lSize = size(dir);
+               if (delete(dir))
+               {
+                  lTotal -= lSize;
+                  LOGGER.log(Level.INFO, "Evicted {0} from extraction cache", dir);
+               }
+            }
+         }
+      }
+   }
+
+   private static String key(final File archive, final String strFileNameToFind) throws IOException
+   {
+      final MessageDigest digest = newDigest();
+
+      fingerprint(digest, archive);
+      digest.update(strFileNameToFind.getBytes(StandardCharsets.UTF_8));
+
+      return(DatatypeConverter.printHexBinary(digest.digest()));
+   }
+
+   /**
+    * Creates the digest used to compute fingerprints.
+    *
+    * @return a new SHA-1 digest. Never {@code null}.
+    *
+    * @throws IOException if SHA-1 is not available.
+    */
+   static MessageDigest newDigest() throws IOException
+   {
+      final MessageDigest digest;
+
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-1");
+      }
+      catch (final NoSuchAlgorithmException ex)
+      {
+         throw new IOException(ex);
+      }
+
+      return(digest);
+   }
+
+   /**
+    * Updates the digest with a fingerprint of the given file, i.e. its size,
+    * modification time and first and last {@link #FINGERPRINTSAMPLESIZE}
+    * bytes.
+    *
+    * @param digest the digest to update. Must not be {@code null}.
+    * @param file the file to fingerprint. Must not be {@code null}.
+    *
+    * @throws IOException if reading the file fails.
+    */
+   static void fingerprint(final MessageDigest digest, final File file) throws IOException
+   {
+      try (final RandomAccessFile raf = new RandomAccessFile(file, "r"))
+      {
+         final long lSize = raf.length();
+         digest.update(ByteBuffer.allocate(16).putLong(lSize).putLong(file.lastModified()).array());
+
+         final byte[] abSample = new byte[(int)Math.min(FINGERPRINTSAMPLESIZE, lSize)];
+         raf.readFully(abSample);
+         digest.update(abSample);
+
+         if (lSize > FINGERPRINTSAMPLESIZE)
+         {
+            raf.seek(Math.max(FINGERPRINTSAMPLESIZE, lSize - FINGERPRINTSAMPLESIZE));
+            final int iRead = raf.read(abSample);
+            digest.update(abSample, 0, Math.max(0, iRead));
+         }
+      }
+   }
+
+   private static long size(final File file)
+   {
+      long lSize = 0;
+
+      final File[] aFiles = file.listFiles();
+      if (null != aFiles)
+      {
+         for (final File child : aFiles)
+            lSize += size(child);
+      }
+      else
+         lSize = file.length();
+
+      return(lSize);
+   }
+
+   private static boolean delete(final File file)
+   {
+      final File[] aFiles = file.listFiles();
+      if (null != aFiles)
+      {
+         for (final File child : aFiles)
+            delete(child);
+      }
+
+      final boolean fDeleted = file.delete();
+      if (!fDeleted)
+         LOGGER.log(Level.WARNING, "Failed to delete {0}", file);
+
+      return(fDeleted);
+   }
+}
@@ -0,0 +1,59 @@
+/*
+ * $Id$
+ *
+ * File:   IIncrementalMessageReader.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:37:19 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Interface definition for message readers able to load only the messages
+ * newer than those loaded before.
+ *
+ * @author Werner Jaeger
+ */
+public interface IIncrementalMessageReader extends IMessageReader
+{
+   /**
+    * Reads a message file, loading only the messages not covered by the
+    * given watermarks.
+    *
+    * <p>
+    *    Messages older than the watermark of their thread are skipped
+    *    without building them. Afterwards {@link #getThreadArray()} returns
+    *    only the threads with new messages, each containing only these.
+    * </p>
+    *
+    * @param is the message file input stream to read from.
+    *        Must not be {@code null}.
+    * @param contactsDB the SQLLite contact database file or {@code null}.
+    * @param watermarks the watermarks of the messages loaded before.
+    *        Must not be {@code null}.
+    *
+    * @return the error code -3 meaning contact database file not found,
+    *         0 meaning success, 1 {@code is} == {@code null}, 2
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   int loadNewMessages(final InputStream is, final File contactsDB, final Watermarks watermarks);
+}
@@ -24,26 +24,8 @@
 package com.wj.android.messageviewer.io;
 
 import com.wj.android.messageviewer.message.MessageThread;
-import com.wj.android.messageviewer.resources.Resources;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 /**
  * Interface definition for message readers.
@@ -54,67 +36,155 @@ public interface IMessageReader
 {
     /**
     * Determine the message file type for a specified message file and
-    * provide the appropriate reader implementation.
+    * create the appropriate reader implementation.
     */
    public enum MessageFileType
    {
       /** A Titanium Backup message file. */
-      TITANIUM (new TitaniumBackupMessageReader()),
+      TITANIUM ("threads")
+      {
+         @Override
+         public IMessageReader newReader(final boolean fValidating)
+         {
+            return(new TitaniumBackupMessageReader(fValidating, Runtime.getRuntime().availableProcessors() > 1));
+         }
+      },
       /** a SMS Backup and Restore message file */
-      SMSBACKUPANDRESTORE (new SMSBackupAndRestoreMessageReader()),
+      SMSBACKUPANDRESTORE ("smses")
+      {
+         @Override
+         public IMessageReader newReader(final boolean fValidating)
+         {
+            return(new SMSBackupAndRestoreMessageReader(fValidating));
+         }
+      },
       /** a Skype message reader */
-      SKYPE (new SkypeMessageReader());
+      SKYPE (null)
+      {
+         @Override
+         public IMessageReader newReader(final boolean fValidating)
+         {
+            return(new SkypeMessageReader(true));
+         }
+      };
 
-      private final IMessageReader m_MessageReader;
+      /**
+       * Name of the system property enabling validation of XML message files
+       * against the schema of their type while they are read.
+       */
+      public static final String VALIDATEPROPERTY = "com.wj.android.messageviewer.validate";
+
+      private final String m_strRootElementName;
 
-      private MessageFileType(final IMessageReader messageReader)
+      private MessageFileType(final String strRootElementName)
       {
-         m_MessageReader = messageReader;
+         m_strRootElementName = strRootElementName;
       }
 
       /**
-       * Get the appropriate reader for this type.
+       * Creates a new reader for this type.
+       *
+       * <p>
+       *    Readers keep the state of the file they load, every load needs a
+       *    reader of its own. Loads with different readers may run
+       *    concurrently.
+       * </p>
+       *
+       * @return an appropriate reader implementation, validating if
+       *         enabled by system property {@link #VALIDATEPROPERTY}.
+       *         Never {@code null}.
+       */
+      public IMessageReader newReader()
+      {
+         return(newReader(isValidating()));
+      }
+
+      /**
+       * Creates a new reader for this type.
+       *
+       * <p>
+       *    A validating reader checks XML message files against the schema
+       *    of their type in the same pass in which it reads them, invalid
+       *    files fail to load with error code 2. Readers of message
+       *    databases ignore {@code fValidating}.
+       * </p>
+       *
+       * @param fValidating if {@code true} the reader validates the message
+       *        files it reads.
        *
        * @return an appropriate reader implementation. Never {@code null}.
        */
-      public final IMessageReader reader()
+      public abstract IMessageReader newReader(final boolean fValidating);
+
+      /**
+       * Determine whether message files are validated while they are read,
+       * as set by system property {@link #VALIDATEPROPERTY}.
+       *
+       * @return {@code true} if validation is enabled, the default is
+       *         {@code false}.
+       */
+      public static boolean isValidating()
       {
-         return(m_MessageReader);
+         return(Boolean.getBoolean(VALIDATEPROPERTY));
       }
 
       /**
        * Returns the type of the specified message file.
        *
+       * <p>
+       *    XML message files are recognized by the name of their root
+       *    element, only the beginning of the file is read. The file is not
+       *    validated.
+       * </p>
+       *
        * @param strAbsoluteFileNamePath absolute path to the file to check. If
        *          {@code null} or file type unknown {@code null} is returned.
        * @return the type or {@code null} if not known.
        */
       public static MessageFileType getMessageFileType(final String strAbsoluteFileNamePath)
+      {
+         return(getMessageFileType(strAbsoluteFileNamePath, false));
+      }
+
+      /**
+       * Returns the type of the specified message file and optionally
+       * validates XML message files against the schema of their type.
+       *
+       * <p>
+       *    Validation requires a full pass over the file. The schemas are
+       *    compiled only once.
+       * </p>
+       *
+       * @param strAbsoluteFileNamePath absolute path to the file to check. If
+       *          {@code null} or file type unknown {@code null} is returned.
+       * @param fValidate if {@code true} a XML message file must also be
+       *          valid according to the schema of its type.
+       * @return the type or {@code null} if not known or, in case
+       *         {@code fValidate} is {@code true}, not valid.
+       */
+      public static MessageFileType getMessageFileType(final String strAbsoluteFileNamePath, final boolean fValidate)
       {
          MessageFileType messageType = null;
 
          if (null == strAbsoluteFileNamePath || (!strAbsoluteFileNamePath.contains("com.skype.raider-") && !strAbsoluteFileNamePath.endsWith("main.db")))
          {
-            final String strSMSSchema = Resources.getSMSBackaupSchema();
-            final String strTitaniumSchema = Resources.getTitaniumBackaupSchema();
-            if (null != strAbsoluteFileNamePath && null != strSMSSchema && null != strTitaniumSchema)
+            if (null != strAbsoluteFileNamePath)
             {
-               if (strAbsoluteFileNamePath.startsWith("sms-"))
+               final String strRootElementName = MessageFileSniffer.rootElementName(strAbsoluteFileNamePath);
+               if (null != strRootElementName)
                {
-                  // try check for SMS Backup Reader and Restore first
-                  if (isValid(strAbsoluteFileNamePath, strSMSSchema))
-                     messageType = MessageFileType.SMSBACKUPANDRESTORE;
-                  else if (isValid(strAbsoluteFileNamePath, strTitaniumSchema))
-                     messageType = MessageFileType.TITANIUM;
-               }
-               else
-               {
-                  // try check for Titanium Backup Reader and Restore first
-                  if (isValid(strAbsoluteFileNamePath, strTitaniumSchema))
-                     messageType = MessageFileType.TITANIUM;
-                  else if (isValid(strAbsoluteFileNamePath, strSMSSchema))
-                     messageType = MessageFileType.SMSBACKUPANDRESTORE;
+                  for (final MessageFileType type : values())
+                  {
+                     if (strRootElementName.equals(type.m_strRootElementName))
+                     {
+                        messageType = type;
+                        break;
+                     }
+                  }
                }
+
+               if (fValidate && null != messageType && !MessageFileValidator.isValid(strAbsoluteFileNamePath, messageType))
+                  messageType = null;
             }
          }
          else
@@ -122,59 +192,6 @@ public interface IMessageReader
 
          return(messageType);
       }
-
-      private static boolean isValid(final String strAbsoluteFileNamePath, final String strSchema)
-      {
-         boolean fRet = true;
-         InputStream is = null;
-
-         try
-         {
-            final File messageFile = new File(strAbsoluteFileNamePath);
-            if (strAbsoluteFileNamePath.endsWith(".gz"))
-               is = new GZIPInputStream(new FileInputStream(messageFile));
-            else
-               is = new FileInputStream(messageFile);
-
-            // parse an XML document into a DOM tree
-            final DocumentBuilder parser = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            final Document document = parser.parse(is);
-
-            // create a SchemaFactory capable of understanding WXS schemas
-            final SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-
-            // load a WXS schema, represented by a Schema instance
-            final Schema schema = factory.newSchema(new StreamSource(new StringReader(strSchema)));
-
-            // create a Validator instance, which can be used to validate an instance document
-            final Validator validator = schema.newValidator();
-
-            validator.validate(new DOMSource(document));
-         }
-         catch (final ParserConfigurationException | SAXException | IOException ex)
-         {
-            fRet = false;
-
-            if (ex instanceof SAXException)
-               Logger.getLogger(MessageFileType.class.getName()).log(Level.FINER, ex.toString(), ex);
-            else
-               Logger.getLogger(MessageFileType.class.getName()).log(Level.SEVERE, ex.toString(), ex);
-         }
-         finally
-         {
-            try
-            {
-               if (is != null)
-                  is.close();
-            }
-            catch (IOException ex)
-            {
-               Logger.getLogger(MessageFileType.class.getName()).log(Level.SEVERE, ex.toString(), ex);
-            }
-         }
-
-         return(fRet);
-      }
    }
 
    /**
@@ -200,7 +217,31 @@ public interface IMessageReader
     *
     * @return the error code -3 meaning contact database file not found,
     *         0 meaning success, 1 {@code is} == {@code null}, 2
-    *         invalid XML and 3 other reading problems.
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
     */
    int loadMessages(final InputStream is, final File contactsDB);
+
+   /**
+    * Reads a message file as stored from the Titanium Backup application,
+    * reporting each thread as soon as it is complete.
+    *
+    * <p>
+    *    Loading is cancelled by interrupting the calling thread. Readers
+    *    check for it at thread and message boundaries, release their
+    *    streams and statements and return error code 4.
+    * </p>
+    *
+    * @param is the message file input stream to read from.
+    *        Must not be {@code null}.
+    * @param contactsDB the SQLLite contact database file or {@code null}.
+    * @param listener the listener to notify of each completed thread or
+    *        {@code null}.
+    *
+    * @return the error code -3 meaning contact database file not found,
+    *         0 meaning success, 1 {@code is} == {@code null}, 2
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   int loadMessages(final InputStream is, final File contactsDB, final IThreadListener listener);
 }
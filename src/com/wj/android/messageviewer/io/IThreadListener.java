@@ -0,0 +1,49 @@
+/*
+ * $Id$
+ *
+ * File:   IThreadListener.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:22:44 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.MessageThread;
+
+/**
+ * Interface definition for a callback to be invoked when a
+ * {@link IMessageReader} completed a message thread while loading.
+ *
+ * @author Werner Jaeger
+ */
+public interface IThreadListener
+{
+   /**
+    * Called when a thread is complete, i.e. no more messages will be added
+    * to it.
+    *
+    * <p>
+    *    Threads are reported in the order they will appear in
+    *    {@link IMessageReader#getThreadArray()}, on the thread calling
+    *    {@link IMessageReader#loadMessages(java.io.InputStream, java.io.File, IThreadListener)}.
+    * </p>
+    *
+    * @param thread the completed thread. Never {@code null}.
+    */
+   void threadLoaded(final MessageThread thread);
+}
@@ -0,0 +1,181 @@
+/*
+ * $Id$
+ *
+ * File:   InMemorySQLite.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:05:20 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.compress.archivers.ArchiveException;
+
+/**
+ * Opens a {@code SQLite} database contained in a {@code tar} or
+ * {@code tar.gz} archive as in-memory database.
+ *
+ * <p>
+ *    The bundled {@code sqlite-jdbc} driver can only restore an in-memory
+ *    database from a file. The archive entry is therefore streamed into a
+ *    scratch file on a memory backed file system ({@code /dev/shm}) if
+ *    available, otherwise into {@code java.io.tmpdir}, restored into a
+ *    {@code :memory:} database and deleted immediately afterwards. Nothing
+ *    is written to the extraction cache.
+ * </p>
+ *
+ * <p>
+ *    Whether readers open archived databases this way is controlled by the
+ *    system property {@link #INMEMORYPROPERTY}.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class InMemorySQLite
+{
+   private static final Logger LOGGER = Logger.getLogger(InMemorySQLite.class.getName());
+
+   /** Name of the boolean system property enabling in-memory databases. */
+   static final String INMEMORYPROPERTY = "com.wj.android.messageviewer.sqlite.inmemory";
+
+   private static final File SHAREDMEMORYDIR = new File("/dev/shm");
+
+   /**
+    * Prevent instantiation.
+    */
+   private InMemorySQLite()
+   {
+   }
+
+   /**
+    * Determine whether archived databases should be opened in memory.
+    *
+    * @return {@code true} if system property {@link #INMEMORYPROPERTY} is
+    *         set to {@code true}.
+    */
+   static boolean isEnabled()
+   {
+      return(Boolean.getBoolean(INMEMORYPROPERTY));
+   }
+
+   /**
+    * Opens the first database file with the given filename in the given
+    * archive as in-memory database.
+    *
+    * @param archive the {@code tar} or {@code tar.gz} archive.
+    *        Must not be {@code null}.
+    * @param strFileNameToFind file name (without path) of the database.
+    *        Must not be {@code null}.
+    *
+    * @return a connection to the in-memory database or {@code null} if the
+    *         archive does not contain a file with the given name. Closing
+    *         the connection releases the database.
+    *
+    * @throws IOException if reading the archive or writing the scratch file
+    *         fails.
+    * @throws ArchiveException in case of an archive error.
+    * @throws SQLException if the database could not be restored.
+    */
+   static Connection openFromArchive(final File archive, final String strFileNameToFind) throws IOException, ArchiveException, SQLException
+   {
+      Connection connection = null;
+
+      final File scratchFile = File.createTempFile("messageviewer", ".db", scratchDir());
+      try
+      {
+         final boolean fFound;
+         try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(scratchFile), 64 * 1024))
+         {
+            fFound = ExtractTarGz.copyFirst(archive, strFileNameToFind, out);
+         }
+
+         if (fFound)
+         {
+            try
+            {
+               Class.forName("org.sqlite.JDBC");
+            }
+            catch (final ClassNotFoundException ex)
+            {
+               throw new SQLException(ex);
+            }
+
+            final String strQuotedPath = quote(scratchFile.getAbsolutePath());
+
+            connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+            try (final Statement statement = connection.createStatement())
+            {
+               statement.executeUpdate("restore from " + strQuotedPath);
+            }
+            catch (final SQLException ex)
+            {
+               connection.close();
+               throw ex;
+            }
+
+            LOGGER.log(Level.INFO, "Opened {0} from {1} in memory", new Object[] {strFileNameToFind, archive});
+         }
+      }
+      finally
+      {
+         if (!scratchFile.delete())
+            LOGGER.log(Level.WARNING, "Failed to delete {0}", scratchFile);
+      }
+
+      return(connection);
+   }
+
+   /**
+    * Quotes a file name for the {@code restore} command of the driver, which
+    * takes names in double or single quotes but knows no escapes.
+    *
+    * @param strPath the file name. Must not be {@code null}.
+    *
+    * @return the quoted file name. Never {@code null}.
+    *
+    * @throws SQLException if the file name contains both quote characters.
+    */
+   static String quote(final String strPath) throws SQLException
+   {
+      final String strQuoted;
+
+      if (0 > strPath.indexOf('"'))
+         strQuoted = "\"" + strPath + "\"";
+      else if (0 > strPath.indexOf('\''))
+         strQuoted = "'" + strPath + "'";
+      else
+         throw new SQLException("Can not restore from " + strPath + ", its name contains both quote characters");
+
+      return(strQuoted);
+   }
+
+   private static File scratchDir()
+   {
+      return(SHAREDMEMORYDIR.isDirectory() && SHAREDMEMORYDIR.canWrite() ? SHAREDMEMORYDIR : new File(System.getProperty("java.io.tmpdir")));
+   }
+}
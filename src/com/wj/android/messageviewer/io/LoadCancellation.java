@@ -0,0 +1,159 @@
+/*
+ * $Id$
+ *
+ * File:   LoadCancellation.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:26:43 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.xml.sax.SAXException;
+
+/**
+ * Cooperative cancellation of message loading.
+ *
+ * <p>
+ *    Loading is cancelled by interrupting the thread calling
+ *    {@link IMessageReader#loadMessages(java.io.InputStream, java.io.File, IThreadListener)}.
+ *    Readers call {@link #checkpoint()} at thread and message boundaries.
+ *    The interrupt status is left set, so blocking operations entered while
+ *    unwinding fail fast as well.
+ * </p>
+ *
+ * <p>
+ *    A single database query does not reach a checkpoint until it returns
+ *    its first row. Readers therefore {@link #register(java.sql.Statement)
+ *    register} their statements while they run, {@link #cancel(java.lang.Thread)}
+ *    then also cancels the statement of the interrupted thread.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class LoadCancellation
+{
+   private static final Logger LOGGER = Logger.getLogger(LoadCancellation.class.getName());
+
+   /** Error code returned by {@code loadMessages} if loading was cancelled. */
+   public static final int CANCELLED = 4;
+
+   /** Statements running on loading threads. */
+   private static final Map<Thread, Statement> STATEMENTS = new HashMap<>();
+
+   /**
+    * Prevent instantiation.
+    */
+   private LoadCancellation()
+   {
+   }
+
+   /**
+    * Throws if loading was cancelled.
+    *
+    * @throws InterruptedIOException if the current thread is interrupted.
+    */
+   static void checkpoint() throws InterruptedIOException
+   {
+      if (Thread.currentThread().isInterrupted())
+         throw new InterruptedIOException("Loading messages cancelled");
+   }
+
+   /**
+    * Determine whether the given exception, or the exception wrapped in it,
+    * reports a cancellation.
+    *
+    * @param ex the exception to check. Must not be {@code null}.
+    *
+    * @return {@code true} if loading was cancelled.
+    */
+   static boolean isCancellation(final Exception ex)
+   {
+      final Exception cause = ex instanceof SAXException ? ((SAXException)ex).getException() : ex;
+
+      return(cause instanceof InterruptedIOException);
+   }
+
+   /**
+    * Cancels loading on the given thread by interrupting it and cancelling
+    * the statement it registered, if any.
+    *
+    * @param thread the loading thread. Must not be {@code null}.
+    */
+   public static void cancel(final Thread thread)
+   {
+      synchronized (STATEMENTS)
+      {
+         thread.interrupt();
+
+         final Statement statement = STATEMENTS.get(thread);
+         if (null != statement)
+         {
+            try
+            {
+               statement.cancel();
+            }
+            catch (final SQLException ex)
+            {
+               LOGGER.log(Level.FINE, ex.toString(), ex);
+            }
+         }
+      }
+   }
+
+   /**
+    * Registers the statement about to be executed on the current thread, so
+    * cancelling loading cancels it. The statement must be
+    * {@link #unregister() unregistered} before it is closed.
+    *
+    * @param statement the statement. Must not be {@code null}.
+    *
+    * @throws InterruptedIOException if loading was already cancelled.
+    */
+   static void register(final Statement statement) throws InterruptedIOException
+   {
+      synchronized (STATEMENTS)
+      {
+         STATEMENTS.put(Thread.currentThread(), statement);
+      }
+
+      // interrupted before the statement was registered
+      if (Thread.currentThread().isInterrupted())
+      {
+         unregister();
+         checkpoint();
+      }
+   }
+
+   /**
+    * Unregisters the statement of the current thread.
+    */
+   static void unregister()
+   {
+      synchronized (STATEMENTS)
+      {
+         STATEMENTS.remove(Thread.currentThread());
+      }
+   }
+}
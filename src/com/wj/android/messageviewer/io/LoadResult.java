@@ -0,0 +1,134 @@
+/*
+ * $Id$
+ *
+ * File:   LoadResult.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:29:03 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.MessageThread;
+
+/**
+ * The immutable outcome of loading one message file.
+ *
+ * <p>
+ *    Readers are created per load and keep mutable state while loading.
+ *    A {@code LoadResult} takes a copy of the threads and the number of
+ *    messages once loading is finished, so it may be handed to other
+ *    threads, e.g. from a worker to the Event Dispatch Thread.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class LoadResult
+{
+   private static final MessageThread[] NOTHREADS = new MessageThread[0];
+
+   private final int m_iErrorCode;
+   private final MessageThread[] m_aThreads;
+   private final int m_iNumberOfMessages;
+
+   private LoadResult(final int iErrorCode, final MessageThread[] aThreads, final int iNumberOfMessages)
+   {
+      m_iErrorCode = iErrorCode;
+      m_aThreads = aThreads;
+      m_iNumberOfMessages = iNumberOfMessages;
+   }
+
+   /**
+    * Creates the result of a load by the given reader.
+    *
+    * @param iErrorCode the error code returned by
+    *        {@link IMessageReader#loadMessages(java.io.InputStream, java.io.File, IThreadListener)}.
+    * @param reader the reader that loaded the messages.
+    *        Must not be {@code null}.
+    *
+    * @return the result, without threads if {@code iErrorCode} is not 0.
+    *         Never {@code null}.
+    */
+   public static LoadResult of(final int iErrorCode, final IMessageReader reader)
+   {
+      final LoadResult result;
+
+      if (0 == iErrorCode)
+         result = new LoadResult(iErrorCode, reader.getThreadArray(), reader.getNumberOfMessages());
+      else
+         result = failed(iErrorCode);
+
+      return(result);
+   }
+
+   /**
+    * Creates the result of a successful load of the given threads, e.g.
+    * merged from several loads.
+    *
+    * @param aThreads the threads loaded. Must not be {@code null}.
+    * @param iNumberOfMessages the number of messages in all threads.
+    *
+    * @return the result. Never {@code null}.
+    */
+   public static LoadResult of(final MessageThread[] aThreads, final int iNumberOfMessages)
+   {
+      return(new LoadResult(0, aThreads.clone(), iNumberOfMessages));
+   }
+
+   /**
+    * Creates the result of a load that failed before or without a reader.
+    *
+    * @param iErrorCode the error code.
+    *
+    * @return the result without threads. Never {@code null}.
+    */
+   public static LoadResult failed(final int iErrorCode)
+   {
+      return(new LoadResult(iErrorCode, NOTHREADS, 0));
+   }
+
+   /**
+    * Get the error code of the load.
+    *
+    * @return 0 meaning success, otherwise the error code of the reader or of
+    *         opening the file.
+    */
+   public int getErrorCode()
+   {
+      return(m_iErrorCode);
+   }
+
+   /**
+    * Get an array of all message threads loaded.
+    *
+    * @return a copy of the thread array. Never {@code null}.
+    */
+   public MessageThread[] getThreadArray()
+   {
+      return(m_aThreads.clone());
+   }
+
+   /**
+    * Get the number of all messages in all threads.
+    *
+    * @return the number of messages
+    */
+   public int getNumberOfMessages()
+   {
+      return(m_iNumberOfMessages);
+   }
+}
@@ -0,0 +1,209 @@
+/*
+ * $Id$
+ *
+ * File:   MessageFileSniffer.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 9:56:21 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Determines the root element of a XML message file without reading the
+ * whole file.
+ *
+ * <p>
+ *    Only the prolog and the start tag of the root element are parsed. At
+ *    most {@link #BYTEBUDGET} (decompressed) bytes are read, so the cost does
+ *    not depend on the size of the message file.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class MessageFileSniffer
+{
+   private static final Logger LOGGER = Logger.getLogger(MessageFileSniffer.class.getName());
+
+   /** Maximum number of bytes read to find the root element. */
+   static final int BYTEBUDGET = 64 * 1024;
+
+   /**
+    * Prevent instantiation.
+    */
+   private MessageFileSniffer()
+   {
+   }
+
+   /**
+    * Get the local name of the root element of the specified XML file.
+    *
+    * @param strAbsoluteFileNamePath absolute path to the file to check,
+    *        files ending with {@code .gz} are decompressed.
+    *        Must not be {@code null}.
+    *
+    * @return the local name of the root element or {@code null} if the file
+    *         could not be read or no root element was found within the
+    *         first {@link #BYTEBUDGET} bytes.
+    */
+   static String rootElementName(final String strAbsoluteFileNamePath)
+   {
+      String strRet = null;
+
+      try (final InputStream is = open(strAbsoluteFileNamePath))
+      {
+         final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+         parserFactory.setNamespaceAware(true);
+         parserFactory.newSAXParser().parse(new InputSource(new BoundedInputStream(is, BYTEBUDGET)), new RootElementHandler());
+      }
+      catch (final RootElementFound found)
+      {
+         strRet = found.rootElementName();
+      }
+      catch (final SAXException ex)
+      {
+         LOGGER.log(Level.FINER, ex.toString(), ex);
+      }
+      catch (final ParserConfigurationException | IOException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+      }
+
+      return(strRet);
+   }
+
+   private static InputStream open(final String strAbsoluteFileNamePath) throws IOException
+   {
+      final InputStream is = new FileInputStream(strAbsoluteFileNamePath);
+
+      return(strAbsoluteFileNamePath.endsWith(".gz") ? new GZIPInputStream(is) : is);
+   }
+
+   /**
+    * Stops parsing at the first start tag.
+    */
+   private static final class RootElementHandler extends DefaultHandler
+   {
+      @Override
+      public void startElement(final String strUri, final String strLocalName, final String strQName, final Attributes attributes) throws SAXException
+      {
+         throw new RootElementFound(null == strLocalName || strLocalName.isEmpty() ? strQName : strLocalName);
+      }
+   }
+
+   /**
+    * Thrown to abort parsing once the root element is known.
+    */
+   private static final class RootElementFound extends SAXException
+   {
+      private static final long serialVersionUID = -1948213570635418227L;
+
+      private final String m_strRootElementName;
+
+      private RootElementFound(final String strRootElementName)
+      {
+         super(strRootElementName);
+
+         m_strRootElementName = strRootElementName;
+      }
+
+      private String rootElementName()
+      {
+         return(m_strRootElementName);
+      }
+   }
+
+   /**
+    * Signals end of stream after a given number of bytes has been read.
+    */
+   private static final class BoundedInputStream extends FilterInputStream
+   {
+      private long m_lRemaining;
+
+      private BoundedInputStream(final InputStream is, final long lLimit)
+      {
+         super(is);
+
+         m_lRemaining = lLimit;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int iRet = -1;
+
+         if (m_lRemaining > 0)
+         {
+            iRet = super.read();
+            if (iRet >= 0)
+               m_lRemaining--;
+         }
+
+         return(iRet);
+      }
+
+      @Override
+      public int read(final byte[] ab, final int iOff, final int iLen) throws IOException
+      {
+         int iRet = -1;
+
+         if (m_lRemaining > 0)
+         {
+            iRet = super.read(ab, iOff, (int)Math.min(iLen, m_lRemaining));
+            if (iRet > 0)
+               m_lRemaining -= iRet;
+         }
+
+         return(iRet);
+      }
+
+      @Override
+      public long skip(final long lCount) throws IOException
+      {
+         final long lSkipped = super.skip(Math.min(lCount, m_lRemaining));
+         m_lRemaining -= lSkipped;
+
+         return(lSkipped);
+      }
+
+      @Override
+      public int available() throws IOException
+      {
+         return((int)Math.min(super.available(), m_lRemaining));
+      }
+
+      @Override
+      public boolean markSupported()
+      {
+         return(false);
+      }
+   }
+}
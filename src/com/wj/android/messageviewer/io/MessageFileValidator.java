@@ -0,0 +1,443 @@
+/*
+ * $Id$
+ *
+ * File:   MessageFileValidator.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 9:56:21 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.resources.Resources;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Validates XML message files against the XSD of their message file type.
+ *
+ * <p>
+ *    Each schema is compiled once on first use and cached for the lifetime
+ *    of the application. Validation streams the file, no document tree is
+ *    built. A message file can either be validated in a pass of its own or
+ *    while it is parsed by a message reader, see
+ *    {@link #parse(InputSource, DefaultHandler, IMessageReader.MessageFileType)}.
+ * </p>
+ *
+ * <p>
+ *    The schemas do not declare a target namespace, element namespaces of
+ *    the message file are therefore ignored.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class MessageFileValidator
+{
+   private static final Logger LOGGER = Logger.getLogger(MessageFileValidator.class.getName());
+
+   /**
+    * Number of element levels passed to the validator while parsing.
+    *
+    * <p>
+    *    The message file schemas only constrain the root element, the content
+    *    of its children is skipped ({@code processContents="skip"}). Deeper
+    *    levels are therefore not passed to the validator, which keeps the
+    *    costs of validation independent of the number of messages.
+    * </p>
+    */
+   private static final int VALIDATIONDEPTH = 2;
+
+   private static final Map<IMessageReader.MessageFileType, Schema> SCHEMAMAP = new EnumMap<>(IMessageReader.MessageFileType.class);
+
+   /**
+    * Prevent instantiation.
+    */
+   private MessageFileValidator()
+   {
+   }
+
+   /**
+    * Get the compiled schema of the specified message file type.
+    *
+    * @param messageFileType the message file type. Must not be {@code null}.
+    *
+    * @return the schema or {@code null} if there is no schema for
+    *         {@code messageFileType} or if it failed to compile.
+    */
+   static Schema schema(final IMessageReader.MessageFileType messageFileType)
+   {
+      Schema schema;
+
+      synchronized (SCHEMAMAP)
+      {
+         schema = SCHEMAMAP.get(messageFileType);
+         if (null == schema)
+         {
+            schema = compileSchema(messageFileType);
+            if (null != schema)
+               SCHEMAMAP.put(messageFileType, schema);
+         }
+      }
+
+      return(schema);
+   }
+
+   /**
+    * Validates the specified message file against the schema of the
+    * specified message file type.
+    *
+    * @param strAbsoluteFileNamePath absolute path to the file to validate,
+    *        files ending with {@code .gz} are decompressed.
+    *        Must not be {@code null}.
+    * @param messageFileType the message file type. Must not be {@code null}.
+    *
+    * @return {@code true} if the file is valid, {@code false} if not or if
+    *         no schema is available for {@code messageFileType}.
+    */
+   static boolean isValid(final String strAbsoluteFileNamePath, final IMessageReader.MessageFileType messageFileType)
+   {
+      boolean fRet = false;
+
+      final Schema schema = schema(messageFileType);
+      if (null != schema)
+      {
+         try (final InputStream is = open(strAbsoluteFileNamePath))
+         {
+            final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+            parserFactory.setNamespaceAware(true);
+            final XMLReader reader = new NamespaceStrippingFilter(parserFactory.newSAXParser().getXMLReader());
+
+            schema.newValidator().validate(new SAXSource(reader, new InputSource(is)));
+            fRet = true;
+         }
+         catch (final SAXException ex)
+         {
+            LOGGER.log(Level.FINER, ex.toString(), ex);
+         }
+         catch (final ParserConfigurationException | IOException ex)
+         {
+            LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         }
+      }
+
+      return(fRet);
+   }
+
+   /**
+    * Parses a XML message file and optionally validates it in the same pass.
+    *
+    * <p>
+    *    If {@code validateAs} is not {@code null} the parse events are passed
+    *    to a {@link ValidatorHandler} of the schema of that message file type
+    *    before they reach {@code handler}. A validation error aborts parsing
+    *    with a {@code SAXException}.
+    * </p>
+    *
+    * @param source the source to parse. Must not be {@code null}.
+    * @param handler the handler receiving the parse events.
+    *        Must not be {@code null}.
+    * @param validateAs the message file type to validate against or
+    *        {@code null} to parse without validation.
+    *
+    * @throws ParserConfigurationException if no parser could be created or
+    *         no schema is available for {@code validateAs}.
+    * @throws SAXException if the file is not well formed or not valid or if
+    *         {@code handler} fails.
+    * @throws IOException if reading from {@code source} fails.
+    */
+   static void parse(final InputSource source, final DefaultHandler handler, final IMessageReader.MessageFileType validateAs) throws ParserConfigurationException, SAXException, IOException
+   {
+      final XMLReader parser = newXMLReader();
+
+      if (null != validateAs)
+      {
+         final Schema schema = schema(validateAs);
+         if (null == schema)
+            throw new ParserConfigurationException("No schema available for message file type " + validateAs);
+
+         setHandlers(parser, handler);
+         parser.setContentHandler(new ValidatingHandler(schema.newValidatorHandler(), handler));
+         parser.parse(source);
+      }
+      else
+         parse(parser, source, handler);
+   }
+
+   /**
+    * Parses a XML message file without validation with a given parser,
+    * e.g. one reused for several sources.
+    *
+    * @param parser the parser as created by {@link #newXMLReader()}.
+    *        Must not be {@code null}.
+    * @param source the source to parse. Must not be {@code null}.
+    * @param handler the handler receiving the parse events.
+    *        Must not be {@code null}.
+    *
+    * @throws SAXException if the file is not well formed or if
+    *         {@code handler} fails.
+    * @throws IOException if reading from {@code source} fails.
+    */
+   static void parse(final XMLReader parser, final InputSource source, final DefaultHandler handler) throws SAXException, IOException
+   {
+      setHandlers(parser, handler);
+      parser.parse(source);
+   }
+
+   /**
+    * Creates a namespace aware XML parser.
+    *
+    * @return the parser. Never {@code null}.
+    *
+    * @throws ParserConfigurationException if no parser could be created.
+    * @throws SAXException if no parser could be created.
+    */
+   static XMLReader newXMLReader() throws ParserConfigurationException, SAXException
+   {
+      final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+      parserFactory.setNamespaceAware(true);
+
+      return(parserFactory.newSAXParser().getXMLReader());
+   }
+
+   private static void setHandlers(final XMLReader parser, final DefaultHandler handler)
+   {
+      parser.setContentHandler(handler);
+      parser.setErrorHandler(handler);
+      parser.setEntityResolver(handler);
+      parser.setDTDHandler(handler);
+   }
+
+   private static Schema compileSchema(final IMessageReader.MessageFileType messageFileType)
+   {
+      final String strSchema;
+
+      switch(messageFileType)
+      {
+         case TITANIUM:
+            strSchema = Resources.getTitaniumBackaupSchema();
+            break;
+
+         case SMSBACKUPANDRESTORE:
+            strSchema = Resources.getSMSBackaupSchema();
+            break;
+
+         default:
+            strSchema = null;
+            break;
+      }
+
+      Schema schema = null;
+      if (null != strSchema)
+      {
+         try
+         {
+            final SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = factory.newSchema(new StreamSource(new StringReader(strSchema)));
+         }
+         catch (final SAXException ex)
+         {
+            LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         }
+      }
+
+      return(schema);
+   }
+
+   private static InputStream open(final String strAbsoluteFileNamePath) throws IOException
+   {
+      InputStream is = new FileInputStream(strAbsoluteFileNamePath);
+
+      if (strAbsoluteFileNamePath.endsWith(".gz"))
+      {
+         try
+         {
+            is = new AsyncGZIPInputStream(is);
+         }
+         catch (final IOException ex)
+         {
+            is.close();
+            throw ex;
+         }
+      }
+
+      return(is);
+   }
+
+   /**
+    * Passes all elements and attributes on without namespace.
+    */
+   static final class NamespaceStrippingFilter extends XMLFilterImpl
+   {
+      /**
+       * Creates new {@code NamespaceStrippingFilter}.
+       *
+       * @param parent the parent reader. Must be namespace aware.
+       */
+      NamespaceStrippingFilter(final XMLReader parent)
+      {
+         super(parent);
+      }
+
+      @Override
+      public void startPrefixMapping(final String strPrefix, final String strUri)
+      {
+      }
+
+      @Override
+      public void endPrefixMapping(final String strPrefix)
+      {
+      }
+
+      @Override
+      public void startElement(final String strUri, final String strLocalName, final String strQName, final Attributes attributes) throws SAXException
+      {
+         super.startElement("", strLocalName, strLocalName, attributes);
+      }
+
+      @Override
+      public void endElement(final String strUri, final String strLocalName, final String strQName) throws SAXException
+      {
+         super.endElement("", strLocalName, strLocalName);
+      }
+   }
+
+   /**
+    * Passes all parse events on to a content handler and the upper
+    * {@link #VALIDATIONDEPTH} element levels, without namespace, to a
+    * validator.
+    */
+   private static final class ValidatingHandler implements ContentHandler
+   {
+      private final ValidatorHandler m_Validator;
+      private final ContentHandler m_Handler;
+      private int m_iDepth;
+
+      private ValidatingHandler(final ValidatorHandler validator, final ContentHandler handler)
+      {
+         m_Validator = validator;
+         m_Handler = handler;
+         m_iDepth = 0;
+      }
+
+      @Override
+      public void setDocumentLocator(final Locator locator)
+      {
+         m_Validator.setDocumentLocator(locator);
+         m_Handler.setDocumentLocator(locator);
+      }
+
+      @Override
+      public void startDocument() throws SAXException
+      {
+         m_Validator.startDocument();
+         m_Handler.startDocument();
+      }
+
+      @Override
+      public void endDocument() throws SAXException
+      {
+         m_Validator.endDocument();
+         m_Handler.endDocument();
+      }
+
+      @Override
+      public void startPrefixMapping(final String strPrefix, final String strUri) throws SAXException
+      {
+         m_Handler.startPrefixMapping(strPrefix, strUri);
+      }
+
+      @Override
+      public void endPrefixMapping(final String strPrefix) throws SAXException
+      {
+         m_Handler.endPrefixMapping(strPrefix);
+      }
+
+      @Override
+      public void startElement(final String strUri, final String strLocalName, final String strQName, final Attributes attributes) throws SAXException
+      {
+         m_iDepth++;
+
+         if (m_iDepth <= VALIDATIONDEPTH)
+            m_Validator.startElement("", strLocalName, strLocalName, attributes);
+
+         m_Handler.startElement(strUri, strLocalName, strQName, attributes);
+      }
+
+      @Override
+      public void endElement(final String strUri, final String strLocalName, final String strQName) throws SAXException
+      {
+         if (m_iDepth <= VALIDATIONDEPTH)
+            m_Validator.endElement("", strLocalName, strLocalName);
+
+         m_Handler.endElement(strUri, strLocalName, strQName);
+
+         m_iDepth--;
+      }
+
+      @Override
+      public void characters(final char[] ach, final int iStart, final int iLength) throws SAXException
+      {
+         if (m_iDepth < VALIDATIONDEPTH)
+            m_Validator.characters(ach, iStart, iLength);
+
+         m_Handler.characters(ach, iStart, iLength);
+      }
+
+      @Override
+      public void ignorableWhitespace(final char[] ach, final int iStart, final int iLength) throws SAXException
+      {
+         if (m_iDepth < VALIDATIONDEPTH)
+            m_Validator.ignorableWhitespace(ach, iStart, iLength);
+
+         m_Handler.ignorableWhitespace(ach, iStart, iLength);
+      }
+
+      @Override
+      public void processingInstruction(final String strTarget, final String strData) throws SAXException
+      {
+         m_Handler.processingInstruction(strTarget, strData);
+      }
+
+      @Override
+      public void skippedEntity(final String strName) throws SAXException
+      {
+         m_Handler.skippedEntity(strName);
+      }
+   }
+}
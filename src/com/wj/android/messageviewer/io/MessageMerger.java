@@ -0,0 +1,247 @@
+/*
+ * $Id$
+ *
+ * File:   MessageMerger.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:33:36 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.MessageThread;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Merges the threads loaded from several backups of the same device into
+ * one history.
+ *
+ * <p>
+ *    Threads are merged by address, messages already merged from another
+ *    backup are dropped. Duplicates are detected by
+ *    {@link IMessage#fingerprint()}, only the 64 bit fingerprints of the
+ *    merged messages are kept in an open addressing hash set. Memory is
+ *    therefore bounded by the number of unique messages, provided the
+ *    threads of each backup are released once merged.
+ * </p>
+ *
+ * <p>
+ *    The thread name is the first non empty name found for an address.
+ *    Instances of this class are not thread safe.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class MessageMerger
+{
+   private final Map<String, MessageThread> m_Threads;
+   private final FingerprintSet m_Fingerprints;
+   private int m_iNumberOfDuplicates;
+
+   /**
+    * Constructs a new {@code MessageMerger}.
+    */
+   public MessageMerger()
+   {
+      m_Threads = new LinkedHashMap<>();
+      m_Fingerprints = new FingerprintSet();
+      m_iNumberOfDuplicates = 0;
+   }
+
+   /**
+    * Merges the given threads.
+    *
+    * <p>
+    *    Messages of lazily loaded threads are loaded.
+    * </p>
+    *
+    * @param aThreads the threads of one backup. Must not be {@code null}.
+    */
+   public void merge(final MessageThread[] aThreads)
+   {
+      for (final MessageThread thread : aThreads)
+      {
+         final MessageThread target = target(thread);
+
+         for (final IMessage msg : thread.getMessages())
+         {
+            if (m_Fingerprints.add(msg.fingerprint()))
+               target.addMessage(msg);
+            else
+               m_iNumberOfDuplicates++;
+         }
+      }
+   }
+
+   /**
+    * Get an array of all merged threads in the order their address was
+    * first merged.
+    *
+    * @return array of all threads. Never {@code null}.
+    */
+   public MessageThread[] getThreadArray()
+   {
+      return(m_Threads.values().toArray(new MessageThread[m_Threads.size()]));
+   }
+
+   /**
+    * Get the number of unique messages merged.
+    *
+    * @return the number of messages.
+    */
+   public int getNumberOfMessages()
+   {
+      int iNumberOfMessages = 0;
+
+      for (final MessageThread thread : m_Threads.values())
+         iNumberOfMessages += thread.getMessageCount();
+
+      return(iNumberOfMessages);
+   }
+
+   /**
+    * Get the number of messages dropped as duplicates.
+    *
+    * @return the number of duplicates.
+    */
+   public int getNumberOfDuplicates()
+   {
+      return(m_iNumberOfDuplicates);
+   }
+
+   /**
+    * Get the merged thread for the address of the given thread, replacing
+    * a thread without name once a name is known.
+    */
+   private MessageThread target(final MessageThread thread)
+   {
+      MessageThread target = m_Threads.get(thread.getAddress());
+
+      if (null == target || (isEmpty(target.getName()) && !isEmpty(thread.getName())))
+      {
+         final MessageThread named = new MessageThread(thread.getName(), thread.getAddress());
+         if (null != target)
+         {
+            for (final IMessage msg : target.getMessages())
+               named.addMessage(msg);
+         }
+
+         m_Threads.put(thread.getAddress(), named);
+         target = named;
+      }
+
+      return(target);
+   }
+
+   private static boolean isEmpty(final String str)
+   {
+      return(null == str || str.isEmpty());
+   }
+
+   /**
+    * Open addressing hash set of {@code long} values with linear probing.
+    *
+    * <p>
+    *    Needs 8 to 16 bytes per value instead of the about 50 bytes of a
+    *    {@code HashSet<Long>} entry. 0 marks a free slot and is tracked
+    *    separately.
+    * </p>
+    */
+   static final class FingerprintSet
+   {
+      private static final int INITIALCAPACITY = 1024;
+
+      private long[] m_alSlots;
+      private int m_iSize;
+      private boolean m_fContainsZero;
+
+      FingerprintSet()
+      {
+         m_alSlots = new long[INITIALCAPACITY];
+         m_iSize = 0;
+         m_fContainsZero = false;
+      }
+
+      /**
+       * Adds the given value.
+       *
+       * @param lValue the value to add.
+       *
+       * @return {@code true} if the value was not yet contained.
+       */
+      boolean add(final long lValue)
+      {
+         final boolean fAdded;
+
+         if (0 == lValue)
+         {
+            fAdded = !m_fContainsZero;
+            m_fContainsZero = true;
+         }
+         else
+         {
+            if (2 * (m_iSize + 1) > m_alSlots.length)
+               rehash();
+
+            fAdded = insert(m_alSlots, lValue);
+            if (fAdded)
+               m_iSize++;
+         }
+
+         return(fAdded);
+      }
+
+      /**
+       * Get the number of values contained.
+       *
+       * @return the size.
+       */
+      int size()
+      {
+         return(m_iSize + (m_fContainsZero ? 1 : 0));
+      }
+
+      private static boolean insert(final long[] alSlots, final long lValue)
+      {
+         final int iMask = alSlots.length - 1;
+         int i = (int)(lValue ^ (lValue >>> 32)) & iMask;
+
+         while (0 != alSlots[i] && lValue != alSlots[i])
+            i = (i + 1) & iMask;
+
+         final boolean fInserted = 0 == alSlots[i];
+         alSlots[i] = lValue;
+
+         return(fInserted);
+      }
+
+      private void rehash()
+      {
+         final long[] alSlots = new long[m_alSlots.length * 2];
+
+         for (final long lValue : m_alSlots)
+         {
+            if (0 != lValue)
+               insert(alSlots, lValue);
+         }
+
+         m_alSlots = alSlots;
+      }
+   }
+}
@@ -0,0 +1,701 @@
+/*
+ * $Id$
+ *
+ * File:   MessageSnapshot.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:13:28 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.GenericMessagePart;
+import com.wj.android.messageviewer.message.IMMSMessagePart;
+import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.IMessageLoader;
+import com.wj.android.messageviewer.message.IPartContent;
+import com.wj.android.messageviewer.message.MMSMessage;
+import com.wj.android.messageviewer.message.MessageThread;
+import com.wj.android.messageviewer.message.SMILMessage;
+import com.wj.android.messageviewer.message.SMSMessage;
+import com.wj.android.messageviewer.util.ByteBufferInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.compress.utils.CountingOutputStream;
+
+/**
+ * Compact binary snapshot of the threads and messages read by a
+ * {@link IMessageReader}.
+ *
+ * <p>
+ *    A snapshot file starts with a header holding {@link #MAGIC},
+ *    {@link #VERSION} and the code tables of the message boxes and content
+ *    types, followed by the messages of each thread, the thread
+ *    table and a fixed size trailer locating the thread table. Strings are
+ *    stored as length prefixed {@code UTF-8}, MMS part contents inline.
+ *    Part contents are streamed into the file one after the other, so
+ *    attachments kept outside the heap are not all read into it at once.
+ *    Only readers whose threads are all loaded can be written, lazily
+ *    loaded threads would have to be loaded first.
+ *    As the file is mapped as a whole it must not exceed {@link #MAXSIZE}
+ *    bytes, larger snapshots are refused when written.
+ * </p>
+ *
+ * <p>
+ *    Messages refer to message boxes and content types by their index in
+ *    the code tables, which hold the string codes these enumerations are
+ *    parsed from. Reordering or extending the enumerations therefore does
+ *    not invalidate snapshots, a code no longer known makes the snapshot
+ *    invalid. The version only changes with the layout of the file.
+ * </p>
+ *
+ * <p>
+ *    Reading a snapshot maps the file into memory and decodes the thread
+ *    table only. The messages of a thread are decoded when first requested,
+ *    image contents only when displayed.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class MessageSnapshot implements IMessageReader
+{
+   private static final Logger LOGGER = Logger.getLogger(MessageSnapshot.class.getName());
+
+   /** Marks the start and end of a snapshot file, {@code TBMVSNAP}. */
+   static final long MAGIC = 0x54424D56534E4150L;
+
+   /** Version of the snapshot format. */
+   static final int VERSION = 2;
+
+   /** Maximum size of a snapshot file in bytes. */
+   static final long MAXSIZE = Integer.MAX_VALUE;
+
+   private static final int HEADERSIZE = 8 + 4;
+   private static final int TRAILERSIZE = 8 + 4 + 4 + 8;
+
+   private static final byte SMS = 0;
+   private static final byte MMS = 1;
+   private static final byte SMIL = 2;
+
+   private static final long NODATE = Long.MIN_VALUE;
+
+   private final MessageThread[] m_aThreads;
+   private final int m_iNumberOfMessages;
+   private final ByteBuffer m_Content;
+
+   private MessageSnapshot(final MessageThread[] aThreads, final int iNumberOfMessages, final ByteBuffer content)
+   {
+      m_aThreads = aThreads;
+      m_iNumberOfMessages = iNumberOfMessages;
+      m_Content = content;
+   }
+
+   /**
+    * Determines whether the messages of all threads of the given reader are
+    * loaded, so writing a snapshot does not load any.
+    *
+    * @param reader the reader. Must not be {@code null}.
+    *
+    * @return {@code true} if no thread of {@code reader} is loaded lazily.
+    */
+   static boolean isLoaded(final IMessageReader reader)
+   {
+      boolean fLoaded = true;
+
+      for (final MessageThread thread : reader.getThreadArray())
+      {
+         if (!thread.isLoaded())
+         {
+            fLoaded = false;
+            break;
+         }
+      }
+
+      return(fLoaded);
+   }
+
+   /**
+    * Writes a snapshot of all threads and messages of the given reader.
+    *
+    * @param reader the reader, its messages must be loaded.
+    *        Must not be {@code null}.
+    * @param file the snapshot file to write. Must not be {@code null}.
+    *
+    * @throws IOException if writing fails or the snapshot would exceed
+    *         {@link #MAXSIZE} bytes.
+    */
+   static void write(final IMessageReader reader, final File file) throws IOException
+   {
+      write(reader, file, MAXSIZE);
+   }
+
+   /**
+    * Writes a snapshot of all threads and messages of the given reader,
+    * refusing snapshots larger than the given size.
+    *
+    * @param reader the reader, its messages must be loaded.
+    *        Must not be {@code null}.
+    * @param file the snapshot file to write. Must not be {@code null}.
+    * @param lMaxSize the maximum size of the snapshot file in bytes.
+    *
+    * @throws IOException if writing fails or the snapshot would exceed
+    *         {@code lMaxSize} bytes. The file is then left incomplete.
+    */
+   static void write(final IMessageReader reader, final File file, final long lMaxSize) throws IOException
+   {
+      try (final FileOutputStream fos = new FileOutputStream(file); final CountingOutputStream cos = new CountingOutputStream(new BufferedOutputStream(fos, 64 * 1024)); final DataOutputStream out = new DataOutputStream(cos))
+      {
+         final FileChannel channel = fos.getChannel();
+
+         out.writeLong(MAGIC);
+         out.writeInt(VERSION);
+         writeCodes(out);
+
+         final MessageThread[] aThreads = reader.getThreadArray();
+         final long[] alOffsets = new long[aThreads.length];
+         final int[] aiCounts = new int[aThreads.length];
+
+         for (int i = 0; i < aThreads.length; i++)
+         {
+            final Collection<IMessage> messages = aThreads[i].getMessages();
+
+            alOffsets[i] = cos.getBytesWritten();
+            aiCounts[i] = messages.size();
+
+            for (final IMessage msg : messages)
+            {
+               writeMessage(out, cos, channel, msg);
+               checkSize(cos.getBytesWritten(), lMaxSize, file);
+            }
+         }
+
+         final long lTableOffset = cos.getBytesWritten();
+         for (int i = 0; i < aThreads.length; i++)
+         {
+            final Date lastActivity = aThreads[i].getLastActivity();
+
+            writeString(out, aThreads[i].getName());
+            writeString(out, aThreads[i].getAddress());
+            out.writeInt(aiCounts[i]);
+            out.writeLong(null == lastActivity ? NODATE : lastActivity.getTime());
+            out.writeLong(alOffsets[i]);
+         }
+
+         checkSize(cos.getBytesWritten() + TRAILERSIZE, lMaxSize, file);
+         out.writeLong(lTableOffset);
+         out.writeInt(aThreads.length);
+         out.writeInt(reader.getNumberOfMessages());
+         out.writeLong(MAGIC);
+      }
+   }
+
+   private static void checkSize(final long lSize, final long lMaxSize, final File file) throws IOException
+   {
+      if (lSize > lMaxSize)
+         throw new IOException("Snapshot " + file + " exceeds maximum size of " + lMaxSize + " bytes");
+   }
+
+   /**
+    * Opens a snapshot file.
+    *
+    * @param file the snapshot file. Must not be {@code null}.
+    *
+    * @return the snapshot. Never {@code null}.
+    *
+    * @throws IOException if the file cannot be mapped or is not a valid
+    *         snapshot.
+    */
+   static MessageSnapshot read(final File file) throws IOException
+   {
+      final MessageSnapshot snapshot;
+      final ByteBuffer buffer;
+
+      try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+      {
+         final long lSize = channel.size();
+         if (lSize < HEADERSIZE + TRAILERSIZE || lSize > Integer.MAX_VALUE)
+            throw new IOException("Invalid snapshot size " + lSize + " of " + file);
+
+         buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, lSize);
+      }
+
+      try
+      {
+         if (MAGIC != buffer.getLong(0) || VERSION != buffer.getInt(8) || MAGIC != buffer.getLong(buffer.limit() - 8))
+            throw new IOException("Not a snapshot of version " + VERSION + ": " + file);
+
+         final ByteBuffer header = buffer.duplicate();
+         header.position(HEADERSIZE);
+         final Codes codes = readCodes(header, file);
+
+         final ByteBuffer table = buffer.duplicate();
+         table.position(buffer.limit() - TRAILERSIZE);
+         final int iTableOffset = (int)table.getLong();
+         final int iNumberOfThreads = table.getInt();
+         final int iNumberOfMessages = table.getInt();
+
+         table.position(iTableOffset);
+         final MessageThread[] aThreads = new MessageThread[iNumberOfThreads];
+         for (int i = 0; i < iNumberOfThreads; i++)
+         {
+            final String strName = readString(table);
+            final String strAddress = readString(table);
+            final int iMessageCount = table.getInt();
+            final long lLastActivity = table.getLong();
+            final int iOffset = (int)table.getLong();
+
+            aThreads[i] = new MessageThread(strName, strAddress, new SnapshotLoader(file, buffer, codes, iOffset, iMessageCount), iMessageCount, NODATE == lLastActivity ? null : new Date(lLastActivity));
+         }
+
+         snapshot = new MessageSnapshot(aThreads, iNumberOfMessages, buffer);
+      }
+      catch (final BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException ex)
+      {
+         throw new IOException("Corrupt snapshot " + file, ex);
+      }
+
+      return(snapshot);
+   }
+
+   /**
+    * Get the mapped content of the snapshot file.
+    *
+    * <p>
+    *    It is referenced by all threads not loaded yet and all message part
+    *    contents read from the snapshot, the snapshot file is in use as long
+    *    as it is reachable.
+    * </p>
+    *
+    * @return the mapped file. Never {@code null}.
+    */
+   ByteBuffer getContent()
+   {
+      return(m_Content);
+   }
+
+   /**
+    * Does nothing, a snapshot is loaded when read.
+    *
+    * @param is ignored.
+    * @param contactsDB ignored.
+    *
+    * @return always 0.
+    */
+   @Override
+   public int loadMessages(final InputStream is, final File contactsDB)
+   {
+      return(loadMessages(is, contactsDB, null));
+   }
+
+   /**
+    * Does not read anything, a snapshot is loaded when read, but reports
+    * all threads to the given listener.
+    *
+    * @param is ignored.
+    * @param contactsDB ignored.
+    * @param listener the listener to notify of each thread or {@code null}.
+    *
+    * @return always 0.
+    */
+   @Override
+   public int loadMessages(final InputStream is, final File contactsDB, final IThreadListener listener)
+   {
+      if (null != listener)
+      {
+         for (final MessageThread thread : m_aThreads)
+            listener.threadLoaded(thread);
+      }
+
+      return(0);
+   }
+
+   /**
+    * Get the number of all messages in all threads.
+    *
+    * @return the number of messages
+    */
+   @Override
+   public int getNumberOfMessages()
+   {
+      return(m_iNumberOfMessages);
+   }
+
+   /**
+    * Get an array of all message threads.
+    *
+    * @return array of all threads. Never {@code null}.
+    */
+   @Override
+   public MessageThread[] getThreadArray()
+   {
+      return(m_aThreads.clone());
+   }
+
+   private static void writeMessage(final DataOutputStream out, final CountingOutputStream cos, final FileChannel channel, final IMessage msg) throws IOException
+   {
+      final byte bKind;
+      if (msg instanceof SMILMessage)
+         bKind = SMIL;
+      else if (msg instanceof MMSMessage)
+         bKind = MMS;
+      else
+         bKind = SMS;
+
+      out.writeByte(bKind);
+      out.writeLong(msg.getMessageDate().getTime());
+      // the index into the code table written by writeCodes()
+      out.writeByte(null == msg.getMessageBox() ? -1 : msg.getMessageBox().ordinal());
+      writeString(out, msg.getServiceCenter());
+      writeString(out, msg.getMessageAddress());
+
+      if (SMS == bKind)
+         writeString(out, msg.getMessageText());
+      else
+      {
+         final MMSMessage mms = (MMSMessage)msg;
+         final List<IMMSMessagePart> parts = mms.getAllMessageParts();
+
+         writeString(out, mms.getSubject());
+         out.writeInt(parts.size());
+         for (final IMMSMessagePart part : parts)
+         {
+            out.writeByte(part.getContentType().ordinal());
+            writeString(out, part.getContentId());
+            writeString(out, part.getContentLocation());
+            writeString(out, part.getCharSet());
+            writeContent(out, cos, channel, part);
+         }
+      }
+   }
+
+   /**
+    * Streams the content of a part, patching its length prefix afterwards.
+    */
+   private static void writeContent(final DataOutputStream out, final CountingOutputStream cos, final FileChannel channel, final IMMSMessagePart part) throws IOException
+   {
+      final long lLengthOffset = cos.getBytesWritten();
+      out.writeInt(0);
+
+      long lLength = 0;
+      if (part instanceof GenericMessagePart)
+      {
+         try (final InputStream is = ((GenericMessagePart)part).getPartContent().openStream())
+         {
+            final byte[] abBuffer = new byte[8192];
+            int iRead;
+            while ((iRead = is.read(abBuffer)) >= 0)
+            {
+               out.write(abBuffer, 0, iRead);
+               lLength += iRead;
+            }
+         }
+      }
+
+      if (lLength > Integer.MAX_VALUE)
+         throw new IOException("Part content exceeds " + Integer.MAX_VALUE + " bytes");
+
+      if (0 < lLength)
+      {
+         // the prefix must have left the buffer before it is overwritten
+         out.flush();
+
+         final ByteBuffer length = ByteBuffer.allocate(4).putInt(0, (int)lLength);
+         while (length.hasRemaining())
+            channel.write(length, lLengthOffset + length.position());
+      }
+   }
+
+   /**
+    * Writes the code tables, the n-th entry being the string code of the
+    * constant of ordinal n.
+    */
+   private static void writeCodes(final DataOutputStream out) throws IOException
+   {
+      out.writeInt(IMessage.MessageBox.values().length);
+      for (final IMessage.MessageBox msgBox : IMessage.MessageBox.values())
+         writeString(out, msgBox.toString());
+
+      out.writeInt(IMMSMessagePart.ContentType.values().length);
+      for (final IMMSMessagePart.ContentType contentType : IMMSMessagePart.ContentType.values())
+         writeString(out, contentType.toString());
+   }
+
+   private static Codes readCodes(final ByteBuffer buffer, final File file) throws IOException
+   {
+      final IMessage.MessageBox[] aMsgBoxes = new IMessage.MessageBox[buffer.getInt()];
+      for (int i = 0; i < aMsgBoxes.length; i++)
+      {
+         final String strCode = readString(buffer);
+         aMsgBoxes[i] = IMessage.MessageBox.fromString(strCode);
+         if (null == aMsgBoxes[i])
+            throw new IOException("Unknown message box " + strCode + " in snapshot " + file);
+      }
+
+      final IMMSMessagePart.ContentType[] aContentTypes = new IMMSMessagePart.ContentType[buffer.getInt()];
+      for (int i = 0; i < aContentTypes.length; i++)
+      {
+         final String strCode = readString(buffer);
+         aContentTypes[i] = IMMSMessagePart.ContentType.fromString(strCode);
+         if (null == aContentTypes[i])
+            throw new IOException("Unknown content type " + strCode + " in snapshot " + file);
+      }
+
+      return(new Codes(aMsgBoxes, aContentTypes));
+   }
+
+   private static IMessage readMessage(final ByteBuffer buffer, final Codes codes) throws IOException
+   {
+      final IMessage msg;
+
+      final byte bKind = buffer.get();
+      final Date date = new Date(buffer.getLong());
+      final byte bMsgBox = buffer.get();
+      final IMessage.MessageBox msgBox = bMsgBox < 0 ? null : codes.m_aMsgBoxes[bMsgBox];
+      final String strServiceCenter = readString(buffer);
+      final String strAddress = readString(buffer);
+
+      if (SMS == bKind)
+         msg = new SMSMessage(strServiceCenter, strAddress, date, readString(buffer), msgBox);
+      else
+      {
+         final String strSubject = readString(buffer);
+         final int iNumberOfParts = buffer.getInt();
+         final List<IMMSMessagePart> parts = new ArrayList<>(iNumberOfParts);
+
+         for (int i = 0; i < iNumberOfParts; i++)
+         {
+            final IMMSMessagePart.ContentType contentType = codes.m_aContentTypes[buffer.get()];
+            final String strContentId = readString(buffer);
+            final String strContentLocation = readString(buffer);
+            final String strCharset = readString(buffer);
+            final int iLength = buffer.getInt();
+            final MappedContent content = new MappedContent(buffer, buffer.position(), iLength);
+
+            buffer.position(buffer.position() + iLength);
+            final IMMSMessagePart part = contentType.newMessagePart(contentType, strContentId, strContentLocation, content, strCharset);
+            if (null != part)
+               parts.add(part);
+         }
+
+         final MMSMessage mms;
+         if (SMIL == bKind)
+            mms = new SMILMessage(parts, strServiceCenter, strAddress, date, msgBox);
+         else
+            mms = new MMSMessage(parts, strServiceCenter, strAddress, date, msgBox);
+
+         mms.setSubject(strSubject);
+         msg = mms;
+      }
+
+      return(msg);
+   }
+
+   private static void writeString(final DataOutputStream out, final String str) throws IOException
+   {
+      if (null == str)
+         out.writeInt(-1);
+      else
+      {
+         final byte[] abString = str.getBytes(StandardCharsets.UTF_8);
+         out.writeInt(abString.length);
+         out.write(abString);
+      }
+   }
+
+   private static String readString(final ByteBuffer buffer)
+   {
+      final String strRet;
+
+      final int iLength = buffer.getInt();
+      if (iLength < 0)
+         strRet = null;
+      else
+      {
+         final byte[] abString = new byte[iLength];
+         buffer.get(abString);
+         strRet = new String(abString, StandardCharsets.UTF_8);
+      }
+
+      return(strRet);
+   }
+
+   /**
+    * The enumeration constants of the codes of a snapshot, indexed as in
+    * the snapshot.
+    */
+   private static final class Codes
+   {
+      private final IMessage.MessageBox[] m_aMsgBoxes;
+      private final IMMSMessagePart.ContentType[] m_aContentTypes;
+
+      private Codes(final IMessage.MessageBox[] aMsgBoxes, final IMMSMessagePart.ContentType[] aContentTypes)
+      {
+         m_aMsgBoxes = aMsgBoxes;
+         m_aContentTypes = aContentTypes;
+      }
+   }
+
+   /**
+    * Decodes the messages of one thread when first requested.
+    */
+   private static final class SnapshotLoader implements IMessageLoader
+   {
+      private final File m_File;
+      private final ByteBuffer m_Buffer;
+      private final Codes m_Codes;
+      private final int m_iOffset;
+      private final int m_iMessageCount;
+
+      private SnapshotLoader(final File file, final ByteBuffer buffer, final Codes codes, final int iOffset, final int iMessageCount)
+      {
+         m_File = file;
+         m_Buffer = buffer;
+         m_Codes = codes;
+         m_iOffset = iOffset;
+         m_iMessageCount = iMessageCount;
+      }
+
+      @Override
+      public Collection<IMessage> loadMessages(final MessageThread thread)
+      {
+         final Collection<IMessage> messages = new ArrayList<>(m_iMessageCount);
+
+         final ByteBuffer buffer = m_Buffer.duplicate();
+         try
+         {
+            buffer.position(m_iOffset);
+            for (int i = 0; i < m_iMessageCount; i++)
+               messages.add(readMessage(buffer, m_Codes));
+         }
+         catch (final IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex)
+         {
+            LOGGER.log(Level.SEVERE, "Corrupt snapshot " + m_File, ex);
+         }
+
+         return(messages);
+      }
+
+      /**
+       * Nothing to release, the mapped snapshot is unmapped once no longer
+       * referenced.
+       */
+      @Override
+      public void release(final MessageThread thread)
+      {
+      }
+   }
+
+   /**
+    * {@link IPartContent} implementation referencing the content bytes in a
+    * mapped snapshot file.
+    *
+    * <p>
+    *    Instances are serialized as {@link HeapContent}, the snapshot file
+    *    may be evicted once it is no longer mapped.
+    * </p>
+    */
+   private static final class MappedContent implements IPartContent
+   {
+      private static final long serialVersionUID = 3391853035386725542L;
+
+      private final transient ByteBuffer m_Buffer;
+      private final transient int m_iOffset;
+      private final transient int m_iLength;
+
+      private MappedContent(final ByteBuffer buffer, final int iOffset, final int iLength)
+      {
+         m_Buffer = buffer;
+         m_iOffset = iOffset;
+         m_iLength = iLength;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public byte[] getBytes()
+      {
+         final byte[] abContent = new byte[m_iLength];
+
+         final ByteBuffer buffer = m_Buffer.duplicate();
+         buffer.position(m_iOffset);
+         buffer.get(abContent);
+
+         return(abContent);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public InputStream openStream()
+      {
+         final ByteBuffer buffer = m_Buffer.duplicate();
+         buffer.position(m_iOffset);
+         buffer.limit(m_iOffset + m_iLength);
+
+         return(new ByteBufferInputStream(buffer));
+      }
+
+      /** The mapping is not serializable, the content is. */
+      private Object writeReplace()
+      {
+         return(new HeapContent(getBytes()));
+      }
+   }
+
+   /**
+    * Content read from a snapshot held in memory.
+    */
+   private static final class HeapContent implements IPartContent
+   {
+      private static final long serialVersionUID = -4117336287745813519L;
+
+      private final byte[] m_abContent;
+
+      private HeapContent(final byte[] abContent)
+      {
+         m_abContent = abContent;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public byte[] getBytes()
+      {
+         return(m_abContent);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public InputStream openStream()
+      {
+         return(new ByteArrayInputStream(m_abContent));
+      }
+   }
+}
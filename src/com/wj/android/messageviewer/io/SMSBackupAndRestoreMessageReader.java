@@ -23,8 +23,10 @@
  */
 package com.wj.android.messageviewer.io;
 
+import com.wj.android.messageviewer.message.BlobStore;
 import com.wj.android.messageviewer.message.IMMSMessagePart;
 import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.IPartContent;
 import com.wj.android.messageviewer.message.MMSMessage;
 import com.wj.android.messageviewer.message.MessageThread;
 import com.wj.android.messageviewer.message.SMILMessage;
@@ -33,10 +35,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -46,14 +49,12 @@ import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.DatatypeConverter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * This program is designed to read the XML backup files produced by the
@@ -71,13 +72,16 @@ import org.xml.sax.SAXException;
  *
  * @author Werner Jaeger
  */
-public class SMSBackupAndRestoreMessageReader implements IMessageReader
+public class SMSBackupAndRestoreMessageReader implements IIncrementalMessageReader
 {
    private static final Logger LOGGER = Logger.getLogger(SMSBackupAndRestoreMessageReader.class.getName());
 
    private static final String DEFAULTCHARSET = Charset.defaultCharset().name();
 
+   private final boolean m_fValidating;
    private final Set<MessageThread> m_ThreadList;
+   private Watermarks m_Watermarks;
+   private StringPool m_Strings;
    private int m_iNumberOfMessages;
 
    /**
@@ -85,7 +89,21 @@ public class SMSBackupAndRestoreMessageReader implements IMessageReader
     */
    public SMSBackupAndRestoreMessageReader()
    {
+      this(false);
+   }
+
+   /**
+    * Constructs a new {@code SMSBackupAndRestoreMessageReader}.
+    *
+    * @param fValidating if {@code true} message files are validated against
+    *        the SMS Backup & Restore schema while they are parsed.
+    */
+   public SMSBackupAndRestoreMessageReader(final boolean fValidating)
+   {
+      m_fValidating = fValidating;
       m_ThreadList = new TreeSet<>();
+      m_Watermarks = null;
+      m_Strings = null;
       m_iNumberOfMessages = 0;
    }
 
@@ -114,15 +132,83 @@ public class SMSBackupAndRestoreMessageReader implements IMessageReader
    /**
     * Reads a message file as stored from the SMS Backup & Restore application.
     *
+    * <p>
+    *    The file is parsed in a streaming fashion and messages are grouped
+    *    into threads as they are read. Addresses, service centers, contact
+    *    names and subjects are shared through a {@link StringPool}, the
+    *    {@code "null"} values of missing ones are mapped to the empty string.
+    *    Large base64 encoded image payloads are
+    *    kept encoded in the {@link BlobStore} and decoded on demand. A validating
+    *    reader checks the file against the SMS Backup & Restore schema in the
+    *    same pass.
+    * </p>
+    *
     * @param is the message file input stream to read from.
     *        Must not be {@code null}.
     * @param contactsDB always {@code null}, not used with this reader.
     *
     * @return the error code 0 meaning success, 1 {@code is} == {@code null}, 2
-    *         invalid XML and 3 other reading problems.
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
     */
    @Override
    public int loadMessages(final InputStream is, final File contactsDB)
+   {
+      return(loadMessages(is, contactsDB, null));
+   }
+
+   /**
+    * Reads a message file as stored from the SMS Backup & Restore
+    * application, reporting the threads to the given listener.
+    *
+    * <p>
+    *    The messages of a thread may be spread over the whole file, so
+    *    threads are complete, and reported, only after the file was read.
+    * </p>
+    *
+    * @param is the message file input stream to read from.
+    *        Must not be {@code null}.
+    * @param contactsDB always {@code null}, not used with this reader.
+    * @param listener the listener to notify of each completed thread or
+    *        {@code null}.
+    *
+    * @return the error code 0 meaning success, 1 {@code is} == {@code null}, 2
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   @Override
+   public int loadMessages(final InputStream is, final File contactsDB, final IThreadListener listener)
+   {
+      return(load(is, listener, null));
+   }
+
+   /**
+    * Reads a message file as stored from the SMS Backup & Restore
+    * application, loading only the messages not covered by the given
+    * watermarks.
+    *
+    * <p>
+    *    Messages older than the watermark of their thread are skipped at
+    *    their start tag, their parts are neither decoded nor stored.
+    * </p>
+    *
+    * @param is the message file input stream to read from.
+    *        Must not be {@code null}.
+    * @param contactsDB always {@code null}, not used with this reader.
+    * @param watermarks the watermarks of the messages loaded before.
+    *        Must not be {@code null}.
+    *
+    * @return the error code 0 meaning success, 1 {@code is} == {@code null}, 2
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   @Override
+   public int loadNewMessages(final InputStream is, final File contactsDB, final Watermarks watermarks)
+   {
+      return(load(is, null, watermarks));
+   }
+
+   private int load(final InputStream is, final IThreadListener listener, final Watermarks watermarks)
    {
       int iError = 0;
 
@@ -130,192 +216,308 @@ public class SMSBackupAndRestoreMessageReader implements IMessageReader
       {
          m_ThreadList.clear();
          m_iNumberOfMessages = 0;
+         m_Watermarks = watermarks;
+         m_Strings = new StringPool();
 
          try
          {
             final Reader reader = new InputStreamReader(is, DEFAULTCHARSET);
+            final MessageFileHandler handler = new MessageFileHandler();
 
-            final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            final Document doc = dBuilder.parse(new InputSource(reader));
-
-            doc.getDocumentElement().normalize();
+            MessageFileValidator.parse(new InputSource(reader), handler, m_fValidating ? MessageFileType.SMSBACKUPANDRESTORE : null);
 
-            final Element docEle = doc.getDocumentElement();
+            m_ThreadList.addAll(handler.threads());
+            m_iNumberOfMessages = handler.numberOfMessages();
 
-            // Get a nodelist of elements in the XML file
-            final NodeList nl = docEle.getElementsByTagName("*");
-            if (nl != null && nl.getLength() > 0)
+            if (null != listener)
             {
-               final Map<String, MessageThread> contactsMap = new LinkedHashMap<>(32, 0.7f, true);
-
-               for (int i = 0; i < nl.getLength(); i++)
-               {
-                  final Element messageElement = (Element)nl.item(i);
-                  final String  strTagName = messageElement.getTagName();
-
-                  final String strAddress       = messageElement.getAttribute("address");
-                  final String strServiceCenter = messageElement.getAttribute("service_center");
-
-                  final IMessage message;
-                  switch(strTagName)
-                  {
-                     case "sms":
-                     {
-                        final IMessage.MessageBox msgBox = IMessage.MessageBox.fromString(messageElement.getAttribute("type"));
-                        if (null == msgBox)
-                        {
-                           message = null;
-                           LOGGER.log(Level.WARNING, "Unknown message box type: ''{0}''", messageElement.getAttribute("type"));
-                        }
-                        else
-                           message = elementToMessage(msgBox, strServiceCenter, strAddress, messageElement);
-                     }
-                        break;
-
-                     case "mms":
-                     {
-                        final IMessage.MessageBox msgBox = IMessage.MessageBox.fromString(messageElement.getAttribute("msg_box"));
-                        if (null == msgBox)
-                        {
-                           message = null;
-                           LOGGER.log(Level.WARNING, "Unknown message box type: ''{0}''", messageElement.getAttribute("msg_box"));
-                        }
-                        else
-                           message = elementToMMSMessage(msgBox, strServiceCenter, messageElement);
-                     }
-                        break;
-
-                     case "part":
-                     case "parts":
-                        message = null;
-                        break;
-
-                     default:
-                        LOGGER.log(Level.WARNING, "Unexpected tagname: ''{0}''", strTagName);
-                        message = null;
-                  }
-
-                  if (null != message)
-                  {
-                     m_iNumberOfMessages++;
-                     if (!contactsMap.containsKey(strAddress))
-                     {
-                        final MessageThread thread = new MessageThread(messageElement.getAttribute("contact_name"), strAddress);
-                        thread.addMessage(message);
-                        contactsMap.put(strAddress, thread);
-                     }
-                     else
-                        contactsMap.get(strAddress).addMessage(message);
-                  }
-               }
-               m_ThreadList.addAll(contactsMap.values());
-               iError = 0;
+               for (final MessageThread thread : m_ThreadList)
+                  listener.threadLoaded(thread);
             }
          }
          catch (SAXException ex)
          {
-            LOGGER.log(Level.SEVERE, ex.toString(), ex);
-            iError = 2;
+            if (LoadCancellation.isCancellation(ex))
+            {
+               LOGGER.log(Level.INFO, ex.toString());
+               iError = LoadCancellation.CANCELLED;
+            }
+            else
+            {
+               LOGGER.log(Level.SEVERE, ex.toString(), ex);
+
+               if (ex.getException() instanceof IOException)
+                  iError = 3;
+               else
+                  iError = 2;
+            }
          }
          catch (ParserConfigurationException | IOException ex)
          {
-            LOGGER.log(Level.SEVERE, ex.toString(), ex);
-            iError = 3;
+            if (LoadCancellation.isCancellation(ex))
+            {
+               LOGGER.log(Level.INFO, ex.toString());
+               iError = LoadCancellation.CANCELLED;
+            }
+            else
+            {
+               LOGGER.log(Level.SEVERE, ex.toString(), ex);
+               iError = 3;
+            }
          }
+
+         m_Strings.log(LOGGER);
+         m_Strings = null;
+         m_Watermarks = null;
       }
       return(iError);
    }
 
-
-   private IMessage elementToMessage(final IMessage.MessageBox msgBox, final String strServiceCenter, final String strAddress, final Element element)
+   private static String attribute(final Attributes attributes, final String strName)
    {
-      final long lTime = Long.parseLong(element.getAttribute("date"));
-      final String strBody = element.getAttribute("body");
+      final String strValue = attributes.getValue(strName);
 
-      return(new SMSMessage(strServiceCenter.equals("null") ? "" : strServiceCenter, strAddress, new Date(lTime), strBody, msgBox));
+      return(null == strValue ? "" : strValue);
    }
 
-   private IMessage elementToMMSMessage(final IMessage.MessageBox msgBox, final String strServiceCenter, final Element element) throws UnsupportedEncodingException
+   private static boolean isImage(final IMMSMessagePart.ContentType contentType)
    {
-      final MMSMessage msg;
+      return(contentType == IMMSMessagePart.ContentType.IMAMGEJPEG || contentType == IMMSMessagePart.ContentType.IMAMGEPNG || contentType == IMMSMessagePart.ContentType.IMAMGEGIF);
+   }
 
-      final String strAddress = element.getAttribute("address");
-      final List<IMMSMessagePart> parts = retrieveParts(element);
-      final long lTime = Long.parseLong(element.getAttribute("date"));
-      final String strSubject = element.getAttribute("sub");
+   private static boolean hasSMILPart(final List<IMMSMessagePart> parts)
+   {
+      boolean fRet = false;
 
-      if (hasSMILPart(parts))
-      {
-         msg = new SMILMessage(parts, strServiceCenter, strAddress, new Date(lTime), msgBox);
-         msg.setSubject(strSubject.equals("null") ? "" : strSubject);
-      }
-      else
+      for (final IMMSMessagePart part : parts)
       {
-         msg = new MMSMessage(parts, strServiceCenter, strAddress, new Date(lTime), msgBox);
-         msg.setSubject(strSubject.equals("null") ? "" : strSubject);
+         if (part.getContentType() == IMMSMessagePart.ContentType.APPLICATIONSMIL)
+         {
+            fRet = true;
+            break;
+         }
       }
 
-      return(msg);
+      return(true);
    }
 
-   private static List<IMMSMessagePart> retrieveParts(final Element element) throws UnsupportedEncodingException
+   /**
+    * SAX handler building the message threads while the message file is
+    * parsed.
+    *
+    * <p>
+    *    Messages are the children of the root element. The parts of a
+    *    {@code mms} message are contained in its {@code parts} child.
+    * </p>
+    */
+   private final class MessageFileHandler extends DefaultHandler
    {
-      final List<IMMSMessagePart> partsRet = new ArrayList<>();
+      private final Map<String, MessageThread> m_ContactsMap;
+
+      private int m_iDepth;
+      private int m_iMessages;
 
-      final NodeList parts = element.getElementsByTagName("part");
+      private Attributes m_MMSAttributes;
+      private IMessage.MessageBox m_MMSMessageBox;
+      private List<IMMSMessagePart> m_Parts;
 
-      if (null != parts)
+      private MessageFileHandler()
       {
-         for (int i = 0; i < parts.getLength(); i++)
-         {
-            final Element partElement        = (Element)parts.item(i);
-            final String  strContentType     = partElement.getAttribute("ct");
-            final String  strContentId       = partElement.getAttribute("cid");
-            final String  strContentLocation = partElement.getAttribute("cl");
+         m_ContactsMap = new LinkedHashMap<>(32, 0.7f, true);
+         m_iDepth = 0;
+         m_iMessages = 0;
+         m_MMSAttributes = null;
+         m_MMSMessageBox = null;
+         m_Parts = null;
+      }
+
+      @Override
+      public void startElement(final String strUri, final String strLocalName, final String strQName, final Attributes attributes) throws SAXException
+      {
+         m_iDepth++;
 
-            final IMMSMessagePart.ContentType contentType = IMMSMessagePart.ContentType.fromString(strContentType);
-            if (null != contentType)
+         if (m_iDepth > 1)
+         {
+            switch(strQName)
             {
-               final IMessage.Encoding encoding;
-               if (contentType == IMMSMessagePart.ContentType.APPLICATIONSMIL || contentType == IMMSMessagePart.ContentType.TEXTPLAIN)
-                  encoding = IMessage.Encoding.PLAIN;
-               else
-                  encoding = IMessage.Encoding.BAS64;
+               case "sms":
+               {
+                  final IMessage.MessageBox msgBox = IMessage.MessageBox.fromString(attributes.getValue("type"));
+                  if (null == msgBox)
+                     LOGGER.log(Level.WARNING, "Unknown message box type: ''{0}''", attribute(attributes, "type"));
+                  else if (!isOlder(attributes))
+                     addMessage(attributes, attributesToMessage(msgBox, attributes));
+               }
+                  break;
 
-               final byte[] abContent;
-               if (encoding == IMessage.Encoding.BAS64)
-                  abContent = DatatypeConverter.parseBase64Binary(partElement.getAttribute("data"));
-               else
-                  abContent = partElement.getAttribute("text").getBytes(DEFAULTCHARSET);
+               case "mms":
+               {
+                  final IMessage.MessageBox msgBox = IMessage.MessageBox.fromString(attributes.getValue("msg_box"));
+                  if (null == msgBox)
+                     LOGGER.log(Level.WARNING, "Unknown message box type: ''{0}''", attribute(attributes, "msg_box"));
+                  else if (!isOlder(attributes))
+                  {
+                     m_MMSAttributes = new AttributesImpl(attributes);
+                     m_MMSMessageBox = msgBox;
+                     m_Parts = new ArrayList<>();
+                  }
+               }
+                  break;
 
-               final IMMSMessagePart messagePart = contentType.newMessagePart(contentType, strContentId, strContentLocation, abContent, DEFAULTCHARSET);
-               if (null != messagePart)
-                  partsRet.add(messagePart);
-               else
-                  LOGGER.log(Level.WARNING, "Failed to instantiate message part for content typ: ''{0}''", strContentType);
+               case "part":
+                  if (null != m_Parts)
+                     addPart(attributes);
+                  break;
+
+               case "parts":
+                  break;
+
+               default:
+                  LOGGER.log(Level.WARNING, "Unexpected tagname: ''{0}''", strQName);
+            }
+         }
+      }
+
+      @Override
+      public void endElement(final String strUri, final String strLocalName, final String strQName) throws SAXException
+      {
+         if ("mms".equals(strQName) && null != m_Parts)
+         {
+            addMessage(m_MMSAttributes, attributesToMMSMessage(m_MMSMessageBox, m_MMSAttributes, m_Parts));
+
+            m_MMSAttributes = null;
+            m_MMSMessageBox = null;
+            m_Parts = null;
+         }
+
+         m_iDepth--;
+      }
+
+      private Collection<MessageThread> threads()
+      {
+         return(m_ContactsMap.values());
+      }
+
+      private int numberOfMessages()
+      {
+         return(m_iMessages);
+      }
+
+      private void addMessage(final Attributes attributes, final IMessage message) throws SAXException
+      {
+         try
+         {
+            LoadCancellation.checkpoint();
+         }
+         catch (final InterruptedIOException ex)
+         {
+            throw new SAXException(ex);
+         }
+
+         final String strAddress = m_Strings.intern(attribute(attributes, "address"));
+
+         if (null == m_Watermarks || !m_Watermarks.isKnown(strAddress, message))
+         {
+            m_iMessages++;
+            if (!m_ContactsMap.containsKey(strAddress))
+            {
+               final MessageThread thread = new MessageThread(m_Strings.intern(attribute(attributes, "contact_name")), strAddress);
+               thread.addMessage(message);
+               m_ContactsMap.put(strAddress, thread);
             }
             else
-               LOGGER.log(Level.WARNING, "Unknown content typ: ''{0}''", strContentType);
+               m_ContactsMap.get(strAddress).addMessage(message);
          }
       }
 
-      return(partsRet);
-   }
+      /**
+       * Determines whether the message of the given attributes is older
+       * than the last load and is to be skipped.
+       */
+      private boolean isOlder(final Attributes attributes)
+      {
+         return(null != m_Watermarks && m_Watermarks.isOlder(attribute(attributes, "address"), Long.parseLong(attribute(attributes, "date"))));
+      }
 
-   private static boolean hasSMILPart(final List<IMMSMessagePart> parts)
-   {
-      boolean fRet = false;
+      private IMessage attributesToMessage(final IMessage.MessageBox msgBox, final Attributes attributes)
+      {
+         final String strServiceCenter = value(attributes, "service_center");
+         final String strAddress = m_Strings.intern(attribute(attributes, "address"));
+         final long lTime = Long.parseLong(attribute(attributes, "date"));
+         final String strBody = attribute(attributes, "body");
 
-      for (final IMMSMessagePart part : parts)
+         return(new SMSMessage(strServiceCenter, strAddress, new Date(lTime), strBody, msgBox));
+      }
+
+      private IMessage attributesToMMSMessage(final IMessage.MessageBox msgBox, final Attributes attributes, final List<IMMSMessagePart> parts)
       {
-         if (part.getContentType() == IMMSMessagePart.ContentType.APPLICATIONSMIL)
+         final MMSMessage msg;
+
+         final String strServiceCenter = m_Strings.intern(attribute(attributes, "service_center"));
+         final String strAddress = m_Strings.intern(attribute(attributes, "address"));
+         final long lTime = Long.parseLong(attribute(attributes, "date"));
+         final String strSubject = value(attributes, "sub");
+
+         if (hasSMILPart(parts))
          {
-            fRet = true;
-            break;
+            msg = new SMILMessage(parts, strServiceCenter, strAddress, new Date(lTime), msgBox);
+            msg.setSubject(strSubject);
          }
+         else
+         {
+            msg = new MMSMessage(parts, strServiceCenter, strAddress, new Date(lTime), msgBox);
+            msg.setSubject(strSubject);
+         }
+
+         return(msg);
       }
 
-      return(true);
+      /**
+       * Get the pooled value of the given attribute, the empty string if
+       * missing or {@code "null"}.
+       */
+      private String value(final Attributes attributes, final String strName)
+      {
+         final String strValue = attribute(attributes, strName);
+
+         return("null".equals(strValue) ? "" : m_Strings.intern(strValue));
+      }
+
+      private void addPart(final Attributes attributes) throws SAXException
+      {
+         final String strContentType     = attribute(attributes, "ct");
+         final String strContentId       = attribute(attributes, "cid");
+         final String strContentLocation = attribute(attributes, "cl");
+
+         final IMMSMessagePart.ContentType contentType = IMMSMessagePart.ContentType.fromString(strContentType);
+         if (null != contentType)
+         {
+            try
+            {
+               final IMMSMessagePart messagePart;
+               if (contentType == IMMSMessagePart.ContentType.APPLICATIONSMIL || contentType == IMMSMessagePart.ContentType.TEXTPLAIN)
+                  messagePart = contentType.newMessagePart(contentType, strContentId, strContentLocation, attribute(attributes, "text").getBytes(DEFAULTCHARSET), DEFAULTCHARSET);
+               else if (isImage(contentType))
+               {
+                  // only images are read on demand, keep them encoded
+                  final IPartContent content = BlobStore.getDefault().base64Content(attribute(attributes, "data"));
+                  messagePart = contentType.newMessagePart(contentType, strContentId, strContentLocation, content, DEFAULTCHARSET);
+               }
+               else
+                  messagePart = contentType.newMessagePart(contentType, strContentId, strContentLocation, DatatypeConverter.parseBase64Binary(attribute(attributes, "data")), DEFAULTCHARSET);
+
+               if (null != messagePart)
+                  m_Parts.add(messagePart);
+               else
+                  LOGGER.log(Level.WARNING, "Failed to instantiate message part for content typ: ''{0}''", strContentType);
+            }
+            catch (final IOException ex)
+            {
+               throw new SAXException(ex);
+            }
+         }
+         else
+            LOGGER.log(Level.WARNING, "Unknown content typ: ''{0}''", strContentType);
+      }
    }
 }
@@ -26,10 +26,12 @@ package com.wj.android.messageviewer.io;
 import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +43,13 @@ import java.util.logging.Logger;
  *  name pattern {@code com.android.providers.contacts-YYYYMMDD-HHMMSS.tar.gz}
  *  in the {@code TitaniumBackup} folder on the mobile phone.
  * </p>
+ *
+ * <p>
+ *    In bulk mode all phone lookup entries are read once into memory when
+ *    the reader is created and the database connection is closed
+ *    afterwards. Contact names are then looked up in hash indexes without
+ *    any database access.
+ * </p>
  *
   * @author Werner Jaeger
  */
@@ -51,20 +60,79 @@ public class SQLLiteContactsReader
    private static final String DISPLAYNAME = "display_name";
    private static final String CONTACTNAMEQUERY1 = "select c." + DISPLAYNAME + " from raw_contacts c, phone_lookup p where p.normalized_number like ? and c.\"_id\" = p.raw_contact_id";
    private static final String CONTACTNAMEQUERY2 = "select c." + DISPLAYNAME + " from raw_contacts c, phone_lookup p where p.min_match like ? and c.\"_id\" = p.raw_contact_id";
+   private static final String NORMALIZEDNUMBER = "normalized_number";
+   private static final String MINMATCH = "min_match";
+   private static final String CONTACTINDEXQUERY = "select c." + DISPLAYNAME + ", p." + NORMALIZEDNUMBER + ", p." + MINMATCH + " from raw_contacts c, phone_lookup p where c.\"_id\" = p.raw_contact_id";
+
+   /** Indices used by the queries per address, useless for reading all entries at once. */
+   private static final SQLiteConnectionFactory.Index[] LOOKUPINDICES = {new SQLiteConnectionFactory.Index("phone_lookup", NORMALIZEDNUMBER), new SQLiteConnectionFactory.Index("phone_lookup", MINMATCH)};
 
    private final File m_ContactsDB;
 
    private Connection m_Connection;
 
+   /** Display name of the first contact found per normalized number. */
+   private Map<String, String> m_NormalizedNumberIndex;
+   /** Display name per min match, {@code null} if not unique. */
+   private Map<String, String> m_MinMatchIndex;
+
    /**
     * Creates new {@code SQLLiteContactsReader}.
     *
     * @param contactsDB the contacts DB file.
     */
    public SQLLiteContactsReader(final File contactsDB)
+   {
+      this(contactsDB, false);
+   }
+
+   /**
+    * Creates new {@code SQLLiteContactsReader}.
+    *
+    * @param contactsDB the contacts DB file.
+    * @param fBulk if {@code true} all phone lookup entries are read into
+    *        memory at once, if reading fails contact names are queried for
+    *        each address.
+    */
+   public SQLLiteContactsReader(final File contactsDB, final boolean fBulk)
    {
       m_ContactsDB = contactsDB;
-      connect();
+      m_NormalizedNumberIndex = null;
+      m_MinMatchIndex = null;
+
+      if (connect(fBulk) && fBulk && readIndex())
+         disconnect();
+   }
+
+   /**
+    * Creates new {@code SQLLiteContactsReader} on an open contacts database
+    * connection, e.g. to an in-memory database. The connection is made
+    * query only.
+    *
+    * @param connection the connection to the contacts database.
+    *        Must not be {@code null}.
+    * @param fBulk if {@code true} all phone lookup entries are read into
+    *        memory at once and {@code connection} is closed, if reading
+    *        fails contact names are queried for each address.
+    */
+   public SQLLiteContactsReader(final Connection connection, final boolean fBulk)
+   {
+      m_ContactsDB = null;
+      m_Connection = connection;
+      m_NormalizedNumberIndex = null;
+      m_MinMatchIndex = null;
+
+      try
+      {
+         SQLiteConnectionFactory.tune(connection, fBulk ? new SQLiteConnectionFactory.Index[0] : LOOKUPINDICES);
+      }
+      catch (final SQLException ex)
+      {
+         LOGGER.log(Level.WARNING, ex.toString(), ex);
+      }
+
+      if (fBulk && readIndex())
+         disconnect();
    }
 
    /**
@@ -79,60 +147,166 @@ public class SQLLiteContactsReader
    {
       String strContactName = null;
 
-      if (null != m_Connection && null != strAddress)
+      if (null != m_NormalizedNumberIndex && null != strAddress)
       {
-         try (final PreparedStatement statement1 = m_Connection.prepareStatement(CONTACTNAMEQUERY1))
-         {
-            statement1.setQueryTimeout(30);  // set timeout to 30 sec.
-            statement1.setString(1, strAddress);
+         final String strKey = likeKey(strAddress);
+
+         if (m_NormalizedNumberIndex.containsKey(strKey))
+            strContactName = m_NormalizedNumberIndex.get(strKey);
+         else
+            strContactName = m_MinMatchIndex.get(likeKey(toCallerIDMinMatch(strAddress)));
+      }
+      else if (null != m_Connection && null != strAddress)
+         strContactName = queryContactName(strAddress);
+      else
+         strContactName = null;
+
+      return(strContactName);
+   }
+
+   /**
+    * Queries the contact name for a given address from the database.
+    *
+    * <p>
+    *    Synchronized, as the connection must not be used by several threads
+    *    at the same time.
+    * </p>
+    */
+   private synchronized String queryContactName(final String strAddress)
+   {
+      String strContactName = null;
+
+      try (final PreparedStatement statement1 = m_Connection.prepareStatement(CONTACTNAMEQUERY1))
+      {
+         statement1.setQueryTimeout(30);  // set timeout to 30 sec.
+         statement1.setString(1, strAddress);
 
-            try (final ResultSet rs1 = statement1.executeQuery())
+         try (final ResultSet rs1 = statement1.executeQuery())
+         {
+            if (!rs1.next())
             {
-               if (!rs1.next())
+               try (final PreparedStatement statement2 = m_Connection.prepareStatement(CONTACTNAMEQUERY2))
                {
-                  try (final PreparedStatement statement2 = m_Connection.prepareStatement(CONTACTNAMEQUERY2))
-                  {
-                     statement2.setQueryTimeout(30);  // set timeout to 30 sec.
-                     statement2.setString(1, toCallerIDMinMatch(strAddress));
+                  statement2.setQueryTimeout(30);  // set timeout to 30 sec.
+                  statement2.setString(1, toCallerIDMinMatch(strAddress));
 
-                     try (final ResultSet rs2 = statement2.executeQuery())
+                  try (final ResultSet rs2 = statement2.executeQuery())
+                  {
+                     if (rs2.next())
                      {
-                        if (rs2.next())
-                        {
-                           strContactName = rs2.getString(DISPLAYNAME);
-                           if (rs2.next()) // only if is unique
-                              strContactName = null;
-                        }
+                        strContactName = rs2.getString(DISPLAYNAME);
+                        if (rs2.next()) // only if is unique
+                           strContactName = null;
                      }
                   }
                }
-               else
-                  strContactName = rs1.getString(DISPLAYNAME);
             }
-         }
-         catch (final SQLException ex)
-         {
-            LOGGER.log(Level.SEVERE, ex.toString(), ex);
-            strContactName = null;
+            else
+               strContactName = rs1.getString(DISPLAYNAME);
          }
       }
-      else
+      catch (final SQLException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
          strContactName = null;
+      }
 
       return(strContactName);
    }
 
-   private boolean connect()
+   /**
+    * Reads all phone lookup entries into the in memory indexes.
+    *
+    * <p>
+    *    Preserves the semantics of the queries issued per address: for a
+    *    normalized number the first contact found is used, for a min match
+    *    only a unique hit counts.
+    * </p>
+    *
+    * @return {@code true} on success.
+    */
+   private boolean readIndex()
    {
       boolean fRet;
 
+      final Map<String, String> normalizedNumberIndex = new HashMap<>();
+      final Map<String, String> minMatchIndex = new HashMap<>();
+
+      try (final PreparedStatement statement = SQLiteConnectionFactory.prepareBulk(m_Connection, CONTACTINDEXQUERY))
+      {
+         try (final ResultSet rs = statement.executeQuery())
+         {
+            while (rs.next())
+            {
+               final String strContactName = rs.getString(DISPLAYNAME);
+               final String strNormalizedNumber = rs.getString(NORMALIZEDNUMBER);
+               final String strMinMatch = rs.getString(MINMATCH);
+
+               if (null != strNormalizedNumber)
+               {
+                  final String strKey = likeKey(strNormalizedNumber);
+                  if (!normalizedNumberIndex.containsKey(strKey))
+                     normalizedNumberIndex.put(strKey, strContactName);
+               }
+
+               if (null != strMinMatch)
+               {
+                  final String strKey = likeKey(strMinMatch);
+                  if (minMatchIndex.containsKey(strKey))
+                     minMatchIndex.put(strKey, null); // not unique
+                  else
+                     minMatchIndex.put(strKey, strContactName);
+               }
+            }
+         }
+
+         m_NormalizedNumberIndex = normalizedNumberIndex;
+         m_MinMatchIndex = minMatchIndex;
+         fRet = true;
+      }
+      catch (final SQLException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         fRet = false;
+      }
+
+      return(fRet);
+   }
+
+   /**
+    * Releases the contacts database connection, if still open. Contact names
+    * not read into memory can not be retrieved afterwards.
+    */
+   public synchronized void close()
+   {
+      if (null != m_Connection)
+         disconnect();
+   }
+
+   private void disconnect()
+   {
       try
       {
-         Class.forName("org.sqlite.JDBC");
-         m_Connection = DriverManager.getConnection("jdbc:sqlite:" + m_ContactsDB.getCanonicalPath());
+         m_Connection.close();
+      }
+      catch (final SQLException ex)
+      {
+         LOGGER.log(Level.WARNING, ex.toString(), ex);
+      }
+
+      m_Connection = null;
+   }
+
+   private boolean connect(final boolean fBulk)
+   {
+      boolean fRet;
+
+      try
+      {
+         m_Connection = SQLiteConnectionFactory.open(m_ContactsDB, fBulk ? new SQLiteConnectionFactory.Index[0] : LOOKUPINDICES);
          fRet = true;
       }
-      catch (final ClassNotFoundException | SQLException | IOException ex)
+      catch (final SQLException | IOException ex)
       {
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
          m_Connection = null;
@@ -151,4 +325,16 @@ public class SQLLiteContactsReader
    {
       return(new StringBuilder(strAddress).reverse().substring(0, Math.min(7, strAddress.length())));
    }
+
+   /**
+    * SQLite {@code like} compares case insensitive, so do the index keys.
+    *
+    * @param strValue the value to compare.
+    *
+    * @return the index key.
+    */
+   private static String likeKey(final String strValue)
+   {
+      return(strValue.toLowerCase(Locale.ROOT));
+   }
 }
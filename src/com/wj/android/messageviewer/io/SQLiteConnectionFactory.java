@@ -0,0 +1,273 @@
+/*
+ * $Id$
+ *
+ * File:   SQLiteConnectionFactory.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:10:06 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Opens the {@code SQLite} databases this viewer reads, the Skype
+ * {@code main.db} and the Android {@code contacts2.db}, with a connection
+ * profile tuned for reading.
+ *
+ * <p>
+ *    Every connection is query only, uses memory mapped I/O up to
+ *    {@link #MMAPSIZE} bytes, a page cache of {@link #CACHESIZE} KiB and keeps
+ *    temporary tables and indices in memory. Databases given by the user are
+ *    opened read-only. Private copies, i.e. files in the
+ *    {@link ExtractionCache} and in-memory databases, may additionally get
+ *    indices the readers' queries benefit from, if the database does not
+ *    already have an index starting with the same columns.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class SQLiteConnectionFactory
+{
+   private static final Logger LOGGER = Logger.getLogger(SQLiteConnectionFactory.class.getName());
+
+   /** Maximum number of bytes of a database file mapped into memory. */
+   static final long MMAPSIZE = 256L * 1024L * 1024L;
+
+   /** Page cache size in KiB. */
+   static final int CACHESIZE = 16 * 1024;
+
+   /** Number of rows to fetch at once for bulk queries. */
+   static final int FETCHSIZE = 1024;
+
+   /** Statement timeout in seconds. */
+   static final int QUERYTIMEOUT = 30;
+
+   private SQLiteConnectionFactory()
+   {
+   }
+
+   /**
+    * Opens a connection to the given database file.
+    *
+    * @param database the database file. Must not be {@code null}.
+    * @param aIndices the indices to create if the file is a private copy
+    *        and has no equivalent index.
+    *
+    * @return the connection. Never {@code null}.
+    *
+    * @throws SQLException if the database cannot be opened.
+    * @throws IOException if the canonical path of {@code database} cannot be
+    *         determined.
+    */
+   static Connection open(final File database, final Index... aIndices) throws SQLException, IOException
+   {
+      try
+      {
+         Class.forName("org.sqlite.JDBC");
+      }
+      catch (final ClassNotFoundException ex)
+      {
+         throw new SQLException(ex);
+      }
+
+      final boolean fPrivateCopy = ExtractionCache.getDefault().contains(database);
+
+      final SQLiteConfig config = new SQLiteConfig();
+      config.setReadOnly(!fPrivateCopy);
+      config.setCacheSize(-CACHESIZE);
+      config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+
+      final Connection connection = config.createConnection("jdbc:sqlite:" + database.getCanonicalPath());
+      try
+      {
+         tune(connection, fPrivateCopy ? aIndices : new Index[0]);
+      }
+      catch (final SQLException ex)
+      {
+         connection.close();
+         throw ex;
+      }
+
+      return(connection);
+   }
+
+   /**
+    * Applies the read profile to an already open connection, e.g. to an
+    * in-memory database, and creates the given indices if missing.
+    *
+    * <p>
+    *    Afterwards the connection is query only.
+    * </p>
+    *
+    * @param connection the connection. Must not be {@code null}.
+    * @param aIndices the indices to create if the database has no
+    *        equivalent index.
+    *
+    * @throws SQLException if applying the profile fails.
+    */
+   static void tune(final Connection connection, final Index... aIndices) throws SQLException
+   {
+      try (final Statement statement = connection.createStatement())
+      {
+         statement.execute("pragma cache_size = " + -CACHESIZE);
+         statement.execute("pragma temp_store = memory");
+         statement.execute("pragma mmap_size = " + MMAPSIZE);
+
+         for (final Index index : aIndices)
+            index.ensure(connection);
+
+         statement.execute("pragma query_only = 1");
+      }
+   }
+
+   /**
+    * Prepares a statement for a query reading many rows.
+    *
+    * @param connection the connection. Must not be {@code null}.
+    * @param strQuery the query. Must not be {@code null}.
+    *
+    * @return the statement. Never {@code null}.
+    *
+    * @throws SQLException if preparing the statement fails.
+    */
+   static PreparedStatement prepareBulk(final Connection connection, final String strQuery) throws SQLException
+   {
+      final PreparedStatement statement = connection.prepareStatement(strQuery);
+
+      statement.setQueryTimeout(QUERYTIMEOUT);
+      statement.setFetchSize(FETCHSIZE);
+
+      return(statement);
+   }
+
+   /**
+    * An index on one or more columns of a table.
+    */
+   static final class Index
+   {
+      private final String m_strTable;
+      private final String[] m_astrColumns;
+
+      /**
+       * Creates new {@code Index}.
+       *
+       * @param strTable the table name. Must not be {@code null}.
+       * @param astrColumns the indexed columns in index order. Must not be
+       *        empty.
+       */
+      Index(final String strTable, final String... astrColumns)
+      {
+         m_strTable = strTable;
+         m_astrColumns = astrColumns.clone();
+      }
+
+      /**
+       * Creates this index unless the table already has an index whose
+       * leading columns are this index's columns.
+       *
+       * <p>
+       *    A failure to create the index is logged only, queries work
+       *    without it, just slower.
+       * </p>
+       *
+       * @param connection a connection allowing writes. Must not be
+       *        {@code null}.
+       */
+      void ensure(final Connection connection)
+      {
+         try
+         {
+            if (!exists(connection))
+            {
+               final StringBuilder sql = new StringBuilder("create index if not exists ");
+               sql.append(quote("messageviewer_" + m_strTable + "_" + join("_"))).append(" on ").append(quote(m_strTable)).append(" (").append(join(", ")).append(')');
+
+               try (final Statement statement = connection.createStatement())
+               {
+                  statement.executeUpdate(sql.toString());
+               }
+
+               LOGGER.log(Level.INFO, "Created index on {0}({1})", new Object[] {m_strTable, join(", ")});
+            }
+         }
+         catch (final SQLException ex)
+         {
+            LOGGER.log(Level.WARNING, ex.toString(), ex);
+         }
+      }
+
+      private boolean exists(final Connection connection) throws SQLException
+      {
+         boolean fExists = false;
+
+         final List<String> indexNames = new ArrayList<>();
+         try (final Statement statement = connection.createStatement(); final ResultSet rs = statement.executeQuery("pragma index_list(" + quote(m_strTable) + ")"))
+         {
+            while (rs.next())
+               indexNames.add(rs.getString("name"));
+         }
+
+         for (int i = 0; !fExists && i < indexNames.size(); i++)
+         {
+            final List<String> columns = new ArrayList<>();
+            try (final Statement statement = connection.createStatement(); final ResultSet rs = statement.executeQuery("pragma index_info(" + quote(indexNames.get(i)) + ")"))
+            {
+               while (rs.next())
+                  columns.add(rs.getString("name"));
+            }
+
+            fExists = columns.size() >= m_astrColumns.length;
+            for (int j = 0; fExists && j < m_astrColumns.length; j++)
+               fExists = m_astrColumns[j].equalsIgnoreCase(columns.get(j));
+         }
+
+         return(fExists);
+      }
+
+      private String join(final String strSeparator)
+      {
+         final StringBuilder sb = new StringBuilder();
+
+         for (final String strColumn : m_astrColumns)
+         {
+            if (sb.length() > 0)
+               sb.append(strSeparator);
+            sb.append(strColumn);
+         }
+
+         return(sb.toString());
+      }
+
+      private static String quote(final String strIdentifier)
+      {
+         return("\"" + strIdentifier.replace("\"", "\"\"") + "\"");
+      }
+   }
+}
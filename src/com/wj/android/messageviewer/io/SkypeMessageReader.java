@@ -24,21 +24,25 @@
 package com.wj.android.messageviewer.io;
 
 import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.IMessageLoader;
 import com.wj.android.messageviewer.message.MessageThread;
 import com.wj.android.messageviewer.message.SMSMessage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.compress.archivers.ArchiveException;
 
 /**
  * Loads {@code Skype} conversations from a {@code Skype} {@code SQLite}
@@ -50,6 +54,29 @@ import java.util.logging.Logger;
  *  in the {@code TitaniumBackup} folder on the mobile phone.
  * </p>
  *
+ * <p>
+ *    A lazy reader only reads the conversations with their message count
+ *    and last activity when loading. The messages of a conversation are
+ *    queried when they are first requested from its {@link MessageThread}.
+ *    The database connection is kept open for that purpose until the
+ *    messages of all conversations are loaded or the threads not loaded
+ *    are disposed. As a thread keeps at most one message per date and
+ *    {@code Skype} timestamps are in seconds, messages are counted by
+ *    distinct timestamps. The connection of an eager reader is closed once
+ *    loading is finished.
+ * </p>
+ *
+ * <p>
+ *    Identities, display names and authors are shared through a
+ *    {@link StringPool} per load, respectively per conversation loaded
+ *    lazily.
+ * </p>
+ *
+ * <p>
+ *    If enabled by {@link InMemorySQLite#isEnabled()} a {@code main.db} in an
+ *    archive is opened as in-memory database instead of being extracted.
+ * </p>
+ *
  * @author Werner Jaeger
  */
 public class SkypeMessageReader implements IMessageReader
@@ -68,13 +95,27 @@ public class SkypeMessageReader implements IMessageReader
            + CONVID + " == c." + ID + " and m." + TYPE + " == 61 group by c." + ID;
    private static final String MESSAGESQUERY = "select m." + CONVID + ", m." + AUTHOR + ", m." + BODYXML + ", m." + TIMESTAMP
            + " from Messages m where m." + TYPE + " == 61 and LENGTH(" + BODYXML + ") > 0";
+   private static final String MESSAGECOUNT = "message_count";
+   private static final String LASTACTIVITY = "last_activity";
+   private static final String LAZYCONVERSATIONSQUERY = "select c." + ID + ", c." + IDENTITY + ", c." + DISPLAYNAME
+           + ", count(distinct case when LENGTH(m." + BODYXML + ") > 0 then m." + TIMESTAMP + " end) as " + MESSAGECOUNT
+           + ", max(case when LENGTH(m." + BODYXML + ") > 0 then m." + TIMESTAMP + " end) as " + LASTACTIVITY
+           + " from Conversations c, Messages m where m." + CONVID + " == c." + ID + " and m." + TYPE + " == 61 group by c." + ID;
+   private static final String CONVERSATIONMESSAGESQUERY = MESSAGESQUERY + " and m." + CONVID + " == ?";
+   private static final SQLiteConnectionFactory.Index MESSAGESINDEX = new SQLiteConnectionFactory.Index("Messages", CONVID, TYPE);
+
+   private final boolean m_fLazy;
 
    private final Map<Integer, MessageThread> m_Conversations;
 
    private int m_iNumberOfMessages;
 
+   private StringPool m_Strings;
+
    private File m_MainDB;
 
+   private File m_ExtractedMainDB;
+
    private Connection m_Connection;
 
    /**
@@ -82,8 +123,21 @@ public class SkypeMessageReader implements IMessageReader
     */
    public SkypeMessageReader()
    {
+      this(false);
+   }
+
+   /**
+    * Creates new {@code SkypeMessageReader}.
+    *
+    * @param fLazy if {@code true} the messages of a conversation are only
+    *        read when first requested.
+    */
+   public SkypeMessageReader(final boolean fLazy)
+   {
+      m_fLazy = fLazy;
       m_Conversations = new LinkedHashMap<>(32, 0.7f, false);
       m_iNumberOfMessages = 0;
+      m_Strings = null;
    }
 
    /**
@@ -97,23 +151,51 @@ public class SkypeMessageReader implements IMessageReader
     *        {@code null}.
     *
     * @return the error code -3 meaning Skype database file not found,
-    *         0 meaning success and 3 other reading problems.
+    *         0 meaning success, 3 other reading problems and 4 loading was
+    *         cancelled.
     */
    @Override
    public int loadMessages(final InputStream is, final File mainDB)
+   {
+      return(loadMessages(is, mainDB, null));
+   }
+
+   /**
+    * Reads Skype conversations from file
+    * {@code com.skype.raider-YYMMDD-HHMMSS.tar.gz} stored in the
+    * {@code TitaniumBackup} folder or from Skype {@code main.db}, reporting
+    * each conversation to the given listener once all were read.
+    *
+    * @param is Always {@code null}.
+    * @param mainDB {@code com.skype.raider-YYMMDD-HHMMSS.tar.gz} or
+    *        {@code SQLLite} {@code Skype} main database file. Must not be
+    *        {@code null}.
+    * @param listener the listener to notify of each conversation or
+    *        {@code null}.
+    *
+    * @return the error code -3 meaning Skype database file not found,
+    *         0 meaning success, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   @Override
+   public int loadMessages(final InputStream is, final File mainDB, final IThreadListener listener)
    {
       int iRet = -3;
 
       m_Conversations.clear();
       m_iNumberOfMessages = 0;
+      m_Strings = new StringPool();
+      m_MainDB = null;
 
-      if (instantiateMainDb(mainDB))
+      try
       {
-         if (connect())
+         if (isArchive(mainDB) && InMemorySQLite.isEnabled())
+            iRet = openInMemory(mainDB);
+         else if (instantiateMainDb(mainDB))
          {
-            if (queryConversations())
+            if (connect())
             {
-               if (addMessages())
+               if (readConversations())
                   iRet = 0;
                else
                   iRet = 3;
@@ -121,8 +203,24 @@ public class SkypeMessageReader implements IMessageReader
             else
                iRet = 3;
          }
-         else
-            iRet = 3;
+      }
+      catch (final InterruptedIOException ex)
+      {
+         LOGGER.log(Level.INFO, ex.toString());
+         disconnect();
+         m_Conversations.clear();
+         m_iNumberOfMessages = 0;
+         iRet = LoadCancellation.CANCELLED;
+      }
+
+      disconnect();
+      m_Strings.log(LOGGER);
+      m_Strings = null;
+
+      if (0 == iRet && null != listener)
+      {
+         for (final MessageThread thread : m_Conversations.values())
+            listener.threadLoaded(thread);
       }
 
       return(iRet);
@@ -150,15 +248,49 @@ public class SkypeMessageReader implements IMessageReader
       return(m_iNumberOfMessages);
    }
 
+   private static boolean isArchive(final File mainDB)
+   {
+      return(null != mainDB && (mainDB.getName().endsWith(".tar.gz") || mainDB.getName().endsWith("tar")));
+   }
+
+   private int openInMemory(final File mainDB) throws InterruptedIOException
+   {
+      int iRet = 3;
+
+      try
+      {
+         m_Connection = InMemorySQLite.openFromArchive(mainDB, "main.db");
+         if (null == m_Connection)
+            iRet = -3;
+         else
+         {
+            LoadCancellation.checkpoint();
+            SQLiteConnectionFactory.tune(m_Connection, indices());
+            if (readConversations())
+               iRet = 0;
+         }
+      }
+      catch (final InterruptedIOException ex)
+      {
+         throw ex;
+      }
+      catch (final IOException | ArchiveException | SQLException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+      }
+
+      return(iRet);
+   }
+
    private boolean instantiateMainDb(final File mainDB)
    {
       if (null != mainDB)
       {
-         if (mainDB.getName().endsWith(".tar.gz") || mainDB.getName().endsWith("tar"))
+         if (isArchive(mainDB))
          {
-            final String strTempDir = System.getProperty("java.io.tmpdir");
-            final File skypeConversationTempDir = new File(strTempDir, "titaniumBackupSkypeConversations");
-            m_MainDB = ExtractTarGz.extractTarGzAndFindFirst(mainDB, skypeConversationTempDir, "main.db");
+            // pinned in the cache until the connection is closed
+            m_ExtractedMainDB = ExtractionCache.getDefault().extractFirst(mainDB, "main.db");
+            m_MainDB = m_ExtractedMainDB;
          }
          else if (mainDB.getName().endsWith(".db"))
             m_MainDB = mainDB;
@@ -174,11 +306,10 @@ public class SkypeMessageReader implements IMessageReader
 
       try
       {
-         Class.forName("org.sqlite.JDBC");
-         m_Connection = DriverManager.getConnection("jdbc:sqlite:" + m_MainDB.getCanonicalPath());
+         m_Connection = SQLiteConnectionFactory.open(m_MainDB, indices());
          fRet = true;
       }
-      catch (final ClassNotFoundException | SQLException | IOException ex)
+      catch (final SQLException | IOException ex)
       {
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
          m_Connection = null;
@@ -187,47 +318,162 @@ public class SkypeMessageReader implements IMessageReader
       return(fRet);
    }
 
-   private boolean queryConversations()
+   /**
+    * Closes the connection and releases the extracted database unless they
+    * were handed over to conversations loaded lazily, these close it once
+    * all are loaded or disposed.
+    */
+   private void disconnect()
+   {
+      if (null != m_Connection)
+      {
+         try
+         {
+            m_Connection.close();
+         }
+         catch (final SQLException ex)
+         {
+            LOGGER.log(Level.WARNING, ex.toString(), ex);
+         }
+
+         m_Connection = null;
+      }
+
+      if (null != m_ExtractedMainDB)
+      {
+         ExtractionCache.getDefault().release(m_ExtractedMainDB);
+         m_ExtractedMainDB = null;
+      }
+   }
+
+   /**
+    * The lazy conversation query and the per conversation message queries
+    * select messages by conversation and type, an index on these columns
+    * saves a scan of all messages per conversation.
+    */
+   private SQLiteConnectionFactory.Index[] indices()
+   {
+      return(m_fLazy ? new SQLiteConnectionFactory.Index[] {MESSAGESINDEX} : new SQLiteConnectionFactory.Index[0]);
+   }
+
+   private boolean readConversations() throws InterruptedIOException
+   {
+      final boolean fRet;
+
+      if (m_fLazy)
+         fRet = queryLazyConversations();
+      else
+         fRet = queryConversations() && addMessages();
+
+      return(fRet);
+   }
+
+   private boolean queryLazyConversations() throws InterruptedIOException
    {
       boolean fRet = false;
 
-      try (final PreparedStatement statement = m_Connection.prepareStatement(CONVERSATIONSQUERY))
+      final SharedConnection connection = new SharedConnection(m_Connection, m_ExtractedMainDB);
+      try (final PreparedStatement statement = SQLiteConnectionFactory.prepareBulk(m_Connection, LAZYCONVERSATIONSQUERY))
       {
-         statement.setQueryTimeout(30);  // set timeout to 30 sec.
+         LoadCancellation.register(statement);
+         try (final ResultSet rs = statement.executeQuery())
+         {
+            while (rs.next())
+            {
+               LoadCancellation.checkpoint();
+
+               final int iId = rs.getInt(ID);
+               final String strIdentity = m_Strings.intern(rs.getString(IDENTITY));
+               final String strDisplayName = m_Strings.intern(rs.getString(DISPLAYNAME));
+               final int iMessageCount = rs.getInt(MESSAGECOUNT);
+               final long lLastActivity = rs.getLong(LASTACTIVITY);
+               final Date lastActivity = rs.wasNull() ? null : new Date(lLastActivity * 1000);
+
+               m_Conversations.put(iId, new MessageThread(strDisplayName, strIdentity, new ConversationLoader(connection, iId), iMessageCount, lastActivity));
+               m_iNumberOfMessages += iMessageCount;
+            }
 
+            shareConnection(connection);
+            fRet = true;
+         }
+         finally
+         {
+            LoadCancellation.unregister();
+         }
+      }
+      catch (final SQLException ex)
+      {
+         // a cancelled statement fails
+         LoadCancellation.checkpoint();
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+      }
+
+      return(fRet);
+   }
+
+   /**
+    * Hands the connection and the extracted database over to the
+    * conversations read lazily.
+    */
+   private void shareConnection(final SharedConnection connection)
+   {
+      if (!m_Conversations.isEmpty())
+      {
+         connection.retain(m_Conversations.size());
+         m_Connection = null;
+         m_ExtractedMainDB = null;
+      }
+   }
+
+   private boolean queryConversations() throws InterruptedIOException
+   {
+      boolean fRet = false;
+
+      try (final PreparedStatement statement = SQLiteConnectionFactory.prepareBulk(m_Connection, CONVERSATIONSQUERY))
+      {
+         LoadCancellation.register(statement);
          try (final ResultSet rs = statement.executeQuery())
          {
             while (rs.next())
             {
+               LoadCancellation.checkpoint();
+
                final int iId = rs.getInt(ID);
-               final String strIdentity = rs.getString(IDENTITY);
-               final String strDisplayName = rs.getString(DISPLAYNAME);
+               final String strIdentity = m_Strings.intern(rs.getString(IDENTITY));
+               final String strDisplayName = m_Strings.intern(rs.getString(DISPLAYNAME));
                m_Conversations.put(iId, new MessageThread(strDisplayName, strIdentity));
             }
 
             fRet = true;
          }
+         finally
+         {
+            LoadCancellation.unregister();
+         }
       }
       catch (final SQLException ex)
       {
+         // a cancelled statement fails
+         LoadCancellation.checkpoint();
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
       }
 
       return(fRet);
    }
 
-   private boolean addMessages()
+   private boolean addMessages() throws InterruptedIOException
    {
       boolean fRet = true;
 
-      try (final PreparedStatement statement = m_Connection.prepareStatement(MESSAGESQUERY))
+      try (final PreparedStatement statement = SQLiteConnectionFactory.prepareBulk(m_Connection, MESSAGESQUERY))
       {
-         statement.setQueryTimeout(30);  // set timeout to 30 sec.
-
+         LoadCancellation.register(statement);
          try (final ResultSet rs = statement.executeQuery())
          {
             while (rs.next())
             {
+               LoadCancellation.checkpoint();
+
                final int iId = rs.getInt(CONVID);
                final String strAuthor = rs.getString(AUTHOR);
                final String strBody = rs.getString(BODYXML);
@@ -236,25 +482,127 @@ public class SkypeMessageReader implements IMessageReader
                final MessageThread thread = m_Conversations.get(iId);
                if (null != thread)
                {
-                  final IMessage.MessageBox msgBox;
-                  if (thread.getAddress().equals(strAuthor))
-                     msgBox = IMessage.MessageBox.INBOX;
-                  else
-                     msgBox = IMessage.MessageBox.SENT;
-
-                  final IMessage msg = new SMSMessage("", strAuthor, new Date(lTimestamp * 1000), strBody, msgBox);
-                  thread.addMessage(msg);
+                  thread.addMessage(newMessage(thread, m_Strings.intern(strAuthor), strBody, lTimestamp));
                   m_iNumberOfMessages++;
                }
             }
          }
+         finally
+         {
+            LoadCancellation.unregister();
+         }
       }
       catch (final SQLException ex)
       {
+         // a cancelled statement fails
+         LoadCancellation.checkpoint();
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
          fRet = false;
       }
 
       return(fRet);
    }
+
+   private static IMessage newMessage(final MessageThread thread, final String strAuthor, final String strBody, final long lTimestamp)
+   {
+      final IMessage.MessageBox msgBox;
+      if (thread.getAddress().equals(strAuthor))
+         msgBox = IMessage.MessageBox.INBOX;
+      else
+         msgBox = IMessage.MessageBox.SENT;
+
+      return(new SMSMessage("", strAuthor, new Date(lTimestamp * 1000), strBody, msgBox));
+   }
+
+   /**
+    * The connection shared by the conversations of a lazy load, closed when
+    * the last of them is released. The database extracted from an archive,
+    * if any, is then released from the {@link ExtractionCache}.
+    */
+   private static final class SharedConnection
+   {
+      private final Connection m_Connection;
+      private final File m_ExtractedDB;
+      private int m_iUsers;
+
+      private SharedConnection(final Connection connection, final File extractedDB)
+      {
+         m_Connection = connection;
+         m_ExtractedDB = extractedDB;
+         m_iUsers = 0;
+      }
+
+      private synchronized void retain(final int iUsers)
+      {
+         m_iUsers += iUsers;
+      }
+
+      private synchronized void release()
+      {
+         if (0 == --m_iUsers)
+         {
+            try
+            {
+               m_Connection.close();
+               LOGGER.log(Level.FINE, "Closed connection of lazily loaded conversations");
+            }
+            catch (final SQLException ex)
+            {
+               LOGGER.log(Level.WARNING, ex.toString(), ex);
+            }
+
+            if (null != m_ExtractedDB)
+               ExtractionCache.getDefault().release(m_ExtractedDB);
+         }
+      }
+   }
+
+   /**
+    * Queries the messages of one conversation when first requested.
+    */
+   private static final class ConversationLoader implements IMessageLoader
+   {
+      private final SharedConnection m_Connection;
+      private final int m_iConversationId;
+
+      private ConversationLoader(final SharedConnection connection, final int iConversationId)
+      {
+         m_Connection = connection;
+         m_iConversationId = iConversationId;
+      }
+
+      @Override
+      public Collection<IMessage> loadMessages(final MessageThread thread)
+      {
+         final Collection<IMessage> messages = new ArrayList<>();
+         final StringPool strings = new StringPool();
+
+         // a connection must not be used by several threads at the same time
+         synchronized (m_Connection)
+         {
+            try (final PreparedStatement statement = SQLiteConnectionFactory.prepareBulk(m_Connection.m_Connection, CONVERSATIONMESSAGESQUERY))
+            {
+               statement.setInt(1, m_iConversationId);
+
+               try (final ResultSet rs = statement.executeQuery())
+               {
+                  while (rs.next())
+                     messages.add(newMessage(thread, strings.intern(rs.getString(AUTHOR)), rs.getString(BODYXML), rs.getLong(TIMESTAMP)));
+               }
+            }
+            catch (final SQLException ex)
+            {
+               LOGGER.log(Level.SEVERE, ex.toString(), ex);
+            }
+         }
+
+         return(messages);
+      }
+
+      @Override
+      public void release(final MessageThread thread)
+      {
+         m_Connection.release();
+      }
+   }
 }
@@ -0,0 +1,381 @@
+/*
+ * $Id$
+ *
+ * File:   SnapshotCache.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:13:28 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Cache of binary snapshots of loaded message files, kept across sessions.
+ *
+ * <p>
+ *    After a message file has been loaded successfully its threads and
+ *    messages are written to a {@link MessageSnapshot}. Re-opening the same
+ *    message file with the same contacts database then maps the snapshot
+ *    into memory instead of decompressing and parsing the file again.
+ * </p>
+ *
+ * <p>
+ *    A snapshot is identified by a SHA-1 digest over the fingerprints of the
+ *    message file and the contacts database as computed by
+ *    {@link ExtractionCache#fingerprint(java.security.MessageDigest, java.io.File)}
+ *    and the snapshot format version. The least recently used snapshots are
+ *    deleted as soon as the cache exceeds its disk budget, except snapshots
+ *    opened by this cache whose mapped contents are still referenced.
+ *    Snapshots larger than the disk budget are not stored at all. A disk
+ *    budget of 0 disables the cache.
+ * </p>
+ *
+ * <p>
+ *    Writing a snapshot takes about as long as serializing all messages, so
+ *    loads have it written by {@link #storeLater(File, File, IMessageReader)}
+ *    on a background thread of its own instead of waiting for it.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class SnapshotCache
+{
+   private static final Logger LOGGER = Logger.getLogger(SnapshotCache.class.getName());
+
+   /** Name of the system property defining the disk budget in bytes. */
+   public static final String DISKBUDGETPROPERTY = "com.wj.android.messageviewer.snapshotcache.budget";
+
+   /** Default disk budget in bytes. */
+   public static final long DEFAULTDISKBUDGET = 1024L * 1024L * 1024L;
+
+   private static final String SNAPSHOTSUFFIX = ".snapshot";
+   private static final String TEMPFILEPREFIX = "tmp-";
+   private static final long STALETEMPFILEAGE = 24L * 60L * 60L * 1000L;
+
+   private static final ExecutorService STOREEXECUTOR = newStoreExecutor();
+
+   private static final SnapshotCache DEFAULTCACHE = new SnapshotCache(new File(System.getProperty("java.io.tmpdir"), "titaniumBackupMessageViewerSnapshots"), Long.getLong(DISKBUDGETPROPERTY, DEFAULTDISKBUDGET));
+
+   private final File m_CacheDir;
+   private final long m_lDiskBudget;
+   private final Map<File, WeakReference<Object>> m_Pins;
+
+   /**
+    * Creates new {@code SnapshotCache}.
+    *
+    * @param cacheDir the directory to keep the snapshots in.
+    *        Must not be {@code null}.
+    * @param lDiskBudget the maximum number of bytes to keep in the cache.
+    */
+   SnapshotCache(final File cacheDir, final long lDiskBudget)
+   {
+      m_CacheDir = cacheDir;
+      m_lDiskBudget = lDiskBudget;
+      m_Pins = new HashMap<>();
+   }
+
+   /**
+    * Get the application wide cache.
+    *
+    * <p>
+    *    It is located in the {@code java.io.tmpdir} directory, its disk
+    *    budget may be set by system property {@link #DISKBUDGETPROPERTY}.
+    * </p>
+    *
+    * @return the default cache. Never {@code null}.
+    */
+   public static SnapshotCache getDefault()
+   {
+      return(DEFAULTCACHE);
+   }
+
+   /**
+    * Opens the snapshot of the given message file.
+    *
+    * @param messageFile the message file. Must not be {@code null}.
+    * @param contactsDB the contacts database the messages were loaded with
+    *        or {@code null}.
+    *
+    * @return a reader serving the threads and messages of the snapshot or
+    *         {@code null} if no valid snapshot exists.
+    */
+   public IMessageReader open(final File messageFile, final File contactsDB)
+   {
+      IMessageReader reader = null;
+
+      if (m_lDiskBudget > 0 && messageFile.isFile())
+      {
+         File snapshotFile = null;
+         try
+         {
+            snapshotFile = new File(m_CacheDir, key(messageFile, contactsDB));
+            if (snapshotFile.isFile())
+            {
+               final MessageSnapshot snapshot = MessageSnapshot.read(snapshotFile);
+               pin(snapshotFile, snapshot.getContent());
+               reader = snapshot;
+               if (!snapshotFile.setLastModified(System.currentTimeMillis()))
+                  LOGGER.log(Level.WARNING, "Failed to touch {0}", snapshotFile);
+
+               LOGGER.log(Level.INFO, "Using snapshot {0} of {1}", new Object[] {snapshotFile, messageFile});
+            }
+         }
+         catch (final IOException ex)
+         {
+            LOGGER.log(Level.WARNING, ex.toString(), ex);
+            if (null != snapshotFile && snapshotFile.isFile() && !snapshotFile.delete())
+               LOGGER.log(Level.WARNING, "Failed to delete {0}", snapshotFile);
+         }
+      }
+
+      return(reader);
+   }
+
+   /**
+    * Stores a snapshot of the threads and messages loaded by the given
+    * reader on the calling thread.
+    *
+    * <p>
+    *    Failures are logged only, the snapshot is an optimization. Readers
+    *    with lazily loaded threads are not stored, they would have to load
+    *    all messages and open fast anyway.
+    * </p>
+    *
+    * @param messageFile the message file loaded. Must not be {@code null}.
+    * @param contactsDB the contacts database the messages were loaded with
+    *        or {@code null}.
+    * @param reader the reader that successfully loaded {@code messageFile}.
+    *        Must not be {@code null}.
+    */
+   public void store(final File messageFile, final File contactsDB, final IMessageReader reader)
+   {
+      if (m_lDiskBudget > 0 && !(reader instanceof MessageSnapshot) && MessageSnapshot.isLoaded(reader))
+      {
+         try
+         {
+            final File snapshotFile = new File(m_CacheDir, key(messageFile, contactsDB));
+
+            if (!m_CacheDir.isDirectory() && !m_CacheDir.mkdirs())
+               throw new IOException("Failed to create cache directory " + m_CacheDir);
+
+            final File tempFile = File.createTempFile(TEMPFILEPREFIX, SNAPSHOTSUFFIX, m_CacheDir);
+            try
+            {
+               MessageSnapshot.write(reader, tempFile, Math.min(MessageSnapshot.MAXSIZE, m_lDiskBudget));
+
+               try
+               {
+                  Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+               }
+               catch (final AtomicMoveNotSupportedException ex)
+               {
+                  LOGGER.log(Level.FINE, ex.toString(), ex);
+                  Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+               }
+
+               LOGGER.log(Level.INFO, "Stored snapshot {0} of {1}", new Object[] {snapshotFile, messageFile});
+            }
+            finally
+            {
+               if (tempFile.exists() && !tempFile.delete())
+                  LOGGER.log(Level.WARNING, "Failed to delete {0}", tempFile);
+            }
+
+            evict(snapshotFile);
+         }
+         catch (final IOException ex)
+         {
+            LOGGER.log(Level.WARNING, ex.toString(), ex);
+         }
+      }
+   }
+
+   /**
+    * Stores a snapshot of the threads and messages loaded by the given
+    * reader on a background thread.
+    *
+    * <p>
+    *    Returns immediately, so the loaded messages may be shown while the
+    *    snapshot is written. Snapshots are written one after the other in
+    *    the order requested.
+    * </p>
+    *
+    * @param messageFile the message file loaded. Must not be {@code null}.
+    * @param contactsDB the contacts database the messages were loaded with
+    *        or {@code null}.
+    * @param reader the reader that successfully loaded {@code messageFile}.
+    *        Must not be {@code null}.
+    *
+    * @see #store(File, File, IMessageReader)
+    */
+   public void storeLater(final File messageFile, final File contactsDB, final IMessageReader reader)
+   {
+      if (m_lDiskBudget > 0 && !(reader instanceof MessageSnapshot))
+      {
+         STOREEXECUTOR.execute(new Runnable()
+         {
+            @Override
+            public void run()
+            {
+               store(messageFile, contactsDB, reader);
+            }
+         });
+      }
+   }
+
+   /**
+    * Marks a snapshot file as in use as long as the given content is
+    * reachable.
+    */
+   private synchronized void pin(final File snapshotFile, final Object content)
+   {
+      m_Pins.put(snapshotFile.getAbsoluteFile(), new WeakReference<>(content));
+   }
+
+   /**
+    * Determines whether a snapshot file is in use, forgetting snapshots no
+    * longer in use.
+    */
+   private synchronized boolean isPinned(final File snapshotFile)
+   {
+      final File key = snapshotFile.getAbsoluteFile();
+      final WeakReference<Object> pin = m_Pins.get(key);
+      final boolean fPinned = null != pin && null != pin.get();
+
+      if (null != pin && !fPinned)
+         m_Pins.remove(key);
+
+      return(fPinned);
+   }
+
+   /**
+    * Deletes least recently used snapshots until the cache fits into its
+    * disk budget.
+    *
+    * <p>
+    *    Snapshots in use are skipped, so the cache may exceed its budget as
+    *    long as they are.
+    * </p>
+    *
+    * @param keepFile the snapshot just stored, never deleted.
+    */
+   private void evict(final File keepFile)
+   {
+      final File[] aFiles = m_CacheDir.listFiles();
+      if (null != aFiles)
+      {
+         final List<File> snapshotFiles = new ArrayList<>(aFiles.length);
+         final long lNow = System.currentTimeMillis();
+         long lTotal = 0;
+
+         for (final File file : aFiles)
+         {
+            if (file.getName().startsWith(TEMPFILEPREFIX))
+            {
+               // left over by a crashed store
+               if (lNow - file.lastModified() > STALETEMPFILEAGE && !file.delete())
+                  LOGGER.log(Level.WARNING, "Failed to delete {0}", file);
+            }
+            else if (file.getName().endsWith(SNAPSHOTSUFFIX))
+            {
+               snapshotFiles.add(file);
+               lTotal += file.length();
+            }
+         }
+
+         Collections.sort(snapshotFiles, new Comparator<File>()
+         {
+            @Override
+            public int compare(final File file1, final File file2)
+            {
+               return(Long.compare(file1.lastModified(), file2.lastModified()));
+            }
+         });
+
+         for (final File file : snapshotFiles)
+         {
+            if (lTotal > m_lDiskBudget && !file.equals(keepFile) && !isPinned(file))
+            {
+               final long lSize = file.length();
+               if (file.delete())
+               {
+                  lTotal -= lSize;
+                  LOGGER.log(Level.INFO, "Evicted {0} from snapshot cache", file);
+               }
+            }
+         }
+      }
+   }
+
+   private static ExecutorService newStoreExecutor()
+   {
+      final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+      {
+         @Override
+         public Thread newThread(final Runnable runnable)
+         {
+            final Thread thread = new Thread(runnable, "SnapshotCache-store");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return(thread);
+         }
+      });
+      executor.allowCoreThreadTimeOut(true);
+
+      return(executor);
+   }
+
+   private static String key(final File messageFile, final File contactsDB) throws IOException
+   {
+      final MessageDigest digest = ExtractionCache.newDigest();
+
+      ExtractionCache.fingerprint(digest, messageFile);
+      if (null != contactsDB && contactsDB.isFile())
+         ExtractionCache.fingerprint(digest, contactsDB);
+      else
+         digest.update("no contacts".getBytes(StandardCharsets.UTF_8));
+
+      digest.update(ByteBuffer.allocate(4).putInt(MessageSnapshot.VERSION).array());
+
+      return(DatatypeConverter.printHexBinary(digest.digest()) + SNAPSHOTSUFFIX);
+   }
+}
@@ -0,0 +1,155 @@
+/*
+ * $Id$
+ *
+ * File:   StringPool.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:41:55 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of canonical instances of the strings repeated all over a message
+ * file, e.g. addresses, service centers and contact names.
+ *
+ * <p>
+ *    A thread of thousands of messages has a single address and only a few
+ *    service centers, but the parser creates a new string for every
+ *    attribute value read. Readers pass these values through a pool, so all
+ *    messages share one instance of each value. Unlike
+ *    {@link String#intern()} the pool is scoped to one load, a reader
+ *    creates a new pool per load and drops it afterwards. The strings
+ *    remain only referenced by the messages.
+ * </p>
+ *
+ * <p>
+ *    Instances of this class are thread safe, so threads parsed in parallel
+ *    share the pool of their load.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class StringPool
+{
+   private final ConcurrentMap<String, String> m_Strings;
+   private final AtomicLong m_lLookups;
+   private final AtomicLong m_lHits;
+
+   /**
+    * Creates new empty {@code StringPool}.
+    */
+   StringPool()
+   {
+      m_Strings = new ConcurrentHashMap<>(256);
+      m_lLookups = new AtomicLong();
+      m_lHits = new AtomicLong();
+   }
+
+   /**
+    * Get the canonical instance of the given string.
+    *
+    * @param str the string or {@code null}.
+    *
+    * @return the instance equal to {@code str} returned first by this pool
+    *         or {@code null} if {@code str} is {@code null}.
+    */
+   String intern(final String str)
+   {
+      String strCanonical = null;
+
+      if (null != str)
+      {
+         m_lLookups.incrementAndGet();
+
+         strCanonical = m_Strings.get(str);
+         if (null == strCanonical)
+         {
+            strCanonical = m_Strings.putIfAbsent(str, str);
+            if (null == strCanonical)
+               strCanonical = str;
+            else
+               m_lHits.incrementAndGet();
+         }
+         else
+            m_lHits.incrementAndGet();
+      }
+
+      return(strCanonical);
+   }
+
+   /**
+    * Get the number of distinct strings in this pool.
+    *
+    * @return the size.
+    */
+   int size()
+   {
+      return(m_Strings.size());
+   }
+
+   /**
+    * Get the number of strings passed to {@link #intern(java.lang.String)}.
+    *
+    * @return the number of lookups.
+    */
+   long getLookups()
+   {
+      return(m_lLookups.get());
+   }
+
+   /**
+    * Get the number of strings for which an equal instance was already in
+    * the pool, i.e. of copies dropped.
+    *
+    * @return the number of hits.
+    */
+   long getHits()
+   {
+      return(m_lHits.get());
+   }
+
+   /**
+    * Get the fraction of lookups which found an equal instance.
+    *
+    * @return the hit rate between 0 and 1, 0 if nothing was looked up.
+    */
+   double getHitRate()
+   {
+      final long lLookups = m_lLookups.get();
+
+      return(0 == lLookups ? 0.0 : (double)m_lHits.get() / lLookups);
+   }
+
+   /**
+    * Logs the hit rate of this pool.
+    *
+    * @param logger the logger of the reader owning this pool.
+    *        Must not be {@code null}.
+    */
+   void log(final Logger logger)
+   {
+      if (logger.isLoggable(Level.FINE))
+         logger.log(Level.FINE, "String pool: {0} distinct of {1} strings, hit rate {2}%", new Object[] {size(), getLookups(), Math.round(getHitRate() * 1000) / 10.0});
+   }
+}
@@ -0,0 +1,253 @@
+/*
+ * $Id$
+ *
+ * File:   ThreadSliceScanner.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:18:22 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits the character stream of a Titanium Backup message file into the
+ * text of its {@code thread} elements.
+ *
+ * <p>
+ *    The scanner only recognizes as much markup as needed to find thread
+ *    boundaries reliably: comments, {@code CDATA} sections and processing
+ *    instructions are skipped, quoted attribute values of a thread start tag
+ *    are honored. Everything else is left to the XML parser each slice is
+ *    handed to. A thread element not closed before the end of the stream is
+ *    returned as it is, so its parser reports the error.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class ThreadSliceScanner
+{
+   private static final int BUFFERSIZE = 64 * 1024;
+
+   private static final String THREADSTART = "<thread";
+   private static final String THREADEND = "</thread";
+   private static final String COMMENTSTART = "<!--";
+   private static final String COMMENTEND = "-->";
+   private static final String CDATASTART = "<![CDATA[";
+   private static final String CDATAEND = "]]>";
+   private static final String PISTART = "<?";
+   private static final String PIEND = "?>";
+
+   /** Number of characters needed to recognize any markup start. */
+   private static final int LOOKAHEAD = CDATASTART.length();
+
+   private final Reader m_Reader;
+   private final char[] m_acBuffer;
+   private final StringBuilder m_Slice;
+
+   private int m_iPos;
+   private int m_iLimit;
+   private boolean m_fEndOfStream;
+
+   /** Buffer index of the first character of the current slice not yet appended to {@link #m_Slice}, -1 outside a slice. */
+   private int m_iSliceStart;
+
+   /**
+    * Creates new {@code ThreadSliceScanner}.
+    *
+    * @param reader the character stream of the message file.
+    *        Must not be {@code null}.
+    */
+   ThreadSliceScanner(final Reader reader)
+   {
+      m_Reader = reader;
+      m_acBuffer = new char[BUFFERSIZE];
+      m_Slice = new StringBuilder();
+      m_iPos = 0;
+      m_iLimit = 0;
+      m_fEndOfStream = false;
+      m_iSliceStart = -1;
+   }
+
+   /**
+    * Get the text of the next thread element.
+    *
+    * @return the text from the {@code <thread} start tag up to and including
+    *         the {@code </thread>} end tag or {@code null} at the end of the
+    *         stream.
+    *
+    * @throws IOException if reading the stream fails.
+    */
+   String next() throws IOException
+   {
+      String strSlice = null;
+
+      while (null == strSlice && available(1))
+      {
+         while (m_iPos < m_iLimit && m_acBuffer[m_iPos] != '<')
+            m_iPos++;
+
+         if (m_iPos < m_iLimit)
+         {
+            available(LOOKAHEAD);
+
+            if (startsWith(COMMENTSTART))
+               skipPast(COMMENTEND);
+            else if (startsWith(CDATASTART))
+               skipPast(CDATAEND);
+            else if (startsWith(PISTART))
+               skipPast(PIEND);
+            else if (m_iSliceStart < 0 && startsWithTag(THREADSTART))
+            {
+               m_Slice.setLength(0);
+               m_iSliceStart = m_iPos;
+               if (skipStartTag())
+                  strSlice = endSlice();
+            }
+            else if (m_iSliceStart >= 0 && startsWithTag(THREADEND))
+            {
+               skipPast(">");
+               strSlice = endSlice();
+            }
+            else
+               m_iPos++;
+         }
+      }
+
+      if (null == strSlice && m_iSliceStart >= 0)
+         strSlice = endSlice();
+
+      return(strSlice);
+   }
+
+   /**
+    * Makes sure the given number of characters is available in the buffer
+    * from the current position, as far as the stream has them.
+    *
+    * @return {@code true} if at least {@code iCount} characters are
+    *         available.
+    */
+   private boolean available(final int iCount) throws IOException
+   {
+      while (m_iLimit - m_iPos < iCount && !m_fEndOfStream)
+      {
+         if (m_iSliceStart >= 0)
+         {
+            m_Slice.append(m_acBuffer, m_iSliceStart, m_iPos - m_iSliceStart);
+            m_iSliceStart = 0;
+         }
+
+         System.arraycopy(m_acBuffer, m_iPos, m_acBuffer, 0, m_iLimit - m_iPos);
+         m_iLimit -= m_iPos;
+         m_iPos = 0;
+
+         final int iRead = m_Reader.read(m_acBuffer, m_iLimit, m_acBuffer.length - m_iLimit);
+         if (iRead < 0)
+            m_fEndOfStream = true;
+         else
+            m_iLimit += iRead;
+      }
+
+      return(m_iLimit - m_iPos >= iCount);
+   }
+
+   private boolean startsWith(final String strMarkup)
+   {
+      boolean fRet = m_iPos + strMarkup.length() <= m_iLimit;
+
+      for (int i = 0; fRet && i < strMarkup.length(); i++)
+         fRet = m_acBuffer[m_iPos + i] == strMarkup.charAt(i);
+
+      return(fRet);
+   }
+
+   /**
+    * Determine whether the buffer continues with the given tag whose name is
+    * not just the prefix of a longer name.
+    */
+   private boolean startsWithTag(final String strTag)
+   {
+      boolean fRet = startsWith(strTag) && m_iPos + strTag.length() < m_iLimit;
+
+      if (fRet)
+      {
+         final char c = m_acBuffer[m_iPos + strTag.length()];
+         fRet = c == '>' || c == '/' || Character.isWhitespace(c);
+      }
+
+      return(fRet);
+   }
+
+   private void skipPast(final String strMarkup) throws IOException
+   {
+      boolean fFound = false;
+
+      while (!fFound && available(strMarkup.length()))
+      {
+         fFound = startsWith(strMarkup);
+         m_iPos += fFound ? strMarkup.length() : 1;
+      }
+
+      if (!fFound)
+         m_iPos = m_iLimit;
+   }
+
+   /**
+    * Skips a start tag honoring quoted attribute values.
+    *
+    * @return {@code true} if it is an empty element tag.
+    */
+   private boolean skipStartTag() throws IOException
+   {
+      boolean fEmpty = false;
+      boolean fEnd = false;
+      char cQuote = 0;
+      char cPrevious = 0;
+
+      while (!fEnd && available(1))
+      {
+         final char c = m_acBuffer[m_iPos++];
+
+         if (0 != cQuote)
+         {
+            if (c == cQuote)
+               cQuote = 0;
+         }
+         else if (c == '"' || c == '\'')
+            cQuote = c;
+         else if (c == '>')
+         {
+            fEmpty = cPrevious == '/';
+            fEnd = true;
+         }
+
+         cPrevious = c;
+      }
+
+      return(fEmpty);
+   }
+
+   private String endSlice()
+   {
+      m_Slice.append(m_acBuffer, m_iSliceStart, m_iPos - m_iSliceStart);
+      m_iSliceStart = -1;
+
+      return(m_Slice.toString());
+   }
+}
@@ -0,0 +1,190 @@
+/*
+ * $Id$
+ *
+ * File:   TimestampDecoder.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:15:04 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Thread safe decoder of the {@code UTC} timestamps in Titanium Backup
+ * message files, e.g. {@code 2015-01-12T08:43:30.830Z}.
+ *
+ * <p>
+ *    Timestamps of the fixed layout {@code yyyy-MM-dd'T'HH:mm:ss.S'Z'} with
+ *    one to three fraction digits are converted straight to milliseconds
+ *    since the epoch without any allocation. As with the {@code SSS}
+ *    pattern used before, the fraction digits are taken as a number of
+ *    milliseconds. Any other value is handed to a non-lenient
+ *    {@link SimpleDateFormat}, so malformed values are still reported by a
+ *    {@link ParseException}.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class TimestampDecoder
+{
+   private static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+
+   private static final int MINLENGTH = 22;
+   private static final int MAXLENGTH = 24;
+
+   /** First year decoded directly, earlier dates depend on the Julian calendar. */
+   private static final int MINYEAR = 1583;
+
+   private static final long MILLISPERSECOND = 1000L;
+   private static final long MILLISPERMINUTE = 60L * MILLISPERSECOND;
+   private static final long MILLISPERHOUR = 60L * MILLISPERMINUTE;
+   private static final long MILLISPERDAY = 24L * MILLISPERHOUR;
+
+   private static final int[] DAYSINMONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+   private TimestampDecoder()
+   {
+   }
+
+   /**
+    * Decodes a timestamp.
+    *
+    * @param strTimestamp the timestamp. Must not be {@code null}.
+    *
+    * @return the milliseconds since the epoch.
+    *
+    * @throws ParseException if {@code strTimestamp} is not a valid timestamp.
+    */
+   static long decode(final CharSequence strTimestamp) throws ParseException
+   {
+      return(decode(strTimestamp, 0, strTimestamp.length()));
+   }
+
+   /**
+    * Decodes the timestamp in a range of characters.
+    *
+    * @param chars the characters. Must not be {@code null}.
+    * @param iStart index of the first character of the timestamp.
+    * @param iEnd index after the last character of the timestamp.
+    *
+    * @return the milliseconds since the epoch.
+    *
+    * @throws ParseException if the range is not a valid timestamp.
+    */
+   static long decode(final CharSequence chars, final int iStart, final int iEnd) throws ParseException
+   {
+      final long lMillis = decodeFixed(chars, iStart, iEnd);
+
+      return(lMillis != Long.MIN_VALUE ? lMillis : decodeFallback(chars.subSequence(iStart, iEnd).toString()));
+   }
+
+   /**
+    * Decodes the fixed layout.
+    *
+    * @return the milliseconds since the epoch or {@link Long#MIN_VALUE} if
+    *         the range does not match the fixed layout.
+    */
+   private static long decodeFixed(final CharSequence chars, final int iStart, final int iEnd)
+   {
+      long lMillis = Long.MIN_VALUE;
+
+      final int iLength = iEnd - iStart;
+      if (iLength >= MINLENGTH && iLength <= MAXLENGTH
+              && chars.charAt(iStart + 4) == '-' && chars.charAt(iStart + 7) == '-' && chars.charAt(iStart + 10) == 'T'
+              && chars.charAt(iStart + 13) == ':' && chars.charAt(iStart + 16) == ':' && chars.charAt(iStart + 19) == '.'
+              && chars.charAt(iEnd - 1) == 'Z')
+      {
+         final int iYear = digits(chars, iStart, 4);
+         final int iMonth = digits(chars, iStart + 5, 2);
+         final int iDay = digits(chars, iStart + 8, 2);
+         final int iHour = digits(chars, iStart + 11, 2);
+         final int iMinute = digits(chars, iStart + 14, 2);
+         final int iSecond = digits(chars, iStart + 17, 2);
+         final int iMillis = digits(chars, iStart + 20, iLength - 21);
+
+         if (iYear >= MINYEAR && iMonth >= 1 && iMonth <= 12 && iDay >= 1 && iDay <= daysInMonth(iYear, iMonth)
+                 && iHour >= 0 && iHour <= 23 && iMinute >= 0 && iMinute <= 59 && iSecond >= 0 && iSecond <= 59 && iMillis >= 0)
+         {
+            lMillis = daysSinceEpoch(iYear, iMonth, iDay) * MILLISPERDAY + iHour * MILLISPERHOUR + iMinute * MILLISPERMINUTE + iSecond * MILLISPERSECOND + iMillis;
+         }
+      }
+
+      return(lMillis);
+   }
+
+   private static long decodeFallback(final String strTimestamp) throws ParseException
+   {
+      // rare, so a format per call is cheaper than synchronizing a shared one
+      final SimpleDateFormat dateFmt = new SimpleDateFormat(PATTERN);
+      dateFmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+      dateFmt.setLenient(false);
+
+      final ParsePosition pos = new ParsePosition(0);
+      final Date date = dateFmt.parse(strTimestamp, pos);
+      if (null == date || pos.getIndex() != strTimestamp.length())
+         throw new ParseException("Unparseable timestamp: \"" + strTimestamp + "\"", Math.max(pos.getIndex(), pos.getErrorIndex()));
+
+      return(date.getTime());
+   }
+
+   /**
+    * Get the value of a run of decimal digits.
+    *
+    * @return the value or -1 if a character is not a decimal digit.
+    */
+   private static int digits(final CharSequence chars, final int iStart, final int iCount)
+   {
+      int iValue = 0;
+
+      for (int i = iStart; iValue >= 0 && i < iStart + iCount; i++)
+      {
+         final int iDigit = chars.charAt(i) - '0';
+         iValue = iDigit >= 0 && iDigit <= 9 ? iValue * 10 + iDigit : -1;
+      }
+
+      return(iValue);
+   }
+
+   private static int daysInMonth(final int iYear, final int iMonth)
+   {
+      final boolean fLeapYear = (iYear % 4 == 0 && iYear % 100 != 0) || iYear % 400 == 0;
+
+      return(iMonth == 2 && fLeapYear ? 29 : DAYSINMONTH[iMonth - 1]);
+   }
+
+   /**
+    * Get the number of days from 1970-01-01 to the given date of the
+    * proleptic Gregorian calendar.
+    */
+   private static long daysSinceEpoch(final int iYear, final int iMonth, final int iDay)
+   {
+      // years start in March, so the leap day is the last day of a year
+      final int iMarchYear = iMonth <= 2 ? iYear - 1 : iYear;
+      final int iEra = iMarchYear / 400;
+      final int iYearOfEra = iMarchYear - iEra * 400;
+      final int iDayOfYear = (153 * (iMonth + (iMonth > 2 ? -3 : 9)) + 2) / 5 + iDay - 1;
+      final int iDayOfEra = iYearOfEra * 365 + iYearOfEra / 4 - iYearOfEra / 100 + iDayOfYear;
+
+      return(iEra * 146097L + iDayOfEra - 719468L);
+   }
+}
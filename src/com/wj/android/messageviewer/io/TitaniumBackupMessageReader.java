@@ -33,27 +33,33 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
-import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.DatatypeConverter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Loads message {@code xml} files from Titanium Backup folder.
@@ -65,6 +71,39 @@ import org.xml.sax.SAXException;
  * </p>
  *
  * <p>
+ *    The message file is read as a stream of SAX events, each
+ *    {@link MessageThread} is completed when its {@code thread} element
+ *    closes. No document tree is built, so beside the loaded threads memory
+ *    consumption only depends on the size of the largest single thread.
+ * </p>
+ *
+ * <p>
+ *    A validating reader checks the message file against the Titanium
+ *    Backup schema while it is parsed, there is no extra pass over the file.
+ * </p>
+ *
+ * <p>
+ *    A parallel reader which does not validate splits the message file
+ *    into its thread elements and builds the {@link MessageThread}s,
+ *    including base64 decoding and contact lookup, on a fork join pool
+ *    with one worker per processor. The pool is created on first use and
+ *    shared by all readers, so its workers keep their parsers across loads.
+ *    The threads keep the order of the file.
+ * </p>
+ *
+ * <p>
+ *    An incremental load skips all messages older than the watermark of
+ *    their thread right at their start tag, neither their text is captured
+ *    nor are parts decoded or messages built. Threads without new messages
+ *    are dropped.
+ * </p>
+ *
+ * <p>
+ *    Addresses, service centers and contact names are shared by all
+ *    messages of a load through a {@link StringPool}.
+ * </p>
+ *
+ * <p>
  *    Optionally, if a SQLLite contacts database is specified, a
  *    {@link SQLLiteContactsReader} is instantiated and used to query the
  *    contact name from thread address.
@@ -72,15 +111,463 @@ import org.xml.sax.SAXException;
  *
  * @author Werner Jaeger
  */
-public class TitaniumBackupMessageReader implements IMessageReader
+public class TitaniumBackupMessageReader implements IIncrementalMessageReader
 {
    private static final Logger LOGGER = Logger.getLogger(TitaniumBackupMessageReader.class.getName());
 
    private static final String DEFAULTCHARSET = Charset.defaultCharset().name();
 
-   private final SimpleDateFormat m_DateFmt;
+   /** Number of threads parsing in parallel. */
+   private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+   /** Maximum number of thread elements scanned ahead of the merge. */
+   private static final int MAXPENDINGSLICES = 4 * PARALLELISM;
+
+   /** Parser of each pool thread, reused for all thread elements it parses. */
+   private static final ThreadLocal<XMLReader> PARSERS = new ThreadLocal<>();
+
+   /**
+    * Holds the pool parsing thread elements, created when the first
+    * parallel reader parses.
+    */
+   private static final class ParserPool
+   {
+      private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+   }
+
+   /**
+    * Builds message threads from the SAX events of a Titanium Backup
+    * message file.
+    *
+    * <p>
+    *    Only the state of the current thread, message and message part is
+    *    kept. Exceptions raised while converting values are wrapped in a
+    *    {@code SAXException} and unwrapped again in
+    *    {@link TitaniumBackupMessageReader#loadMessages(java.io.InputStream, java.io.File)}
+    *    to preserve the documented error codes.
+    * </p>
+    */
+   private final class MessageFileHandler extends DefaultHandler
+   {
+      private final List<MessageThread> m_Threads;
+      private final IThreadListener m_Listener;
+      private final StringBuilder m_Text;
+      private final List<IMMSMessagePart> m_Parts;
+      private final List<String> m_AddressTypes;
+      private final List<String> m_Addresses;
+
+      private MessageThread m_Thread;
+      private int m_iDepth;
+      private int m_iThreadDepth;
+      private String m_strThreadAddress;
+      private String m_strMessageTag;
+      private IMessage.MessageBox m_MsgBox;
+      private String m_strServiceCenter;
+      private String m_strDate;
+      private String m_strDateSent;
+      private String m_strEncoding;
+      private String m_strSubject;
+      private String m_strAddressType;
+      private String m_strPartContentType;
+      private String m_strPartContentId;
+      private String m_strPartContentLocation;
+      private String m_strPartEncoding;
+      private boolean m_fCapture;
+      private boolean m_fSkip;
+      private int m_iMessages;
+
+      /**
+       * Constructs a new {@code MessageFileHandler}.
+       *
+       * @param threads the list to add completed threads to.
+       *        Must not be {@code null}.
+       * @param listener the listener to notify of each completed thread or
+       *        {@code null}.
+       */
+      MessageFileHandler(final List<MessageThread> threads, final IThreadListener listener)
+      {
+         m_Threads = threads;
+         m_Listener = listener;
+         m_Text = new StringBuilder();
+         m_Parts = new ArrayList<>();
+         m_AddressTypes = new ArrayList<>(2);
+         m_Addresses = new ArrayList<>(2);
+         m_Thread = null;
+         m_iDepth = 0;
+         m_iThreadDepth = 0;
+         m_strMessageTag = null;
+         m_fCapture = false;
+         m_fSkip = false;
+         m_iMessages = 0;
+      }
+
+      /**
+       * Get the list completed threads are added to.
+       *
+       * @return the threads. Never {@code null}.
+       */
+      List<MessageThread> getThreads()
+      {
+         return(m_Threads);
+      }
+
+      /**
+       * Get the number of messages added to the threads.
+       *
+       * @return the number of messages.
+       */
+      int getNumberOfMessages()
+      {
+         return(m_iMessages);
+      }
+
+      @Override
+      public void startElement(final String strUri, final String strLocalName, final String strQName, final Attributes attributes) throws SAXException
+      {
+         final String strTagName = tagName(strLocalName, strQName);
+
+         m_iDepth++;
+
+         if (null == m_Thread)
+         {
+            if ("thread".equals(strTagName))
+            {
+               m_iThreadDepth = m_iDepth;
+               m_strThreadAddress = m_Strings.intern(attribute(attributes, "address"));
+
+               final String strContactName = m_ContactReader == null ? null : m_Strings.intern(m_ContactReader.getContactNameForAddress(m_strThreadAddress.split(";", 2)[0]));
+               m_Thread = new MessageThread(strContactName, m_strThreadAddress);
+            }
+         }
+         else if (null == m_strMessageTag)
+         {
+            // only direct children of a thread are messages
+            if (m_iDepth == m_iThreadDepth + 1)
+            {
+               try
+               {
+                  startMessage(strTagName, attributes);
+               }
+               catch (final ParseException ex)
+               {
+                  throw new SAXException(ex);
+               }
+            }
+         }
+         else if ("mms".equals(m_strMessageTag) && !m_fSkip)
+         {
+            switch(strTagName)
+            {
+               case "address":
+                  m_strAddressType = attribute(attributes, "type");
+                  startCapture();
+                  break;
+
+               case "part":
+                  m_strPartContentType     = attribute(attributes, "contentType");
+                  m_strPartContentId       = attribute(attributes, "contentId");
+                  m_strPartContentLocation = attribute(attributes, "contentLocation");
+                  m_strPartEncoding        = attribute(attributes, "encoding");
+                  startCapture();
+                  break;
+
+               default:
+                  break;
+            }
+         }
+      }
+
+      @Override
+      public void endElement(final String strUri, final String strLocalName, final String strQName) throws SAXException
+      {
+         final String strTagName = tagName(strLocalName, strQName);
+
+         try
+         {
+            if (null != m_strMessageTag)
+            {
+               if (m_iDepth == m_iThreadDepth + 1)
+               {
+                  endMessage();
+                  LoadCancellation.checkpoint();
+               }
+               else if ("mms".equals(m_strMessageTag) && !m_fSkip)
+               {
+                  switch(strTagName)
+                  {
+                     case "address":
+                        m_AddressTypes.add(m_strAddressType);
+                        m_Addresses.add(m_Strings.intern(endCapture()));
+                        break;
+
+                     case "part":
+                        addPart(endCapture());
+                        break;
+
+                     default:
+                        break;
+                  }
+               }
+            }
+            else if (null != m_Thread && m_iDepth == m_iThreadDepth)
+            {
+               if (null == m_Watermarks || 0 < m_Thread.getMessageCount())
+               {
+                  m_Threads.add(m_Thread);
+                  if (null != m_Listener)
+                     m_Listener.threadLoaded(m_Thread);
+               }
+
+               m_Thread = null;
+               LoadCancellation.checkpoint();
+            }
+         }
+         catch (final ParseException | IOException ex)
+         {
+            throw new SAXException(ex);
+         }
+         finally
+         {
+            m_iDepth--;
+         }
+      }
+
+      @Override
+      public void characters(final char[] acCh, final int iStart, final int iLength)
+      {
+         if (m_fCapture)
+            m_Text.append(acCh, iStart, iLength);
+      }
+
+      private void startMessage(final String strTagName, final Attributes attributes) throws ParseException
+      {
+         final String strMsgBox = attribute(attributes, "msgBox");
+
+         m_MsgBox = IMessage.MessageBox.fromString(strMsgBox);
+         if (null != m_MsgBox)
+         {
+            switch(strTagName)
+            {
+               case "sms":
+               case "mms":
+                  m_strMessageTag    = strTagName;
+                  m_strServiceCenter = m_Strings.intern(attribute(attributes, "serviceCenter"));
+                  m_strDate          = attribute(attributes, "date");
+                  m_strDateSent      = attribute(attributes, "dateSent");
+                  m_strEncoding      = attribute(attributes, "encoding");
+                  m_strSubject       = attribute(attributes, "subject");
+                  m_Parts.clear();
+                  m_AddressTypes.clear();
+                  m_Addresses.clear();
+
+                  // older than the last load, nothing is captured or built
+                  m_fSkip = null != m_Watermarks && m_Watermarks.isOlder(m_strThreadAddress, messageDate());
+
+                  if ("sms".equals(strTagName) && !m_fSkip)
+                     startCapture();
+                  break;
+
+               default:
+                  LOGGER.log(Level.WARNING, "Unexpected tagname: ''{0}''", strTagName);
+                  break;
+            }
+         }
+         else
+            LOGGER.log(Level.WARNING, "Unknown message box type: ''{0}''", strMsgBox);
+      }
+
+      private void endMessage() throws ParseException, UnsupportedEncodingException
+      {
+         final IMessage message;
+
+         if (m_fSkip)
+            message = null;
+         else if ("sms".equals(m_strMessageTag))
+            message = toMessage(endCapture());
+         else
+            message = toMMSMessage();
+
+         if (null != message && (null == m_Watermarks || !m_Watermarks.isKnown(m_strThreadAddress, message)))
+         {
+            m_Thread.addMessage(message);
+            m_iMessages++;
+         }
+
+         m_strMessageTag = null;
+         m_fSkip = false;
+         m_Parts.clear();
+      }
+
+      /**
+       * Get the date of the current message as used by
+       * {@link #toMessage(java.lang.String)} and {@link #toMMSMessage()}.
+       */
+      private long messageDate() throws ParseException
+      {
+         final long lDate;
+
+         if ("sms".equals(m_strMessageTag) && !m_strDateSent.trim().isEmpty())
+            lDate = TimestampDecoder.decode(m_strDateSent);
+         else
+            lDate = TimestampDecoder.decode(m_strDate);
+
+         return(lDate);
+      }
+
+      private IMessage toMessage(final String strText) throws ParseException, UnsupportedEncodingException
+      {
+         final IMessage msg;
+
+         if (!strText.isEmpty())
+         {
+            final Date date;
+            if (!m_strDateSent.trim().isEmpty())
+               date = new Date(TimestampDecoder.decode(m_strDateSent));
+            else
+               date = new Date(TimestampDecoder.decode(m_strDate));
+
+            final IMessage.Encoding encoding = IMessage.Encoding.fromString(m_strEncoding);
+
+            final String strBody;
+            if (encoding == IMessage.Encoding.BAS64)
+               strBody = new String(DatatypeConverter.parseBase64Binary(strText), DEFAULTCHARSET);
+            else
+               strBody = strText;
+
+            msg = new SMSMessage(m_strServiceCenter, m_strThreadAddress, date, strBody, m_MsgBox);
+         }
+         else
+            msg = null;
+
+         return(msg);
+      }
+
+      private IMessage toMMSMessage() throws ParseException
+      {
+         final MMSMessage msg;
+
+         final String strAddress = retrieveAddress();
+         if (null != strAddress)
+         {
+            final List<IMMSMessagePart> parts = new ArrayList<>(m_Parts);
+
+            final Date date = new Date(TimestampDecoder.decode(m_strDate));
+
+            if (hasSMILPart(parts))
+               msg = new SMILMessage(parts, m_strServiceCenter, strAddress, date, m_MsgBox);
+            else
+               msg = new MMSMessage(parts, m_strServiceCenter, strAddress, date, m_MsgBox);
+
+            msg.setSubject(m_strSubject);
+         }
+         else
+            msg = null;
+
+         return(msg);
+      }
+
+      private String retrieveAddress()
+      {
+         String strAddress = null;
+
+         if (m_Addresses.size() == 2)
+         {
+            for (int i = 0; i < m_Addresses.size(); i++)
+            {
+               final String strAddressType = m_AddressTypes.get(i);
+
+               if (strAddressType.equals("from") && m_MsgBox == IMessage.MessageBox.INBOX)
+                  strAddress = m_Addresses.get(i);
+               else if (strAddressType.equals("to") && m_MsgBox == IMessage.MessageBox.SENT)
+                  strAddress = m_Addresses.get(i);
+            }
+         }
+
+         return(strAddress);
+      }
+
+      private void addPart(final String strContent) throws UnsupportedEncodingException
+      {
+         final IMessage.Encoding encoding = IMessage.Encoding.fromString(m_strPartEncoding);
+
+         if (null != encoding)
+         {
+            final byte[] abContent;
+            if (encoding == IMessage.Encoding.BAS64)
+               abContent = DatatypeConverter.parseBase64Binary(strContent);
+            else
+               abContent = strContent.getBytes(DEFAULTCHARSET);
+
+            final IMMSMessagePart.ContentType contentType = IMMSMessagePart.ContentType.fromString(m_strPartContentType);
+
+            if (null != contentType)
+            {
+               final IMMSMessagePart messagePart = contentType.newMessagePart(contentType, m_strPartContentId, m_strPartContentLocation, abContent, DEFAULTCHARSET);
+               if (null != messagePart)
+                  m_Parts.add(messagePart);
+               else
+                  LOGGER.log(Level.WARNING, "Failed to instantiate message part for content typ: ''{0}''", m_strPartContentType);
+            }
+            else
+               LOGGER.log(Level.WARNING, "Unknown content typ: ''{0}''", m_strPartContentType);
+         }
+         else
+            LOGGER.log(Level.WARNING, "Unknown character encoding: ''{0}''", m_strPartEncoding);
+      }
+
+      private void startCapture()
+      {
+         m_Text.setLength(0);
+         m_fCapture = true;
+      }
+
+      private String endCapture()
+      {
+         final String strText = m_Text.toString();
+
+         m_Text.setLength(0);
+         m_fCapture = false;
+
+         return(strText);
+      }
+   }
+
+   /**
+    * Parses the text of a single thread element.
+    */
+   private final class SliceParser implements Callable<MessageFileHandler>
+   {
+      private final String m_strSlice;
+
+      SliceParser(final String strSlice)
+      {
+         m_strSlice = strSlice;
+      }
+
+      @Override
+      public MessageFileHandler call() throws ParserConfigurationException, SAXException, IOException
+      {
+         XMLReader parser = PARSERS.get();
+         if (null == parser)
+         {
+            parser = MessageFileValidator.newXMLReader();
+            PARSERS.set(parser);
+         }
+
+         final MessageFileHandler handler = new MessageFileHandler(new ArrayList<MessageThread>(1), null);
+         MessageFileValidator.parse(parser, new InputSource(new StringReader(m_strSlice)), handler);
+
+         return(handler);
+      }
+   }
+
+   private final boolean m_fValidating;
+   private final boolean m_fParallel;
    private final List<MessageThread> m_ThreadList;
    private SQLLiteContactsReader m_ContactReader;
+   private File m_ExtractedContactsDB;
+   private Watermarks m_Watermarks;
+   private StringPool m_Strings;
    private int m_iNumberOfMessages;
 
    /**
@@ -88,11 +575,38 @@ public class TitaniumBackupMessageReader implements IMessageReader
     */
    public TitaniumBackupMessageReader()
    {
-      m_DateFmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"); // e.g. 2015-01-12T08:43:30.830Z
+      this(false);
+   }
+
+   /**
+    * Constructs a new {@code TitaniumBackupMessageReader}.
+    *
+    * @param fValidating if {@code true} message files are validated against
+    *        the Titanium Backup schema while they are parsed.
+    */
+   public TitaniumBackupMessageReader(final boolean fValidating)
+   {
+      this(fValidating, false);
+   }
+
+   /**
+    * Constructs a new {@code TitaniumBackupMessageReader}.
+    *
+    * @param fValidating if {@code true} message files are validated against
+    *        the Titanium Backup schema while they are parsed.
+    * @param fParallel if {@code true} the threads of message files not
+    *        validated are parsed in parallel.
+    */
+   public TitaniumBackupMessageReader(final boolean fValidating, final boolean fParallel)
+   {
+      m_fValidating = fValidating;
+      m_fParallel = fParallel;
       m_ThreadList = new ArrayList<>();
       m_ContactReader = null;
+      m_ExtractedContactsDB = null;
+      m_Watermarks = null;
+      m_Strings = null;
       m_iNumberOfMessages = 0;
-      m_DateFmt.setTimeZone(TimeZone.getTimeZone("GMT"));
    }
 
    /**
@@ -104,10 +618,58 @@ public class TitaniumBackupMessageReader implements IMessageReader
     *
     * @return the error code -3 meaning contact database file not found,
     *         0 meaning success, 1 {@code is} == {@code null}, 2
-    *         invalid XML and 3 other reading problems.
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
     */
    @Override
    public int loadMessages(final InputStream is, final File contactsDB)
+   {
+      return(loadMessages(is, contactsDB, null));
+   }
+
+   /**
+    * Reads a message file as stored from the Titanium Backup application,
+    * reporting each thread as soon as its end tag was read.
+    *
+    * @param is the message file input stream to read from.
+    *        Must not be {@code null}.
+    * @param contactsDB the SQLLite contact database file or {@code null}.
+    * @param listener the listener to notify of each completed thread or
+    *        {@code null}.
+    *
+    * @return the error code -3 meaning contact database file not found,
+    *         0 meaning success, 1 {@code is} == {@code null}, 2
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   @Override
+   public int loadMessages(final InputStream is, final File contactsDB, final IThreadListener listener)
+   {
+      return(load(is, contactsDB, listener, null));
+   }
+
+   /**
+    * Reads a message file as stored from the Titanium Backup application,
+    * loading only the messages not covered by the given watermarks.
+    *
+    * @param is the message file input stream to read from.
+    *        Must not be {@code null}.
+    * @param contactsDB the SQLLite contact database file or {@code null}.
+    * @param watermarks the watermarks of the messages loaded before.
+    *        Must not be {@code null}.
+    *
+    * @return the error code -3 meaning contact database file not found,
+    *         0 meaning success, 1 {@code is} == {@code null}, 2
+    *         invalid XML, 3 other reading problems and 4 loading was
+    *         cancelled.
+    */
+   @Override
+   public int loadNewMessages(final InputStream is, final File contactsDB, final Watermarks watermarks)
+   {
+      return(load(is, contactsDB, null, watermarks));
+   }
+
+   private int load(final InputStream is, final File contactsDB, final IThreadListener listener, final Watermarks watermarks)
    {
       int iError = 0;
 
@@ -115,12 +677,12 @@ public class TitaniumBackupMessageReader implements IMessageReader
       {
          m_ThreadList.clear();
          m_iNumberOfMessages = 0;
+         m_Watermarks = watermarks;
+         m_Strings = new StringPool();
 
          if (null != contactsDB)
          {
-            if (null == m_ContactReader)
-               instantiateContactReader(contactsDB);
-
+            instantiateContactReader(contactsDB);
             iError = (m_ContactReader == null ? -3 : 0);
          }
 
@@ -130,90 +692,64 @@ public class TitaniumBackupMessageReader implements IMessageReader
             {
                final Reader reader = new InputStreamReader(is, DEFAULTCHARSET);
 
-               final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-               final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-               final Document doc = dBuilder.parse(new InputSource(reader));
-
-               doc.getDocumentElement().normalize();
-
-               final Element docEle = doc.getDocumentElement();
-
-               final NodeList threads = docEle.getElementsByTagName("thread");
-
-               if ((threads != null) && (threads.getLength() > 0))
+               if (m_fParallel && !m_fValidating)
+                  parseParallel(reader, listener);
+               else
                {
-                  for (int i = 0; i < threads.getLength(); i++)
-                  {
-                     if (Node.ELEMENT_NODE == threads.item(i).getNodeType())
-                     {
-                        final Element threadElement = (Element)threads.item(i);
-                        final String strAddress = threadElement.getAttribute("address");
-
-                        final String strContactName = m_ContactReader == null ? null : m_ContactReader.getContactNameForAddress(strAddress.split(";", 2)[0]);
-                        final MessageThread thread = new MessageThread(strContactName, strAddress);
-                        final NodeList messages = threadElement.getChildNodes();
-
-                        for (int j = 0; j < messages.getLength(); j++)
-                        {
-                           if (Node.ELEMENT_NODE == messages.item(j).getNodeType())
-                           {
-                              final Element             messageElement   = (Element)messages.item(j);
-                              final String              strTagName       = messageElement.getTagName();
-                              final String              strServiceCenter = messageElement.getAttribute("serviceCenter");
-                              final String              strMsgBox        = messageElement.getAttribute("msgBox");
-                              final IMessage.MessageBox msgBox           = IMessage.MessageBox.fromString(strMsgBox);
-
-                              if (null != msgBox)
-                              {
-                                 final IMessage message;
-                                 switch(strTagName)
-                                 {
-                                    case "sms":
-                                       message = elementToMessage(msgBox, strServiceCenter, strAddress, messageElement);
-                                       break;
-
-                                    case "mms":
-                                       message = elementToMMSMessage(msgBox, strServiceCenter, messageElement);
-                                       break;
-
-                                    default:
-                                       LOGGER.log(Level.WARNING, "Unexpected tagname: ''{0}''", strTagName);
-                                       message = null;
-                                 }
-
-                                 if (null != message)
-                                 {
-                                    thread.addMessage(message);
-                                    m_iNumberOfMessages++;
-                                 }
-                              }
-                              else
-                                 LOGGER.log(Level.WARNING, "Unknown message box type: ''{0}''", strMsgBox);
-                           }
-   //                        else
-   //                           LOGGER.log(Level.WARNING, "Unexpected non message ELEMENT_NODE {0}", messages.item(j).getNodeName());
-
-                        }
-                        m_ThreadList.add(thread);
-                     }
-   //                  else
-   //                     LOGGER.log(Level.WARNING, "Unexpected non thread ELEMENT_NODE {0}", threads.item(i).getNodeName());
-                  }
+                  final MessageFileHandler handler = new MessageFileHandler(m_ThreadList, listener);
 
-                  iError = 0;
+                  MessageFileValidator.parse(new InputSource(reader), handler, m_fValidating ? MessageFileType.TITANIUM : null);
+                  m_iNumberOfMessages = handler.getNumberOfMessages();
                }
             }
             catch (SAXException ex)
             {
-               LOGGER.log(Level.SEVERE, ex.toString(), ex);
-               iError = 2;
+               if (LoadCancellation.isCancellation(ex))
+               {
+                  LOGGER.log(Level.INFO, ex.toString());
+                  iError = LoadCancellation.CANCELLED;
+               }
+               else
+               {
+                  LOGGER.log(Level.SEVERE, ex.toString(), ex);
+
+                  if (ex.getException() instanceof ParseException || ex.getException() instanceof IOException)
+                     iError = 3;
+                  else
+                     iError = 2;
+               }
             }
-            catch (ParserConfigurationException | ParseException | IOException ex)
+            catch (ParserConfigurationException | IOException ex)
             {
-               LOGGER.log(Level.SEVERE, ex.toString(), ex);
-               iError = 3;
+               if (LoadCancellation.isCancellation(ex))
+               {
+                  LOGGER.log(Level.INFO, ex.toString());
+                  iError = LoadCancellation.CANCELLED;
+               }
+               else
+               {
+                  LOGGER.log(Level.SEVERE, ex.toString(), ex);
+                  iError = 3;
+               }
             }
          }
+
+         if (null != m_ContactReader)
+         {
+            // names are resolved while parsing, the database is not kept for other files
+            m_ContactReader.close();
+            m_ContactReader = null;
+         }
+
+         if (null != m_ExtractedContactsDB)
+         {
+            ExtractionCache.getDefault().release(m_ExtractedContactsDB);
+            m_ExtractedContactsDB = null;
+         }
+
+         m_Strings.log(LOGGER);
+         m_Strings = null;
+         m_Watermarks = null;
       }
       else
          iError = 1;
@@ -243,153 +779,144 @@ public class TitaniumBackupMessageReader implements IMessageReader
       return(m_iNumberOfMessages);
    }
 
-   private IMessage elementToMessage(final IMessage.MessageBox msgBox, final String strServiceCenter, final String strAddress, final Element element) throws ParseException, UnsupportedEncodingException
+   /**
+    * Parses the thread elements of a message file in parallel.
+    *
+    * <p>
+    *    A {@link ThreadSliceScanner} splits the stream into thread elements
+    *    on the calling thread, each is parsed by a task of a fork join pool
+    *    into its {@code MessageThread}. The results are merged in the order
+    *    of the file. At most {@link #MAXPENDINGSLICES} slices are kept in
+    *    memory at once.
+    * </p>
+    *
+    * <p>
+    *    Exceptions of a task are rethrown as if they had been raised by a
+    *    sequential parse. The listener is notified on the calling thread
+    *    while merging. Tasks still pending when parsing fails or is
+    *    cancelled are cancelled too.
+    * </p>
+    */
+   private void parseParallel(final Reader reader, final IThreadListener listener) throws SAXException, ParserConfigurationException, IOException
    {
-      final IMessage msg;
+      final ForkJoinPool pool = ParserPool.POOL;
+      final Deque<ForkJoinTask<MessageFileHandler>> pending = new ArrayDeque<>(MAXPENDINGSLICES);
 
-      if (element.hasChildNodes())
+      try
       {
-         if (element.getFirstChild().getNodeType() == Node.TEXT_NODE)
+         final ThreadSliceScanner scanner = new ThreadSliceScanner(reader);
+         int iNumberOfMessages = 0;
+
+         for (String strSlice = scanner.next(); null != strSlice; strSlice = scanner.next())
          {
-            final String strDateSent = element.getAttribute("dateSent");
-            final Date date;
-            if (!strDateSent.trim().isEmpty())
-               date = m_DateFmt.parse(strDateSent);
-            else
-               date = m_DateFmt.parse(element.getAttribute("date"));
+            LoadCancellation.checkpoint();
+            pending.add(pool.submit(new SliceParser(strSlice)));
 
-            final IMessage.Encoding encoding = IMessage.Encoding.fromString(element.getAttribute("encoding"));
+            if (pending.size() >= MAXPENDINGSLICES)
+               iNumberOfMessages += merge(pending.remove(), listener);
+         }
 
-            final String strBody;
-            if (encoding == IMessage.Encoding.BAS64)
-               strBody = new String(DatatypeConverter.parseBase64Binary(element.getFirstChild().getNodeValue()), DEFAULTCHARSET);
-            else
-               strBody = element.getFirstChild().getNodeValue();
+         while (!pending.isEmpty())
+            iNumberOfMessages += merge(pending.remove(), listener);
 
-            msg = new SMSMessage(strServiceCenter, strAddress, date, strBody, msgBox);
-         }
-         else
-            msg = null;
+         m_iNumberOfMessages = iNumberOfMessages;
+      }
+      finally
+      {
+         for (final ForkJoinTask<MessageFileHandler> task : pending)
+            task.cancel(true);
       }
-      else
-         msg = null;
-
-      return(msg);
    }
 
-   private IMessage elementToMMSMessage(final IMessage.MessageBox msgBox, final String strServiceCenter, final Element element) throws ParseException, UnsupportedEncodingException
+   /**
+    * Waits for a parse task, adds its thread to the thread list and notifies
+    * the listener.
+    *
+    * @return the number of messages of the thread.
+    */
+   private int merge(final ForkJoinTask<MessageFileHandler> task, final IThreadListener listener) throws SAXException, ParserConfigurationException, IOException
    {
-      final MMSMessage msg;
+      final MessageFileHandler handler;
 
-      final String strAddress = retrieveAddress(msgBox, element);
-      if (null != strAddress)
+      try
       {
-         final List<IMMSMessagePart> parts = retrieveParts(element);
-
-         if (hasSMILPart(parts))
-         {
-            msg = new SMILMessage(parts, strServiceCenter, strAddress, m_DateFmt.parse(element.getAttribute("date")), msgBox);
-            msg.setSubject(element.getAttribute("subject"));
-         }
+         handler = task.get();
+      }
+      catch (final InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException(ex.toString());
+      }
+      catch (final ExecutionException ex)
+      {
+         final Throwable cause = ex.getCause();
+
+         if (cause instanceof SAXException)
+            throw (SAXException)cause;
+         else if (cause instanceof ParserConfigurationException)
+            throw (ParserConfigurationException)cause;
+         else if (cause instanceof IOException)
+            throw (IOException)cause;
+         else if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         else if (cause instanceof Error)
+            throw (Error)cause;
          else
-         {
-            msg = new MMSMessage(parts, strServiceCenter, strAddress, m_DateFmt.parse(element.getAttribute("date")), msgBox);
-            msg.setSubject(element.getAttribute("subject"));
-         }
+            throw new IOException(cause);
+      }
+
+      m_ThreadList.addAll(handler.getThreads());
+      if (null != listener)
+      {
+         for (final MessageThread thread : handler.getThreads())
+            listener.threadLoaded(thread);
       }
-      else
-         msg = null;
 
-      return(msg);
+      return(handler.getNumberOfMessages());
    }
 
    private boolean instantiateContactReader(final File contactsDB)
    {
       if (null != contactsDB)
       {
-         if (contactsDB.getName().endsWith(".tar.gz") || contactsDB.getName().endsWith("tar"))
+         if ((contactsDB.getName().endsWith(".tar.gz") || contactsDB.getName().endsWith("tar")) && InMemorySQLite.isEnabled())
+         {
+            try
+            {
+               final Connection connection = InMemorySQLite.openFromArchive(contactsDB, "contacts2.db");
+               if (null != connection)
+                  m_ContactReader = new SQLLiteContactsReader(connection, true);
+            }
+            catch (final IOException | ArchiveException | SQLException ex)
+            {
+               LOGGER.log(Level.SEVERE, ex.toString(), ex);
+            }
+         }
+         else if (contactsDB.getName().endsWith(".tar.gz") || contactsDB.getName().endsWith("tar"))
          {
-            final String strTempDir = System.getProperty("java.io.tmpdir");
-            final File contactsTempDir = new File(strTempDir, "titaniumBackupMessageViewerContacts");
-            final File extractedContactsDB = ExtractTarGz.extractTarGzAndFindFirst(contactsDB, contactsTempDir, "contacts2.db");
+            // pinned in the cache until the contacts are no longer needed
+            m_ExtractedContactsDB = ExtractionCache.getDefault().extractFirst(contactsDB, "contacts2.db");
 
-            if (null != extractedContactsDB)
-               m_ContactReader = new SQLLiteContactsReader(extractedContactsDB);
+            if (null != m_ExtractedContactsDB)
+               m_ContactReader = new SQLLiteContactsReader(m_ExtractedContactsDB, true);
          }
          else if (contactsDB.getName().endsWith(".db"))
-            m_ContactReader = new SQLLiteContactsReader(contactsDB);
+            m_ContactReader = new SQLLiteContactsReader(contactsDB, true);
       }
 
       return(null != m_ContactReader);
    }
 
-   private static String retrieveAddress(final IMessage.MessageBox msgBox, final Element element)
+   private static String tagName(final String strLocalName, final String strQName)
    {
-      String strAddress = null;
-
-      final NodeList address = element.getElementsByTagName("address");
-      if (null != address && address.getLength() == 2)
-      {
-         for (int i = 0; i < address.getLength(); i++)
-         {
-            final Element addressElement = (Element)address.item(i);
-            final String strAddressType = addressElement.getAttribute("type");
-
-            if (strAddressType.equals("from") && msgBox == IMessage.MessageBox.INBOX)
-               strAddress = addressElement.getFirstChild().getNodeValue();
-            else if (strAddressType.equals("to") && msgBox == IMessage.MessageBox.SENT)
-               strAddress = addressElement.getFirstChild().getNodeValue();
-         }
-      }
-
-      return(strAddress);
+      return(null == strLocalName || strLocalName.isEmpty() ? strQName : strLocalName);
    }
 
-   private static List<IMMSMessagePart> retrieveParts(final Element element) throws UnsupportedEncodingException
+   private static String attribute(final Attributes attributes, final String strName)
    {
-      final List<IMMSMessagePart> partsRet = new ArrayList<>();
-
-      final NodeList parts = element.getElementsByTagName("part");
-
-      if (null != parts)
-      {
-         for (int i = 0; i < parts.getLength(); i++)
-         {
-            final Element partElement        = (Element)parts.item(i);
-            final String  strContentType     = partElement.getAttribute("contentType");
-            final String  strContentId       = partElement.getAttribute("contentId");
-            final String  strContentLocation = partElement.getAttribute("contentLocation");
-            final String  strEncoding        = partElement.getAttribute("encoding");
-
-            final IMessage.Encoding encoding = IMessage.Encoding.fromString(strEncoding);
-
-            if (null != encoding)
-            {
-               final byte[] abContent;
-               if (encoding == IMessage.Encoding.BAS64)
-                  abContent = DatatypeConverter.parseBase64Binary(partElement.getTextContent());
-               else
-                  abContent = partElement.getTextContent().getBytes(DEFAULTCHARSET);
-
-               final IMMSMessagePart.ContentType contentType = IMMSMessagePart.ContentType.fromString(strContentType);
-
-               if (null != contentType)
-               {
-                  final IMMSMessagePart messagePart = contentType.newMessagePart(contentType, strContentId, strContentLocation, abContent, DEFAULTCHARSET);
-                  if (null != messagePart)
-                     partsRet.add(messagePart);
-                  else
-                     LOGGER.log(Level.WARNING, "Failed to instantiate message part for content typ: ''{0}''", strContentType);
-               }
-               else
-                  LOGGER.log(Level.WARNING, "Unknown content typ: ''{0}''", strContentType);
-            }
-            else
-               LOGGER.log(Level.WARNING, "Unknown character encoding: ''{0}''", strEncoding);
-         }
-      }
+      final String strValue = attributes.getValue(strName);
 
-      return(partsRet);
+      return(null == strValue ? "" : strValue);
    }
 
    private static boolean hasSMILPart(final List<IMMSMessagePart> parts)
@@ -407,4 +934,4 @@ public class TitaniumBackupMessageReader implements IMessageReader
 
       return(fRet);
    }
-}
\ No newline at end of file
+}
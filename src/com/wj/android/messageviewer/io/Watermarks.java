@@ -0,0 +1,243 @@
+/*
+ * $Id$
+ *
+ * File:   Watermarks.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:37:19 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.MessageThread;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * High-water marks of the messages loaded so far, one per thread address.
+ *
+ * <p>
+ *    The watermark of a thread is the date of its newest message together
+ *    with the fingerprints of the messages of exactly this date. Backups
+ *    are append mostly, so a newer backup of the same device only needs
+ *    the messages above the watermarks: an {@link IIncrementalMessageReader}
+ *    skips all messages older than the watermark of their thread without
+ *    building them, messages of the watermark date are only kept if their
+ *    fingerprint is unknown.
+ * </p>
+ *
+ * <p>
+ *    Messages added to a backup with a date older than the watermark of
+ *    their thread are therefore not found by an incremental load.
+ * </p>
+ *
+ * <p>
+ *    Instances are read concurrently while loading but must not be
+ *    modified, i.e. {@link #append(java.util.List, com.wj.android.messageviewer.message.MessageThread[])}
+ *    must not be called, at the same time.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class Watermarks
+{
+   private static final class Watermark
+   {
+      private long m_lDate;
+      private final Set<Long> m_Fingerprints;
+
+      private Watermark()
+      {
+         m_lDate = Long.MIN_VALUE;
+         m_Fingerprints = new HashSet<>(2);
+      }
+
+      private void advance(final IMessage msg)
+      {
+         final long lDate = date(msg);
+
+         if (lDate > m_lDate)
+         {
+            m_lDate = lDate;
+            m_Fingerprints.clear();
+         }
+
+         if (lDate == m_lDate)
+            m_Fingerprints.add(msg.fingerprint());
+      }
+   }
+
+   private final Map<String, Watermark> m_Watermarks;
+
+   private Watermarks()
+   {
+      m_Watermarks = new HashMap<>();
+   }
+
+   /**
+    * Creates the watermarks of the given threads.
+    *
+    * <p>
+    *    Messages of lazily loaded threads are loaded.
+    * </p>
+    *
+    * @param aThreads the threads loaded so far. Must not be {@code null}.
+    *
+    * @return the watermarks. Never {@code null}.
+    */
+   public static Watermarks of(final MessageThread[] aThreads)
+   {
+      final Watermarks watermarks = new Watermarks();
+
+      for (final MessageThread thread : aThreads)
+      {
+         for (final IMessage msg : thread.getMessages())
+            watermarks.watermark(thread.getAddress()).advance(msg);
+      }
+
+      return(watermarks);
+   }
+
+   /**
+    * Determines whether a message of the given date is older than the
+    * watermark of the given thread, i.e. may be skipped without building
+    * it.
+    *
+    * @param strAddress the address of the thread. Must not be {@code null}.
+    * @param lDate the message date in milliseconds.
+    *
+    * @return {@code true} if the message is older than the watermark.
+    */
+   public boolean isOlder(final String strAddress, final long lDate)
+   {
+      final Watermark watermark = m_Watermarks.get(strAddress);
+
+      return(null != watermark && lDate < watermark.m_lDate);
+   }
+
+   /**
+    * Determines whether the given message of the given thread was loaded
+    * before.
+    *
+    * @param strAddress the address of the thread. Must not be {@code null}.
+    * @param msg the message to check. Must not be {@code null}.
+    *
+    * @return {@code true} if the message is older than the watermark or is
+    *         of the watermark date and its fingerprint is known.
+    */
+   public boolean isKnown(final String strAddress, final IMessage msg)
+   {
+      final Watermark watermark = m_Watermarks.get(strAddress);
+      final boolean fKnown;
+
+      if (null != watermark)
+      {
+         final long lDate = date(msg);
+         fKnown = lDate < watermark.m_lDate || (lDate == watermark.m_lDate && watermark.m_Fingerprints.contains(msg.fingerprint()));
+      }
+      else
+         fKnown = false;
+
+      return(fKnown);
+   }
+
+   /**
+    * Appends the messages not known yet to the threads of the same address
+    * and advances the watermarks.
+    *
+    * <p>
+    *    Threads of an address not loaded before are added to the end of the
+    *    given list. Messages already known are dropped, so the threads of a
+    *    full load may be appended as well as those of an incremental load.
+    *    Messages of the date of a message of the thread are dropped by the
+    *    thread and not counted.
+    * </p>
+    *
+    * @param threads the threads loaded so far, modified in place.
+    *        Must not be {@code null}.
+    * @param aNewThreads the threads loaded from a newer backup.
+    *        Must not be {@code null}.
+    *
+    * @return the number of messages appended.
+    */
+   public int append(final List<MessageThread> threads, final MessageThread[] aNewThreads)
+   {
+      final Map<String, MessageThread> threadMap = new HashMap<>(threads.size() * 2);
+      for (final MessageThread thread : threads)
+         threadMap.put(thread.getAddress(), thread);
+
+      int iAppended = 0;
+
+      for (final MessageThread newThread : aNewThreads)
+      {
+         final List<IMessage> newMessages = new ArrayList<>();
+         for (final IMessage msg : newThread.getMessages())
+         {
+            if (!isKnown(newThread.getAddress(), msg))
+               newMessages.add(msg);
+         }
+
+         if (!newMessages.isEmpty())
+         {
+            MessageThread thread = threadMap.get(newThread.getAddress());
+            if (null == thread)
+            {
+               thread = new MessageThread(newThread.getName(), newThread.getAddress());
+               threadMap.put(thread.getAddress(), thread);
+               threads.add(thread);
+            }
+            else
+               thread.prefetch();
+
+            final int iCount = thread.getMessageCount();
+            final Watermark watermark = watermark(thread.getAddress());
+            for (final IMessage msg : newMessages)
+            {
+               thread.addMessage(msg);
+               watermark.advance(msg);
+            }
+
+            iAppended += thread.getMessageCount() - iCount;
+         }
+      }
+
+      return(iAppended);
+   }
+
+   private Watermark watermark(final String strAddress)
+   {
+      Watermark watermark = m_Watermarks.get(strAddress);
+
+      if (null == watermark)
+      {
+         watermark = new Watermark();
+         m_Watermarks.put(strAddress, watermark);
+      }
+
+      return(watermark);
+   }
+
+   private static long date(final IMessage msg)
+   {
+      return(null == msg.getMessageDate() ? Long.MIN_VALUE : msg.getMessageDate().getTime());
+   }
+}
@@ -0,0 +1,414 @@
+/*
+ * $Id$
+ *
+ * File:   BlobStore.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:47:54 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import com.wj.android.messageviewer.util.ByteBufferInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Session wide append only file holding large MMS attachments.
+ *
+ * <p>
+ *    The content of a message part of at least {@link #getThreshold()} bytes
+ *    is written to the blob file once, only the offset and length are kept
+ *    on the heap. The content is read through a read only memory mapped
+ *    view of its region, so photo heavy message files load within a fixed
+ *    heap budget. The blob file is mapped in windows of
+ *    {@link #WINDOWSIZE} bytes, each mapped once, contents get duplicates
+ *    of the window they start in. Each mapping extends over the next
+ *    window, so contents not larger than a window always fit into the
+ *    window they start in.
+ * </p>
+ *
+ * <p>
+ *    Readers of message files embedding base64 encoded payloads may store
+ *    them {@link #base64Content(java.lang.String) encoded}, they are then
+ *    decoded only when their content is requested.
+ * </p>
+ *
+ * <p>
+ *    The threshold is read from system property {@link #THRESHOLDPROPERTY},
+ *    a negative value disables the store. The blob file is created on first
+ *    use and deleted when the virtual machine terminates. Contents that
+ *    can not be written are kept on the heap. Instances of this class are
+ *    thread safe.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class BlobStore
+{
+   private static final Logger LOGGER = Logger.getLogger(BlobStore.class.getName());
+
+   /** Name of the system property defining the threshold in bytes. */
+   static final String THRESHOLDPROPERTY = "com.wj.android.messageviewer.blobstore.threshold";
+
+   /** Default threshold in bytes. */
+   static final int DEFAULTTHRESHOLD = 64 * 1024;
+
+   /** Size of the windows the blob file is mapped in. */
+   static final long WINDOWSIZE = 32L * 1024L * 1024L;
+
+   private static final int CHUNKSIZE = 8192;
+
+   private static final BlobStore DEFAULTSTORE = new BlobStore(new File(System.getProperty("java.io.tmpdir")), Integer.getInteger(THRESHOLDPROPERTY, DEFAULTTHRESHOLD));
+
+   private final File m_Dir;
+   private final int m_iThreshold;
+   private File m_BlobFile;
+   private FileChannel m_Channel;
+   private long m_lSize;
+   private final Map<Long, ByteBuffer> m_Windows;
+
+   /**
+    * Creates new {@code BlobStore}.
+    *
+    * @param dir the directory to create the blob file in.
+    *        Must not be {@code null}.
+    * @param iThreshold the minimum size of contents to store in bytes,
+    *        negative to keep all contents on the heap.
+    */
+   BlobStore(final File dir, final int iThreshold)
+   {
+      m_Dir = dir;
+      m_iThreshold = iThreshold;
+      m_BlobFile = null;
+      m_Channel = null;
+      m_lSize = 0;
+      m_Windows = new HashMap<>();
+   }
+
+   /**
+    * Get the application wide blob store.
+    *
+    * @return the default store. Never {@code null}.
+    */
+   public static BlobStore getDefault()
+   {
+      return(DEFAULTSTORE);
+   }
+
+   /**
+    * Get the minimum size of contents stored.
+    *
+    * @return the threshold in bytes, negative if the store is disabled.
+    */
+   int getThreshold()
+   {
+      return(m_iThreshold);
+   }
+
+   /**
+    * Get the number of bytes stored.
+    *
+    * @return the size of the blob file.
+    */
+   synchronized long size()
+   {
+      return(m_lSize);
+   }
+
+   /**
+    * Creates the content of a message part, in the blob file if the
+    * content is not smaller than the threshold.
+    *
+    * @param abContent the content. Must not be {@code null} and, if kept on
+    *        the heap, must not be modified afterwards.
+    *
+    * @return the content. Never {@code null}.
+    */
+   IPartContent content(final byte[] abContent)
+   {
+      IPartContent content = null;
+
+      if (0 <= m_iThreshold && abContent.length >= m_iThreshold)
+      {
+         try
+         {
+            content = append(abContent);
+         }
+         catch (final IOException ex)
+         {
+            LOGGER.log(Level.WARNING, ex.toString(), ex);
+         }
+      }
+
+      if (null == content)
+         content = new ByteArrayPartContent(abContent);
+
+      return(content);
+   }
+
+   /**
+    * Creates the content of a message part from its base64 encoding, kept
+    * encoded in the blob file if the decoded content is not smaller than
+    * the threshold.
+    *
+    * @param strBase64 the base64 encoded content. Must not be {@code null}.
+    *
+    * @return the decoded content. Never {@code null}.
+    */
+   public IPartContent base64Content(final String strBase64)
+   {
+      IPartContent content = null;
+
+      // 4 base64 characters encode 3 bytes
+      if (0 <= m_iThreshold && strBase64.length() / 4L * 3L >= m_iThreshold)
+      {
+         try
+         {
+            content = new Base64Content(new BlobContent(this, append(strBase64), strBase64.length()));
+         }
+         catch (final IOException ex)
+         {
+            LOGGER.log(Level.WARNING, ex.toString(), ex);
+         }
+      }
+
+      if (null == content)
+         content = new ByteArrayPartContent(DatatypeConverter.parseBase64Binary(strBase64));
+
+      return(content);
+   }
+
+   private synchronized IPartContent append(final byte[] abContent) throws IOException
+   {
+      final long lOffset = write(ByteBuffer.wrap(abContent));
+
+      return(new BlobContent(this, lOffset, abContent.length));
+   }
+
+   private synchronized long append(final String strBase64) throws IOException
+   {
+      final long lOffset = m_lSize;
+      final byte[] abChunk = new byte[CHUNKSIZE];
+
+      final int iLength = strBase64.length();
+      for (int iStart = 0; iStart < iLength; iStart += CHUNKSIZE)
+      {
+         final int iEnd = Math.min(iStart + CHUNKSIZE, iLength);
+
+         // base64 consists of ASCII characters only, one byte each
+         for (int i = iStart; i < iEnd; i++)
+            abChunk[i - iStart] = (byte)strBase64.charAt(i);
+
+         write(ByteBuffer.wrap(abChunk, 0, iEnd - iStart));
+      }
+
+      return(lOffset);
+   }
+
+   /**
+    * Appends the source to the blob file.
+    *
+    * @return the offset the source was written at.
+    */
+   private long write(final ByteBuffer source) throws IOException
+   {
+      if (null == m_Channel)
+         open();
+
+      final long lOffset = m_lSize;
+      final int iLength = source.remaining();
+      while (source.hasRemaining())
+         m_Channel.write(source, lOffset + iLength - source.remaining());
+
+      m_lSize += iLength;
+
+      return(lOffset);
+   }
+
+   private void open() throws IOException
+   {
+      if (null == m_BlobFile)
+      {
+         m_BlobFile = File.createTempFile("messageviewer", ".blobs", m_Dir);
+         m_BlobFile.deleteOnExit();
+      }
+
+      m_Channel = FileChannel.open(m_BlobFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+   }
+
+   private synchronized FileChannel channel()
+   {
+      return(m_Channel);
+   }
+
+   /**
+    * Get a read only view of a region of the blob file.
+    *
+    * <p>
+    *    A window mapped before the region was written is mapped again up
+    *    to the current size. Regions larger than a window are mapped on
+    *    their own.
+    * </p>
+    */
+   private synchronized ByteBuffer view(final long lOffset, final int iLength) throws IOException
+   {
+      final ByteBuffer view;
+
+      if (iLength > WINDOWSIZE)
+         view = m_Channel.map(FileChannel.MapMode.READ_ONLY, lOffset, iLength);
+      else
+      {
+         final long lWindow = lOffset / WINDOWSIZE;
+         final long lStart = lWindow * WINDOWSIZE;
+         final int iPosition = (int)(lOffset - lStart);
+
+         ByteBuffer window = m_Windows.get(lWindow);
+         if (null == window || window.capacity() < iPosition + iLength)
+         {
+            window = m_Channel.map(FileChannel.MapMode.READ_ONLY, lStart, Math.min(m_lSize, lStart + 2 * WINDOWSIZE) - lStart);
+            m_Windows.put(lWindow, window);
+         }
+
+         final ByteBuffer duplicate = window.duplicate();
+         duplicate.limit(iPosition + iLength);
+         duplicate.position(iPosition);
+         view = duplicate.slice();
+      }
+
+      return(view);
+   }
+
+   /**
+    * {@link IPartContent} implementation referencing a region of the blob
+    * file.
+    */
+   private static final class BlobContent implements IPartContent
+   {
+      private static final long serialVersionUID = -1542468719206302154L;
+
+      private final transient BlobStore m_Store;
+      private final transient long m_lOffset;
+      private final transient int m_iLength;
+
+      private BlobContent(final BlobStore store, final long lOffset, final int iLength)
+      {
+         m_Store = store;
+         m_lOffset = lOffset;
+         m_iLength = iLength;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public byte[] getBytes() throws IOException
+      {
+         final byte[] abContent = new byte[m_iLength];
+         final ByteBuffer target = ByteBuffer.wrap(abContent);
+
+         while (target.hasRemaining())
+         {
+            if (0 > m_Store.channel().read(target, m_lOffset + target.position()))
+               throw new IOException("Unexpected end of blob file");
+         }
+
+         return(abContent);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public InputStream openStream() throws IOException
+      {
+         return(new ByteBufferInputStream(m_Store.view(m_lOffset, m_iLength)));
+      }
+
+      /** The blob file is session scoped, the content is serialized. */
+      private Object writeReplace() throws ObjectStreamException
+      {
+         return(replacement(this));
+      }
+   }
+
+   /**
+    * {@link IPartContent} implementation decoding a region of the blob
+    * file holding base64 characters.
+    */
+   private static final class Base64Content implements IPartContent
+   {
+      private static final long serialVersionUID = 6408117373502165183L;
+
+      private final transient BlobContent m_Encoded;
+
+      private Base64Content(final BlobContent encoded)
+      {
+         m_Encoded = encoded;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public byte[] getBytes() throws IOException
+      {
+         return(DatatypeConverter.parseBase64Binary(new String(m_Encoded.getBytes(), StandardCharsets.US_ASCII)));
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public InputStream openStream() throws IOException
+      {
+         return(new ByteArrayInputStream(getBytes()));
+      }
+
+      /** The blob file is session scoped, the content is serialized. */
+      private Object writeReplace() throws ObjectStreamException
+      {
+         return(replacement(this));
+      }
+   }
+
+   /**
+    * Reads the content of a session scoped content to serialize it instead.
+    */
+   private static Object replacement(final IPartContent content) throws ObjectStreamException
+   {
+      final Object replacement;
+
+      try
+      {
+         replacement = new ByteArrayPartContent(content.getBytes());
+      }
+      catch (final IOException ex)
+      {
+         final InvalidObjectException ioe = new InvalidObjectException(ex.toString());
+         ioe.initCause(ex);
+         throw ioe;
+      }
+
+      return(replacement);
+   }
+}
@@ -0,0 +1,64 @@
+/*
+ * $Id$
+ *
+ * File:   ByteArrayPartContent.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 9:54:44 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * {@link IPartContent} implementation holding the content bytes in memory.
+ *
+ * @author Werner Jaeger
+ */
+final class ByteArrayPartContent implements IPartContent
+{
+   private static final long serialVersionUID = -2630845061741958320L;
+
+   private final byte[] m_abContent;
+
+   /**
+    * Creates new {@code ByteArrayPartContent}.
+    *
+    * @param abContent the content. Must not be {@code null}. The array is
+    *        not copied and must not be modified afterwards.
+    */
+   ByteArrayPartContent(final byte[] abContent)
+   {
+      m_abContent = abContent;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public byte[] getBytes()
+   {
+      return(m_abContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public InputStream openStream()
+   {
+      return(new ByteArrayInputStream(m_abContent));
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * $Id$
+ *
+ * File:   DirectPartContent.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:45:07 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import com.wj.android.messageviewer.util.ByteBufferInputStream;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link IPartContent} implementation holding the content bytes in a
+ * direct buffer outside the Java heap.
+ *
+ * <p>
+ *    Each call of {@link #getBytes()} copies the bytes to a new array.
+ *    Instances are serialized as {@link ByteArrayPartContent}.
+ * </p>
+ *
+ * @author Werner Jaeger
+ * @see OffHeapBodies
+ */
+final class DirectPartContent implements IPartContent
+{
+   private static final long serialVersionUID = 4417958201238660913L;
+
+   private final transient ByteBuffer m_Content;
+
+   /**
+    * Creates new {@code DirectPartContent}.
+    *
+    * @param abContent the content. Must not be {@code null}.
+    */
+   DirectPartContent(final byte[] abContent)
+   {
+      m_Content = ByteBuffer.allocateDirect(abContent.length);
+      m_Content.duplicate().put(abContent);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public byte[] getBytes()
+   {
+      return(OffHeapBodies.bytes(m_Content, 0, m_Content.capacity()));
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public InputStream openStream()
+   {
+      return(new ByteBufferInputStream(m_Content.duplicate()));
+   }
+
+   private Object writeReplace() throws ObjectStreamException
+   {
+      return(new ByteArrayPartContent(getBytes()));
+   }
+}
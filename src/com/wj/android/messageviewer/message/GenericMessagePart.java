@@ -23,8 +23,11 @@
  */
 package com.wj.android.messageviewer.message;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Simple implementation of the {@link IMMSMessagePart} interface.
@@ -38,32 +41,54 @@ import java.util.Arrays;
 public abstract class GenericMessagePart implements IMMSMessagePart
 {
    private static final long serialVersionUID = 5929878763930779397L;
+   private static final Logger LOGGER = Logger.getLogger(GenericMessagePart.class.getName());
 
    private final ContentType m_ContentType;
    private final String m_StrContentId;
    private final String m_StrContentLocation;
    private final String m_strCharset;
 
-   /** Contains the content bytes. */
-   protected final byte[] m_abContent;
+   private final IPartContent m_Content;
 
    /**
     * Creates new {@code GenericMessagePart}.
     *
+    * <p>
+    *    Contents not smaller than the threshold of the {@link BlobStore} are
+    *    moved to the blob file, smaller contents are kept as is.
+    * </p>
+    *
     * @param contentType the type of the content (e.g. "text/plain").
     *        Must not be {@code null}.
     * @param strContentId the content identifier. Must not be {@code null}.
     * @param strContentLocation the content location . Must not be {@code null}.
-    * @param abContent the content . Must not be {@code null}.
+    * @param abContent the content . Must not be {@code null} and must not
+    *        be modified afterwards.
     * @param strCharset the character set of text content.
     *        Must not be {@code null}.
     */
    protected GenericMessagePart(final ContentType contentType, final String strContentId, final String strContentLocation, final byte[] abContent, final String strCharset)
+   {
+      this(contentType, strContentId, strContentLocation, BlobStore.getDefault().content(abContent), strCharset);
+   }
+
+   /**
+    * Creates new {@code GenericMessagePart} whose content is read on demand.
+    *
+    * @param contentType the type of the content (e.g. "text/plain").
+    *        Must not be {@code null}.
+    * @param strContentId the content identifier. Must not be {@code null}.
+    * @param strContentLocation the content location . Must not be {@code null}.
+    * @param content the content . Must not be {@code null}.
+    * @param strCharset the character set of text content.
+    *        Must not be {@code null}.
+    */
+   protected GenericMessagePart(final ContentType contentType, final String strContentId, final String strContentLocation, final IPartContent content, final String strCharset)
    {
       m_ContentType = contentType;
       m_StrContentId = strContentId.replaceAll("<|>", "");
       m_StrContentLocation = strContentLocation;
-      m_abContent = Arrays.copyOf(abContent, abContent.length);
+      m_Content = content;
       m_strCharset = strCharset;
    }
 
@@ -94,4 +119,69 @@ public abstract class GenericMessagePart implements IMMSMessagePart
    {
       return(m_strCharset != null ? m_strCharset : Charset.defaultCharset().name());
    }
+
+   /**
+    * Get the content bytes of this message part.
+    *
+    * <p>
+    *    The returned array must not be modified.
+    * </p>
+    *
+    * @return the content bytes. Never {@code null}.
+    *
+    * @throws IOException if the content could not be read.
+    */
+   protected final byte[] getContent() throws IOException
+   {
+      return(m_Content.getBytes());
+   }
+
+   /**
+    * Opens a stream reading the content bytes of this message part.
+    *
+    * @return a new stream, to be closed by the caller. Never {@code null}.
+    *
+    * @throws IOException if the content could not be read.
+    */
+   protected final InputStream getContentStream() throws IOException
+   {
+      return(m_Content.openStream());
+   }
+
+   /**
+    * Get the content bytes of this message part decoded as text.
+    *
+    * <p>
+    *    The text is decoded on each call, it is not kept.
+    * </p>
+    *
+    * @return the content as text or an empty string if the content could
+    *         not be read or decoded. Never {@code null}.
+    */
+   protected final String getContentText()
+   {
+      String strText;
+
+      try
+      {
+         strText = new String(getContent(), getCharSet());
+      }
+      catch (final IOException ex)
+      {
+         LOGGER.log(Level.SEVERE, ex.toString(), ex);
+         strText = "";
+      }
+
+      return(strText);
+   }
+
+   /**
+    * Get the content of this message part, e.g. to store it elsewhere.
+    *
+    * @return the content. Never {@code null}.
+    */
+   public final IPartContent getPartContent()
+   {
+      return(m_Content);
+   }
 }
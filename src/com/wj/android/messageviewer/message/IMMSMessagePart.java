@@ -23,6 +23,7 @@
  */
 package com.wj.android.messageviewer.message;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 
@@ -119,6 +120,49 @@ public interface IMMSMessagePart extends Serializable
          return(mmsMessagePart);
       }
 
+      /**
+       * Factory method to construct the appropriate message part for this
+       * content type from content that might be read on demand.
+       *
+       * <p>
+       *    Image parts keep the given {@code content} and read it only
+       *    when the image is requested. All other parts read the content
+       *    immediately.
+       * </p>
+       *
+       * @param contentType the type of the content (e.g. "text/plain")
+       * @param strContentId the content identifier. Must not be {@code null}.
+       * @param strContentLocation the content location
+       * @param content the content
+       * @param strCharset the character set of text content
+       *
+       * @return a newly created instance of {@link IMMSMessagePart}.
+       *         or {@code null} if no appropriate implementation exists.
+       *
+       * @throws IOException if reading the content or encoding of text
+       *         content to {@link IMMSMessagePart#getCharSet() getCharset()}
+       *         fails.
+       */
+      public final IMMSMessagePart newMessagePart(final ContentType contentType, final String strContentId, final String strContentLocation, final IPartContent content, final String strCharset) throws IOException
+      {
+         final IMMSMessagePart mmsMessagePart;
+
+         switch(this)
+         {
+            case IMAMGEJPEG:
+            case IMAMGEPNG:
+            case IMAMGEGIF:
+               mmsMessagePart = new ImagePart(contentType, strContentId, strContentLocation, content, strCharset);
+               break;
+
+            default:
+               mmsMessagePart = newMessagePart(contentType, strContentId, strContentLocation, content.getBytes(), strCharset);
+               break;
+         }
+
+         return(mmsMessagePart);
+      }
+
       /**
        * Factory method to construct the appropriate enumeration type for this
        * content type
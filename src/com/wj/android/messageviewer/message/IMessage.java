@@ -233,4 +233,18 @@ public interface IMessage extends Comparable<IMessage>, Serializable
     * @return the service center or {@code null} or empty  if not known.
     */
    String getServiceCenter();
+
+   /**
+    * Get a 64 bit fingerprint of this message.
+    *
+    * <p>
+    *    Consistent with {@code equals}: equal messages have equal
+    *    fingerprints. Different messages have different fingerprints with
+    *    overwhelming probability, so the fingerprint may stand in for the
+    *    message when detecting duplicates.
+    * </p>
+    *
+    * @return the fingerprint.
+    */
+   long fingerprint();
 }
@@ -0,0 +1,65 @@
+/*
+ * $Id$
+ *
+ * File:   IMessageLoader.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:06:27 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.util.Collection;
+
+/**
+ * This Interface is implemented by readers which load the messages of a
+ * {@link MessageThread} only on demand.
+ *
+ * @author Werner Jaeger
+ */
+public interface IMessageLoader
+{
+   /**
+    * Load the messages of the specified thread.
+    *
+    * <p>
+    *    Called at most once per thread, the first time its messages are
+    *    requested.
+    * </p>
+    *
+    * @param thread the thread to load the messages for.
+    *        Must not be {@code null}.
+    *
+    * @return the messages of the thread. Never {@code null}, empty if
+    *         loading failed.
+    */
+   Collection<IMessage> loadMessages(final MessageThread thread);
+
+   /**
+    * Releases the resources held to load the messages of the specified
+    * thread.
+    *
+    * <p>
+    *    Called exactly once per thread, after its messages were loaded or
+    *    when the thread is disposed before they were requested.
+    * </p>
+    *
+    * @param thread the thread no longer to be loaded.
+    *        Must not be {@code null}.
+    */
+   void release(final MessageThread thread);
+}
@@ -0,0 +1,72 @@
+/*
+ * $Id$
+ *
+ * File:   IPartContent.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 9:54:44 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+/**
+ * This Interface represents the payload of a {@link IMMSMessagePart}.
+ *
+ * <p>
+ *    Implementations may hold the content bytes in memory or just a
+ *    reference to where they can be read from on demand, so that large
+ *    attachments do not need to stay on the heap while not displayed.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public interface IPartContent extends Serializable
+{
+   /**
+    * Get the decoded content bytes.
+    *
+    * <p>
+    *    The returned array may be shared with the implementation and must
+    *    therefore not be modified by the caller.
+    * </p>
+    *
+    * @return the content bytes. Never {@code null}.
+    *
+    * @throws IOException if the content could not be read.
+    */
+   byte[] getBytes() throws IOException;
+
+   /**
+    * Opens a stream reading the decoded content bytes.
+    *
+    * <p>
+    *    Unlike {@link #getBytes()} implementations referencing content
+    *    outside the heap do not need to copy all of it to an array first.
+    *    The caller has to close the stream.
+    * </p>
+    *
+    * @return a new stream positioned at the first content byte.
+    *         Never {@code null}.
+    *
+    * @throws IOException if the content could not be read.
+    */
+   InputStream openStream() throws IOException;
+}
@@ -0,0 +1,303 @@
+/*
+ * $Id$
+ *
+ * File:   ImageCache.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:49:17 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.awt.Image;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Application wide cache of decoded images, scaled to display size or in
+ * full resolution.
+ *
+ * <p>
+ *    Images are kept strongly in least recently used order as long as their
+ *    estimated size, 4 bytes per pixel, fits into the byte budget. Images
+ *    evicted from there, or too large for the budget at all, are still
+ *    reachable through soft references until the garbage collector needs
+ *    the memory. Full resolution images are mostly too large for the
+ *    budget, they are only kept softly.
+ * </p>
+ *
+ * <p>
+ *    The budget may be set by system property {@link #BUDGETPROPERTY}.
+ *    The cache keeps the image parts of its entries reachable, so it is to
+ *    be cleared when the messages are replaced. Instances of this class are
+ *    thread safe.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class ImageCache
+{
+   /** Name of the system property defining the budget in bytes. */
+   public static final String BUDGETPROPERTY = "com.wj.android.messageviewer.imagecache.budget";
+
+   /** Default budget in bytes. */
+   public static final long DEFAULTBUDGET = 64L * 1024L * 1024L;
+
+   private static final ImageCache DEFAULTCACHE = new ImageCache(Long.getLong(BUDGETPROPERTY, DEFAULTBUDGET));
+
+   /**
+    * Identifies an image part by identity and its display size.
+    */
+   private static final class Key
+   {
+      private final ImagePart m_Part;
+      private final int m_iWidth;
+      private final int m_iHeight;
+
+      private Key(final ImagePart part, final int iWidth, final int iHeight)
+      {
+         m_Part = part;
+         m_iWidth = iWidth;
+         m_iHeight = iHeight;
+      }
+
+      @Override
+      public boolean equals(final Object obj)
+      {
+         final boolean fEquals;
+
+         if (obj instanceof Key)
+         {
+            final Key other = (Key)obj;
+            fEquals = m_Part == other.m_Part && m_iWidth == other.m_iWidth && m_iHeight == other.m_iHeight;
+         }
+         else
+            fEquals = false;
+
+         return(fEquals);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return(31 * (31 * System.identityHashCode(m_Part) + m_iWidth) + m_iHeight);
+      }
+   }
+
+   /**
+    * Soft reference remembering its key to be purged once cleared.
+    */
+   private static final class SoftImage extends SoftReference<Image>
+   {
+      private final Key m_Key;
+
+      private SoftImage(final Key key, final Image image, final ReferenceQueue<Image> queue)
+      {
+         super(image, queue);
+
+         m_Key = key;
+      }
+   }
+
+   private final long m_lBudget;
+   private final LinkedHashMap<Key, Image> m_Images;
+   private final Map<Key, SoftImage> m_SoftImages;
+   private final ReferenceQueue<Image> m_Queue;
+   private long m_lSize;
+   private long m_lHits;
+   private long m_lMisses;
+   private long m_lEvictions;
+
+   /**
+    * Creates new {@code ImageCache}.
+    *
+    * @param lBudget the maximum estimated size in bytes of the images kept
+    *        strongly.
+    */
+   ImageCache(final long lBudget)
+   {
+      m_lBudget = lBudget;
+      m_Images = new LinkedHashMap<>(16, 0.75f, true);
+      m_SoftImages = new HashMap<>();
+      m_Queue = new ReferenceQueue<>();
+      m_lSize = 0;
+      m_lHits = 0;
+      m_lMisses = 0;
+      m_lEvictions = 0;
+   }
+
+   /**
+    * Get the application wide cache.
+    *
+    * @return the default cache. Never {@code null}.
+    */
+   public static ImageCache getDefault()
+   {
+      return(DEFAULTCACHE);
+   }
+
+   /**
+    * Get a cached image.
+    *
+    * @param part the image part. Must not be {@code null}.
+    * @param iWidth the maximum width the image was scaled to.
+    * @param iHeight the maximum height the image was scaled to.
+    *
+    * @return the image or {@code null} if not cached.
+    */
+   synchronized Image get(final ImagePart part, final int iWidth, final int iHeight)
+   {
+      purge();
+
+      final Key key = new Key(part, iWidth, iHeight);
+      Image image = m_Images.get(key);
+
+      if (null == image)
+      {
+         final SoftImage softImage = m_SoftImages.get(key);
+         if (null != softImage)
+         {
+            image = softImage.get();
+            if (null != image)
+               put(key, image);
+         }
+      }
+
+      if (null != image)
+         m_lHits++;
+      else
+         m_lMisses++;
+
+      return(image);
+   }
+
+   /**
+    * Adds an image, evicting the least recently used images if the budget
+    * is exceeded.
+    *
+    * @param part the image part. Must not be {@code null}.
+    * @param iWidth the maximum width the image was scaled to.
+    * @param iHeight the maximum height the image was scaled to.
+    * @param image the scaled image. Must not be {@code null}.
+    */
+   synchronized void put(final ImagePart part, final int iWidth, final int iHeight, final Image image)
+   {
+      purge();
+      put(new Key(part, iWidth, iHeight), image);
+   }
+
+   /**
+    * Removes all images.
+    */
+   public synchronized void clear()
+   {
+      m_Images.clear();
+      m_SoftImages.clear();
+      m_lSize = 0;
+   }
+
+   /**
+    * Get the estimated size of the images kept strongly.
+    *
+    * @return the size in bytes.
+    */
+   public synchronized long getSize()
+   {
+      return(m_lSize);
+   }
+
+   /**
+    * Get the number of lookups that found an image.
+    *
+    * @return the number of hits.
+    */
+   public synchronized long getHits()
+   {
+      return(m_lHits);
+   }
+
+   /**
+    * Get the number of lookups that did not find an image.
+    *
+    * @return the number of misses.
+    */
+   public synchronized long getMisses()
+   {
+      return(m_lMisses);
+   }
+
+   /**
+    * Get the number of images evicted to soft references to stay within
+    * the budget.
+    *
+    * @return the number of evictions.
+    */
+   public synchronized long getEvictions()
+   {
+      return(m_lEvictions);
+   }
+
+   private void put(final Key key, final Image image)
+   {
+      m_SoftImages.put(key, new SoftImage(key, image, m_Queue));
+
+      final long lImageSize = size(image);
+      if (lImageSize <= m_lBudget)
+      {
+         final Image old = m_Images.put(key, image);
+         if (null != old)
+            m_lSize -= size(old);
+         m_lSize += lImageSize;
+
+         // the image just put is the most recently used and fits, it is
+         // never reached
+         final Iterator<Map.Entry<Key, Image>> iter = m_Images.entrySet().iterator();
+         while (m_lSize > m_lBudget && iter.hasNext())
+         {
+            final Map.Entry<Key, Image> entry = iter.next();
+            m_lSize -= size(entry.getValue());
+            iter.remove();
+            m_lEvictions++;
+         }
+      }
+   }
+
+   /**
+    * Removes soft references cleared by the garbage collector.
+    */
+   private void purge()
+   {
+      Reference<? extends Image> ref;
+
+      while (null != (ref = m_Queue.poll()))
+      {
+         final SoftImage softImage = (SoftImage)ref;
+         if (m_SoftImages.get(softImage.m_Key) == softImage)
+            m_SoftImages.remove(softImage.m_Key);
+      }
+   }
+
+   private static long size(final Image image)
+   {
+      return(4L * Math.max(0, image.getWidth(null)) * Math.max(0, image.getHeight(null)));
+   }
+}
@@ -23,14 +23,19 @@
  */
 package com.wj.android.messageviewer.message;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * This class represents a "image" part.
@@ -42,8 +47,6 @@ public class ImagePart extends GenericMessagePart
    private static final long serialVersionUID = 5536466658406127949L;
    private static final Logger LOGGER = Logger.getLogger(ImagePart.class.getName());
 
-   private transient Image m_Image;
-
    /**
     * Creates new {@code ImagePart}.
     *
@@ -56,21 +59,74 @@ public class ImagePart extends GenericMessagePart
    protected ImagePart(final ContentType contentType, final String strContentId, final String strContentLocation, final byte[] abContent, final String strCharset)
    {
       super(contentType, strContentId, strContentLocation, abContent, strCharset);
+   }
 
-      m_Image = null;
+   /**
+    * Creates new {@code ImagePart} whose image bytes are read on first
+    * access to the image.
+    *
+    * @param contentType the type of the content (e.g. "image/jpeg")
+    * @param strContentId the content identifier. Must not be {@code null}.
+    * @param strContentLocation the content location
+    * @param content the content
+    * @param strCharset the character set of text content
+    */
+   protected ImagePart(final ContentType contentType, final String strContentId, final String strContentLocation, final IPartContent content, final String strCharset)
+   {
+      super(contentType, strContentId, strContentLocation, content, strCharset);
    }
 
    /**
-    * Get the image of this part.
+    * Get the image of this part in full resolution.
+    *
+    * <p>
+    *    Like scaled images the image is kept in the
+    *    {@link ImageCache#getDefault() image cache}, usually only softly as
+    *    full resolution images rarely fit into its budget.
+    * </p>
     *
     * @return the image or {@code null} if image failed to read.
     */
    public Image getImage()
    {
-      if (null == m_Image)
-         m_Image = byteArrayToImage(m_abContent);
+      // images are never scaled up, this size selects the original
+      return(getImage(Integer.MAX_VALUE, Integer.MAX_VALUE));
+   }
+
+   /**
+    * Get the image of this part scaled down to fit into the given size.
+    *
+    * <p>
+    *    The aspect ratio is kept, smaller images are not scaled up. Scaled
+    *    images are kept in the {@link ImageCache#getDefault() image cache}.
+    * </p>
+    *
+    * <p>
+    *    Large images are not decoded in full resolution. Their size is read
+    *    from the header first, then an embedded thumbnail is used if it is
+    *    large enough, otherwise only every n-th pixel of every n-th row is
+    *    decoded, n chosen such that the result is still not smaller than
+    *    the requested size.
+    * </p>
+    *
+    * @param iMaxWidth the maximum width of the image.
+    * @param iMaxHeight the maximum height of the image.
+    *
+    * @return the image or {@code null} if image failed to read.
+    */
+   public Image getImage(final int iMaxWidth, final int iMaxHeight)
+   {
+      final ImageCache cache = ImageCache.getDefault();
+      Image image = cache.get(this, iMaxWidth, iMaxHeight);
+
+      if (null == image)
+      {
+         image = readImage(iMaxWidth, iMaxHeight);
+         if (null != image)
+            cache.put(this, iMaxWidth, iMaxHeight, image);
+      }
 
-      return(m_Image);
+      return(image);
    }
 
    /**
@@ -84,16 +140,28 @@ public class ImagePart extends GenericMessagePart
       return(getContentLocation());
    }
 
-   private static BufferedImage byteArrayToImage(final byte[] abImage)
+   private Image readImage(final int iMaxWidth, final int iMaxHeight)
    {
-      BufferedImage image;
+      Image image = null;
 
-      try
+      try (final InputStream is = getContentStream(); final ImageInputStream iis = ImageIO.createImageInputStream(is))
       {
-         final InputStream inputStream = new ByteArrayInputStream(abImage);
-         image = ImageIO.read(inputStream);
+         final Iterator<ImageReader> readers = null == iis ? null : ImageIO.getImageReaders(iis);
+         if (null != readers && readers.hasNext())
+         {
+            final ImageReader reader = readers.next();
+            try
+            {
+               reader.setInput(iis, true, true);
+               image = readImage(reader, iMaxWidth, iMaxHeight);
+            }
+            finally
+            {
+               reader.dispose();
+            }
+         }
       }
-      catch (IOException ex)
+      catch (final IOException | RuntimeException ex)
       {
          LOGGER.log(Level.SEVERE, ex.toString(), ex);
          image = null;
@@ -101,4 +169,62 @@ public class ImagePart extends GenericMessagePart
 
       return(image);
    }
+
+   private static Image readImage(final ImageReader reader, final int iMaxWidth, final int iMaxHeight) throws IOException
+   {
+      BufferedImage image = null;
+      final int iWidth = reader.getWidth(0);
+      final int iHeight = reader.getHeight(0);
+      final float fltMul = Math.min(1F, Math.min((float)iMaxWidth / iWidth, (float)iMaxHeight / iHeight));
+      final int iScaledWidth = Math.max(1, Math.round(iWidth * fltMul));
+      final int iScaledHeight = Math.max(1, Math.round(iHeight * fltMul));
+
+      if (fltMul < 1F && reader.readerSupportsThumbnails())
+      {
+         for (int i = 0; null == image && i < reader.getNumThumbnails(0); i++)
+         {
+            final int iThumbnailWidth = reader.getThumbnailWidth(0, i);
+            final int iThumbnailHeight = reader.getThumbnailHeight(0, i);
+
+            // only thumbnails of about the same aspect ratio that are large
+            // enough not to be scaled up
+            if (iThumbnailWidth >= iScaledWidth && iThumbnailHeight >= iScaledHeight && Math.abs((long)iThumbnailWidth * iHeight - (long)iThumbnailHeight * iWidth) <= Math.max(iWidth, iHeight))
+               image = reader.readThumbnail(0, i);
+         }
+      }
+
+      if (null == image)
+      {
+         final ImageReadParam param = reader.getDefaultReadParam();
+         final int iSubsampling = Math.max(1, (int)(1F / fltMul));
+         if (iSubsampling > 1)
+            param.setSourceSubsampling(iSubsampling, iSubsampling, 0, 0);
+
+         image = reader.read(0, param);
+      }
+
+      // sizes derived from the original, not the rounded subsampled size
+      return(scale(image, iScaledWidth, iScaledHeight));
+   }
+
+   private static Image scale(final Image image, final int iScaledWidth, final int iScaledHeight)
+   {
+      final Image imageRet;
+
+      if (image.getWidth(null) != iScaledWidth || image.getHeight(null) != iScaledHeight)
+      {
+         final BufferedImage bi = new BufferedImage(iScaledWidth, iScaledHeight, BufferedImage.TRANSLUCENT);
+
+         final Graphics2D g2d = bi.createGraphics();
+         g2d.addRenderingHints(new RenderingHints(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY));
+         g2d.drawImage(image, 0, 0, iScaledWidth, iScaledHeight, null);
+         g2d.dispose();
+
+         imageRet = bi;
+      }
+      else
+         imageRet = image;
+
+      return(imageRet);
+   }
 }
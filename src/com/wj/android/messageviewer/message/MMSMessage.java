@@ -107,6 +107,17 @@ public class MMSMessage extends SMSMessage
       return(Collections.unmodifiableList(m_Parts));
    }
 
+   /**
+    * Retrieve all message parts in the order they were added, regardless of
+    * how subclasses present them by {@link #getMessageParts()}.
+    *
+    * @return the list of message parts. Never {@code null}
+    */
+   public final List<IMMSMessagePart> getAllMessageParts()
+   {
+      return(Collections.unmodifiableList(m_Parts));
+   }
+
    /**
     * Gets the text of this message.
     *
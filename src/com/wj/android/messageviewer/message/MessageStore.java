@@ -0,0 +1,426 @@
+/*
+ * $Id$
+ *
+ * File:   MessageStore.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:40:18 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Columnar store of the messages of one {@link MessageThread}.
+ *
+ * <p>
+ *    Plain {@link SMSMessage}s are not kept as objects, each is a row of
+ *    primitive columns: the date as {@code long}, the message box ordinal as
+ *    {@code byte}, address and service center as codes into a dictionary
+ *    of the distinct strings of the thread and the text as offset and
+ *    length into an UTF-8 arena shared by all messages of the thread. A
+ *    message thus needs about 30 bytes plus its UTF-8 text instead of
+ *    several hundred bytes of objects and tree nodes. Other messages, e.g.
+ *    {@link MMSMessage}s with their parts, are kept as objects.
+ * </p>
+ *
+ * <p>
+ *    Texts {@link OffHeapBodies#isOffHeap(int) to be stored off heap} are
+ *    appended to a direct buffer of the thread instead, their length is
+ *    stored as its one's complement to tell them apart.
+ * </p>
+ *
+ * <p>
+ *    Like the {@code TreeSet} used before the rows are ordered by date and
+ *    at most one message per date is kept, the first one added. Messages
+ *    are mostly added in order, rows added out of order are sorted on the
+ *    next read.
+ * </p>
+ *
+ * <p>
+ *    {@link #messages()} hands out a list of views. A view is an
+ *    {@code SMSMessage} created when the row is accessed, sharing the
+ *    strings of the dictionary. Columns are only appended to or replaced
+ *    by sorted copies, never modified in place, so a list stays valid
+ *    while messages are added.
+ * </p>
+ *
+ * <p>
+ *    Messages are copied when added, later changes of a plain
+ *    {@code SMSMessage} are not reflected. Instances of this class are not
+ *    thread safe.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class MessageStore
+{
+   private static final int INITIALCAPACITY = 4;
+   private static final int NONE = -1;
+
+   /**
+    * Immutable list of the messages stored at the time it was created.
+    */
+   private static final class Messages extends AbstractList<IMessage> implements RandomAccess
+   {
+      private final int m_iSize;
+      private final long[] m_alDates;
+      private final byte[] m_abBoxes;
+      private final int[] m_aiAddresses;
+      private final int[] m_aiServiceCenters;
+      private final int[] m_aiTextOffsets;
+      private final int[] m_aiTextLengths;
+      private final IMessage[] m_aObjects;
+      private final String[] m_astrDictionary;
+      private final byte[] m_abArena;
+      private final ByteBuffer m_OffHeapArena;
+
+      private Messages(final MessageStore store)
+      {
+         m_iSize = store.m_iSize;
+         m_alDates = store.m_alDates;
+         m_abBoxes = store.m_abBoxes;
+         m_aiAddresses = store.m_aiAddresses;
+         m_aiServiceCenters = store.m_aiServiceCenters;
+         m_aiTextOffsets = store.m_aiTextOffsets;
+         m_aiTextLengths = store.m_aiTextLengths;
+         m_aObjects = store.m_aObjects;
+         m_astrDictionary = store.m_astrDictionary;
+         m_abArena = store.m_abArena;
+         m_OffHeapArena = store.m_OffHeapArena;
+      }
+
+      @Override
+      public IMessage get(final int iIndex)
+      {
+         if (iIndex < 0 || iIndex >= m_iSize)
+            throw new IndexOutOfBoundsException("Index: " + iIndex + ", Size: " + m_iSize);
+
+         final IMessage msg;
+
+         if (null != m_aObjects[iIndex])
+            msg = m_aObjects[iIndex];
+         else
+         {
+            final String strText = text(m_aiTextOffsets[iIndex], m_aiTextLengths[iIndex]);
+            final IMessage.MessageBox msgBox = NONE == m_abBoxes[iIndex] ? null : IMessage.MessageBox.values()[m_abBoxes[iIndex]];
+
+            msg = new SMSMessage(string(m_aiServiceCenters[iIndex]), string(m_aiAddresses[iIndex]), new Date(m_alDates[iIndex]), strText, msgBox);
+         }
+
+         return(msg);
+      }
+
+      @Override
+      public int size()
+      {
+         return(m_iSize);
+      }
+
+      private String string(final int iCode)
+      {
+         return(NONE == iCode ? null : m_astrDictionary[iCode]);
+      }
+
+      private String text(final int iOffset, final int iLength)
+      {
+         final String strText;
+
+         if (NONE == iOffset)
+            strText = null;
+         else if (0 > iLength)
+            strText = OffHeapBodies.decode(m_OffHeapArena, iOffset, ~iLength, StandardCharsets.UTF_8);
+         else
+            strText = new String(m_abArena, iOffset, iLength, StandardCharsets.UTF_8);
+
+         return(strText);
+      }
+   }
+
+   private final Map<String, Integer> m_Codes;
+   private String[] m_astrDictionary;
+   private int m_iDictionarySize;
+   private byte[] m_abArena;
+   private int m_iArenaSize;
+   private ByteBuffer m_OffHeapArena;
+   private int m_iOffHeapArenaSize;
+
+   private long[] m_alDates;
+   private byte[] m_abBoxes;
+   private int[] m_aiAddresses;
+   private int[] m_aiServiceCenters;
+   private int[] m_aiTextOffsets;
+   private int[] m_aiTextLengths;
+   private IMessage[] m_aObjects;
+   private int m_iSize;
+   private boolean m_fSorted;
+
+   /**
+    * Creates new empty {@code MessageStore}.
+    */
+   MessageStore()
+   {
+      m_Codes = new HashMap<>(4);
+      m_astrDictionary = new String[2];
+      m_iDictionarySize = 0;
+      m_abArena = new byte[64];
+      m_iArenaSize = 0;
+      m_OffHeapArena = null;
+      m_iOffHeapArenaSize = 0;
+
+      m_alDates = new long[INITIALCAPACITY];
+      m_abBoxes = new byte[INITIALCAPACITY];
+      m_aiAddresses = new int[INITIALCAPACITY];
+      m_aiServiceCenters = new int[INITIALCAPACITY];
+      m_aiTextOffsets = new int[INITIALCAPACITY];
+      m_aiTextLengths = new int[INITIALCAPACITY];
+      m_aObjects = new IMessage[INITIALCAPACITY];
+      m_iSize = 0;
+      m_fSorted = true;
+   }
+
+   /**
+    * Adds a message unless a message of the same date is stored.
+    *
+    * <p>
+    *    A duplicate date is detected right away if the message is not older
+    *    than the last one added, otherwise when sorting.
+    * </p>
+    *
+    * @param msg the message to add. Must not be {@code null} and must have
+    *        a date.
+    */
+   void add(final IMessage msg)
+   {
+      final long lDate = msg.getMessageDate().getTime();
+
+      if (0 == m_iSize || m_alDates[m_iSize - 1] != lDate)
+      {
+         if (m_iSize == m_alDates.length)
+            grow();
+
+         if (0 < m_iSize && lDate < m_alDates[m_iSize - 1])
+            m_fSorted = false;
+
+         m_alDates[m_iSize] = lDate;
+
+         if (SMSMessage.class == msg.getClass())
+         {
+            m_abBoxes[m_iSize] = null == msg.getMessageBox() ? NONE : (byte)msg.getMessageBox().ordinal();
+            m_aiAddresses[m_iSize] = code(msg.getMessageAddress());
+            m_aiServiceCenters[m_iSize] = code(msg.getServiceCenter());
+            addText(msg.getMessageText());
+            m_aObjects[m_iSize] = null;
+         }
+         else
+            m_aObjects[m_iSize] = msg;
+
+         m_iSize++;
+      }
+   }
+
+   /**
+    * Get the number of messages stored.
+    *
+    * @return the number of messages.
+    */
+   int size()
+   {
+      sort();
+
+      return(m_iSize);
+   }
+
+   /**
+    * Get the date of the newest message.
+    *
+    * @return the date or {@code null} if no message is stored.
+    */
+   Date lastDate()
+   {
+      sort();
+
+      return(0 == m_iSize ? null : new Date(m_alDates[m_iSize - 1]));
+   }
+
+   /**
+    * Get the messages stored, ordered by date.
+    *
+    * @return an immutable list, not affected by messages added later.
+    *         Never {@code null}.
+    */
+   List<IMessage> messages()
+   {
+      sort();
+
+      return(new Messages(this));
+   }
+
+   private int code(final String str)
+   {
+      final int iCode;
+
+      if (null != str)
+      {
+         final Integer code = m_Codes.get(str);
+         if (null == code)
+         {
+            if (m_iDictionarySize == m_astrDictionary.length)
+               m_astrDictionary = Arrays.copyOf(m_astrDictionary, 2 * m_astrDictionary.length);
+
+            m_astrDictionary[m_iDictionarySize] = str;
+            m_Codes.put(str, m_iDictionarySize);
+            iCode = m_iDictionarySize++;
+         }
+         else
+            iCode = code;
+      }
+      else
+         iCode = NONE;
+
+      return(iCode);
+   }
+
+   private void addText(final String strText)
+   {
+      if (null != strText)
+      {
+         final byte[] abText = strText.getBytes(StandardCharsets.UTF_8);
+
+         if (OffHeapBodies.isOffHeap(abText.length))
+         {
+            m_OffHeapArena = OffHeapBodies.append(m_OffHeapArena, m_iOffHeapArenaSize, abText);
+            m_aiTextOffsets[m_iSize] = m_iOffHeapArenaSize;
+            m_aiTextLengths[m_iSize] = ~abText.length;
+            m_iOffHeapArenaSize += abText.length;
+         }
+         else
+         {
+            if (m_iArenaSize + abText.length > m_abArena.length)
+               m_abArena = Arrays.copyOf(m_abArena, Math.max(2 * m_abArena.length, m_iArenaSize + abText.length));
+
+            System.arraycopy(abText, 0, m_abArena, m_iArenaSize, abText.length);
+            m_aiTextOffsets[m_iSize] = m_iArenaSize;
+            m_aiTextLengths[m_iSize] = abText.length;
+            m_iArenaSize += abText.length;
+         }
+      }
+      else
+      {
+         m_aiTextOffsets[m_iSize] = NONE;
+         m_aiTextLengths[m_iSize] = 0;
+      }
+   }
+
+   private void grow()
+   {
+      final int iCapacity = m_alDates.length + (m_alDates.length >> 1) + 1;
+
+      m_alDates = Arrays.copyOf(m_alDates, iCapacity);
+      m_abBoxes = Arrays.copyOf(m_abBoxes, iCapacity);
+      m_aiAddresses = Arrays.copyOf(m_aiAddresses, iCapacity);
+      m_aiServiceCenters = Arrays.copyOf(m_aiServiceCenters, iCapacity);
+      m_aiTextOffsets = Arrays.copyOf(m_aiTextOffsets, iCapacity);
+      m_aiTextLengths = Arrays.copyOf(m_aiTextLengths, iCapacity);
+      m_aObjects = Arrays.copyOf(m_aObjects, iCapacity);
+   }
+
+   /**
+    * Orders the rows by date, keeping only the first row added of each
+    * date, into new columns.
+    */
+   private void sort()
+   {
+      if (!m_fSorted)
+      {
+         final int[] aiOrder = new int[m_iSize];
+         for (int i = 0; i < m_iSize; i++)
+            aiOrder[i] = i;
+
+         // stable, rows of the same date stay in the order added
+         mergeSort(aiOrder, new int[m_iSize], 0, m_iSize);
+
+         final long[] alDates = new long[m_alDates.length];
+         final byte[] abBoxes = new byte[m_alDates.length];
+         final int[] aiAddresses = new int[m_alDates.length];
+         final int[] aiServiceCenters = new int[m_alDates.length];
+         final int[] aiTextOffsets = new int[m_alDates.length];
+         final int[] aiTextLengths = new int[m_alDates.length];
+         final IMessage[] aObjects = new IMessage[m_alDates.length];
+         int iSize = 0;
+
+         for (final int iRow : aiOrder)
+         {
+            if (0 == iSize || alDates[iSize - 1] != m_alDates[iRow])
+            {
+               alDates[iSize] = m_alDates[iRow];
+               abBoxes[iSize] = m_abBoxes[iRow];
+               aiAddresses[iSize] = m_aiAddresses[iRow];
+               aiServiceCenters[iSize] = m_aiServiceCenters[iRow];
+               aiTextOffsets[iSize] = m_aiTextOffsets[iRow];
+               aiTextLengths[iSize] = m_aiTextLengths[iRow];
+               aObjects[iSize] = m_aObjects[iRow];
+               iSize++;
+            }
+         }
+
+         m_alDates = alDates;
+         m_abBoxes = abBoxes;
+         m_aiAddresses = aiAddresses;
+         m_aiServiceCenters = aiServiceCenters;
+         m_aiTextOffsets = aiTextOffsets;
+         m_aiTextLengths = aiTextLengths;
+         m_aObjects = aObjects;
+         m_iSize = iSize;
+         m_fSorted = true;
+      }
+   }
+
+   private void mergeSort(final int[] aiRows, final int[] aiBuffer, final int iFrom, final int iTo)
+   {
+      if (iTo - iFrom > 1)
+      {
+         final int iMiddle = (iFrom + iTo) >>> 1;
+         mergeSort(aiRows, aiBuffer, iFrom, iMiddle);
+         mergeSort(aiRows, aiBuffer, iMiddle, iTo);
+
+         if (m_alDates[aiRows[iMiddle - 1]] > m_alDates[aiRows[iMiddle]])
+         {
+            System.arraycopy(aiRows, iFrom, aiBuffer, iFrom, iTo - iFrom);
+
+            int iLeft = iFrom;
+            int iRight = iMiddle;
+            for (int i = iFrom; i < iTo; i++)
+            {
+               if (iRight >= iTo || (iLeft < iMiddle && m_alDates[aiBuffer[iLeft]] <= m_alDates[aiBuffer[iRight]]))
+                  aiRows[i] = aiBuffer[iLeft++];
+               else
+                  aiRows[i] = aiBuffer[iRight++];
+            }
+         }
+      }
+   }
+}
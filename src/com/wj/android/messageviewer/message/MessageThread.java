@@ -24,10 +24,8 @@
 package com.wj.android.messageviewer.message;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Date;
 import java.util.Objects;
-import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Represents threaded messaging.
@@ -37,13 +35,28 @@ import java.util.TreeSet;
  *    together.
  * </p>
  *
+ * <p>
+ *    The messages of a thread may be loaded lazily by an
+ *    {@link IMessageLoader} when they are first requested. Until then
+ *    message count and date of the last message are as announced on
+ *    creation.
+ * </p>
+ *
+ * <p>
+ *    Messages are kept ordered by date in a columnar {@link MessageStore},
+ *    at most one message per date.
+ * </p>
+ *
  * @author Werner Jaeger
  */
 public class MessageThread implements Comparable<MessageThread>
 {
    private final String m_strName;
    private final String m_strAddress;
-   private final Set<IMessage> m_MessageList;
+   private final MessageStore m_MessageList;
+   private final int m_iAnnouncedMessageCount;
+   private final Date m_AnnouncedLastActivity;
+   private IMessageLoader m_MessageLoader;
 
    /**
     * Creates new {@code MessageThread}.
@@ -56,7 +69,32 @@ public class MessageThread implements Comparable<MessageThread>
    {
       m_strName = strName;
       m_strAddress = strAddress;
-      m_MessageList = new TreeSet<>();
+      m_MessageList = new MessageStore();
+      m_iAnnouncedMessageCount = 0;
+      m_AnnouncedLastActivity = null;
+      m_MessageLoader = null;
+   }
+
+   /**
+    * Creates new {@code MessageThread} whose messages are loaded on demand.
+    *
+    * @param strName the name of the contact or {@code null}.
+    * @param strAddress the address (mostly phone number) of the contact.
+    *        Must not be {@code null}.
+    * @param messageLoader the loader to load the messages with when first
+    *        requested. Must not be {@code null}.
+    * @param iMessageCount the number of messages the loader will provide.
+    * @param lastActivity the date of the last message or {@code null} if
+    *        not known.
+    */
+   public MessageThread(final String strName, final String strAddress, final IMessageLoader messageLoader, final int iMessageCount, final Date lastActivity)
+   {
+      m_strName = strName;
+      m_strAddress = strAddress;
+      m_MessageList = new MessageStore();
+      m_iAnnouncedMessageCount = iMessageCount;
+      m_AnnouncedLastActivity = null == lastActivity ? null : new Date(lastActivity.getTime());
+      m_MessageLoader = messageLoader;
    }
 
    /**
@@ -82,11 +120,105 @@ public class MessageThread implements Comparable<MessageThread>
    /**
     * Get all the messages of this thread.
     *
-    * @return all messages of this thread. Never {@code null}.
+    * <p>
+    *    The messages are views created on access, messages added later are
+    *    not contained.
+    * </p>
+    *
+    * @return all messages of this thread ordered by date. Never
+    *         {@code null}.
+    */
+   public synchronized Collection<IMessage> getMessages()
+   {
+      prefetch();
+
+      return(m_MessageList.messages());
+   }
+
+   /**
+    * Load the messages of this thread if they are loaded lazily and not yet
+    * loaded.
+    *
+    * <p>
+    *    May be called from a background thread to have the messages
+    *    available when requested.
+    * </p>
+    */
+   public synchronized void prefetch()
+   {
+      if (null != m_MessageLoader)
+      {
+         final IMessageLoader messageLoader = m_MessageLoader;
+         m_MessageLoader = null;
+         try
+         {
+            for (final IMessage msg : messageLoader.loadMessages(this))
+               m_MessageList.add(msg);
+         }
+         finally
+         {
+            messageLoader.release(this);
+         }
+      }
+   }
+
+   /**
+    * Releases the resources held to load the messages of this thread
+    * lazily, if they are not yet loaded.
+    *
+    * <p>
+    *    Called when the thread is no longer displayed, afterwards messages
+    *    not yet loaded are never loaded and this thread is empty.
+    * </p>
+    */
+   public synchronized void dispose()
+   {
+      if (null != m_MessageLoader)
+      {
+         final IMessageLoader messageLoader = m_MessageLoader;
+         m_MessageLoader = null;
+         messageLoader.release(this);
+      }
+   }
+
+   /**
+    * Determines whether the messages of this thread are loaded.
+    *
+    * @return {@code true} if the messages were not loaded lazily or were
+    *         already requested.
     */
-   public Collection<IMessage> getMessages()
+   public synchronized boolean isLoaded()
    {
-      return(Collections.unmodifiableCollection(m_MessageList));
+      return(null == m_MessageLoader);
+   }
+
+   /**
+    * Get the number of messages of this thread without loading them.
+    *
+    * @return the number of messages.
+    */
+   public synchronized int getMessageCount()
+   {
+      return(null != m_MessageLoader ? m_iAnnouncedMessageCount : m_MessageList.size());
+   }
+
+   /**
+    * Get the date of the last message of this thread without loading the
+    * messages.
+    *
+    * @return the date of the last message or {@code null} if the thread has
+    *         no messages or the date is not known.
+    */
+   public synchronized Date getLastActivity()
+   {
+      final Date lastActivity;
+
+      if (null != m_MessageLoader)
+         lastActivity = null == m_AnnouncedLastActivity ? null : new Date(m_AnnouncedLastActivity.getTime());
+      else
+         lastActivity = m_MessageList.lastDate();
+
+      return(lastActivity);
    }
 
    /**
@@ -94,7 +226,7 @@ public class MessageThread implements Comparable<MessageThread>
     *
     * @param msgToAdd the message to add. Must not be {@code null}.
     */
-   public void addMessage(final IMessage msgToAdd)
+   public synchronized void addMessage(final IMessage msgToAdd)
    {
       m_MessageList.add(msgToAdd);
    }
@@ -170,4 +302,4 @@ public class MessageThread implements Comparable<MessageThread>
    {
       return(toString().compareTo(thread.toString()));
    }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,236 @@
+/*
+ * $Id$
+ *
+ * File:   OffHeapBodies.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:45:07 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional storage of message bodies outside the Java heap.
+ *
+ * <p>
+ *    Bodies of at least {@link #getThreshold()} UTF-8 (or, for MMS parts,
+ *    raw content) bytes are appended to direct {@link ByteBuffer}s instead
+ *    of being kept as {@code String}s or byte arrays. Only offset and length
+ *    stay on the heap, the text is decoded each time it is requested. For
+ *    very large histories heap size and garbage collection pauses thereby
+ *    no longer grow with the size of the bodies.
+ * </p>
+ *
+ * <p>
+ *    The threshold is read from system property {@link #THRESHOLDPROPERTY}.
+ *    A negative value or no value at all disables off-heap storage, which
+ *    is the default, {@code 0} stores all bodies off heap. Direct memory is
+ *    limited by the {@code -XX:MaxDirectMemorySize} option of the virtual
+ *    machine and released when the owning buffers are garbage collected.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+final class OffHeapBodies
+{
+   /** Name of the system property defining the threshold in bytes. */
+   static final String THRESHOLDPROPERTY = "com.wj.android.messageviewer.offheap.threshold";
+
+   private static final int MINCAPACITY = 4096;
+
+   private static final AtomicInteger THRESHOLD = new AtomicInteger(Integer.getInteger(THRESHOLDPROPERTY, -1));
+
+   private OffHeapBodies()
+   {
+   }
+
+   /**
+    * Get the minimum size of bodies stored off heap.
+    *
+    * @return the threshold in bytes, negative if off-heap storage is
+    *         disabled.
+    */
+   static int getThreshold()
+   {
+      return(THRESHOLD.get());
+   }
+
+   /**
+    * Test hook, sets the minimum size of bodies stored off heap instead of
+    * system property {@link #THRESHOLDPROPERTY}. Affects only bodies stored
+    * afterwards.
+    *
+    * <p>
+    *    The threshold is application wide, callers must restore the
+    *    returned previous threshold.
+    * </p>
+    *
+    * @param iThreshold the threshold in bytes, negative to disable
+    *        off-heap storage.
+    *
+    * @return the previous threshold.
+    */
+   static int setThreshold(final int iThreshold)
+   {
+      return(THRESHOLD.getAndSet(iThreshold));
+   }
+
+   /**
+    * Determine whether a body of the given size is to be stored off heap.
+    *
+    * @param iLength the size of the body in bytes.
+    *
+    * @return {@code true} if off-heap storage is enabled and the body is not
+    *         smaller than the threshold.
+    */
+   static boolean isOffHeap(final int iLength)
+   {
+      final int iThreshold = THRESHOLD.get();
+
+      return(0 <= iThreshold && iLength >= iThreshold);
+   }
+
+   /**
+    * Appends bytes to an arena, allocating a larger direct buffer if the
+    * arena is too small.
+    *
+    * <p>
+    *    The bytes already used are copied to the new buffer, the old buffer
+    *    is left unchanged so readers still holding it stay valid.
+    * </p>
+    *
+    * @param arena the arena to append to or {@code null} if none is
+    *        allocated yet.
+    * @param iUsed the number of bytes used in {@code arena}.
+    * @param abBytes the bytes to append. Must not be {@code null}.
+    *
+    * @return the arena holding the appended bytes at offset {@code iUsed},
+    *         either {@code arena} or a new direct buffer. Never {@code null}.
+    */
+   static ByteBuffer append(final ByteBuffer arena, final int iUsed, final byte[] abBytes)
+   {
+      final ByteBuffer arenaRet;
+
+      if (null == arena || iUsed + abBytes.length > arena.capacity())
+      {
+         final int iCapacity = null == arena ? MINCAPACITY : 2 * arena.capacity();
+         arenaRet = ByteBuffer.allocateDirect(Math.max(iCapacity, iUsed + abBytes.length));
+
+         if (null != arena)
+         {
+            final ByteBuffer used = arena.duplicate();
+            used.position(0);
+            used.limit(iUsed);
+            arenaRet.duplicate().put(used);
+         }
+      }
+      else
+         arenaRet = arena;
+
+      final ByteBuffer target = arenaRet.duplicate();
+      target.position(iUsed);
+      target.put(abBytes);
+
+      return(arenaRet);
+   }
+
+   /**
+    * Copies bytes out of an arena.
+    *
+    * @param arena the arena to read from. Must not be {@code null}.
+    * @param iOffset the offset of the first byte.
+    * @param iLength the number of bytes.
+    *
+    * @return a new array holding the bytes. Never {@code null}.
+    */
+   static byte[] bytes(final ByteBuffer arena, final int iOffset, final int iLength)
+   {
+      final byte[] abBytes = new byte[iLength];
+      final ByteBuffer source = arena.duplicate();
+
+      source.position(iOffset);
+      source.get(abBytes);
+
+      return(abBytes);
+   }
+
+   /**
+    * Decodes text out of an arena.
+    *
+    * @param arena the arena to read from. Must not be {@code null}.
+    * @param iOffset the offset of the first byte.
+    * @param iLength the number of bytes.
+    * @param charset the encoding of the text. Must not be {@code null}.
+    *
+    * @return the decoded text. Never {@code null}.
+    */
+   static String decode(final ByteBuffer arena, final int iOffset, final int iLength, final Charset charset)
+   {
+      return(new String(bytes(arena, iOffset, iLength), charset));
+   }
+
+   /**
+    * Checks that the given character set is supported, so text stored off
+    * heap fails to load instead of failing each time it is decoded.
+    *
+    * @param strCharset the name of the character set.
+    *        Must not be {@code null}.
+    *
+    * @throws UnsupportedEncodingException if the name is illegal or the
+    *         character set is not supported.
+    */
+   static void checkCharset(final String strCharset) throws UnsupportedEncodingException
+   {
+      try
+      {
+         if (!Charset.isSupported(strCharset))
+            throw new UnsupportedEncodingException(strCharset);
+      }
+      catch (final IllegalCharsetNameException ex)
+      {
+         final UnsupportedEncodingException uee = new UnsupportedEncodingException(strCharset);
+         uee.initCause(ex);
+         throw uee;
+      }
+   }
+
+   /**
+    * Creates the content of a MMS message part, off heap if the content is
+    * not smaller than the threshold.
+    *
+    * @param abContent the content. Must not be {@code null}.
+    *
+    * @return the content. Never {@code null}.
+    */
+   static IPartContent content(final byte[] abContent)
+   {
+      final IPartContent content;
+
+      if (isOffHeap(abContent.length))
+         content = new DirectPartContent(abContent);
+      else
+         content = new ByteArrayPartContent(abContent);
+
+      return(content);
+   }
+}
@@ -148,7 +148,7 @@ public class SMILPart extends GenericMessagePart
 
       try
       {
-         final Reader reader = new StringReader(new String(m_abContent, getCharSet()));
+         final Reader reader = new StringReader(new String(getContent(), getCharSet()));
          final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
          final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
          doc = dBuilder.parse(new InputSource(reader));
@@ -43,6 +43,9 @@ public class SMSMessage implements IMessage
 {
    private static final long serialVersionUID = -3092043642357166011L;
 
+   private static final long FNVOFFSETBASIS = 0xCBF29CE484222325L;
+   private static final long FNVPRIME = 0x100000001B3L;
+
    private static final class AddressInfo
    {
       /**
@@ -260,4 +263,64 @@ public class SMSMessage implements IMessage
 
       return(iHash);
    }
-}
\ No newline at end of file
+
+   /**
+    * Get a 64 bit fingerprint of this message.
+    *
+    * <p>
+    *    A 64 bit FNV-1a hash over the class and the fields compared by
+    *    {@link #equals(java.lang.Object)}: date, message box, address, text
+    *    and service center, followed by a final bit mixing step.
+    * </p>
+    *
+    * @return the fingerprint.
+    */
+   @Override
+   public long fingerprint()
+   {
+      long lHash = fnv(FNVOFFSETBASIS, getClass().getName());
+
+      lHash = fnv(lHash, null == m_MessageDate ? Long.MIN_VALUE : m_MessageDate.getTime());
+      lHash = fnv(lHash, null == m_msgBox ? -1 : m_msgBox.ordinal());
+      lHash = fnv(lHash, m_strMessageAddress);
+      lHash = fnv(lHash, m_strMessageText);
+      lHash = fnv(lHash, m_strServiceCenter);
+
+      // final mixing of the 64 bit finalizer of SplitMix64
+      lHash = (lHash ^ (lHash >>> 30)) * 0xBF58476D1CE4E5B9L;
+      lHash = (lHash ^ (lHash >>> 27)) * 0x94D049BB133111EBL;
+
+      return(lHash ^ (lHash >>> 31));
+   }
+
+   private static long fnv(final long lHash, final long lValue)
+   {
+      long lRet = lHash;
+
+      for (int i = 0; i < 64; i += 8)
+         lRet = (lRet ^ ((lValue >>> i) & 0xFF)) * FNVPRIME;
+
+      return(lRet);
+   }
+
+   /**
+    * Hashes the length, or -1 for {@code null}, followed by the characters,
+    * so adjacent fields can not be shifted into each other.
+    */
+   private static long fnv(final long lHash, final String str)
+   {
+      long lRet = fnv(lHash, null == str ? -1 : str.length());
+
+      if (null != str)
+      {
+         for (int i = 0; i < str.length(); i++)
+         {
+            final char c = str.charAt(i);
+            lRet = (lRet ^ (c & 0xFF)) * FNVPRIME;
+            lRet = (lRet ^ (c >>> 8)) * FNVPRIME;
+         }
+      }
+
+      return(lRet);
+   }
+}
\ No newline at end of file
@@ -33,6 +33,8 @@ import java.io.UnsupportedEncodingException;
 public class TextPart extends GenericMessagePart
 {
    private static final long serialVersionUID = -6945026818750672390L;
+
+   /** The text, {@code null} if the content is stored off heap. */
    private final String m_strText;
 
    /**
@@ -49,9 +51,15 @@ public class TextPart extends GenericMessagePart
     */
    protected TextPart(final ContentType contentType, final String strContentId, final String strContentLocation, final byte[] abContent, final String strCharset) throws UnsupportedEncodingException
    {
-      super(contentType, strContentId, strContentLocation, abContent, strCharset);
+      super(contentType, strContentId, strContentLocation, OffHeapBodies.content(abContent), strCharset);
 
-      m_strText = new String(abContent, getCharSet());
+      if (getPartContent() instanceof DirectPartContent)
+      {
+         OffHeapBodies.checkCharset(getCharSet());
+         m_strText = null;
+      }
+      else
+         m_strText = new String(abContent, getCharSet());
    }
 
    /**
@@ -62,6 +70,6 @@ public class TextPart extends GenericMessagePart
    @Override
    public String getText()
    {
-      return(m_strText);
+      return(null != m_strText ? m_strText : getContentText());
    }
 }
@@ -33,6 +33,8 @@ import java.io.UnsupportedEncodingException;
 public class VCardPart extends GenericMessagePart
 {
    private static final long serialVersionUID = 7328187699443431871L;
+
+   /** The text, {@code null} if the content is stored off heap. */
    private final String m_strText;
 
    /**
@@ -49,9 +51,15 @@ public class VCardPart extends GenericMessagePart
     */
    protected VCardPart(final ContentType contentType, final String strContentId, final String strContentLocation, final byte[] abContent, final String strCharset) throws UnsupportedEncodingException
    {
-      super(contentType, strContentId, strContentLocation, abContent, strCharset);
+      super(contentType, strContentId, strContentLocation, OffHeapBodies.content(abContent), strCharset);
 
-      m_strText = new String(abContent, getCharSet());
+      if (getPartContent() instanceof DirectPartContent)
+      {
+         OffHeapBodies.checkCharset(getCharSet());
+         m_strText = null;
+      }
+      else
+         m_strText = new String(abContent, getCharSet());
    }
 
    /**
@@ -62,6 +70,6 @@ public class VCardPart extends GenericMessagePart
    @Override
    public String getText()
    {
-      return(m_strText);
+      return(null != m_strText ? m_strText : getContentText());
    }
 }
@@ -0,0 +1,97 @@
+/*
+ * $Id$
+ *
+ * File:   ByteBufferInputStream.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:47:54 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} reading the remaining bytes of a {@link ByteBuffer},
+ * e.g. of a memory mapped file region.
+ *
+ * <p>
+ *    The stream advances the position of the buffer it was created with.
+ *    Pass a {@link ByteBuffer#duplicate() duplicate} if the buffer is shared.
+ *    Instances of this class are not thread safe.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class ByteBufferInputStream extends InputStream
+{
+   private final ByteBuffer m_Buffer;
+
+   /**
+    * Constructs a new {@code ByteBufferInputStream}.
+    *
+    * @param buffer the buffer to read from. Must not be {@code null}.
+    */
+   public ByteBufferInputStream(final ByteBuffer buffer)
+   {
+      m_Buffer = buffer;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int read()
+   {
+      return(m_Buffer.hasRemaining() ? m_Buffer.get() & 0xFF : -1);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int read(final byte[] abBuffer, final int iOffset, final int iLength)
+   {
+      final int iRead;
+
+      if (0 == iLength)
+         iRead = 0;
+      else if (!m_Buffer.hasRemaining())
+         iRead = -1;
+      else
+      {
+         iRead = Math.min(iLength, m_Buffer.remaining());
+         m_Buffer.get(abBuffer, iOffset, iRead);
+      }
+
+      return(iRead);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public long skip(final long lCount)
+   {
+      final int iSkipped = (int)Math.max(0, Math.min(lCount, m_Buffer.remaining()));
+      m_Buffer.position(m_Buffer.position() + iSkipped);
+
+      return(iSkipped);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int available()
+   {
+      return(m_Buffer.remaining());
+   }
+}
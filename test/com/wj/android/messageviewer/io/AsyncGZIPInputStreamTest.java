@@ -0,0 +1,160 @@
+/*
+ * $Id$
+ *
+ * File:   AsyncGZIPInputStreamTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:01:07 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link AsyncGZIPInputStream}.
+ *
+ * @author Werner Jaeger
+ */
+public final class AsyncGZIPInputStreamTest
+{
+   private static byte[] m_abData;
+   private static byte[] m_abCompressed;
+
+   /**
+    * Constructs a new {@code AsyncGZIPInputStreamTest} object.
+    */
+   public AsyncGZIPInputStreamTest()
+   {
+   }
+
+   /**
+    * Creates some compressible test data and its gzip compressed form.
+    *
+    * <p>
+    *    Run once before any of the test methods.
+    * </p>
+    *
+    * @throws IOException if compressing fails.
+    */
+   @BeforeClass
+   public static void createTestData() throws IOException
+   {
+      final Random random = new Random(4711);
+
+      m_abData = new byte[1000003];
+      for (int i = 0; i < m_abData.length; i++)
+         m_abData[i] = (byte)('a' + random.nextInt(8));
+
+      final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (final GZIPOutputStream gzos = new GZIPOutputStream(bos))
+      {
+         gzos.write(m_abData);
+      }
+      m_abCompressed = bos.toByteArray();
+   }
+
+   /**
+    * Test of {@code read} methods, of class {@code AsyncGZIPInputStream},
+    * with a ring of small buffers.
+    *
+    * @throws IOException if reading fails.
+    */
+   @Test
+   public void testRead() throws IOException
+   {
+      try (final AsyncGZIPInputStream is = new AsyncGZIPInputStream(new ByteArrayInputStream(m_abCompressed), 1000, 3))
+      {
+         final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+         for (int i = 0; i < 10; i++)
+            bos.write(is.read());
+
+         final byte[] abBuffer = new byte[777];
+         int iRead;
+         while ((iRead = is.read(abBuffer)) >= 0)
+            bos.write(abBuffer, 0, iRead);
+
+         assertArrayEquals(m_abData, bos.toByteArray());
+         assertEquals(-1, is.read());
+         assertEquals(m_abData.length, is.getBytesRead());
+         assertEquals(m_abCompressed.length, is.getCompressedBytesRead());
+      }
+   }
+
+   /**
+    * Test of {@code read} method, of class {@code AsyncGZIPInputStream}, with
+    * truncated compressed data.
+    *
+    * @throws IOException if reading fails as expected.
+    */
+   @Test(expected = IOException.class)
+   public void testReadTruncated() throws IOException
+   {
+      final byte[] abTruncated = Arrays.copyOf(m_abCompressed, m_abCompressed.length / 2);
+
+      try (final InputStream is = new AsyncGZIPInputStream(new ByteArrayInputStream(abTruncated)))
+      {
+         final byte[] abBuffer = new byte[4096];
+         while (is.read(abBuffer) >= 0)
+         {
+         }
+      }
+   }
+
+   /**
+    * Test of constructor, of class {@code AsyncGZIPInputStream}, with data
+    * that is not gzip compressed.
+    *
+    * @throws IOException if the header is invalid as expected.
+    */
+   @Test(expected = IOException.class)
+   public void testNotGZIP() throws IOException
+   {
+      try (final InputStream is = new AsyncGZIPInputStream(new ByteArrayInputStream("<smses/>".getBytes(StandardCharsets.US_ASCII))))
+      {
+         is.read();
+      }
+   }
+
+   /**
+    * Test of {@code close} method, of class {@code AsyncGZIPInputStream},
+    * before all data is read.
+    *
+    * @throws IOException if reading or closing fails.
+    */
+   @Test
+   public void testCloseEarly() throws IOException
+   {
+      final InputStream is = new AsyncGZIPInputStream(new ByteArrayInputStream(m_abCompressed), 1000, 2);
+      assertEquals(m_abData[0], (byte)is.read());
+
+      is.close();
+      is.close();
+   }
+}
@@ -0,0 +1,199 @@
+/*
+ * $Id$
+ *
+ * File:   ExtractionCacheTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:04:05 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link ExtractionCache}.
+ *
+ * @author Werner Jaeger
+ */
+public final class ExtractionCacheTest
+{
+   private File m_TestDir;
+
+   /**
+    * Constructs a new {@code ExtractionCacheTest} object.
+    */
+   public ExtractionCacheTest()
+   {
+   }
+
+   /**
+    * Creates a temporary test directory.
+    *
+    * <p>
+    *    Run before each of the test methods.
+    * </p>
+    *
+    * @throws IOException if creating the directory fails.
+    */
+   @Before
+   public void setUp() throws IOException
+   {
+      m_TestDir = Files.createTempDirectory("extractioncachetest").toFile();
+   }
+
+   /**
+    * Deletes the temporary test directory.
+    *
+    * <p>
+    *    Run after each of the test methods.
+    * </p>
+    */
+   @After
+   public void tearDown()
+   {
+      delete(m_TestDir);
+      m_TestDir = null;
+   }
+
+   /**
+    * Test of {@code extractFirst} method, of class {@code ExtractionCache},
+    * re-opening the same archive.
+    *
+    * @throws IOException if creating the archive fails.
+    */
+   @Test
+   public void testExtractFirstReuse() throws IOException
+   {
+      final File archive = createArchive("backup.tar", "contacts");
+      final ExtractionCache cache = new ExtractionCache(new File(m_TestDir, "cache"), Long.MAX_VALUE);
+
+      final File extracted = cache.extractFirst(archive, "contacts2.db");
+      assertNotNull(extracted);
+      assertEquals("contacts", new String(Files.readAllBytes(extracted.toPath()), StandardCharsets.UTF_8));
+
+      final File reused = cache.extractFirst(archive, "contacts2.db");
+      assertEquals(extracted, reused);
+      assertEquals(extracted.lastModified(), reused.lastModified());
+
+      assertNull(cache.extractFirst(archive, "main.db"));
+   }
+
+   /**
+    * Test of {@code extractFirst} method, of class {@code ExtractionCache},
+    * exceeding the disk budget.
+    *
+    * @throws IOException if creating the archives fails.
+    */
+   @Test
+   public void testExtractFirstEviction() throws IOException
+   {
+      final File archive1 = createArchive("backup1.tar", "first backup");
+      final File archive2 = createArchive("backup2.tar", "second backup");
+      final ExtractionCache cache = new ExtractionCache(new File(m_TestDir, "cache"), 1);
+
+      final File extracted1 = cache.extractFirst(archive1, "contacts2.db");
+      assertNotNull(extracted1);
+      assertTrue(extracted1.isFile());
+      cache.release(extracted1);
+
+      final File extracted2 = cache.extractFirst(archive2, "contacts2.db");
+      assertNotNull(extracted2);
+      assertTrue(extracted2.isFile());
+      assertFalse(extracted1.exists());
+   }
+
+   /**
+    * Test of {@code extractFirst} method, of class {@code ExtractionCache},
+    * exceeding the disk budget while the other file is still in use.
+    *
+    * @throws IOException if creating the archives fails.
+    */
+   @Test
+   public void testExtractFirstEvictionPinned() throws IOException
+   {
+      final File archive1 = createArchive("backup1.tar", "first backup");
+      final File archive2 = createArchive("backup2.tar", "second backup");
+      final File archive3 = createArchive("backup3.tar", "third backup");
+      final ExtractionCache cache = new ExtractionCache(new File(m_TestDir, "cache"), 1);
+
+      final File extracted1 = cache.extractFirst(archive1, "contacts2.db");
+      assertNotNull(extracted1);
+
+      final File extracted2 = cache.extractFirst(archive2, "contacts2.db");
+      assertNotNull(extracted2);
+      assertTrue(extracted1.isFile());
+
+      cache.release(extracted1);
+      cache.release(extracted2);
+
+      final File extracted3 = cache.extractFirst(archive3, "contacts2.db");
+      assertNotNull(extracted3);
+      assertFalse(extracted1.exists());
+      assertFalse(extracted2.exists());
+   }
+
+   private File createArchive(final String strName, final String strContent) throws IOException
+   {
+      final File archive = new File(m_TestDir, strName);
+      final byte[] abContent = strContent.getBytes(StandardCharsets.UTF_8);
+      final byte[] abOther = new byte[10000];
+
+      try (final TarArchiveOutputStream tos = new TarArchiveOutputStream(new FileOutputStream(archive)))
+      {
+         final TarArchiveEntry otherEntry = new TarArchiveEntry("data/files/other.bin");
+         otherEntry.setSize(abOther.length);
+         tos.putArchiveEntry(otherEntry);
+         tos.write(abOther);
+         tos.closeArchiveEntry();
+
+         final TarArchiveEntry entry = new TarArchiveEntry("data/databases/contacts2.db");
+         entry.setSize(abContent.length);
+         tos.putArchiveEntry(entry);
+         tos.write(abContent);
+         tos.closeArchiveEntry();
+      }
+
+      return(archive);
+   }
+
+   private static void delete(final File file)
+   {
+      final File[] aFiles = file.listFiles();
+      if (null != aFiles)
+      {
+         for (final File child : aFiles)
+            delete(child);
+      }
+
+      file.delete();
+   }
+}
@@ -0,0 +1,132 @@
+/*
+ * $Id$
+ *
+ * File:   InMemorySQLiteTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 11:37:03 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link InMemorySQLite}.
+ *
+ * @author Werner Jaeger
+ */
+public final class InMemorySQLiteTest
+{
+   private File m_TestDir;
+
+   /**
+    * Constructs a new {@code InMemorySQLiteTest} object.
+    */
+   public InMemorySQLiteTest()
+   {
+   }
+
+   /**
+    * Creates a directory with a double quote and blanks in its name.
+    *
+    * <p>
+    *    Run before each of the test methods.
+    * </p>
+    *
+    * @throws IOException if creating the directory fails.
+    */
+   @Before
+   public void setUp() throws IOException
+   {
+      m_TestDir = Files.createTempDirectory("inmemory \"sqlite test").toFile();
+   }
+
+   /**
+    * Deletes the test directory.
+    *
+    * <p>
+    *    Run after each of the test methods.
+    * </p>
+    */
+   @After
+   public void tearDown()
+   {
+      final File[] aFiles = m_TestDir.listFiles();
+      if (null != aFiles)
+      {
+         for (final File file : aFiles)
+            file.delete();
+      }
+
+      m_TestDir.delete();
+      m_TestDir = null;
+   }
+
+   /**
+    * Test of {@code quote} method, of class {@code InMemorySQLite},
+    * restoring from a file whose path contains a double quote and blanks.
+    *
+    * @throws SQLException if creating or restoring the database fails.
+    */
+   @Test
+   public void testQuote() throws SQLException
+   {
+      final File database = new File(m_TestDir, "test.db");
+      try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getAbsolutePath()); final Statement statement = connection.createStatement())
+      {
+         statement.executeUpdate("create table Messages (id integer)");
+         statement.executeUpdate("insert into Messages values (42)");
+      }
+
+      try (final Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:"); final Statement statement = connection.createStatement())
+      {
+         statement.executeUpdate("restore from " + InMemorySQLite.quote(database.getAbsolutePath()));
+
+         try (final ResultSet rs = statement.executeQuery("select id from Messages"))
+         {
+            assertTrue(rs.next());
+            assertEquals(42, rs.getInt(1));
+         }
+      }
+
+      assertEquals("\"/tmp/a'b\"", InMemorySQLite.quote("/tmp/a'b"));
+
+      try
+      {
+         InMemorySQLite.quote("/tmp/a'b\"c");
+         fail("SQLException expected");
+      }
+      catch (final SQLException ex)
+      {
+         assertTrue(ex.getMessage().contains("/tmp/a'b\"c"));
+      }
+   }
+}
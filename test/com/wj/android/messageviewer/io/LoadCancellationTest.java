@@ -0,0 +1,107 @@
+/*
+ * $Id$
+ *
+ * File:   LoadCancellationTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 11:33:39 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link LoadCancellation}.
+ *
+ * @author Werner Jaeger
+ */
+public final class LoadCancellationTest
+{
+   /** Counts forever, the query returns only when cancelled. */
+   private static final String ENDLESSQUERY = "WITH RECURSIVE counter(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM counter) SELECT count(*) FROM counter";
+
+   /**
+    * Constructs a new {@code LoadCancellationTest} object.
+    */
+   public LoadCancellationTest()
+   {
+   }
+
+   /**
+    * Test of {@code cancel} method, of class {@code LoadCancellation},
+    * cancelling a query before it returns its first row.
+    *
+    * @throws InterruptedException if interrupted while waiting for the
+    *         query.
+    */
+   @Test
+   public void testCancelStatement() throws InterruptedException
+   {
+      final CountDownLatch registered = new CountDownLatch(1);
+      final AtomicReference<Exception> failure = new AtomicReference<>();
+
+      final Thread thread = new Thread(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            try (final Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:"); final Statement statement = connection.createStatement())
+            {
+               LoadCancellation.register(statement);
+               try
+               {
+                  registered.countDown();
+                  try (final ResultSet rs = statement.executeQuery(ENDLESSQUERY))
+                  {
+                     rs.next();
+                  }
+               }
+               finally
+               {
+                  LoadCancellation.unregister();
+               }
+            }
+            catch (final Exception ex)
+            {
+               failure.set(ex);
+            }
+         }
+      }, "LoadCancellationTest");
+
+      thread.start();
+      assertTrue(registered.await(10, TimeUnit.SECONDS));
+
+      // give the query time to start
+      Thread.sleep(200);
+      LoadCancellation.cancel(thread);
+
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+      assertFalse(thread.isAlive());
+      assertTrue(failure.get() instanceof SQLException);
+   }
+}
@@ -0,0 +1,206 @@
+/*
+ * $Id$
+ *
+ * File:   MessageFileTypeTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 9:56:21 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Various test for enumeration {@link IMessageReader.MessageFileType}.
+ *
+ * @author Werner Jaeger
+ */
+public final class MessageFileTypeTest
+{
+   /**
+    * Constructs a new {@code MessageFileTypeTest} object.
+    */
+   public MessageFileTypeTest()
+   {
+   }
+
+   /**
+    * Test of {@code getMessageFileType} method with a Titanium Backup message
+    * file.
+    *
+    * @throws URISyntaxException if the test data can not be located.
+    */
+   @Test
+   public void testTitaniumMessageFileType() throws URISyntaxException
+   {
+      final String strPath = testDataPath("com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml");
+
+      assertEquals(IMessageReader.MessageFileType.TITANIUM, IMessageReader.MessageFileType.getMessageFileType(strPath));
+      assertEquals(IMessageReader.MessageFileType.TITANIUM, IMessageReader.MessageFileType.getMessageFileType(strPath, true));
+   }
+
+   /**
+    * Test of {@code getMessageFileType} method with a SMS Backup & Restore
+    * message file.
+    *
+    * @throws URISyntaxException if the test data can not be located.
+    */
+   @Test
+   public void testSMSBackupAndRestoreMessageFileType() throws URISyntaxException
+   {
+      final String strPath = testDataPath("sms-2015-03-09.xml");
+
+      assertEquals(IMessageReader.MessageFileType.SMSBACKUPANDRESTORE, IMessageReader.MessageFileType.getMessageFileType(strPath));
+      assertEquals(IMessageReader.MessageFileType.SMSBACKUPANDRESTORE, IMessageReader.MessageFileType.getMessageFileType(strPath, true));
+   }
+
+   /**
+    * Test of {@code getMessageFileType} method with a gzip compressed
+    * message file.
+    *
+    * @throws URISyntaxException if the test data can not be located.
+    * @throws IOException if writing the compressed file fails.
+    */
+   @Test
+   public void testCompressedMessageFileType() throws URISyntaxException, IOException
+   {
+      final File compressed = File.createTempFile("messagefiletypetest", ".xml.gz");
+      compressed.deleteOnExit();
+
+      try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"); final OutputStream os = new GZIPOutputStream(new FileOutputStream(compressed)))
+      {
+         assertNotNull(is);
+
+         final byte[] abBuffer = new byte[4096];
+         int iRead;
+         while ((iRead = is.read(abBuffer)) >= 0)
+            os.write(abBuffer, 0, iRead);
+      }
+
+      assertEquals(IMessageReader.MessageFileType.TITANIUM, IMessageReader.MessageFileType.getMessageFileType(compressed.getAbsolutePath(), true));
+   }
+
+   /**
+    * Test of {@code getMessageFileType} method with files which are not
+    * message files.
+    *
+    * @throws URISyntaxException if the test data can not be located.
+    */
+   @Test
+   public void testUnknownMessageFileType() throws URISyntaxException
+   {
+      assertNull(IMessageReader.MessageFileType.getMessageFileType(null));
+      assertNull(IMessageReader.MessageFileType.getMessageFileType(new File("does-not-exist.xml").getAbsolutePath()));
+      assertEquals(IMessageReader.MessageFileType.SKYPE, IMessageReader.MessageFileType.getMessageFileType(testDataPath("main.db")));
+   }
+
+   /**
+    * Test of {@code newReader} method, readers of the same type load
+    * concurrently without affecting each other.
+    *
+    * @throws InterruptedException if interrupted while waiting for a load.
+    * @throws ExecutionException if a load failed.
+    */
+   @Test
+   public void testNewReaderConcurrentLoads() throws InterruptedException, ExecutionException
+   {
+      assertNotSame(IMessageReader.MessageFileType.TITANIUM.newReader(), IMessageReader.MessageFileType.TITANIUM.newReader());
+
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      try
+      {
+         final List<Future<LoadResult>> loads = new ArrayList<>();
+         for (final String strName : new String[] {"com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml", "sms-2015-03-09.xml", "com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"})
+         {
+            loads.add(executor.submit(new Callable<LoadResult>()
+            {
+               @Override
+               public LoadResult call() throws IOException, URISyntaxException
+               {
+                  final IMessageReader reader = IMessageReader.MessageFileType.getMessageFileType(testDataPath(strName)).newReader();
+
+                  try (final InputStream is = getClass().getResourceAsStream("testdata/" + strName))
+                  {
+                     return(LoadResult.of(reader.loadMessages(is, null), reader));
+                  }
+               }
+            }));
+         }
+
+         final LoadResult titanium = loads.get(0).get();
+         final LoadResult sms = loads.get(1).get();
+         assertEquals(0, titanium.getErrorCode());
+         assertEquals(5, titanium.getNumberOfMessages());
+         assertEquals(0, sms.getErrorCode());
+         assertArrayEquals(titanium.getThreadArray(), loads.get(2).get().getThreadArray());
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Test of {@code newReader} method, validation enabled by system
+    * property.
+    *
+    * @throws IOException if closing of input stream fails.
+    */
+   @Test
+   public void testNewReaderValidating() throws IOException
+   {
+      final String strValidate = System.getProperty(IMessageReader.MessageFileType.VALIDATEPROPERTY);
+
+      System.setProperty(IMessageReader.MessageFileType.VALIDATEPROPERTY, "true");
+      try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"))
+      {
+         assertEquals(2, IMessageReader.MessageFileType.SMSBACKUPANDRESTORE.newReader().loadMessages(is, null));
+      }
+      finally
+      {
+         if (null == strValidate)
+            System.clearProperty(IMessageReader.MessageFileType.VALIDATEPROPERTY);
+         else
+            System.setProperty(IMessageReader.MessageFileType.VALIDATEPROPERTY, strValidate);
+      }
+   }
+
+   private String testDataPath(final String strName) throws URISyntaxException
+   {
+      return(new File(getClass().getResource("testdata/" + strName).toURI()).getAbsolutePath());
+   }
+}
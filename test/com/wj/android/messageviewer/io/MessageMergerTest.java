@@ -0,0 +1,126 @@
+/*
+ * $Id$
+ *
+ * File:   MessageMergerTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:33:36 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.MessageThread;
+import com.wj.android.messageviewer.message.SMSMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link MessageMerger}.
+ *
+ * @author Werner Jaeger
+ */
+public final class MessageMergerTest
+{
+   /**
+    * Constructs a new {@code MessageMergerTest} object.
+    */
+   public MessageMergerTest()
+   {
+   }
+
+   /**
+    * Test of {@code merge} method, of class {@code MessageMerger}, merging
+    * the same backup twice.
+    *
+    * @throws IOException if reading the message file fails.
+    */
+   @Test
+   public void testMergeDuplicates() throws IOException
+   {
+      final MessageThread[] aFirst = load();
+      final MessageThread[] aSecond = load();
+      final int iNumberOfMessages = count(aFirst);
+
+      final MessageMerger merger = new MessageMerger();
+      merger.merge(aFirst);
+      merger.merge(aSecond);
+
+      assertEquals(iNumberOfMessages, merger.getNumberOfMessages());
+      assertEquals(iNumberOfMessages, merger.getNumberOfDuplicates());
+
+      final MessageThread[] aMerged = merger.getThreadArray();
+      assertEquals(aFirst.length, aMerged.length);
+      for (int i = 0; i < aFirst.length; i++)
+      {
+         assertEquals(aFirst[i].getAddress(), aMerged[i].getAddress());
+         assertArrayEquals(aFirst[i].getMessages().toArray(), aMerged[i].getMessages().toArray());
+      }
+   }
+
+   /**
+    * Test of {@code merge} method, of class {@code MessageMerger}, merging
+    * threads of the same address.
+    */
+   @Test
+   public void testMergeThreads()
+   {
+      final Date date = new Date(1420920060000L);
+
+      final MessageThread first = new MessageThread(null, "+4912345");
+      first.addMessage(new SMSMessage("", "+4912345", date, "Hello", IMessage.MessageBox.INBOX));
+
+      final MessageThread second = new MessageThread("Test", "+4912345");
+      second.addMessage(new SMSMessage("", "+4912345", date, "Hello", IMessage.MessageBox.INBOX));
+      second.addMessage(new SMSMessage("", "+4912345", new Date(date.getTime() + 1000), "World", IMessage.MessageBox.SENT));
+
+      final MessageMerger merger = new MessageMerger();
+      merger.merge(new MessageThread[] {first});
+      merger.merge(new MessageThread[] {second});
+
+      final MessageThread[] aMerged = merger.getThreadArray();
+      assertEquals(1, aMerged.length);
+      assertEquals("Test", aMerged[0].getName());
+      assertEquals(2, aMerged[0].getMessageCount());
+      assertEquals(2, merger.getNumberOfMessages());
+      assertEquals(1, merger.getNumberOfDuplicates());
+   }
+
+   private MessageThread[] load() throws IOException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+
+      return(reader.getThreadArray());
+   }
+
+   private static int count(final MessageThread[] aThreads)
+   {
+      int iCount = 0;
+      for (final MessageThread thread : aThreads)
+         iCount += thread.getMessageCount();
+
+      return(iCount);
+   }
+}
@@ -23,13 +23,21 @@
  */
 package com.wj.android.messageviewer.io;
 
+import com.wj.android.messageviewer.message.GenericMessagePart;
+import com.wj.android.messageviewer.message.IMMSMessagePart;
 import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.MMSMessage;
 import com.wj.android.messageviewer.message.MessageThread;
 import com.wj.android.messageviewer.message.SMSMessage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import javax.xml.bind.DatatypeConverter;
 import static org.hamcrest.CoreMatchers.is;
 import org.junit.After;
 import org.junit.Assert;
@@ -118,6 +126,48 @@ public final class SMSBackupAndRestoreMessageReaderTest
       m_InputStram = null;
    }
 
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code SMSBackupAndRestoreMessageReader}, with payloads large enough
+    * to be kept in the blob store.
+    *
+    * @throws IOException if reading a part content fails.
+    */
+   @Test
+   public void testLoadMessagesLargeParts() throws IOException
+   {
+      final StringBuilder strVCard = new StringBuilder("BEGIN:VCARD\r\nVERSION:2.1\r\n");
+      while (strVCard.length() < 7 * 1024)
+         strVCard.append("NOTE:Lorem ipsum dolor sit amet\r\n");
+      strVCard.append("END:VCARD\r\n");
+
+      final byte[] abImage = new byte[80 * 1024];
+      Arrays.fill(abImage, (byte)0x5A);
+
+      final String strXml = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+         + "<smses count=\"1\">\n"
+         + "<mms date=\"1420920060000\" msg_box=\"1\" address=\"4433221123\" sub=\"null\" contact_name=\"(Unknown)\">\n"
+         + "<parts>\n"
+         + "<part seq=\"0\" ct=\"text/x-vCard\" cid=\"&lt;vcard&gt;\" cl=\"contact.vcf\" data=\"" + DatatypeConverter.printBase64Binary(strVCard.toString().getBytes(StandardCharsets.UTF_8)) + "\" />\n"
+         + "<part seq=\"0\" ct=\"image/jpeg\" cid=\"&lt;image&gt;\" cl=\"image.jpg\" data=\"" + DatatypeConverter.printBase64Binary(abImage) + "\" />\n"
+         + "</parts>\n"
+         + "</mms>\n"
+         + "</smses>\n";
+
+      final int iResult = m_MessageReader.loadMessages(new ByteArrayInputStream(strXml.getBytes(StandardCharsets.UTF_8)), null);
+      assertEquals(0, iResult);
+      assertEquals(1, m_MessageReader.getNumberOfMessages());
+
+      final IMessage msg = m_MessageReader.getThreadArray()[0].getMessages().iterator().next();
+      final List<IMMSMessagePart> parts = ((MMSMessage)msg).getAllMessageParts();
+      assertEquals(2, parts.size());
+      assertEquals(IMMSMessagePart.ContentType.TEXTVCARD, parts.get(0).getContentType());
+      assertEquals(strVCard.toString(), parts.get(0).getText());
+
+      // decoded after loading
+      assertArrayEquals(abImage, ((GenericMessagePart)parts.get(1)).getPartContent().getBytes());
+   }
+
    /**
     * Test of {@code loadMessages} method, of class
     * {@code SMSBackupAndRestoreMessageReader}.
@@ -129,6 +179,57 @@ public final class SMSBackupAndRestoreMessageReaderTest
       assertEquals(0, iResult);
    }
 
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code SMSBackupAndRestoreMessageReader}, validating against the SMS
+    * Backup & Restore schema while parsing.
+    */
+   @Test
+   public void testLoadMessagesValidating()
+   {
+      final IMessageReader messageReader = new SMSBackupAndRestoreMessageReader(true);
+
+      final int iResult = messageReader.loadMessages(m_InputStram, null);
+      assertEquals(0, iResult);
+   }
+
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code SMSBackupAndRestoreMessageReader}, validating a message file of
+    * another type.
+    *
+    * @throws IOException if closing of input stream fails.
+    */
+   @Test
+   public void testLoadMessagesValidatingInvalid() throws IOException
+   {
+      final IMessageReader messageReader = new SMSBackupAndRestoreMessageReader(true);
+
+      try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"))
+      {
+         final int iResult = messageReader.loadMessages(is, null);
+         assertEquals(2, iResult);
+      }
+   }
+
+   /**
+    * Test of {@code loadMessages} method with the loading thread
+    * interrupted, of class {@code SMSBackupAndRestoreMessageReader}.
+    */
+   @Test
+   public void testLoadMessagesCancelled()
+   {
+      Thread.currentThread().interrupt();
+      try
+      {
+         assertEquals(4, m_MessageReader.loadMessages(m_InputStram, null));
+      }
+      finally
+      {
+         Thread.interrupted();
+      }
+   }
+
    /**
     * Test of {@code getThreadArray} method, of class
     * {@code SMSBackupAndRestoreMessageReader}.
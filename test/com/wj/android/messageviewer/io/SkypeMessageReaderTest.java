@@ -25,8 +25,15 @@ package com.wj.android.messageviewer.io;
 
 import com.wj.android.messageviewer.message.MessageThread;
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.ParseException;
 import org.junit.Assert;
 import org.junit.Before;
@@ -146,4 +153,64 @@ public final class SkypeMessageReaderTest
       final MessageThread thread = aThreads[0];
       assertEquals(2, thread.getMessages().size());
    }
+
+   /**
+    * Test the messages returned by {@code getThreadArray} method, of class
+    * {@code SkypeMessageReader}, when read lazily.
+    */
+   @Test
+   public void testGetThreadArrayMessagesLazy()
+   {
+      final IMessageReader messageReader = new SkypeMessageReader(true);
+
+      final int iResult = messageReader.loadMessages(null, m_MainDB);
+      assertEquals(0, iResult);
+      assertEquals(m_MessageReader.loadMessages(null, m_MainDB), iResult);
+      assertEquals(m_MessageReader.getNumberOfMessages(), messageReader.getNumberOfMessages());
+
+      final MessageThread[] aThreads = messageReader.getThreadArray();
+      assertArrayEquals(m_aCheckThreads, aThreads);
+
+      final MessageThread thread = aThreads[0];
+      final MessageThread eagerThread = m_MessageReader.getThreadArray()[0];
+      assertEquals(2, thread.getMessageCount());
+      assertEquals(eagerThread.getLastActivity(), thread.getLastActivity());
+      assertArrayEquals(eagerThread.getMessages().toArray(), thread.getMessages().toArray());
+      assertEquals(2, thread.getMessageCount());
+   }
+
+   /**
+    * Test of {@code getMessageCount} method, of class {@code MessageThread},
+    * of a conversation read lazily by {@code SkypeMessageReader} holding
+    * two messages of the same timestamp.
+    *
+    * @throws IOException if copying the database fails.
+    * @throws SQLException if adding the message fails.
+    */
+   @Test
+   public void testMessageCountLazySameTimestamp() throws IOException, SQLException
+   {
+      final File mainDB = File.createTempFile("main", ".db");
+      try
+      {
+         Files.copy(m_MainDB.toPath(), mainDB.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         try (final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + mainDB.getAbsolutePath()); final Statement statement = connection.createStatement())
+         {
+            statement.executeUpdate("insert into Messages (convo_id, author, body_xml, timestamp, type) select convo_id, author, 'Same second', timestamp, type from Messages where type == 61 and LENGTH(body_xml) > 0 limit 1");
+         }
+
+         final IMessageReader messageReader = new SkypeMessageReader(true);
+         assertEquals(0, messageReader.loadMessages(null, mainDB));
+
+         final MessageThread thread = messageReader.getThreadArray()[0];
+         final int iAnnouncedCount = thread.getMessageCount();
+         assertEquals(2, iAnnouncedCount);
+         assertEquals(iAnnouncedCount, thread.getMessages().size());
+         assertEquals(iAnnouncedCount, messageReader.getNumberOfMessages());
+      }
+      finally
+      {
+         mainDB.delete();
+      }
+   }
 }
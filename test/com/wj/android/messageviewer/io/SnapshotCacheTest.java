@@ -0,0 +1,413 @@
+/*
+ * $Id$
+ *
+ * File:   SnapshotCacheTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:13:28 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.GenericMessagePart;
+import com.wj.android.messageviewer.message.IMMSMessagePart;
+import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.IMessageLoader;
+import com.wj.android.messageviewer.message.MMSMessage;
+import com.wj.android.messageviewer.message.MessageThread;
+import com.wj.android.messageviewer.message.SMSMessage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link SnapshotCache}.
+ *
+ * @author Werner Jaeger
+ */
+public final class SnapshotCacheTest
+{
+   private File m_TestDir;
+   private File m_MessageFile;
+   private SnapshotCache m_Cache;
+
+   /**
+    * Constructs a new {@code SnapshotCacheTest} object.
+    */
+   public SnapshotCacheTest()
+   {
+   }
+
+   /**
+    * Creates a temporary test directory holding a copy of the Titanium test
+    * message file.
+    *
+    * <p>
+    *    Run before each of the test methods.
+    * </p>
+    *
+    * @throws IOException if creating the directory or the copy fails.
+    */
+   @Before
+   public void setUp() throws IOException
+   {
+      m_TestDir = Files.createTempDirectory("snapshotcachetest").toFile();
+      m_MessageFile = new File(m_TestDir, "messages.xml");
+      try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"))
+      {
+         Files.copy(is, m_MessageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      m_Cache = new SnapshotCache(new File(m_TestDir, "cache"), Long.MAX_VALUE);
+   }
+
+   /**
+    * Deletes the temporary test directory.
+    *
+    * <p>
+    *    Run after each of the test methods.
+    * </p>
+    */
+   @After
+   public void tearDown()
+   {
+      delete(m_TestDir);
+      m_TestDir = null;
+   }
+
+   /**
+    * Test of {@code store} and {@code open} methods, of class
+    * {@code SnapshotCache}, with a Titanium message file.
+    *
+    * @throws IOException if reading the message file fails.
+    */
+   @Test
+   public void testStoreAndOpen() throws IOException
+   {
+      assertNull(m_Cache.open(m_MessageFile, null));
+
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+      m_Cache.store(m_MessageFile, null, reader);
+
+      final IMessageReader snapshot = m_Cache.open(m_MessageFile, null);
+      assertNotNull(snapshot);
+      assertEquals(reader.getNumberOfMessages(), snapshot.getNumberOfMessages());
+
+      final MessageThread[] aExpected = reader.getThreadArray();
+      final MessageThread[] aActual = snapshot.getThreadArray();
+      assertEquals(aExpected.length, aActual.length);
+      for (int i = 0; i < aExpected.length; i++)
+      {
+         assertEquals(aExpected[i].toString(), aActual[i].toString());
+         assertEquals(aExpected[i].getMessageCount(), aActual[i].getMessageCount());
+         assertEquals(aExpected[i].getLastActivity(), aActual[i].getLastActivity());
+         assertArrayEquals(aExpected[i].getMessages().toArray(), aActual[i].getMessages().toArray());
+      }
+   }
+
+   /**
+    * Test of {@code storeLater} method, of class {@code SnapshotCache}.
+    *
+    * @throws IOException if reading the message file fails.
+    * @throws InterruptedException if interrupted while waiting for the
+    *         snapshot.
+    */
+   @Test
+   public void testStoreLater() throws IOException, InterruptedException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+      m_Cache.storeLater(m_MessageFile, null, reader);
+
+      IMessageReader snapshot = null;
+      for (int i = 0; i < 200 && null == snapshot; i++)
+      {
+         Thread.sleep(50);
+         snapshot = m_Cache.open(m_MessageFile, null);
+      }
+
+      assertNotNull(snapshot);
+      assertEquals(reader.getNumberOfMessages(), snapshot.getNumberOfMessages());
+   }
+
+   /**
+    * Test of {@code open} method, of class {@code SnapshotCache}, after the
+    * message file changed.
+    *
+    * @throws IOException if reading or changing the message file fails.
+    */
+   @Test
+   public void testOpenChanged() throws IOException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+      m_Cache.store(m_MessageFile, null, reader);
+      assertNotNull(m_Cache.open(m_MessageFile, null));
+
+      Files.write(m_MessageFile.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      assertNull(m_Cache.open(m_MessageFile, null));
+   }
+
+   /**
+    * Test of {@code store} and {@code open} methods, of class
+    * {@code SnapshotCache}, with MMS message parts.
+    *
+    * @throws IOException if creating a message part fails.
+    */
+   @Test
+   public void testStoreAndOpenMMS() throws IOException
+   {
+      // larger than the write buffer of the snapshot and kept in the blob file
+      final byte[] abImage = Arrays.copyOf(new byte[] {(byte)0xFF, (byte)0xD8, (byte)0xFF, 0, 1, 2, 3}, 100 * 1024);
+      abImage[abImage.length - 1] = 4;
+      final List<IMMSMessagePart> parts = new ArrayList<>();
+      parts.add(IMMSMessagePart.ContentType.TEXTPLAIN.newMessagePart(IMMSMessagePart.ContentType.TEXTPLAIN, "<text>", "text.txt", "Hello".getBytes(StandardCharsets.UTF_8), "UTF-8"));
+      parts.add(IMMSMessagePart.ContentType.IMAMGEJPEG.newMessagePart(IMMSMessagePart.ContentType.IMAMGEJPEG, "<image>", "image.jpg", abImage, "UTF-8"));
+
+      final MMSMessage mms = new MMSMessage(parts, "", "+4912345", new Date(1420920060000L), IMessage.MessageBox.INBOX);
+      mms.setSubject("Subject");
+      final MessageThread thread = new MessageThread("Test", "+4912345");
+      thread.addMessage(mms);
+
+      m_Cache.store(m_MessageFile, null, reader(thread));
+
+      final IMessageReader snapshot = m_Cache.open(m_MessageFile, null);
+      assertNotNull(snapshot);
+      assertEquals(1, snapshot.getThreadArray().length);
+
+      final IMessage msg = snapshot.getThreadArray()[0].getMessages().iterator().next();
+      assertTrue(msg instanceof MMSMessage);
+      assertEquals(mms, msg);
+      assertEquals("Subject", ((MMSMessage)msg).getSubject());
+      assertEquals(mms.getMessageText(), msg.getMessageText());
+
+      final List<IMMSMessagePart> actualParts = ((MMSMessage)msg).getAllMessageParts();
+      assertEquals(2, actualParts.size());
+      assertEquals("text", actualParts.get(0).getContentId());
+      assertEquals(IMMSMessagePart.ContentType.IMAMGEJPEG, actualParts.get(1).getContentType());
+      assertArrayEquals(abImage, ((GenericMessagePart)actualParts.get(1)).getPartContent().getBytes());
+   }
+
+   /**
+    * Test of {@code write} method, of class {@code MessageSnapshot}, with a
+    * snapshot exceeding the maximum size.
+    *
+    * @throws IOException if reading the message file fails or, as expected,
+    *         the snapshot is too large.
+    */
+   @Test(expected = IOException.class)
+   public void testWriteTooLarge() throws IOException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+
+      MessageSnapshot.write(reader, new File(m_TestDir, "snapshot"), 100);
+   }
+
+   /**
+    * Test of {@code store} method, of class {@code SnapshotCache}, with a
+    * thread not loaded yet.
+    */
+   @Test
+   public void testStoreLazy()
+   {
+      final MessageThread thread = new MessageThread("Test", "+4912345", new IMessageLoader()
+      {
+         @Override
+         public Collection<IMessage> loadMessages(final MessageThread thread)
+         {
+            return(Collections.<IMessage>singletonList(new SMSMessage("", "+4912345", new Date(1420920060000L), "Hello", IMessage.MessageBox.INBOX)));
+         }
+
+         @Override
+         public void release(final MessageThread thread)
+         {
+         }
+      }, 1, null);
+
+      m_Cache.store(m_MessageFile, null, reader(thread));
+      assertNull(m_Cache.open(m_MessageFile, null));
+      assertFalse(thread.isLoaded());
+
+      thread.prefetch();
+      m_Cache.store(m_MessageFile, null, reader(thread));
+      assertNotNull(m_Cache.open(m_MessageFile, null));
+   }
+
+   /**
+    * Test of {@code store} method, of class {@code SnapshotCache}, evicting
+    * snapshots while a snapshot is in use.
+    *
+    * @throws IOException if reading or copying the message file fails.
+    */
+   @Test
+   public void testEvictPinned() throws IOException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+
+      final File cacheDir = new File(m_TestDir, "cache");
+      m_Cache.store(m_MessageFile, null, reader);
+      final File[] aSnapshotFiles = cacheDir.listFiles();
+      assertEquals(1, aSnapshotFiles.length);
+
+      final SnapshotCache cache = new SnapshotCache(cacheDir, aSnapshotFiles[0].length() * 3 / 2);
+      final IMessageReader snapshot = cache.open(m_MessageFile, null);
+      assertNotNull(snapshot);
+      assertTrue(aSnapshotFiles[0].setLastModified(0));
+
+      final File otherFile = new File(m_TestDir, "other.xml");
+      Files.copy(m_MessageFile.toPath(), otherFile.toPath());
+      Files.write(otherFile.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      cache.store(otherFile, null, reader);
+
+      // over budget, but the least recently used snapshot is still mapped
+      assertTrue(aSnapshotFiles[0].isFile());
+      assertEquals(2, cacheDir.listFiles().length);
+      assertEquals(reader.getNumberOfMessages(), snapshot.getNumberOfMessages());
+   }
+
+   /**
+    * Test of {@code store} method, of class {@code SnapshotCache}, with a
+    * snapshot larger than the disk budget.
+    *
+    * @throws IOException if reading the message file fails.
+    */
+   @Test
+   public void testStoreLargerThanBudget() throws IOException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+
+      final SnapshotCache cache = new SnapshotCache(new File(m_TestDir, "cache"), 100);
+      cache.store(m_MessageFile, null, reader);
+      assertNull(cache.open(m_MessageFile, null));
+      assertEquals(0, new File(m_TestDir, "cache").listFiles().length);
+   }
+
+   /**
+    * Test of {@code read} method, of class {@code MessageSnapshot}, with a
+    * message box code not known.
+    *
+    * @throws IOException if reading the message file fails or, as expected,
+    *         the snapshot is invalid.
+    */
+   @Test(expected = IOException.class)
+   public void testReadUnknownCode() throws IOException
+   {
+      final IMessageReader reader = new TitaniumBackupMessageReader();
+      try (final InputStream is = new FileInputStream(m_MessageFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+
+      final File snapshotFile = new File(m_TestDir, "snapshot");
+      MessageSnapshot.write(reader, snapshotFile);
+      assertNotNull(MessageSnapshot.read(snapshotFile));
+
+      // the code table follows magic and version
+      final byte[] abSnapshot = Files.readAllBytes(snapshotFile.toPath());
+      final String strHeader = new String(abSnapshot, 0, 256, StandardCharsets.ISO_8859_1);
+      final int iIndex = strHeader.indexOf(IMessage.MessageBox.INBOX.toString());
+      assertTrue(iIndex > 12);
+      abSnapshot[iIndex] = 'X';
+      Files.write(snapshotFile.toPath(), abSnapshot);
+
+      MessageSnapshot.read(snapshotFile);
+   }
+
+   private static IMessageReader reader(final MessageThread thread)
+   {
+      return(new IMessageReader()
+      {
+         @Override
+         public int getNumberOfMessages()
+         {
+            return(thread.getMessageCount());
+         }
+
+         @Override
+         public MessageThread[] getThreadArray()
+         {
+            return(new MessageThread[] {thread});
+         }
+
+         @Override
+         public int loadMessages(final InputStream is, final File contactsDB)
+         {
+            return(0);
+         }
+
+         @Override
+         public int loadMessages(final InputStream is, final File contactsDB, final IThreadListener listener)
+         {
+            return(0);
+         }
+      });
+   }
+
+   private static void delete(final File file)
+   {
+      final File[] aFiles = file.listFiles();
+      if (null != aFiles)
+      {
+         for (final File child : aFiles)
+            delete(child);
+      }
+
+      file.delete();
+   }
+}
@@ -0,0 +1,65 @@
+/*
+ * $Id$
+ *
+ * File:   StringPoolTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:41:55 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link StringPool}.
+ *
+ * @author Werner Jaeger
+ */
+public final class StringPoolTest
+{
+   /**
+    * Constructs a new {@code StringPoolTest} object.
+    */
+   public StringPoolTest()
+   {
+   }
+
+   /**
+    * Test of {@code intern} method, of class {@code StringPool}.
+    */
+   @Test
+   public void testIntern()
+   {
+      final StringPool pool = new StringPool();
+      final String strFirst = new String("+4912345");
+
+      assertNull(pool.intern(null));
+      assertSame(strFirst, pool.intern(strFirst));
+      assertSame(strFirst, pool.intern(new String("+4912345")));
+      assertSame(strFirst, pool.intern(new String("+4912345")));
+      assertEquals("+4954321", pool.intern("+4954321"));
+
+      assertEquals(2, pool.size());
+      assertEquals(4, pool.getLookups());
+      assertEquals(2, pool.getHits());
+      assertEquals(0.5, pool.getHitRate(), 0.0);
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ * $Id$
+ *
+ * File:   ThreadSliceScannerTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:18:22 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link ThreadSliceScanner}.
+ *
+ * @author Werner Jaeger
+ */
+public final class ThreadSliceScannerTest
+{
+   /**
+    * Constructs a new {@code ThreadSliceScannerTest} object.
+    */
+   public ThreadSliceScannerTest()
+   {
+   }
+
+   /**
+    * Test of {@code next} method, of class {@code ThreadSliceScanner}.
+    *
+    * @throws IOException never thrown.
+    */
+   @Test
+   public void testNext() throws IOException
+   {
+      final String strThread1 = "<thread address=\"a>b\"><sms msgBox=\"inbox\"><![CDATA[</thread>]]></sms><!-- </thread> --></thread>";
+      final String strThread2 = "<thread address='c'/>";
+      final String strThread3 = "<thread\naddress=\"d\"><sms msgBox=\"sent\">x</sms></thread >";
+      final ThreadSliceScanner scanner = new ThreadSliceScanner(new StringReader("<?xml version=\"1.0\"?>\n<threads count=\"3\">"
+              + strThread1 + "\n<!-- <thread> -->" + strThread2 + "<threadx/>" + strThread3 + "</threads>"));
+
+      assertEquals(strThread1, scanner.next());
+      assertEquals(strThread2, scanner.next());
+      assertEquals(strThread3, scanner.next());
+      assertNull(scanner.next());
+   }
+
+   /**
+    * Test of {@code next} method, of class {@code ThreadSliceScanner}, with
+    * threads spanning several buffers and an unterminated thread.
+    *
+    * @throws IOException never thrown.
+    */
+   @Test
+   public void testNextLarge() throws IOException
+   {
+      final StringBuilder body = new StringBuilder();
+      for (int i = 0; i < 20000; i++)
+         body.append("<sms msgBox=\"inbox\">message ").append(i).append("</sms>");
+
+      final String strThread = "<thread address=\"1\">" + body + "</thread>";
+      final String strUnterminated = "<thread address=\"2\">" + body;
+      final ThreadSliceScanner scanner = new ThreadSliceScanner(new StringReader("<threads>" + strThread + strThread + strUnterminated));
+
+      assertEquals(strThread, scanner.next());
+      assertEquals(strThread, scanner.next());
+      assertEquals(strUnterminated, scanner.next());
+      assertNull(scanner.next());
+   }
+}
@@ -0,0 +1,87 @@
+/*
+ * $Id$
+ *
+ * File:   TimestampDecoderBenchmark.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:15:04 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Compares the per message cost of decoding the timestamps of a million
+ * message Titanium Backup file by {@link SimpleDateFormat} and by
+ * {@link TimestampDecoder}.
+ *
+ * <p>
+ *    Not a unit test, run it by its {@code main} method with the test
+ *    class path, e.g.
+ *    {@code java -cp build/classes:build/test/classes com.wj.android.messageviewer.io.TimestampDecoderBenchmark}.
+ * </p>
+ *
+ * @author Werner Jaeger
+ */
+public final class TimestampDecoderBenchmark
+{
+   private static final int MESSAGES = 1000000;
+   private static final int ROUNDS = 5;
+
+   private TimestampDecoderBenchmark()
+   {
+   }
+
+   /**
+    * Runs the benchmark.
+    *
+    * @param astrArgs ignored.
+    *
+    * @throws ParseException never thrown.
+    */
+   public static void main(final String[] astrArgs) throws ParseException
+   {
+      final String[] astrTimestamps = new String[MESSAGES];
+      for (int i = 0; i < MESSAGES; i++)
+         astrTimestamps[i] = String.format(Locale.ROOT, "2015-%02d-%02dT%02d:%02d:%02d.%03dZ", 1 + i % 12, 1 + i % 28, i % 24, i % 60, (i / 60) % 60, i % 1000);
+
+      final SimpleDateFormat dateFmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+      dateFmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+      for (int iRound = 1; iRound <= ROUNDS; iRound++)
+      {
+         long lCheckSum = 0;
+
+         long lStart = System.nanoTime();
+         for (final String strTimestamp : astrTimestamps)
+            lCheckSum += dateFmt.parse(strTimestamp).getTime();
+         final long lFormatNanos = System.nanoTime() - lStart;
+
+         lStart = System.nanoTime();
+         for (final String strTimestamp : astrTimestamps)
+            lCheckSum -= new Date(TimestampDecoder.decode(strTimestamp)).getTime();
+         final long lDecoderNanos = System.nanoTime() - lStart;
+
+         System.out.printf(Locale.ROOT, "round %d: SimpleDateFormat %.1f ns/message, TimestampDecoder %.1f ns/message%s%n", iRound, (double)lFormatNanos / MESSAGES, (double)lDecoderNanos / MESSAGES, 0 == lCheckSum ? "" : " MISMATCH");
+      }
+   }
+}
@@ -0,0 +1,97 @@
+/*
+ * $Id$
+ *
+ * File:   TimestampDecoderTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:15:04 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link TimestampDecoder}.
+ *
+ * @author Werner Jaeger
+ */
+public final class TimestampDecoderTest
+{
+   /**
+    * Constructs a new {@code TimestampDecoderTest} object.
+    */
+   public TimestampDecoderTest()
+   {
+   }
+
+   /**
+    * Test of {@code decode} method, of class {@code TimestampDecoder},
+    * comparing with {@link SimpleDateFormat}.
+    *
+    * @throws ParseException if decoding fails.
+    */
+   @Test
+   public void testDecode() throws ParseException
+   {
+      final SimpleDateFormat dateFmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+      dateFmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+      final Random random = new Random(4711);
+      for (int i = 0; i < 10000; i++)
+      {
+         final String strTimestamp = String.format(Locale.ROOT, "%04d-%02d-%02dT%02d:%02d:%02d.%0" + (1 + random.nextInt(3)) + "d%s",
+                 1970 + random.nextInt(100), 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(10), "Z");
+         assertEquals(strTimestamp, dateFmt.parse(strTimestamp).getTime(), TimestampDecoder.decode(strTimestamp));
+      }
+
+      assertEquals(dateFmt.parse("2016-02-29T23:59:59.999Z").getTime(), TimestampDecoder.decode("2016-02-29T23:59:59.999Z"));
+      assertEquals(dateFmt.parse("2000-12-31T12:00:00.5Z").getTime(), TimestampDecoder.decode("2000-12-31T12:00:00.5Z"));
+      assertEquals(dateFmt.parse("1500-06-01T00:00:00.000Z").getTime(), TimestampDecoder.decode("1500-06-01T00:00:00.000Z"));
+      assertEquals(1420920060000L, TimestampDecoder.decode("<2015-01-10T20:01:00.00Z>", 1, 24));
+   }
+
+   /**
+    * Test of {@code decode} method, of class {@code TimestampDecoder}, with
+    * malformed timestamps.
+    */
+   @Test
+   public void testDecodeMalformed()
+   {
+      final String[] astrMalformed = {"", "garbage", "2015-02-29T00:00:00.000Z", "2015-13-01T00:00:00.000Z", "2015-01-01T24:00:00.000Z", "2015-01-01T00:00:00Z", "2015-01-01T00:00:00.000Zjunk", "2015-01-01 00:00:00.000Z"};
+
+      for (final String strMalformed : astrMalformed)
+      {
+         try
+         {
+            TimestampDecoder.decode(strMalformed);
+            fail("Decoded " + strMalformed);
+         }
+         catch (final ParseException ex)
+         {
+            // expected
+         }
+      }
+   }
+}
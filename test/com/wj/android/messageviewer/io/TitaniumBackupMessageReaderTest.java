@@ -30,8 +30,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 import static org.hamcrest.CoreMatchers.is;
 import org.junit.After;
@@ -144,6 +147,121 @@ public final class TitaniumBackupMessageReaderTest
       assertEquals(0, iResult);
    }
 
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code TitaniumBackupMessageReader}, validating against the Titanium
+    * Backup schema while parsing.
+    */
+   @Test
+   public void testLoadMessagesValidating()
+   {
+      final IMessageReader messageReader = new TitaniumBackupMessageReader(true);
+
+      final int iResult = messageReader.loadMessages(m_InputStream, null);
+      assertEquals(0, iResult);
+   }
+
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code TitaniumBackupMessageReader}, validating a message file of another
+    * type.
+    *
+    * @throws IOException if closing of input stream fails.
+    */
+   @Test
+   public void testLoadMessagesValidatingInvalid() throws IOException
+   {
+      final IMessageReader messageReader = new TitaniumBackupMessageReader(true);
+
+      try (final InputStream is = getClass().getResourceAsStream("testdata/sms-2015-03-09.xml"))
+      {
+         final int iResult = messageReader.loadMessages(is, null);
+         assertEquals(2, iResult);
+      }
+   }
+
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code TitaniumBackupMessageReader}, parsing threads in parallel.
+    */
+   @Test
+   public void testLoadMessagesParallel()
+   {
+      final IMessageReader messageReader = new TitaniumBackupMessageReader(false, true);
+
+      final int iResult = messageReader.loadMessages(m_InputStream, null);
+      assertEquals(0, iResult);
+      assertEquals(5, messageReader.getNumberOfMessages());
+
+      final MessageThread[] aThreads = messageReader.getThreadArray();
+      assertArrayEquals(new MessageThread[] {new MessageThread(null, "Test")}, aThreads);
+
+      int i = 0;
+      for (final IMessage msg : aThreads[0].getMessages())
+         assertThat(msg, is(m_aCheckMessages[i++]));
+   }
+
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code TitaniumBackupMessageReader}, with a thread listener.
+    *
+    * @throws IOException if closing of input stream fails.
+    */
+   @Test
+   public void testLoadMessagesThreadListener() throws IOException
+   {
+      for (final boolean fParallel : new boolean[] {false, true})
+      {
+         final IMessageReader messageReader = new TitaniumBackupMessageReader(false, fParallel);
+         final List<MessageThread> loadedThreads = new ArrayList<>();
+         final List<Integer> messageCounts = new ArrayList<>();
+
+         try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"))
+         {
+            final int iResult = messageReader.loadMessages(is, null, new IThreadListener()
+            {
+               @Override
+               public void threadLoaded(final MessageThread thread)
+               {
+                  loadedThreads.add(thread);
+                  messageCounts.add(thread.getMessages().size());
+               }
+            });
+
+            assertEquals(0, iResult);
+         }
+
+         assertArrayEquals(messageReader.getThreadArray(), loadedThreads.toArray(new MessageThread[loadedThreads.size()]));
+         assertEquals(Arrays.asList(5), messageCounts);
+      }
+   }
+
+   /**
+    * Test of {@code loadMessages} method, of class
+    * {@code TitaniumBackupMessageReader}, with the loading thread
+    * interrupted.
+    *
+    * @throws IOException if closing of input stream fails.
+    */
+   @Test
+   public void testLoadMessagesCancelled() throws IOException
+   {
+      for (final boolean fParallel : new boolean[] {false, true})
+      {
+         final IMessageReader messageReader = new TitaniumBackupMessageReader(false, fParallel);
+
+         try (final InputStream is = getClass().getResourceAsStream("testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml"))
+         {
+            Thread.currentThread().interrupt();
+            assertEquals(4, messageReader.loadMessages(is, null));
+         }
+         finally
+         {
+            Thread.interrupted();
+         }
+      }
+   }
+
    /**
     * Test of {@code getThreadArray} method, of class
     * {@code TitaniumBackupMessageReader}.
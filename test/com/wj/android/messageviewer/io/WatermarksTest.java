@@ -0,0 +1,171 @@
+/*
+ * $Id$
+ *
+ * File:   WatermarksTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:37:19 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.io;
+
+import com.wj.android.messageviewer.message.IMessage;
+import com.wj.android.messageviewer.message.MessageThread;
+import com.wj.android.messageviewer.message.SMSMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link Watermarks} and incremental loading.
+ *
+ * @author Werner Jaeger
+ */
+public final class WatermarksTest
+{
+   private static final String TITANIUMFILE = "testdata/com.keramidas.virtual.XML_MESSAGES-00000000-000000.xml";
+   private static final String SMSBACKUPANDRESTOREFILE = "testdata/sms-2015-03-09.xml";
+
+   /**
+    * Constructs a new {@code WatermarksTest} object.
+    */
+   public WatermarksTest()
+   {
+   }
+
+   /**
+    * Test of {@code loadNewMessages} method, of class
+    * {@code TitaniumBackupMessageReader}.
+    *
+    * @throws IOException if reading the message file fails.
+    */
+   @Test
+   public void testLoadNewMessagesTitanium() throws IOException
+   {
+      checkLoadNewMessages(new TitaniumBackupMessageReader(), new TitaniumBackupMessageReader(), TITANIUMFILE);
+      checkLoadNewMessages(new TitaniumBackupMessageReader(), new TitaniumBackupMessageReader(false, true), TITANIUMFILE);
+   }
+
+   /**
+    * Test of {@code loadNewMessages} method, of class
+    * {@code SMSBackupAndRestoreMessageReader}.
+    *
+    * @throws IOException if reading the message file fails.
+    */
+   @Test
+   public void testLoadNewMessagesSMSBackupAndRestore() throws IOException
+   {
+      checkLoadNewMessages(new SMSBackupAndRestoreMessageReader(), new SMSBackupAndRestoreMessageReader(), SMSBACKUPANDRESTOREFILE);
+   }
+
+   /**
+    * Test of {@code append} method, of class {@code Watermarks}, with a new
+    * message of the date of a known message, which the thread drops.
+    */
+   @Test
+   public void testAppendSameDate()
+   {
+      final Date date = new Date(1420920060000L);
+      final MessageThread thread = new MessageThread("Test", "+4912345");
+      thread.addMessage(new SMSMessage("", "+4912345", date, "Hello", IMessage.MessageBox.INBOX));
+      final List<MessageThread> threads = new ArrayList<>();
+      threads.add(thread);
+      final Watermarks watermarks = Watermarks.of(threads.toArray(new MessageThread[threads.size()]));
+
+      final MessageThread newThread = new MessageThread("Test", "+4912345");
+      newThread.addMessage(new SMSMessage("", "+4912345", date, "World", IMessage.MessageBox.INBOX));
+      newThread.addMessage(new SMSMessage("", "+4912345", new Date(date.getTime() + 1000), "Hello again", IMessage.MessageBox.INBOX));
+
+      assertEquals(1, watermarks.append(threads, new MessageThread[] {newThread}));
+      assertEquals(2, thread.getMessageCount());
+   }
+
+   /**
+    * Loads the file without the newest message of each thread, then loads
+    * the file incrementally, which must only read these messages, and
+    * appends them.
+    */
+   private void checkLoadNewMessages(final IMessageReader reader, final IIncrementalMessageReader incrementalReader, final String strFile) throws IOException
+   {
+      try (final InputStream is = getClass().getResourceAsStream(strFile))
+      {
+         assertEquals(0, reader.loadMessages(is, null));
+      }
+      final MessageThread[] aExpected = reader.getThreadArray();
+
+      final List<MessageThread> threads = new ArrayList<>();
+      int iNewest = 0;
+      for (final MessageThread thread : aExpected)
+      {
+         final MessageThread older = new MessageThread(thread.getName(), thread.getAddress());
+         final List<IMessage> messages = new ArrayList<>(thread.getMessages());
+         for (int i = 0; i < messages.size() - 1; i++)
+            older.addMessage(messages.get(i));
+
+         if (0 < older.getMessageCount())
+            threads.add(older);
+         if (!messages.isEmpty())
+            iNewest++;
+      }
+
+      final Watermarks watermarks = Watermarks.of(threads.toArray(new MessageThread[threads.size()]));
+      try (final InputStream is = getClass().getResourceAsStream(strFile))
+      {
+         assertEquals(0, incrementalReader.loadNewMessages(is, null, watermarks));
+      }
+      assertEquals(iNewest, incrementalReader.getNumberOfMessages());
+
+      assertEquals(iNewest, watermarks.append(threads, incrementalReader.getThreadArray()));
+      assertEquals(iNewest, threads.size());
+      for (final MessageThread thread : aExpected)
+      {
+         if (0 < thread.getMessageCount())
+         {
+            final MessageThread actual = threads.get(indexOf(threads, thread.getAddress()));
+            assertArrayEquals(thread.getMessages().toArray(), actual.getMessages().toArray());
+         }
+      }
+
+      // nothing new on a second refresh
+      try (final InputStream is = getClass().getResourceAsStream(strFile))
+      {
+         assertEquals(0, incrementalReader.loadNewMessages(is, null, watermarks));
+      }
+      assertEquals(0, incrementalReader.getNumberOfMessages());
+      assertEquals(0, watermarks.append(threads, incrementalReader.getThreadArray()));
+      assertEquals(0, watermarks.append(threads, aExpected));
+      assertEquals(iNewest, threads.size());
+   }
+
+   private static int indexOf(final List<MessageThread> threads, final String strAddress)
+   {
+      int iIndex = -1;
+
+      for (int i = 0; i < threads.size() && iIndex < 0; i++)
+      {
+         if (strAddress.equals(threads.get(i).getAddress()))
+            iIndex = i;
+      }
+
+      return(iIndex);
+   }
+}
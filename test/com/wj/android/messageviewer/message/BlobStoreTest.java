@@ -0,0 +1,209 @@
+/*
+ * $Id$
+ *
+ * File:   BlobStoreTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:47:54 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import javax.xml.bind.DatatypeConverter;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link BlobStore}.
+ *
+ * @author Werner Jaeger
+ */
+public final class BlobStoreTest
+{
+   private File m_TestDir;
+
+   /**
+    * Constructs a new {@code BlobStoreTest} object.
+    */
+   public BlobStoreTest()
+   {
+   }
+
+   /**
+    * Creates a temporary test directory.
+    *
+    * <p>
+    *    Run before each of the test methods.
+    * </p>
+    *
+    * @throws IOException if creating the directory fails.
+    */
+   @Before
+   public void setUp() throws IOException
+   {
+      m_TestDir = Files.createTempDirectory("blobstoretest").toFile();
+   }
+
+   /**
+    * Deletes the temporary test directory.
+    *
+    * <p>
+    *    Run after each of the test methods.
+    * </p>
+    */
+   @After
+   public void tearDown()
+   {
+      final File[] aFiles = m_TestDir.listFiles();
+      if (null != aFiles)
+      {
+         for (final File file : aFiles)
+            file.delete();
+      }
+
+      m_TestDir.delete();
+      m_TestDir = null;
+   }
+
+   /**
+    * Test of {@code content} method, of class {@code BlobStore}.
+    *
+    * @throws IOException if reading a content fails.
+    */
+   @Test
+   public void testContent() throws IOException
+   {
+      final BlobStore store = new BlobStore(m_TestDir, 16);
+
+      final byte[] abSmall = {1, 2, 3};
+      final IPartContent small = store.content(abSmall);
+      assertSame(abSmall, small.getBytes());
+      assertEquals(0, store.size());
+
+      final byte[][] aabLarge = new byte[3][];
+      final IPartContent[] aContents = new IPartContent[aabLarge.length];
+      for (int i = 0; i < aabLarge.length; i++)
+      {
+         aabLarge[i] = new byte[1000 * (i + 1)];
+         for (int j = 0; j < aabLarge[i].length; j++)
+            aabLarge[i][j] = (byte)(i + j);
+
+         aContents[i] = store.content(aabLarge[i]);
+      }
+
+      assertEquals(6000, store.size());
+      for (int i = 0; i < aabLarge.length; i++)
+      {
+         assertTrue(aContents[i].getBytes() != aabLarge[i]);
+         assertArrayEquals(aabLarge[i], aContents[i].getBytes());
+         assertArrayEquals(aabLarge[i], read(aContents[i]));
+      }
+   }
+
+   /**
+    * Test of {@code base64Content} method, of class {@code BlobStore}.
+    *
+    * @throws IOException if reading a content fails.
+    */
+   @Test
+   public void testBase64Content() throws IOException
+   {
+      final BlobStore store = new BlobStore(m_TestDir, 16);
+
+      final byte[] abSmall = {1, 2, 3};
+      assertArrayEquals(abSmall, store.base64Content(DatatypeConverter.printBase64Binary(abSmall)).getBytes());
+      assertEquals(0, store.size());
+
+      final byte[] abLarge = new byte[20000];
+      for (int i = 0; i < abLarge.length; i++)
+         abLarge[i] = (byte)i;
+
+      final String strLarge = DatatypeConverter.printBase64Binary(abLarge);
+      final IPartContent large = store.base64Content(strLarge);
+      assertEquals(strLarge.length(), store.size());
+      assertArrayEquals(abLarge, large.getBytes());
+      assertArrayEquals(abLarge, read(large));
+   }
+
+   /**
+    * Test of {@code openStream} method, of contents of class
+    * {@code BlobStore}, reading contents while others are appended.
+    *
+    * @throws IOException if reading a content fails.
+    */
+   @Test
+   public void testOpenStreamAppending() throws IOException
+   {
+      final BlobStore store = new BlobStore(m_TestDir, 16);
+
+      final byte[] abFirst = new byte[1000];
+      Arrays.fill(abFirst, (byte)1);
+      final IPartContent first = store.content(abFirst);
+      assertArrayEquals(abFirst, read(first));
+
+      // beyond the region mapped by the first read
+      final byte[] abSecond = new byte[2000];
+      Arrays.fill(abSecond, (byte)2);
+      final IPartContent second = store.content(abSecond);
+      assertArrayEquals(abSecond, read(second));
+      assertArrayEquals(abFirst, read(first));
+      assertArrayEquals(abSecond, read(second));
+   }
+
+   /**
+    * Test of {@code content} method, of class {@code BlobStore}, with the
+    * store disabled.
+    *
+    * @throws IOException if reading a content fails.
+    */
+   @Test
+   public void testDisabled() throws IOException
+   {
+      final BlobStore store = new BlobStore(m_TestDir, -1);
+
+      final byte[] abLarge = new byte[100000];
+      assertSame(abLarge, store.content(abLarge).getBytes());
+      assertEquals(0, store.size());
+      assertEquals(0, m_TestDir.list().length);
+   }
+
+   private static byte[] read(final IPartContent content) throws IOException
+   {
+      final ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+      try (final InputStream is = content.openStream())
+      {
+         final byte[] abBuffer = new byte[333];
+         int iRead;
+         while ((iRead = is.read(abBuffer)) >= 0)
+            os.write(abBuffer, 0, iRead);
+      }
+
+      return(os.toByteArray());
+   }
+}
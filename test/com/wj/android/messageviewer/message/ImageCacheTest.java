@@ -0,0 +1,126 @@
+/*
+ * $Id$
+ *
+ * File:   ImageCacheTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:49:17 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link ImageCache}.
+ *
+ * @author Werner Jaeger
+ */
+public final class ImageCacheTest
+{
+   /**
+    * Constructs a new {@code ImageCacheTest} object.
+    */
+   public ImageCacheTest()
+   {
+   }
+
+   /**
+    * Test of {@code get} and {@code put} methods, of class
+    * {@code ImageCache}, exceeding the budget.
+    *
+    * @throws IOException if creating an image part fails.
+    */
+   @Test
+   public void testEviction() throws IOException
+   {
+      final ImageCache cache = new ImageCache(800);
+      final ImagePart[] aParts = new ImagePart[3];
+      final Image[] aImages = new Image[aParts.length];
+      for (int i = 0; i < aParts.length; i++)
+      {
+         aParts[i] = newImagePart(10, 10);
+         aImages[i] = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+      }
+
+      assertNull(cache.get(aParts[0], 10, 10));
+      cache.put(aParts[0], 10, 10, aImages[0]);
+      cache.put(aParts[1], 10, 10, aImages[1]);
+      assertSame(aImages[0], cache.get(aParts[0], 10, 10));
+      assertEquals(800, cache.getSize());
+      assertEquals(0, cache.getEvictions());
+
+      // evicts the least recently used part 1
+      cache.put(aParts[2], 10, 10, aImages[2]);
+      assertEquals(800, cache.getSize());
+      assertEquals(1, cache.getEvictions());
+      assertNull(cache.get(aParts[2], 20, 20));
+
+      // still softly reachable
+      assertSame(aImages[1], cache.get(aParts[1], 10, 10));
+      assertEquals(2, cache.getHits());
+      assertEquals(2, cache.getMisses());
+
+      cache.clear();
+      assertEquals(0, cache.getSize());
+      assertNull(cache.get(aParts[1], 10, 10));
+   }
+
+   /**
+    * Test of {@code getImage} method, of class {@code ImagePart}.
+    *
+    * @throws IOException if creating the image part fails.
+    */
+   @Test
+   public void testGetImage() throws IOException
+   {
+      final ImagePart part = newImagePart(600, 200);
+      final long lHits = ImageCache.getDefault().getHits();
+
+      final Image image = part.getImage(300, 400);
+      assertEquals(300, image.getWidth(null));
+      assertEquals(100, image.getHeight(null));
+      assertSame(image, part.getImage(300, 400));
+      assertEquals(lHits + 1, ImageCache.getDefault().getHits());
+
+      final Image original = part.getImage();
+      assertEquals(600, original.getWidth(null));
+      assertSame(original, part.getImage());
+      assertEquals(200, part.getImage(1000, 1000).getHeight(null));
+
+      // subsampled by 3, then scaled
+      final Image subsampled = newImagePart(1000, 999).getImage(300, 400);
+      assertEquals(300, subsampled.getWidth(null));
+      assertEquals(300, subsampled.getHeight(null));
+   }
+
+   private static ImagePart newImagePart(final int iWidth, final int iHeight) throws IOException
+   {
+      final ByteArrayOutputStream os = new ByteArrayOutputStream();
+      ImageIO.write(new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_RGB), "png", os);
+
+      return((ImagePart)IMMSMessagePart.ContentType.IMAMGEPNG.newMessagePart(IMMSMessagePart.ContentType.IMAMGEPNG, "<image>", "image.png", os.toByteArray(), "UTF-8"));
+   }
+}
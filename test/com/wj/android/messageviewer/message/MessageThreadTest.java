@@ -0,0 +1,142 @@
+/*
+ * $Id$
+ *
+ * File:   MessageThreadTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:40:18 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link MessageThread}.
+ *
+ * @author Werner Jaeger
+ */
+public final class MessageThreadTest
+{
+   /**
+    * Constructs a new {@code MessageThreadTest} object.
+    */
+   public MessageThreadTest()
+   {
+   }
+
+   /**
+    * Test of {@code addMessage} and {@code getMessages} methods, of class
+    * {@code MessageThread}, with messages added out of order.
+    */
+   @Test
+   public void testAddMessagesOutOfOrder()
+   {
+      final List<IMessage> expected = new ArrayList<>();
+      for (int i = 0; i < 100; i++)
+         expected.add(new SMSMessage(0 == i % 2 ? "+49170000" : null, "+4912345", new Date(1420920060000L + i * 1000L), "Message " + i + " \u00E4\u20AC", 0 == i % 3 ? IMessage.MessageBox.INBOX : IMessage.MessageBox.SENT));
+
+      final List<IMessage> shuffled = new ArrayList<>(expected);
+      Collections.shuffle(shuffled, new Random(42));
+
+      final MessageThread thread = new MessageThread("Test", "+4912345");
+      for (final IMessage msg : shuffled)
+         thread.addMessage(msg);
+
+      // later messages of the same date are dropped
+      thread.addMessage(new SMSMessage("", "+4912345", expected.get(10).getMessageDate(), "Duplicate", IMessage.MessageBox.INBOX));
+
+      assertEquals(expected.size(), thread.getMessageCount());
+      assertEquals(expected, new ArrayList<>(thread.getMessages()));
+      assertEquals(expected.get(expected.size() - 1).getMessageDate(), thread.getLastActivity());
+   }
+
+   /**
+    * Test of {@code getMessages} method, of class {@code MessageThread},
+    * with MMS messages and messages added after the call.
+    */
+   @Test
+   public void testGetMessages()
+   {
+      final MessageThread thread = new MessageThread(null, "+4912345");
+      assertNull(thread.getLastActivity());
+
+      final MMSMessage mms = new MMSMessage(new ArrayList<IMMSMessagePart>(), "", "+4912345", new Date(2000L), IMessage.MessageBox.INBOX);
+      thread.addMessage(new SMSMessage("", "+4912345", new Date(1000L), null, IMessage.MessageBox.SENT));
+      thread.addMessage(mms);
+
+      final Collection<IMessage> messages = thread.getMessages();
+      thread.addMessage(new SMSMessage("", "+4912345", new Date(500L), "Older", IMessage.MessageBox.SENT));
+
+      assertEquals(2, messages.size());
+      final List<IMessage> list = new ArrayList<>(messages);
+      assertNull(list.get(0).getMessageText());
+      assertSame(mms, list.get(1));
+      assertEquals(3, thread.getMessageCount());
+      assertEquals("Older", thread.getMessages().iterator().next().getMessageText());
+   }
+
+   /**
+    * Test of {@code prefetch} and {@code dispose} methods, of class
+    * {@code MessageThread}, releasing the loader of a lazily loaded thread.
+    */
+   @Test
+   public void testReleaseLoader()
+   {
+      final int[] aiReleased = new int[1];
+      final IMessageLoader loader = new IMessageLoader()
+      {
+         @Override
+         public Collection<IMessage> loadMessages(final MessageThread thread)
+         {
+            return(Collections.<IMessage>singletonList(new SMSMessage("", "+4912345", new Date(1000L), "Hello", IMessage.MessageBox.INBOX)));
+         }
+
+         @Override
+         public void release(final MessageThread thread)
+         {
+            aiReleased[0]++;
+         }
+      };
+
+      final MessageThread loaded = new MessageThread(null, "+4912345", loader, 1, new Date(1000L));
+      assertFalse(loaded.isLoaded());
+      assertEquals(1, loaded.getMessages().size());
+      assertTrue(loaded.isLoaded());
+      assertEquals(1, aiReleased[0]);
+      loaded.dispose();
+      assertEquals(1, aiReleased[0]);
+      assertEquals(1, loaded.getMessageCount());
+
+      final MessageThread disposed = new MessageThread(null, "+4912345", loader, 1, new Date(1000L));
+      disposed.dispose();
+      assertEquals(2, aiReleased[0]);
+      assertEquals(0, disposed.getMessages().size());
+      assertEquals(2, aiReleased[0]);
+   }
+}
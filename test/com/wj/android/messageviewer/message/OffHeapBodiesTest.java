@@ -0,0 +1,159 @@
+/*
+ * $Id$
+ *
+ * File:   OffHeapBodiesTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 10:45:07 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link OffHeapBodies}.
+ *
+ * @author Werner Jaeger
+ */
+public final class OffHeapBodiesTest
+{
+   /**
+    * Constructs a new {@code OffHeapBodiesTest} object.
+    */
+   public OffHeapBodiesTest()
+   {
+   }
+
+   /**
+    * Test of {@code getMessages} method, of class {@code MessageThread},
+    * with texts partly stored off heap.
+    */
+   @Test
+   public void testMessageThread()
+   {
+      final List<IMessage> expected = new ArrayList<>();
+      final MessageThread thread = new MessageThread("Test", "+4912345");
+
+      final int iThreshold = OffHeapBodies.setThreshold(10);
+      try
+      {
+         for (int i = 0; i < 2000; i++)
+         {
+            final StringBuilder strText = new StringBuilder("\u00E4\u20AC ");
+            for (int j = 0; j < i % 7; j++)
+               strText.append("Message ").append(i);
+
+            final IMessage msg = new SMSMessage("", "+4912345", new Date(1420920060000L - i * 1000L), 0 == i % 11 ? null : strText.toString(), IMessage.MessageBox.INBOX);
+            expected.add(0, msg);
+            thread.addMessage(msg);
+         }
+      }
+      finally
+      {
+         OffHeapBodies.setThreshold(iThreshold);
+      }
+
+      assertEquals(expected, new ArrayList<>(thread.getMessages()));
+      for (int i = 0; i < expected.size(); i++)
+         assertEquals(expected.get(i).getMessageText(), new ArrayList<>(thread.getMessages()).get(i).getMessageText());
+   }
+
+   /**
+    * Test of {@code getText} method, of class {@code TextPart}, with the
+    * content stored off heap.
+    *
+    * @throws IOException if creating or serializing the part fails.
+    * @throws ClassNotFoundException if deserializing the part fails.
+    */
+   @Test
+   public void testTextPart() throws IOException, ClassNotFoundException
+   {
+      final String strText = "Hello \u00E4\u20AC";
+      final GenericMessagePart part;
+
+      final int iThreshold = OffHeapBodies.setThreshold(0);
+      try
+      {
+         part = (GenericMessagePart)IMMSMessagePart.ContentType.TEXTPLAIN.newMessagePart(IMMSMessagePart.ContentType.TEXTPLAIN, "<text>", "text.txt", strText.getBytes(StandardCharsets.UTF_8), "UTF-8");
+      }
+      finally
+      {
+         OffHeapBodies.setThreshold(iThreshold);
+      }
+      assertTrue(part.getPartContent() instanceof DirectPartContent);
+      assertEquals(strText, part.getText());
+
+      final ByteArrayOutputStream os = new ByteArrayOutputStream();
+      try (final ObjectOutputStream oos = new ObjectOutputStream(os))
+      {
+         oos.writeObject(part);
+      }
+
+      try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(os.toByteArray())))
+      {
+         final GenericMessagePart copy = (GenericMessagePart)ois.readObject();
+         assertFalse(copy.getPartContent() instanceof DirectPartContent);
+         assertEquals(strText, copy.getText());
+      }
+   }
+
+   /**
+    * Test of constructor, of class {@code TextPart}, with the content stored
+    * off heap and an unsupported or illegal character set.
+    *
+    * @throws IOException if creating the part fails otherwise.
+    */
+   @Test
+   public void testTextPartUnsupportedCharset() throws IOException
+   {
+      final int iThreshold = OffHeapBodies.setThreshold(0);
+      try
+      {
+         for (final String strCharset : new String[] {"X-UNKNOWN-CHARSET", "not a charset"})
+         {
+            try
+            {
+               IMMSMessagePart.ContentType.TEXTPLAIN.newMessagePart(IMMSMessagePart.ContentType.TEXTPLAIN, "<text>", "text.txt", "Hello".getBytes(StandardCharsets.UTF_8), strCharset);
+               fail("UnsupportedEncodingException expected for " + strCharset);
+            }
+            catch (final UnsupportedEncodingException ex)
+            {
+               assertEquals(strCharset, ex.getMessage());
+            }
+         }
+      }
+      finally
+      {
+         OffHeapBodies.setThreshold(iThreshold);
+      }
+   }
+}
@@ -0,0 +1,60 @@
+/*
+ * $Id$
+ *
+ * File:   SMSMessageTest.java
+ * Author: Werner Jaeger
+ *
+ * Created on Oct 18, 2026, 11:02:54 AM
+ *
+ * Copyright (C) 2015 Werner Jaeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wj.android.messageviewer.message;
+
+import java.util.Date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Various test for class {@link SMSMessage}.
+ *
+ * @author Werner Jaeger
+ */
+public final class SMSMessageTest
+{
+   /**
+    * Constructs a new {@code SMSMessageTest} object.
+    */
+   public SMSMessageTest()
+   {
+   }
+
+   /**
+    * Test of {@code fingerprint} method, of class {@code SMSMessage}, for
+    * consistency with {@code equals}.
+    */
+   @Test
+   public void testFingerprint()
+   {
+      final Date date = new Date(1420920060000L);
+      final SMSMessage msg = new SMSMessage("+49170000", "+4912345", date, "Hello", IMessage.MessageBox.INBOX);
+
+      assertEquals(msg.fingerprint(), new SMSMessage("+49170000", "+4912345", new Date(date.getTime()), "Hello", IMessage.MessageBox.INBOX).fingerprint());
+      assertTrue(msg.fingerprint() != new SMSMessage("+49170000", "+4912345", date, "Hello!", IMessage.MessageBox.INBOX).fingerprint());
+      assertTrue(msg.fingerprint() != new SMSMessage("+49170000", "+4912345", date, "Hello", IMessage.MessageBox.SENT).fingerprint());
+      assertTrue(msg.fingerprint() != new SMSMessage("+49170000", "+4912345", new Date(date.getTime() + 1), "Hello", IMessage.MessageBox.INBOX).fingerprint());
+   }
+}